@@ -1,8 +1,7 @@
 package com.sggc.config;
 
-import org.springframework.cache.CacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -12,8 +11,13 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 @EnableCaching
 public class CachingConfig {
-    @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager("secrets");
+
+    public static final String CACHE_MANAGER_BEAN_NAME = "cacheManager";
+    public static final String SECRETS_CACHE_NAME = "secrets";
+    public static final String USER_LIBRARIES_CACHE_NAME = "userLibraries";
+
+    @Bean(CACHE_MANAGER_BEAN_NAME)
+    public ConfiguredCaffeineCacheManager cacheManager(CachingProperties cachingProperties, MeterRegistry meterRegistry) {
+        return new ConfiguredCaffeineCacheManager(cachingProperties, meterRegistry, CACHE_MANAGER_BEAN_NAME);
     }
-}
\ No newline at end of file
+}
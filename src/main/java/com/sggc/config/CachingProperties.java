@@ -0,0 +1,69 @@
+package com.sggc.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Represents the configuration of the application's caches
+ */
+@Component
+@ConfigurationProperties("caching")
+@Data
+public class CachingProperties {
+    /**
+     * The specification of any cache which has not been given its own
+     */
+    private CacheSpec defaults = new CacheSpec(1000L, null, Duration.ofHours(1), null);
+    /**
+     * The specification of each cache, by the name of the cache
+     */
+    private Map<String, CacheSpec> caches = new HashMap<>(Map.of(
+            CachingConfig.SECRETS_CACHE_NAME, new CacheSpec(100L, null, Duration.ofHours(12), Duration.ofHours(1)),
+            CachingConfig.USER_LIBRARIES_CACHE_NAME, new CacheSpec(null, 1_000_000L, Duration.ofDays(1), null)
+    ));
+
+    /**
+     * Retrieves the specification of a cache, falling back to the default specification if it has not been given one
+     *
+     * @param cacheName the name of the cache
+     * @return the specification of the cache
+     */
+    public CacheSpec getSpec(String cacheName) {
+        return caches.getOrDefault(cacheName, defaults);
+    }
+
+    /**
+     * Represents the bounds and expiry of a single cache
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CacheSpec {
+        /**
+         * The maximum number of entries the cache may hold before entries are evicted, unbounded if not set
+         */
+        private Long maximumSize;
+        /**
+         * The maximum total weight of the entries the cache may hold before entries are evicted, used in place of the
+         * maximum size. Only applies to caches which are given a weigher.
+         */
+        private Long maximumWeight;
+        /**
+         * How long after an entry is written that it expires, entries never expire if not set. Caches which are given
+         * their own expiry expire entries no later than this.
+         */
+        private Duration expireAfterWrite;
+        /**
+         * How long after an entry is written that it is reloaded in the background the next time it is read, while
+         * the existing entry continues to be returned. Only applies to caches which are given a loader.
+         */
+        private Duration refreshAfterWrite;
+    }
+}
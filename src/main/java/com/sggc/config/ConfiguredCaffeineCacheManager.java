@@ -0,0 +1,133 @@
+package com.sggc.config;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Weigher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.time.Duration;
+
+/**
+ * Represents a Caffeine cache manager which builds each of its caches from that cache's configured specification, and
+ * records the statistics of every cache as metrics
+ */
+public class ConfiguredCaffeineCacheManager extends CaffeineCacheManager {
+
+    public static final String CACHE_MANAGER_TAG = "cacheManager";
+
+    private final CachingProperties cachingProperties;
+    private final MeterRegistry meterRegistry;
+    private final String beanName;
+
+    public ConfiguredCaffeineCacheManager(CachingProperties cachingProperties, MeterRegistry meterRegistry, String beanName) {
+        this.cachingProperties = cachingProperties;
+        this.meterRegistry = meterRegistry;
+        this.beanName = beanName;
+    }
+
+    /**
+     * Creates a cache which loads its own entries, registering it with the manager. Unlike caches created on demand,
+     * entries of a loading cache are refreshed in the background if its specification sets a refresh after write.
+     *
+     * @param cacheName the name of the cache
+     * @param loader    the loader used to load and refresh entries of the cache
+     * @return the created cache
+     */
+    public LoadingCache<Object, Object> registerLoadingCache(String cacheName, CacheLoader<Object, Object> loader) {
+        LoadingCache<Object, Object> cache = caffeine(cacheName, true, null, null).build(loader);
+        registerCustomCache(cacheName, cache);
+        return cache;
+    }
+
+    /**
+     * Creates a cache whose entries are weighed, and expire when their own expiry dictates, registering it with the
+     * manager. The cache is bounded by the maximum weight of its specification, and its entries never outlive the
+     * expire after write of its specification.
+     *
+     * @param cacheName the name of the cache
+     * @param weigher   the weigher used to weigh entries of the cache
+     * @param expiry    the expiry used to determine how long each entry of the cache lives
+     * @return the created cache
+     */
+    public com.github.benmanes.caffeine.cache.Cache<Object, Object> registerCache(String cacheName,
+                                                                                   Weigher<Object, Object> weigher,
+                                                                                   Expiry<Object, Object> expiry) {
+        com.github.benmanes.caffeine.cache.Cache<Object, Object> cache = caffeine(cacheName, false, weigher, expiry).build();
+        registerCustomCache(cacheName, cache);
+        return cache;
+    }
+
+    @Override
+    protected com.github.benmanes.caffeine.cache.Cache<Object, Object> createNativeCaffeineCache(String name) {
+        return caffeine(name, false, null, null).build();
+    }
+
+    @Override
+    protected Cache adaptCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name, Tags.of(CACHE_MANAGER_TAG, beanName));
+        return super.adaptCaffeineCache(name, cache);
+    }
+
+    /**
+     * Creates a builder for a cache from the cache's configured specification
+     *
+     * @param cacheName the name of the cache
+     * @param loading   whether the cache will be given a loader, without which entries cannot be refreshed
+     * @param weigher   the weigher of the cache's entries, or null if they are not weighed
+     * @param expiry    the expiry of the cache's entries, or null if they expire after write
+     * @return a builder for the cache
+     */
+    private Caffeine<Object, Object> caffeine(String cacheName, boolean loading, Weigher<Object, Object> weigher,
+                                              Expiry<Object, Object> expiry) {
+        CachingProperties.CacheSpec spec = cachingProperties.getSpec(cacheName);
+        Caffeine<Object, Object> caffeine = Caffeine.newBuilder().recordStats();
+        if (weigher != null && spec.getMaximumWeight() != null) {
+            caffeine.maximumWeight(spec.getMaximumWeight()).weigher(weigher);
+        } else if (spec.getMaximumSize() != null) {
+            caffeine.maximumSize(spec.getMaximumSize());
+        }
+        if (expiry != null) {
+            caffeine.expireAfter(new CappedExpiry(expiry, spec.getExpireAfterWrite()));
+        } else if (spec.getExpireAfterWrite() != null) {
+            caffeine.expireAfterWrite(spec.getExpireAfterWrite());
+        }
+        if (loading && spec.getRefreshAfterWrite() != null) {
+            caffeine.refreshAfterWrite(spec.getRefreshAfterWrite());
+        }
+        return caffeine;
+    }
+
+    /**
+     * Represents an expiry which never lets an entry live longer than a cap, regardless of the expiry it wraps
+     */
+    private static class CappedExpiry implements Expiry<Object, Object> {
+        private final Expiry<Object, Object> expiry;
+        private final long capNanos;
+
+        CappedExpiry(Expiry<Object, Object> expiry, Duration cap) {
+            this.expiry = expiry;
+            this.capNanos = cap == null ? Long.MAX_VALUE : cap.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(Object key, Object value, long currentTime) {
+            return Math.min(capNanos, expiry.expireAfterCreate(key, value, currentTime));
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+            return Math.min(capNanos, expiry.expireAfterUpdate(key, value, currentTime, currentDuration));
+        }
+
+        @Override
+        public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+            return Math.min(currentDuration, expiry.expireAfterRead(key, value, currentTime, currentDuration));
+        }
+    }
+}
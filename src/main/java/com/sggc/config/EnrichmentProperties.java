@@ -0,0 +1,51 @@
+package com.sggc.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Represents the configuration of how the multiplayer status of games is found from the Steam Store, off the request
+ * thread
+ */
+@Component
+@ConfigurationProperties("enrichment")
+@Data
+public class EnrichmentProperties {
+    /**
+     * The longest a request for multiplayer games waits for the multiplayer status of its games to be found, games
+     * still being enriched are returned labelled as pending
+     */
+    private Duration requestBudget = Duration.ofSeconds(2);
+    /**
+     * The number of threads requesting the details of games from the Steam Store
+     */
+    private int workers = 4;
+    /**
+     * The number of games a single request enriches at the same time, so one request cannot take every worker. Capped
+     * one below the number of workers.
+     */
+    private int perRequestParallelism = 3;
+    /**
+     * The number of games that may wait for a worker before further games are left in the enrichment queue
+     */
+    private int queueCapacity = 1000;
+    /**
+     * How often the enrichment queue is polled for games left by requests, other instances or before a restart
+     */
+    private Duration pollInterval = Duration.ofSeconds(30);
+    /**
+     * The maximum number of games read from the enrichment queue by each poll
+     */
+    private int pollBatchSize = 25;
+    /**
+     * How long a game claimed from the enrichment queue is hidden from other instances while it is enriched
+     */
+    private Duration lease = Duration.ofMinutes(5);
+    /**
+     * The number of times a game is claimed from the enrichment queue before it is abandoned
+     */
+    private int maxAttempts = 5;
+}
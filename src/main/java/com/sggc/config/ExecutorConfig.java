@@ -0,0 +1,118 @@
+package com.sggc.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Represents the configuration of the executors the application uses to perform work off the request thread.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class ExecutorConfig {
+
+    public static final String USER_LIBRARY_LOOKUP_EXECUTOR = "userLibraryLookupExecutor";
+    public static final String GAME_LOOKUP_EXECUTOR = "gameLookupExecutor";
+    public static final String GAME_CATALOG_EXECUTOR = "gameCatalogExecutor";
+    public static final String ENRICHMENT_EXECUTOR = "enrichmentExecutor";
+    public static final String REQUEST_EXECUTOR = "requestExecutor";
+
+    private final UserLibraryLookupProperties userLibraryLookupProperties;
+    private final GameLookupProperties gameLookupProperties;
+    private final GameCatalogProperties gameCatalogProperties;
+    private final EnrichmentProperties enrichmentProperties;
+    private final RequestHandlingProperties requestHandlingProperties;
+
+    /**
+     * Creates a bounded executor used to look up the libraries of each user within a group at the same time. Once
+     * both the threads and the queue are exhausted lookups are run on the calling thread, degrading to sequential
+     * lookups rather than failing the request.
+     *
+     * @return a bounded executor for user library lookups
+     */
+    @Bean(USER_LIBRARY_LOOKUP_EXECUTOR)
+    public ThreadPoolTaskExecutor userLibraryLookupExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(userLibraryLookupProperties.getMaxThreads());
+        executor.setMaxPoolSize(userLibraryLookupProperties.getMaxThreads());
+        executor.setQueueCapacity(userLibraryLookupProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("user-library-lookup-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Creates a bounded executor used to resolve the batches of a game lookup at the same time. Once both the threads
+     * and the queue are exhausted batches are run on the calling thread, degrading to sequential batches rather than
+     * failing the request.
+     *
+     * @return a bounded executor for game lookup batches
+     */
+    @Bean(GAME_LOOKUP_EXECUTOR)
+    public ThreadPoolTaskExecutor gameLookupExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(gameLookupProperties.getMaxThreads());
+        executor.setMaxPoolSize(gameLookupProperties.getMaxThreads());
+        executor.setQueueCapacity(gameLookupProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("game-lookup-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    /**
+     * Creates a single threaded executor used to add the games of libraries requested from the Steam API to the Game
+     * table. Once the queue is exhausted further libraries are rejected, as their games will be listed again by later
+     * requests.
+     *
+     * @return a bounded executor for adding games to the Game table
+     */
+    @Bean(GAME_CATALOG_EXECUTOR)
+    public ThreadPoolTaskExecutor gameCatalogExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(gameCatalogProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("game-catalog-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    /**
+     * Creates a bounded executor used to find the multiplayer status of games from the Steam Store. Once both the
+     * threads and the queue are exhausted further games are rejected, staying in the enrichment queue until a worker
+     * is free.
+     *
+     * @return a bounded executor for enriching games
+     */
+    @Bean(ENRICHMENT_EXECUTOR)
+    public ThreadPoolTaskExecutor enrichmentExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(enrichmentProperties.getWorkers());
+        executor.setMaxPoolSize(enrichmentProperties.getWorkers());
+        executor.setQueueCapacity(enrichmentProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("enrichment-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    /**
+     * Creates a bounded executor used to run the stages of requests for common games, so servlet threads are released
+     * while requests wait on Steam or DynamoDB. Once both the threads and the queue are exhausted further requests are
+     * rejected rather than run on the servlet thread.
+     *
+     * @return a bounded executor for the stages of requests
+     */
+    @Bean(REQUEST_EXECUTOR)
+    public ThreadPoolTaskExecutor requestExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(requestHandlingProperties.getWorkers());
+        executor.setMaxPoolSize(requestHandlingProperties.getWorkers());
+        executor.setQueueCapacity(requestHandlingProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("request-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,24 @@
+package com.sggc.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Represents the configuration of how the Game table is filled with the games listed in the libraries of users
+ * requested from the Steam API
+ */
+@Component
+@ConfigurationProperties("game-catalog")
+@Data
+public class GameCatalogProperties {
+    /**
+     * Whether libraries are requested from the Steam API with the name of each game, so that games missing from the
+     * Game table can be added to it
+     */
+    private boolean enabled = true;
+    /**
+     * The number of libraries that may wait to have their missing games added before further libraries are skipped
+     */
+    private int queueCapacity = 100;
+}
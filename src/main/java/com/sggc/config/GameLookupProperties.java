@@ -0,0 +1,36 @@
+package com.sggc.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Represents the configuration of how the games common to a group of Steam users are looked up in DynamoDB
+ */
+@Component
+@ConfigurationProperties("game-lookup")
+@Data
+public class GameLookupProperties {
+    /**
+     * The maximum number of appids resolved by a single DynamoDB call, capped at the 100 keys BatchGetItem accepts
+     */
+    private int batchSize = 100;
+    /**
+     * The maximum number of batches that may be in flight at once across all requests
+     */
+    private int maxThreads = 8;
+    /**
+     * The number of batches that may wait for a free thread before batches are run on the requesting thread instead
+     */
+    private int queueCapacity = 100;
+    /**
+     * The number of times the keys DynamoDB left unprocessed are retried before the lookup fails
+     */
+    private int maxUnprocessedRetries = 5;
+    /**
+     * How long to back off for before first retrying unprocessed keys, doubling on each subsequent retry
+     */
+    private Duration unprocessedBackoff = Duration.ofMillis(50);
+}
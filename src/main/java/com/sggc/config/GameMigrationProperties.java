@@ -0,0 +1,36 @@
+package com.sggc.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Represents the configuration of the migration of games from the legacy Game table, keyed by a generated id, to the
+ * Game table keyed by appid
+ */
+@Component
+@ConfigurationProperties("game-migration")
+@Data
+public class GameMigrationProperties {
+    /**
+     * Whether games missing from the Game table should also be looked up in the legacy Game table, which should remain
+     * enabled until the migration has completed
+     */
+    private boolean dualRead = true;
+    /**
+     * The name of the legacy Game table
+     */
+    private String legacyTableName = "Game";
+    /**
+     * The name of the legacy Game table's index on appid
+     */
+    private String legacyAppidIndexName = "appid-index";
+    /**
+     * Whether the legacy Game table should be migrated in the background once the application has started
+     */
+    private boolean runOnStartup = false;
+    /**
+     * The number of segments the legacy Game table is scanned in, each segment is scanned on its own thread
+     */
+    private int totalSegments = 4;
+}
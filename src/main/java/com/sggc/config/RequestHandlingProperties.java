@@ -0,0 +1,37 @@
+package com.sggc.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Represents the configuration of how requests for common games are handled off the servlet thread, and how long each
+ * stage of a request may take
+ */
+@Component
+@ConfigurationProperties("request-handling")
+@Data
+public class RequestHandlingProperties {
+    /**
+     * The number of threads running the stages of requests, bounding how many requests wait on Steam or DynamoDB at once
+     */
+    private int workers = 64;
+    /**
+     * The number of stages that may wait for a free thread before requests are rejected with a 503 response
+     */
+    private int queueCapacity = 1000;
+    /**
+     * The longest resolving the vanity URLs of a request to Steam user ids may take
+     */
+    private Duration vanityUrlResolutionTimeout = Duration.ofSeconds(10);
+    /**
+     * The longest looking up the libraries of a request's users and finding their common games may take
+     */
+    private Duration libraryLookupTimeout = Duration.ofSeconds(30);
+    /**
+     * The longest looking up the details of a request's common games may take
+     */
+    private Duration gameLookupTimeout = Duration.ofSeconds(15);
+}
@@ -1,17 +1,153 @@
 package com.sggc.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Configuration for the application's REST communication.
  */
 @Configuration
+@RequiredArgsConstructor
 public class RestConfig {
 
+    public static final String STEAM_CONNECTION_POOL_METRIC_NAME = "steam";
+    public static final String STEAM_API_HOST_TAG = "api";
+    public static final String STEAM_STORE_HOST_TAG = "store";
+
+    private final SteamHttpClientProperties steamHttpClientProperties;
+    private final SteamProperties steamProperties;
+
+    @Bean
+    public RestTemplate restTemplate(CloseableHttpClient steamHttpClient) {
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(steamHttpClient));
+    }
+
+    /**
+     * Creates a HTTP client backed by a pool of keep-alive connections to the Steam hosts. Connect, read and pool
+     * acquisition are each bounded by their own timeout so that a stuck socket cannot hold a request thread forever,
+     * while connections which have expired or been idle for too long are evicted in the background.
+     *
+     * @param steamConnectionManager the connection pool the client will lease connections from
+     * @return a pooled HTTP client for communicating with Steam
+     */
+    @Bean
+    public CloseableHttpClient steamHttpClient(PoolingHttpClientConnectionManager steamConnectionManager) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(asIntMillis(steamHttpClientProperties.getConnectTimeout()))
+                .setSocketTimeout(asIntMillis(steamHttpClientProperties.getReadTimeout()))
+                .setConnectionRequestTimeout(asIntMillis(steamHttpClientProperties.getConnectionRequestTimeout()))
+                .build();
+        return HttpClients.custom()
+                .setConnectionManager(steamConnectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(steamHttpClientProperties.getMaxIdleTime().toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Creates the connection pool shared by requests to the Steam hosts. Each Steam host is given its own route
+     * within the pool, capped independently, so that a slow or throttled host cannot starve requests to the other.
+     *
+     * @return a connection pool for the Steam hosts
+     */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public PoolingHttpClientConnectionManager steamConnectionManager() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager(
+                steamHttpClientProperties.getTimeToLive().toMillis(), TimeUnit.MILLISECONDS);
+        connectionManager.setMaxTotal(steamHttpClientProperties.getMaxTotalConnections());
+        connectionManager.setDefaultMaxPerRoute(steamHttpClientProperties.getStore().getMaxConnections());
+        HttpRoute apiRoute = steamRoutes().get(STEAM_API_HOST_TAG);
+        HttpRoute storeRoute = steamRoutes().get(STEAM_STORE_HOST_TAG);
+        if (storeRoute != null) {
+            connectionManager.setMaxPerRoute(storeRoute, steamHttpClientProperties.getStore().getMaxConnections());
+        }
+        if (apiRoute != null) {
+            connectionManager.setMaxPerRoute(apiRoute, steamHttpClientProperties.getApi().getMaxConnections());
+        }
+        return connectionManager;
+    }
+
+    /**
+     * Exposes the state of the Steam connection pool as metrics, both in total and for each Steam host.
+     *
+     * @param steamConnectionManager the connection pool to expose metrics for
+     * @return a binder which registers the connection pool's metrics
+     */
+    @Bean
+    public MeterBinder steamConnectionPoolMetrics(PoolingHttpClientConnectionManager steamConnectionManager) {
+        return registry -> {
+            new PoolingHttpClientConnectionManagerMetricsBinder(steamConnectionManager, STEAM_CONNECTION_POOL_METRIC_NAME)
+                    .bindTo(registry);
+            steamRoutes().forEach((host, route) -> {
+                Gauge.builder("steam.http.pool.route.leased", steamConnectionManager,
+                                manager -> manager.getStats(route).getLeased())
+                        .description("The number of connections to the Steam host currently in use")
+                        .tag("host", host)
+                        .register(registry);
+                Gauge.builder("steam.http.pool.route.available", steamConnectionManager,
+                                manager -> manager.getStats(route).getAvailable())
+                        .description("The number of idle connections to the Steam host kept alive in the pool")
+                        .tag("host", host)
+                        .register(registry);
+                Gauge.builder("steam.http.pool.route.pending", steamConnectionManager,
+                                manager -> manager.getStats(route).getPending())
+                        .description("The number of requests waiting for a connection to the Steam host")
+                        .tag("host", host)
+                        .register(registry);
+            });
+        };
+    }
+
+    /**
+     * Builds the connection pool routes for each configured Steam host
+     *
+     * @return a map of Steam host names to their connection pool route, hosts without a configured address are omitted
+     */
+    private Map<String, HttpRoute> steamRoutes() {
+        Map<String, HttpRoute> routes = new LinkedHashMap<>();
+        if (StringUtils.isNotBlank(steamProperties.getApiAddress())) {
+            routes.put(STEAM_API_HOST_TAG, toRoute(steamProperties.getApiAddress()));
+        }
+        if (StringUtils.isNotBlank(steamProperties.getStoreAddress())) {
+            routes.put(STEAM_STORE_HOST_TAG, toRoute(steamProperties.getStoreAddress()));
+        }
+        return routes;
+    }
+
+    /**
+     * Converts the address of a Steam host into the route the connection pool will lease its connections under
+     *
+     * @param address the address of the Steam host e.g. https://api.steampowered.com
+     * @return the connection pool route for the host
+     */
+    private HttpRoute toRoute(String address) {
+        URI uri = URI.create(address);
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80);
+        return new HttpRoute(new HttpHost(uri.getHost(), port, uri.getScheme()), null, secure);
+    }
+
+    private int asIntMillis(Duration duration) {
+        return (int) Math.min(duration.toMillis(), Integer.MAX_VALUE);
     }
 }
@@ -0,0 +1,39 @@
+package com.sggc.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Represents the configuration of the background crawl of the Steam Store, which finds the multiplayer status of games
+ * before they are requested
+ */
+@Component
+@ConfigurationProperties("steam-catalog-crawler")
+@Data
+public class SteamCatalogCrawlerProperties {
+    /**
+     * Whether the Steam Store should be crawled in the background, which should be done by a single instance of the
+     * application
+     */
+    private boolean enabled = false;
+    /**
+     * How long after the application has started the first crawl begins
+     */
+    private Duration initialDelay = Duration.ofMinutes(1);
+    /**
+     * How long after a crawl finishes the next one begins
+     */
+    private Duration interval = Duration.ofMinutes(15);
+    /**
+     * The maximum number of requests to Steam a single crawl makes, which should leave most of the Steam Store's rate
+     * limit to requests
+     */
+    private int requestBudget = 100;
+    /**
+     * The number of games listed by each page of the Steam Store's app list
+     */
+    private int pageSize = 1000;
+}
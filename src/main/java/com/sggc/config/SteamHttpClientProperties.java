@@ -0,0 +1,66 @@
+package com.sggc.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Represents the configuration of the pooled HTTP client used to communicate with the Steam API and Store
+ */
+@Component
+@ConfigurationProperties("steam.http-client")
+@Data
+public class SteamHttpClientProperties {
+    /**
+     * The maximum number of connections that may be open across every Steam host
+     */
+    private int maxTotalConnections = 100;
+    /**
+     * How long to wait for a TCP connection to a Steam host to be established
+     */
+    private Duration connectTimeout = Duration.ofSeconds(2);
+    /**
+     * How long to wait for data from a Steam host before the request is abandoned
+     */
+    private Duration readTimeout = Duration.ofSeconds(10);
+    /**
+     * How long to wait for a free connection from the pool before the request is abandoned
+     */
+    private Duration connectionRequestTimeout = Duration.ofSeconds(2);
+    /**
+     * How long a connection may sit unused in the pool before it is evicted
+     */
+    private Duration maxIdleTime = Duration.ofSeconds(30);
+    /**
+     * The maximum lifetime of a pooled connection, regardless of use
+     */
+    private Duration timeToLive = Duration.ofMinutes(5);
+    /**
+     * The connection pool settings for the Steam Web API host
+     */
+    private HostPool api = new HostPool(50);
+    /**
+     * The connection pool settings for the Steam Store host
+     */
+    private HostPool store = new HostPool(20);
+
+    /**
+     * Represents the connection pool settings for a single Steam host
+     */
+    @Data
+    public static class HostPool {
+        /**
+         * The maximum number of connections that may be open to the host
+         */
+        private int maxConnections;
+
+        public HostPool() {
+        }
+
+        public HostPool(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+    }
+}
@@ -17,4 +17,14 @@ import org.springframework.stereotype.Component;
 public class SteamProperties {
     private String apiAddress;
     private String storeAddress;
+    /**
+     * The fields the Steam Store's appdetails endpoint is asked to limit its responses to, blank to request the full
+     * details of each game
+     */
+    private String appDetailsFilters = "categories";
+    /**
+     * The maximum number of appids passed to the Steam API's GetOwnedGames endpoint in the appids_filter of a single
+     * request, larger filters are split across several requests to keep the request URI short
+     */
+    private int ownedGamesFilterChunkSize = 200;
 }
@@ -0,0 +1,79 @@
+package com.sggc.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Represents the configuration of the rate limiter applied to outbound requests to the Steam API and Store
+ */
+@Component
+@ConfigurationProperties("steam.rate-limit")
+@Data
+public class SteamRateLimitProperties {
+    /**
+     * Whether outbound requests to Steam are rate limited and retried when throttled
+     */
+    private boolean enabled = true;
+    /**
+     * The longest a request may wait for a permit, including any back off, before it is abandoned
+     */
+    private Duration maxWait = Duration.ofSeconds(10);
+    /**
+     * The number of times a request throttled by Steam, or failed with a server error, is retried
+     */
+    private int maxRetries = 3;
+    /**
+     * The back off applied after the first throttled request when Steam does not specify a Retry-After
+     */
+    private Duration initialBackoff = Duration.ofMillis(500);
+    /**
+     * The longest back off applied when Steam does not specify a Retry-After
+     */
+    private Duration maxBackoff = Duration.ofSeconds(30);
+    /**
+     * The factor the rate of a host is multiplied by each time it throttles a request
+     */
+    private double throttledRateFactor = 0.5;
+    /**
+     * The lowest fraction of its configured rate a host may be slowed to after throttling requests
+     */
+    private double minRateFactor = 0.1;
+    /**
+     * The fraction of its configured rate a slowed host regains with each successful request
+     */
+    private double recoveryRateFactor = 0.05;
+    /**
+     * The rate limit for the Steam Web API host
+     */
+    private Bucket api = new Bucket(10, 20);
+    /**
+     * The rate limit for the Steam Store host
+     */
+    private Bucket store = new Bucket(1, 20);
+
+    /**
+     * Represents the token bucket limiting the requests sent to a single Steam host
+     */
+    @Data
+    public static class Bucket {
+        /**
+         * The rate at which permits are issued
+         */
+        private double permitsPerSecond;
+        /**
+         * The number of permits that may accumulate while the host is idle, and so may be used in a burst
+         */
+        private int burst;
+
+        public Bucket() {
+        }
+
+        public Bucket(double permitsPerSecond, int burst) {
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+    }
+}
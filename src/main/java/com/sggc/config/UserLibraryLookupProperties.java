@@ -0,0 +1,38 @@
+package com.sggc.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Represents the configuration of how the libraries of a group of Steam users are looked up when determining their
+ * common games
+ */
+@Component
+@ConfigurationProperties("user-library-lookup")
+@Data
+public class UserLibraryLookupProperties {
+    /**
+     * Whether each user's library should be looked up at the same time rather than one after the other
+     */
+    private boolean concurrent = true;
+    /**
+     * The maximum number of library lookups that may be in flight at once across all requests
+     */
+    private int maxThreads = 10;
+    /**
+     * The number of lookups that may wait for a free thread before lookups are run on the requesting thread instead
+     */
+    private int queueCapacity = 100;
+    /**
+     * Whether users requested from the Steam API once a group's candidate common games are known should only be asked
+     * which of the candidates they own. Such partial libraries are neither saved nor cached, so the user is requested
+     * from the Steam API again by later queries
+     */
+    private boolean filteredSteamLookups = true;
+    /**
+     * The maximum number of candidate common games for which a filtered Steam lookup is made, above it the user's
+     * whole library is requested and saved instead
+     */
+    private int maxFilteredCandidates = 400;
+}
@@ -0,0 +1,64 @@
+package com.sggc.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Represents the configuration of the queue which writes users and games to DynamoDB off the request thread
+ */
+@Component
+@ConfigurationProperties("write-behind")
+@Data
+public class WriteBehindProperties {
+    /**
+     * Whether writes should be queued, rather than written on the request thread
+     */
+    private boolean enabled = true;
+    /**
+     * The maximum number of distinct writes which may be queued at once, further writes are handled by the overflow
+     * policy
+     */
+    private int maxPending = 10000;
+    /**
+     * How writes which do not fit in the queue are handled
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.WRITE_THROUGH;
+    /**
+     * The number of queued writes which triggers a flush without waiting for the flush interval, capped at the 25
+     * items BatchWriteItem accepts
+     */
+    private int batchSize = 25;
+    /**
+     * The longest a write is queued for before it is flushed
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+    /**
+     * The number of times the items DynamoDB left unprocessed are retried within a flush, before they are queued again
+     */
+    private int maxUnprocessedRetries = 5;
+    /**
+     * How long to back off for before first retrying unprocessed items, doubling on each subsequent retry
+     */
+    private Duration unprocessedBackoff = Duration.ofMillis(50);
+    /**
+     * The longest the queue may take to drain once the application begins shutting down
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Represents how writes which do not fit in the queue are handled
+     */
+    public enum OverflowPolicy {
+        /**
+         * The write is made on the calling thread, slowing the caller down rather than losing the write
+         */
+        WRITE_THROUGH,
+        /**
+         * The write is discarded, it will be made again the next time the same user or game is looked up
+         */
+        DROP
+    }
+}
@@ -0,0 +1,105 @@
+package com.sggc.controllers;
+
+import com.sggc.models.sggc.CommonGamesStreamRecord;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Represents the writing of a stream of common games to a client as newline delimited JSON. Records are written by a
+ * single producer, and the stream may be ended from any thread, e.g. once a stage of the request times out.
+ * <p/>
+ * No lock is held while a record is written, as writes block while a slow client is not reading. Instead the stream
+ * moves between states: if it is ended while the producer is writing, the producer writes the final record once its
+ * write returns, otherwise the final record is written by the thread ending the stream. Either way only one thread
+ * writes to the emitter at a time, and no record is written after the final one.
+ */
+@Log4j2
+class CommonGamesStreamWriter {
+
+    private static final String NEWLINE = "\n";
+    private static final int OPEN = 0;
+    private static final int WRITING = 1;
+    private static final int END_REQUESTED = 2;
+    private static final int ENDED = 3;
+
+    private final ResponseBodyEmitter emitter;
+    private final AtomicInteger state = new AtomicInteger(OPEN);
+    private final AtomicReference<CommonGamesStreamRecord> finalRecord = new AtomicReference<>();
+
+    CommonGamesStreamWriter(ResponseBodyEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    /**
+     * Writes a record to the client, unless the stream has been ended. Must only be called by the stream's producer.
+     *
+     * @param record the record to write
+     * @return true if the record was written, false if the stream has been ended so no further records will be written
+     * @throws IOException if the record could not be written to the client
+     */
+    boolean write(CommonGamesStreamRecord record) throws IOException {
+        if (!state.compareAndSet(OPEN, WRITING)) {
+            return false;
+        }
+        try {
+            writeLine(record);
+        } finally {
+            if (!state.compareAndSet(WRITING, OPEN)) {
+                state.set(ENDED);
+                writeFinalRecord();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ends the stream with a final record, writing it now if the producer is not writing, otherwise leaving it to the
+     * producer to write once its current write returns. Only the first call has any effect.
+     *
+     * @param record the final record of the stream
+     */
+    void end(CommonGamesStreamRecord record) {
+        if (!finalRecord.compareAndSet(null, record)) {
+            return;
+        }
+        while (true) {
+            if (state.compareAndSet(OPEN, ENDED)) {
+                writeFinalRecord();
+                return;
+            }
+            if (state.compareAndSet(WRITING, END_REQUESTED) || state.get() >= END_REQUESTED) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the final record of the stream and completes it. If the record cannot be written, e.g. as the client has
+     * gone, the stream is completed with the error instead
+     */
+    private void writeFinalRecord() {
+        try {
+            writeLine(finalRecord.get());
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Could not send the final record of a stream", e);
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * Writes a record to the client as a single line of JSON
+     *
+     * @param record the record to write
+     * @throws IOException if the record could not be written to the client
+     */
+    private void writeLine(CommonGamesStreamRecord record) throws IOException {
+        emitter.send(record, MediaType.APPLICATION_JSON);
+        emitter.send(NEWLINE, MediaType.TEXT_PLAIN);
+    }
+}
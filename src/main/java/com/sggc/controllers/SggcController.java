@@ -1,7 +1,13 @@
 package com.sggc.controllers;
 
+import com.sggc.config.ExecutorConfig;
+import com.sggc.config.RequestHandlingProperties;
+import com.sggc.errors.ApiError;
 import com.sggc.exceptions.*;
 import com.sggc.models.Game;
+import com.sggc.models.SteamGameCategory;
+import com.sggc.models.sggc.CommonGame;
+import com.sggc.models.sggc.CommonGamesStreamRecord;
 import com.sggc.models.sggc.SggcResponse;
 import com.sggc.models.steam.request.GetCommonGamesRequest;
 import com.sggc.services.GameService;
@@ -10,16 +16,35 @@ import com.sggc.services.VanityUrlService;
 import com.sggc.validation.ValidationResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 
 /*
  * Represents the controller for the SGGC api. Under the URL api/sggc.
@@ -33,49 +58,354 @@ public class SggcController {
     private final GameService gameService;
     private final UserService userService;
     private final VanityUrlService vanityUrlService;
+    private final RequestHandlingProperties requestHandlingProperties;
+    @Qualifier(ExecutorConfig.REQUEST_EXECUTOR)
+    private final Executor requestExecutor;
 
     /**
-     * POST endpoint that, when given a list of user id's returns the Steam games owned by all users, contains a flag to exclude multiplayer games
+     * POST endpoint that, when given a list of user id's returns the Steam games owned by all users, contains a flag to exclude multiplayer games.
+     * Games can also be filtered by the categories they are within, e.g. online co-op, without requests to the Steam Store for games already enriched.
+     * If a minimum number of owners is given, games owned by at least that many users are returned ranked by how many own them.
+     * <p/>
+     * The request is validated on the servlet thread. If every user's library is cached, the users' common games are
+     * found on the servlet thread, so that finding them never queues behind requests waiting on Steam. Any other
+     * request resolves its vanity URLs and looks up its users' libraries in stages on the request executor. Either way
+     * the games are looked up on the request executor, so the servlet thread is released while the request waits on
+     * Steam or DynamoDB. Each stage must complete within its configured timeout, otherwise the controller's advice will
+     * return a 503 error response.
      *
      * @param request the request object containing information such as user id's to search and whether multiplayer games should be excluded
-     * @return a response object containing a collection of games that are mutually owned by all users specified in the request
-     * @throws SecretRetrievalException if an error occurs trying to retrieve a secret key from AWS secrets manager in
-     * this case the controller's advice will return a 500 error response
+     * @return a future of the response object containing a collection of games that are mutually owned by all users
+     * specified in the request. If an error occurs trying to retrieve a secret key from AWS secrets manager the future
+     * completes with a {@link SecretRetrievalException}, in this case the controller's advice will return a 500 error response
      */
     @PostMapping(value = "/")
-    public ResponseEntity<SggcResponse> getGamesAllUsersOwn(@Valid @RequestBody GetCommonGamesRequest request) throws SecretRetrievalException {
+    public CompletableFuture<ResponseEntity<SggcResponse>> getGamesAllUsersOwn(@Valid @RequestBody GetCommonGamesRequest request) {
         log.info("Request received [{}].", request);
         Set<String> steamIds = request.getSteamIds();
         List<ValidationResult> validationErrorList = vanityUrlService.validateSteamIdsAndVanityUrls(steamIds);
         if (!validationErrorList.isEmpty()) {
             SggcResponse response = new SggcResponse(false, new ValidationException(validationErrorList).toApiError());
             log.info("Error occurred when validating Steam IDs/Vanity URls object returning 400 error response with body [{}].", response);
-            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+            return CompletableFuture.completedFuture(new ResponseEntity<>(response, HttpStatus.BAD_REQUEST));
+        }
+        CompletableFuture<Map<String, Integer>> ownersOfCommonGames;
+        if (userService.areLibrariesCached(steamIds)) {
+            log.debug("Libraries of every user are cached, finding common games on the servlet thread.");
+            ownersOfCommonGames = findCachedOwnersOfCommonGames(request);
+        } else {
+            ownersOfCommonGames = runStage("vanity URL resolution", requestHandlingProperties.getVanityUrlResolutionTimeout(),
+                    () -> vanityUrlService.resolveVanityUrls(steamIds))
+                    .thenCompose(resolvedSteamUserIds -> runStage("library lookup", requestHandlingProperties.getLibraryLookupTimeout(),
+                            () -> findOwnersOfCommonGames(resolvedSteamUserIds, request.getMinimumOwners())));
         }
-        Set<String> resolvedSteamUserIds;
+        return ownersOfCommonGames
+                .thenCompose(ownersByGameId -> runStage("game lookup", requestHandlingProperties.getGameLookupTimeout(),
+                        () -> respondWithCommonGames(request, ownersByGameId)))
+                .exceptionally(this::respondWithError);
+    }
+
+    /**
+     * Finds the games owned by the users of a request whose libraries are all cached on the calling thread
+     *
+     * @param request the request for common games, whose Steam ids are all user ids
+     * @return a completed future of the number of users owning each common game by game id, or a failed future if the
+     * common games could not be found
+     */
+    private CompletableFuture<Map<String, Integer>> findCachedOwnersOfCommonGames(GetCommonGamesRequest request) {
         try {
-            resolvedSteamUserIds = vanityUrlService.resolveVanityUrls(steamIds);
-        } catch (VanityUrlResolutionException ex) {
-            SggcResponse response = new SggcResponse(false, ex.toApiError());
+            return CompletableFuture.completedFuture(findOwnersOfCommonGames(request.getSteamIds(), request.getMinimumOwners()));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * POST endpoint that streams the Steam games owned by all users given in a request as newline delimited JSON,
+     * accepting the same request as {@link #getGamesAllUsersOwn(GetCommonGamesRequest)}. Each game is sent as soon as it
+     * is known to be common and to pass the request's filters, rather than once every game is known, so the first games
+     * arrive once the users' libraries have been looked up. Games are not ranked, the stream always ends with a summary
+     * of the games sent, or with an error if the request failed.
+     * <p/>
+     * Games are written on the request executor as they are found, blocking while a slow client is not reading, so
+     * no more than the servlet container's output buffer is held for each client. Only the thread finding the games
+     * writes them; if the stream ends while it is writing, e.g. as a stage timed out, the final record is left for it
+     * to write once its write returns, see {@link CommonGamesStreamWriter}.
+     *
+     * @param request the request object containing information such as user id's to search and whether multiplayer games should be excluded
+     * @return an emitter sending a line for each common game, followed by a summary or an error
+     */
+    @PostMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseBodyEmitter streamGamesAllUsersOwn(@Valid @RequestBody GetCommonGamesRequest request) {
+        log.info("Streaming request received [{}].", request);
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+        CommonGamesStreamWriter writer = new CommonGamesStreamWriter(emitter);
+        Set<String> steamIds = request.getSteamIds();
+        List<ValidationResult> validationErrorList = vanityUrlService.validateSteamIdsAndVanityUrls(steamIds);
+        if (!validationErrorList.isEmpty()) {
+            ApiError error = new ValidationException(validationErrorList).toApiError();
+            log.info("Error occurred when validating Steam IDs/Vanity URls object ending stream with error [{}].", error);
+            writer.end(CommonGamesStreamRecord.error(error));
+            return emitter;
+        }
+        CompletableFuture.completedFuture(steamIds)
+                .thenCompose(unresolvedSteamIds -> runStage("vanity URL resolution", requestHandlingProperties.getVanityUrlResolutionTimeout(),
+                        () -> vanityUrlService.resolveVanityUrls(unresolvedSteamIds)))
+                .thenCompose(resolvedSteamUserIds -> runStage("library lookup", requestHandlingProperties.getLibraryLookupTimeout(),
+                        () -> findOwnersOfCommonGames(resolvedSteamUserIds, request.getMinimumOwners())))
+                .thenCompose(ownersByGameId -> runStage("game lookup", requestHandlingProperties.getGameLookupTimeout(),
+                        () -> streamCommonGames(writer, request, ownersByGameId)))
+                .whenComplete((summary, throwable) -> endStream(writer, summary, throwable));
+        return emitter;
+    }
+
+    /**
+     * Ends a stream of common games on the request executor, so that the final record is never written on the JVM wide
+     * thread completing timed out stages. If the request executor rejects it, as is likely once the executor is
+     * saturated, the stream is ended on the calling thread instead, so the client is never left without a final record.
+     *
+     * @param writer    the writer of the stream
+     * @param summary   the summary of the games sent, or null if the request failed
+     * @param throwable the failure of the request, or null if it succeeded
+     */
+    private void endStream(CommonGamesStreamWriter writer, CommonGamesStreamRecord.Summary summary, Throwable throwable) {
+        Runnable end = () -> {
+            if (throwable == null) {
+                log.info("Stream successful, sent [{}].", summary);
+                writer.end(CommonGamesStreamRecord.summary(summary));
+            } else {
+                writer.end(CommonGamesStreamRecord.error(toStreamError(throwable)));
+            }
+        };
+        try {
+            requestExecutor.execute(end);
+        } catch (RejectedExecutionException e) {
+            log.warn("Request executor rejected ending a stream, ending it on the completing thread.");
+            end.run();
+        }
+    }
+
+    /**
+     * Looks up the common games of a request, sending each to the client as soon as it passes the request's filters.
+     * Once the stream has been ended, e.g. as the stage timed out, no further games are looked up or sent.
+     *
+     * @param writer         the writer of the stream
+     * @param request        the request for common games
+     * @param ownersByGameId the number of users owning each common game by game id
+     * @return the summary of the games sent
+     */
+    private CommonGamesStreamRecord.Summary streamCommonGames(CommonGamesStreamWriter writer, GetCommonGamesRequest request,
+                                                              Map<String, Integer> ownersByGameId) {
+        Set<SteamGameCategory> categories = request.getCategories() == null ? Collections.emptySet() : request.getCategories();
+        CommonGamesStreamRecord.Summary summary = new CommonGamesStreamRecord.Summary();
+        gameService.streamGamesById(ownersByGameId.keySet(), request.isMultiplayerOnly(), categories, game -> {
+            Object body = request.getMinimumOwners() == null ? game : new CommonGame(game, ownersByGameId.get(game.getAppid()));
+            try {
+                if (!writer.write(CommonGamesStreamRecord.game(body))) {
+                    throw new CancellationException("Stream of common games has already ended");
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            summary.setGames(summary.getGames() + 1);
+            if (game.isEnrichmentPending()) {
+                summary.setPending(summary.getPending() + 1);
+            }
+        });
+        return summary;
+    }
+
+    /**
+     * Creates the error ending the stream of a request which failed, hiding the details of unexpected failures as the
+     * controller's advice does
+     *
+     * @param throwable the failure of the request
+     * @return the error to send to the client
+     */
+    private ApiError toStreamError(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        if (cause instanceof WebAppException) {
+            log.info("Error occurred while streaming common games ending stream with error [{}].", cause.getMessage());
+            return ((WebAppException) cause).toApiError();
+        }
+        if (cause instanceof RequestStageTimeoutException) {
+            log.error("Request stage timed out while streaming common games", cause);
+            return ((RequestStageTimeoutException) cause).toApiError();
+        }
+        if (cause instanceof SteamRateLimitException) {
+            log.error("Request to Steam was rate limited while streaming common games", cause);
+            return ((SteamRateLimitException) cause).toApiError();
+        }
+        if (cause instanceof RejectedExecutionException) {
+            log.error("Request was rejected by the request executor while streaming common games", cause);
+            return new ApiError("RejectedExecutionException", "The server is handling too many requests, please try again later.");
+        }
+        log.error("Internal server error occurred while streaming common games", cause);
+        return new ApiError("Exception", "Internal server error.");
+    }
+
+    /**
+     * Finds the games owned by all the given users, or by at least the given minimum number of them
+     *
+     * @param resolvedSteamUserIds the Steam user ids of the users
+     * @param minimumOwners        the minimum number of users owning each game, or null if every user must own it
+     * @return the number of users owning each game by game id, if every user must own a game the number of owners of
+     * each is null
+     * @throws UserHasNoGamesException  if one of the users owns no games
+     * @throws TooFewSteamIdsException  if fewer than two users remain once vanity URLs are resolved
+     * @throws SecretRetrievalException if an error occurs trying to retrieve a secret key from AWS secrets manager
+     */
+    private Map<String, Integer> findOwnersOfCommonGames(Set<String> resolvedSteamUserIds, Integer minimumOwners)
+            throws UserHasNoGamesException, TooFewSteamIdsException, SecretRetrievalException {
+        if (minimumOwners == null) {
+            Map<String, Integer> ownersByGameId = new HashMap<>();
+            userService.getIdsOfGamesOwnedByAllUsers(resolvedSteamUserIds).forEach(gameId -> ownersByGameId.put(gameId, null));
+            return ownersByGameId;
+        }
+        return userService.getIdsOfGamesOwnedByAtLeast(resolvedSteamUserIds, minimumOwners);
+    }
+
+    /**
+     * Looks up the common games of a request and creates a successful response containing them
+     *
+     * @param request        the request for common games
+     * @param ownersByGameId the number of users owning each common game by game id
+     * @return a successful response containing the common games, ranked by how many users own them if the request
+     * gave a minimum number of owners
+     */
+    private ResponseEntity<SggcResponse> respondWithCommonGames(GetCommonGamesRequest request, Map<String, Integer> ownersByGameId) {
+        Set<SteamGameCategory> categories = request.getCategories() == null ? Collections.emptySet() : request.getCategories();
+        Set<Game> commonGames = gameService.findGamesById(ownersByGameId.keySet(), request.isMultiplayerOnly(), categories);
+        log.info("Response successful.");
+        if (request.getMinimumOwners() != null) {
+            return new ResponseEntity<>(new SggcResponse(true, rankByOwners(commonGames, ownersByGameId)), HttpStatus.OK);
+        }
+        return new ResponseEntity<>(new SggcResponse(true, commonGames), HttpStatus.OK);
+    }
+
+    /**
+     * Creates the error response of a request which failed because of the users it gave. Any other failure is rethrown
+     * so that it is handled by the controller's advice
+     *
+     * @param throwable the failure of the request
+     * @return a 404 error response if a vanity URL could not be resolved or a user has no games, a 400 error response
+     * if fewer than two users remain once vanity URLs are resolved
+     */
+    private ResponseEntity<SggcResponse> respondWithError(Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+        if (cause instanceof VanityUrlResolutionException) {
+            SggcResponse response = new SggcResponse(false, ((VanityUrlResolutionException) cause).toApiError());
             log.info("Error occurred while trying to resolve Vanity URL returning 404 error response with body [{}].", response);
             return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
         }
-        Set<String> commonGameIdsBetweenUsers;
-        try {
-            commonGameIdsBetweenUsers = userService.getIdsOfGamesOwnedByAllUsers(resolvedSteamUserIds);
-        } catch (UserHasNoGamesException ex) {
-            SggcResponse response = new SggcResponse(false, ex.toApiError());
+        if (cause instanceof UserHasNoGamesException) {
+            SggcResponse response = new SggcResponse(false, ((UserHasNoGamesException) cause).toApiError());
             log.info("Error occurred while trying to find user's owned games returning 404 error response with body [{}].", response);
             return new ResponseEntity<>(response, HttpStatus.NOT_FOUND);
         }
-        catch (TooFewSteamIdsException ex){
-            SggcResponse response = new SggcResponse(false, ex.toApiError());
+        if (cause instanceof TooFewSteamIdsException) {
+            SggcResponse response = new SggcResponse(false, ((TooFewSteamIdsException) cause).toApiError());
             log.info("There are fewer than two Steam user IDs in the collection after Vanity URL resolution returning " +
                     "400 error response with body [{}].", response);
             return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
         }
-        Set<Game> commonGames = gameService.findGamesById(commonGameIdsBetweenUsers, request.isMultiplayerOnly());
-        log.info("Response successful.");
-        return new ResponseEntity<>(new SggcResponse(true, commonGames), HttpStatus.OK);
+        throw new CompletionException(cause);
+    }
+
+    /**
+     * Runs a stage of a request on the request executor, failing it with a {@link RequestStageTimeoutException} if it
+     * does not complete within the given timeout. The timeout starts once the previous stage has completed. A stage
+     * which times out is cancelled: if it is still queued it is never started, and if it is running its thread is
+     * interrupted, so the work stops at its next blocking wait rather than holding a request thread after its client
+     * has been answered.
+     *
+     * @param stage   the name of the stage, returned to the client if the stage times out
+     * @param timeout the longest the stage may take
+     * @param call    the work of the stage
+     * @param <T>     the type of the result of the stage
+     * @return a future of the result of the stage
+     */
+    private <T> CompletableFuture<T> runStage(String stage, Duration timeout, RequestStage<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicReference<Thread> runner = new AtomicReference<>();
+        requestExecutor.execute(() -> runStage(call, result, runner));
+        return result
+                .orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS)
+                .handle((value, throwable) -> {
+                    if (throwable == null) {
+                        return value;
+                    }
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                    if (cause instanceof TimeoutException) {
+                        log.warn("Request stage [{}] did not complete within [{}], cancelling it.", stage, timeout);
+                        cancelStage(runner);
+                        throw new RequestStageTimeoutException(stage, timeout);
+                    }
+                    throw new CompletionException(cause);
+                });
+    }
+
+    /**
+     * Runs the work of a stage on the current thread, unless the stage timed out while it was queued
+     *
+     * @param call   the work of the stage
+     * @param result the future completed with the result of the stage
+     * @param runner holds the thread running the stage, for as long as it is running
+     * @param <T>    the type of the result of the stage
+     */
+    private static <T> void runStage(RequestStage<T> call, CompletableFuture<T> result, AtomicReference<Thread> runner) {
+        runner.set(Thread.currentThread());
+        try {
+            if (!result.isDone()) {
+                result.complete(call.run());
+            }
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        } finally {
+            synchronized (runner) {
+                runner.set(null);
+                //Clears an interrupt from a timeout which raced with the stage completing, so it never reaches the next stage run on this thread
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * Interrupts the thread running a stage which has timed out, if the stage is still running
+     *
+     * @param runner holds the thread running the stage, for as long as it is running
+     */
+    private static void cancelStage(AtomicReference<Thread> runner) {
+        synchronized (runner) {
+            Thread thread = runner.get();
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Represents the work of a single stage of a request, which may throw the checked exceptions of the services
+     *
+     * @param <T> the type of the result of the stage
+     */
+    @FunctionalInterface
+    private interface RequestStage<T> {
+        T run() throws Exception;
+    }
+
+    /**
+     * Ranks games by how many users own them, most owned first
+     *
+     * @param games          the games to rank
+     * @param ownersByGameId the number of users owning each game by game id
+     * @return the games with how many users own each, most owned first
+     */
+    private List<CommonGame> rankByOwners(Set<Game> games, Map<String, Integer> ownersByGameId) {
+        return games.stream()
+                .map(game -> new CommonGame(game, ownersByGameId.get(game.getAppid())))
+                .sorted(Comparator.comparingInt(CommonGame::getOwners).reversed()
+                        .thenComparing(commonGame -> commonGame.getGame().getAppid()))
+                .collect(Collectors.toList());
     }
 }
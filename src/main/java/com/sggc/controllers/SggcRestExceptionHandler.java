@@ -1,6 +1,8 @@
 package com.sggc.controllers;
 
 import com.sggc.errors.ApiError;
+import com.sggc.exceptions.RequestStageTimeoutException;
+import com.sggc.exceptions.SteamRateLimitException;
 import com.sggc.models.sggc.SggcResponse;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
@@ -16,6 +18,7 @@ import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 
@@ -55,6 +58,57 @@ public class SggcRestExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Intercepts requests which could not be completed because of Steam's rate limits and wraps them in an SGGCResponse
+     * object, telling the client when to retry
+     *
+     * @param ex the caught exception
+     * @return a ResponseEntity object with a HTTP status of 503 containing a SGGCResponse indicating an error
+     */
+    @ExceptionHandler(SteamRateLimitException.class)
+    public ResponseEntity<SggcResponse> handleSteamRateLimitException(SteamRateLimitException ex) {
+        log.error("Request to Steam was rate limited", ex);
+        SggcResponse response = new SggcResponse(false, ex.toApiError());
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000)));
+        log.info("Steam rate limited the request returning 503 response with body [{}]", response);
+        return new ResponseEntity<>(response, headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Intercepts requests with a stage which did not complete within its configured timeout and wraps them in an
+     * SGGCResponse object
+     *
+     * @param ex the caught exception
+     * @return a ResponseEntity object with a HTTP status of 503 containing a SGGCResponse indicating an error
+     */
+    @ExceptionHandler(RequestStageTimeoutException.class)
+    public ResponseEntity<SggcResponse> handleRequestStageTimeoutException(RequestStageTimeoutException ex) {
+        log.error("Request stage timed out", ex);
+        SggcResponse response = new SggcResponse(false, ex.toApiError());
+        log.info("Request stage timed out returning 503 response with body [{}]", response);
+        return new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Intercepts requests which could not be started because every request thread is busy and the queue of waiting
+     * stages is full, and wraps them in an SGGCResponse object
+     *
+     * @param ex the caught exception
+     * @return a ResponseEntity object with a HTTP status of 503 containing a SGGCResponse indicating an error
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<SggcResponse> handleRejectedExecutionException(RejectedExecutionException ex) {
+        log.error("Request was rejected by the request executor", ex);
+        final ApiError error = new ApiError(
+                "RejectedExecutionException",
+                "The server is handling too many requests, please try again later."
+        );
+        SggcResponse response = new SggcResponse(false, error);
+        log.info("Request executor is saturated returning 503 response with body [{}]", response);
+        return new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     /**
      * Catch-all method to catch all uncaught exceptions and wrap them in an SGGCResponse object for easier consuming
      */
@@ -0,0 +1,236 @@
+package com.sggc.crawler;
+
+import com.sggc.config.SteamCatalogCrawlerProperties;
+import com.sggc.exceptions.SecretRetrievalException;
+import com.sggc.exceptions.SteamRateLimitException;
+import com.sggc.infrastructure.SteamRequestSender;
+import com.sggc.models.CrawlCheckpoint;
+import com.sggc.models.Game;
+import com.sggc.models.GameData;
+import com.sggc.models.steam.response.GetAppListResponse;
+import com.sggc.repositories.CrawlCheckpointRepository;
+import com.sggc.repositories.GameRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Represents a crawl of the Steam Store which finds the multiplayer status of games before they are requested, so that
+ * requests for multiplayer games rarely wait on the Steam Store. Each pass pages through the Steam Store's app list in
+ * appid order and requests the details of the games whose multiplayer status is unknown or may have changed:
+ * <ul>
+ *     <li>the first pass lists every game, skipping those whose multiplayer status and categories are already stored</li>
+ *     <li>later passes only list the games changed since the previous pass began, replacing their stored status</li>
+ * </ul>
+ * A crawl makes at most the configured number of requests to Steam, storing a checkpoint of how far the pass has got
+ * after each page and when it stops, so the next crawl, including one after a restart, resumes where it stopped.
+ */
+@Log4j2
+@Component
+public class SteamCatalogCrawler {
+
+    public static final String GAMES_METRIC_NAME = "steam.catalog.crawler.games";
+    public static final String OUTCOME_TAG = "outcome";
+    public static final String CHECKPOINT_ID = "steam-catalog";
+
+    private final SteamRequestSender steamRequestSender;
+    private final GameRepository gameRepository;
+    private final CrawlCheckpointRepository crawlCheckpointRepository;
+    private final SteamCatalogCrawlerProperties steamCatalogCrawlerProperties;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+
+    public SteamCatalogCrawler(SteamRequestSender steamRequestSender, GameRepository gameRepository,
+                               CrawlCheckpointRepository crawlCheckpointRepository,
+                               SteamCatalogCrawlerProperties steamCatalogCrawlerProperties, Clock clock,
+                               MeterRegistry meterRegistry) {
+        this.steamRequestSender = steamRequestSender;
+        this.gameRepository = gameRepository;
+        this.crawlCheckpointRepository = crawlCheckpointRepository;
+        this.steamCatalogCrawlerProperties = steamCatalogCrawlerProperties;
+        this.clock = clock;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Crawls the Steam Store from the last checkpoint until the request budget is spent, the current pass completes or
+     * Steam throttles the crawl
+     *
+     * @return a summary of what happened to each game listed during the crawl
+     * @throws SecretRetrievalException if an error occurs retrieving the Steam API key secret from AWS secrets manager
+     */
+    public CrawlResult crawl() throws SecretRetrievalException {
+        CrawlCheckpoint checkpoint = crawlCheckpointRepository.findById(CHECKPOINT_ID)
+                .orElseGet(() -> new CrawlCheckpoint(CHECKPOINT_ID, 0, 0, 0));
+        if (checkpoint.getPassStartedAt() == 0) {
+            checkpoint.setPassStartedAt(clock.instant().getEpochSecond());
+            checkpoint.setLastAppId(0);
+            log.info("Starting a pass of the Steam Store for games changed since [{}]", checkpoint.getModifiedSince());
+        }
+        Crawl crawl = new Crawl(Math.max(1, steamCatalogCrawlerProperties.getRequestBudget()));
+        try {
+            while (crawl.hasBudget() && !crawl.passCompleted) {
+                crawlPage(checkpoint, crawl);
+                crawlCheckpointRepository.save(checkpoint);
+            }
+        } catch (SteamRateLimitException e) {
+            log.warn("Steam throttled the crawl of the Steam Store, stopping until the next crawl", e);
+            crawlCheckpointRepository.save(checkpoint);
+        }
+        count("enriched", crawl.enriched);
+        count("unchanged", crawl.unchanged);
+        count("failed", crawl.failed);
+        CrawlResult result = new CrawlResult(crawl.requests, crawl.enriched, crawl.unchanged, crawl.failed,
+                crawl.passCompleted);
+        log.info("Crawl of the Steam Store stopped after appid [{}] [{}]", checkpoint.getLastAppId(), result);
+        return result;
+    }
+
+    /**
+     * Crawls the page of the app list following the checkpoint, moving the checkpoint past each game crawled. Once the
+     * last page has been crawled the pass is completed, so the next pass lists the games changed since this one began.
+     *
+     * @param checkpoint how far the current pass has got
+     * @param crawl      the progress of the crawl
+     * @throws SecretRetrievalException if an error occurs retrieving the Steam API key secret from AWS secrets manager
+     */
+    private void crawlPage(CrawlCheckpoint checkpoint, Crawl crawl) throws SecretRetrievalException {
+        crawl.requests++;
+        GetAppListResponse.Response page = steamRequestSender.requestAppListFromSteamApi(checkpoint.getModifiedSince(),
+                checkpoint.getLastAppId(), steamCatalogCrawlerProperties.getPageSize()).getResponse();
+        List<GetAppListResponse.App> apps = page == null || page.getApps() == null ? Collections.emptyList() : page.getApps();
+        Map<String, Game> storedGames = findStoredGames(apps);
+        for (GetAppListResponse.App app : apps) {
+            Game storedGame = storedGames.get(String.valueOf(app.getAppid()));
+            if (storedGame != null && storedGame.isEnriched() && checkpoint.getModifiedSince() == 0) {
+                crawl.unchanged++;
+            } else if (crawl.hasBudget()) {
+                crawl.requests++;
+                enrich(app, storedGame, crawl);
+            } else {
+                return;
+            }
+            checkpoint.setLastAppId(app.getAppid());
+        }
+        if (page == null || !page.isHaveMoreResults()) {
+            log.info("Completed the pass of the Steam Store for games changed since [{}]", checkpoint.getModifiedSince());
+            checkpoint.setModifiedSince(checkpoint.getPassStartedAt());
+            checkpoint.setPassStartedAt(0);
+            checkpoint.setLastAppId(0);
+            crawl.passCompleted = true;
+        } else if (page.getLastAppid() > checkpoint.getLastAppId()) {
+            checkpoint.setLastAppId(page.getLastAppid());
+        }
+    }
+
+    /**
+     * Requests the details of a game from the Steam Store and stores its multiplayer status and categories, replacing
+     * any already stored. Games whose details cannot be requested are skipped, to be crawled again once they change.
+     *
+     * @param app        the game listed by the app list
+     * @param storedGame the game stored in the Game table, or null if it is not in the Game table
+     * @param crawl      the progress of the crawl
+     * @throws SteamRateLimitException if Steam throttles the request
+     */
+    private void enrich(GetAppListResponse.App app, Game storedGame, Crawl crawl) {
+        Game game = storedGame;
+        if (game == null) {
+            game = new Game();
+            game.setAppid(String.valueOf(app.getAppid()));
+            game.setName(app.getName());
+        }
+        boolean replace = game.getMultiplayer() != null;
+        try {
+            GameData gameData = steamRequestSender.requestAppDetailsFromSteamApi(game.getAppid());
+            game.setMultiplayer(gameData.isMultiplayer());
+            game.setCategoryIds(gameData.getCategoryIds());
+        } catch (IOException | RestClientException e) {
+            log.debug("Failed to request the details of game [{}], skipping", game.getAppid(), e);
+            crawl.failed++;
+            return;
+        }
+        if (replace) {
+            gameRepository.saveMultiplayer(game);
+        } else {
+            gameRepository.saveMultiplayerIfAbsent(game);
+        }
+        crawl.enriched++;
+    }
+
+    private Map<String, Game> findStoredGames(List<GetAppListResponse.App> apps) {
+        if (apps.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return gameRepository.findGamesByAppids(apps.stream()
+                        .map(app -> String.valueOf(app.getAppid()))
+                        .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Game::getAppid, Function.identity(), (first, second) -> first));
+    }
+
+    private void count(String outcome, int amount) {
+        Counter.builder(GAMES_METRIC_NAME)
+                .description("The number of games listed by crawls of the Steam Store, by what happened to them")
+                .tag(OUTCOME_TAG, outcome)
+                .register(meterRegistry)
+                .increment(amount);
+    }
+
+    /**
+     * Represents the progress of a single crawl
+     */
+    private static class Crawl {
+        private final int requestBudget;
+        private int requests;
+        private int enriched;
+        private int unchanged;
+        private int failed;
+        private boolean passCompleted;
+
+        private Crawl(int requestBudget) {
+            this.requestBudget = requestBudget;
+        }
+
+        private boolean hasBudget() {
+            return requests < requestBudget;
+        }
+    }
+
+    /**
+     * Represents a summary of what happened to each game listed during a crawl
+     */
+    @Value
+    public static class CrawlResult {
+        /**
+         * The number of requests made to Steam
+         */
+        int requests;
+        /**
+         * The number of games whose multiplayer status was requested and stored
+         */
+        int enriched;
+        /**
+         * The number of games skipped as their multiplayer status was already stored
+         */
+        int unchanged;
+        /**
+         * The number of games skipped as their details could not be requested
+         */
+        int failed;
+        /**
+         * Whether the crawl completed a pass of the Steam Store
+         */
+        boolean passCompleted;
+    }
+}
@@ -0,0 +1,57 @@
+package com.sggc.crawler;
+
+import com.sggc.config.SteamCatalogCrawlerProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs crawls of the Steam Store in the background once the application has started, waiting the configured interval
+ * after each crawl finishes before starting the next. Only enabled when 'steam-catalog-crawler.enabled' is set, which
+ * should be done for a single instance of the application.
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "steam-catalog-crawler", name = "enabled", havingValue = "true")
+public class SteamCatalogCrawlerRunner implements ApplicationRunner {
+
+    private final SteamCatalogCrawler steamCatalogCrawler;
+    private final SteamCatalogCrawlerProperties steamCatalogCrawlerProperties;
+    private final ScheduledExecutorService crawlScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "steam-catalog-crawler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void run(ApplicationArguments args) {
+        crawlScheduler.scheduleWithFixedDelay(this::crawl,
+                steamCatalogCrawlerProperties.getInitialDelay().toNanos(),
+                steamCatalogCrawlerProperties.getInterval().toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        crawlScheduler.shutdownNow();
+    }
+
+    /**
+     * Runs a single crawl, logging rather than throwing any failure so that later crawls are still scheduled
+     */
+    private void crawl() {
+        try {
+            steamCatalogCrawler.crawl();
+        } catch (Exception e) {
+            log.error("Crawl of the Steam Store failed, it will resume from its last checkpoint", e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.sggc.exceptions;
+
+import com.sggc.errors.ApiError;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Represents an exception to be thrown when a stage of a request, such as looking up the libraries of its users, does
+ * not complete within its configured timeout
+ */
+@Getter
+public class RequestStageTimeoutException extends RuntimeException {
+    private final String stage;
+    private final Duration timeout;
+
+    public RequestStageTimeoutException(String stage, Duration timeout) {
+        super(String.format("Request stage [%s] did not complete within [%s].", stage, timeout));
+        this.stage = stage;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Creates an ApiError object containing useful information about the exception. Designed to be returned to the API consumer
+     *
+     * @return an ApiError object containing useful information about the exception
+     */
+    public ApiError toApiError() {
+        return new ApiError(
+                "RequestStageTimeoutException",
+                String.format("The request timed out during %s, please try again later.", stage),
+                null
+        );
+    }
+}
@@ -0,0 +1,35 @@
+package com.sggc.exceptions;
+
+import com.sggc.errors.ApiError;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Represents an exception to be thrown when a request to Steam cannot be sent, or keeps being throttled, because of
+ * Steam's rate limits
+ */
+@Getter
+public class SteamRateLimitException extends RuntimeException {
+    private final String host;
+    private final Duration retryAfter;
+
+    public SteamRateLimitException(String host, Duration retryAfter, Throwable cause) {
+        super(String.format("Request to Steam host [%s] was rate limited, retry after [%s].", host, retryAfter), cause);
+        this.host = host;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Creates an ApiError object containing useful information about the exception. Designed to be returned to the API consumer
+     *
+     * @return an ApiError object containing useful information about the exception
+     */
+    public ApiError toApiError() {
+        return new ApiError(
+                "SteamRateLimitException",
+                "Steam is currently rate limiting requests, please try again later.",
+                null
+        );
+    }
+}
@@ -0,0 +1,183 @@
+package com.sggc.infrastructure;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.sggc.models.GameCategory;
+import com.sggc.models.GameData;
+import com.sggc.models.SteamGameCategory;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Represents a single-pass streaming parser for the body of the Steam Store's appdetails endpoint. Only the 'success'
+ * flag and the game's categories are read, the rest of the (often large) game details are skipped, and parsing stops
+ * as soon as both have been found. Stopping early saves parsing, not transfer: the rest of the response is still read
+ * from the connection, so only a filtered request makes the response smaller.
+ */
+@Log4j2
+public class AppDetailsParser {
+
+    private static final String SUCCESS_FIELD = "success";
+    private static final String DATA_FIELD = "data";
+    private static final String CATEGORIES_FIELD = "categories";
+    private static final String CATEGORY_ID_FIELD = "id";
+
+    private AppDetailsParser() {
+    }
+
+    /**
+     * Parses the categories of the game within an appdetails response body. If the response was unsuccessful or does
+     * not list the game's categories, the game is treated as multiplayer.
+     *
+     * @param responseBody the body of the response from the Steam Store
+     * @return a {@link GameData} object containing the categories of the game
+     * @throws IOException if the body cannot be read or is not valid JSON
+     */
+    public static GameData parse(Reader responseBody) throws IOException {
+        return toGameData(read(responseBody));
+    }
+
+    /**
+     * Parses the categories of the game within an appdetails response body which was requested with filters. Steam
+     * responds to filtered requests for games lacking the filtered fields with an empty 'data' value, in which case
+     * it cannot be told whether the game has categories without requesting its full details.
+     *
+     * @param responseBody the body of the filtered response from the Steam Store
+     * @return a {@link GameData} object containing the categories of the game, or null if the response was successful
+     * but did not list the game's categories
+     * @throws IOException if the body cannot be read or is not valid JSON
+     */
+    public static GameData parseIfComplete(Reader responseBody) throws IOException {
+        AppDetails appDetails = read(responseBody);
+        if (appDetails.isSuccess() && appDetails.getCategories() == null) {
+            return null;
+        }
+        return toGameData(appDetails);
+    }
+
+    /**
+     * Reads the success flag and categories from an appdetails response body
+     */
+    private static AppDetails read(Reader responseBody) throws IOException {
+        try (JsonReader reader = new JsonReader(responseBody)) {
+            reader.setLenient(true);
+            reader.beginObject();
+            if (!reader.hasNext()) {
+                throw new IOException("appdetails response does not contain any apps");
+            }
+            // The root of the response is an id of the game thus read the value of the first field
+            reader.nextName();
+            return parseAppObject(reader);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Error when parsing appdetails response", e);
+        }
+    }
+
+    /**
+     * Parses the object describing the requested game, the reader must be positioned at its start
+     */
+    private static AppDetails parseAppObject(JsonReader reader) throws IOException {
+        Boolean success = null;
+        boolean dataRead = false;
+        Set<GameCategory> categories = null;
+        reader.beginObject();
+        while (reader.hasNext() && (success == null || !dataRead)) {
+            String fieldName = reader.nextName();
+            if (SUCCESS_FIELD.equals(fieldName)) {
+                success = reader.peek() == JsonToken.BOOLEAN && reader.nextBoolean();
+                if (!success) {
+                    break;
+                }
+            } else if (DATA_FIELD.equals(fieldName) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                categories = parseDataObject(reader, success != null);
+                dataRead = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+        return new AppDetails(Boolean.TRUE.equals(success), categories);
+    }
+
+    /**
+     * Converts the details read from a response into a {@link GameData} object
+     */
+    private static GameData toGameData(AppDetails appDetails) {
+        /*
+        Sometimes steam no longer has info on the Game Id e.g. 33910 ARMA II, this is probably because the devs of the games
+        in question may have created a new steam product for the exact same game (demo perhaps?), so to avoid crashing if the game no longer
+        has any details, we'll pass it through as a multiplayer game. Which is better than excluding games that could be multiplayer
+        */
+        if (!appDetails.isSuccess() || appDetails.getCategories() == null) {
+            log.debug("Could not determine whether game was multiplayer. Will be treated as multiplayer.");
+            return new GameData(Collections.singleton(new GameCategory(SteamGameCategory.MULTIPLAYER)));
+        }
+        return new GameData(appDetails.getCategories());
+    }
+
+    /**
+     * Parses the categories within the 'data' object, the reader must be positioned at its start.
+     *
+     * @param reader             the reader positioned at the start of the 'data' object
+     * @param stopAfterCategories whether reading can stop once the categories are found, otherwise the rest of the
+     *                            object is skipped so the reader can continue with the next field
+     * @return the game's categories or null if the object does not list any
+     */
+    private static Set<GameCategory> parseDataObject(JsonReader reader, boolean stopAfterCategories) throws IOException {
+        Set<GameCategory> categories = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String fieldName = reader.nextName();
+            if (CATEGORIES_FIELD.equals(fieldName) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                categories = parseCategoriesArray(reader);
+                if (stopAfterCategories) {
+                    return categories;
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return categories;
+    }
+
+    /**
+     * Parses the 'categories' array, the reader must be positioned at its start
+     */
+    private static Set<GameCategory> parseCategoriesArray(JsonReader reader) throws IOException {
+        Set<GameCategory> categories = new HashSet<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String fieldName = reader.nextName();
+                if (CATEGORY_ID_FIELD.equals(fieldName) && reader.peek() == JsonToken.NUMBER) {
+                    categories.add(new GameCategory(reader.nextInt()));
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return categories;
+    }
+
+    /**
+     * Represents the parts of an appdetails response the application is interested in
+     */
+    @Value
+    private static class AppDetails {
+        boolean success;
+        Set<GameCategory> categories;
+    }
+}
@@ -3,21 +3,32 @@ package com.sggc.infrastructure;
 import com.amazonaws.services.secretsmanager.AWSSecretsManager;
 import com.amazonaws.services.secretsmanager.model.GetSecretValueRequest;
 import com.amazonaws.services.secretsmanager.model.GetSecretValueResult;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.sggc.config.CachingConfig;
+import com.sggc.config.ConfiguredCaffeineCacheManager;
 import com.sggc.exceptions.SecretRetrievalException;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.CompletionException;
+
 /**
- * Represents an interface for retrieving secrets required by the application from AWS Secret Manager
+ * Represents an interface for retrieving secrets required by the application from AWS Secret Manager. Secrets are
+ * cached, and once cached are refreshed in the background so that a rotated secret is picked up without a request
+ * having to wait on AWS Secrets Manager.
  */
 @Component
 @Log4j2
-@RequiredArgsConstructor
 public class AwsSecretRetriever {
 
     private final AWSSecretsManager client;
+    private final LoadingCache<Object, Object> secretCache;
+
+    public AwsSecretRetriever(AWSSecretsManager client, ConfiguredCaffeineCacheManager cacheManager) {
+        this.client = client;
+        this.secretCache = cacheManager.registerLoadingCache(CachingConfig.SECRETS_CACHE_NAME,
+                secretId -> retrieveSecretValue((String) secretId));
+    }
 
     //TODO can the below return null?
     /**
@@ -26,8 +37,24 @@ public class AwsSecretRetriever {
      * @return the specified key stored within AWS secrets manager
      * @throws SecretRetrievalException if an exception occurs trying to retrieve the key from AWS secrets manager
      */
-    @Cacheable("secrets")
     public String getSecretValue(String secretId) throws SecretRetrievalException {
+        try {
+            return (String) secretCache.get(secretId);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SecretRetrievalException) {
+                throw (SecretRetrievalException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieves the given key from AWS secrets manager, bypassing the cache
+     *
+     * @return the specified key stored within AWS secrets manager
+     * @throws SecretRetrievalException if an exception occurs trying to retrieve the key from AWS secrets manager
+     */
+    private String retrieveSecretValue(String secretId) throws SecretRetrievalException {
         try {
             log.debug("Attempting to retrieve secret [{}] from AWS Secrets Manager",secretId);
             GetSecretValueRequest valueRequest = new GetSecretValueRequest()
@@ -0,0 +1,393 @@
+package com.sggc.infrastructure;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.sggc.config.EnrichmentProperties;
+import com.sggc.config.ExecutorConfig;
+import com.sggc.models.Game;
+import com.sggc.models.GameData;
+import com.sggc.models.PendingEnrichment;
+import com.sggc.repositories.GameRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Represents a persistent, deduplicated queue of games whose multiplayer status is being found from the Steam Store,
+ * so that requests do not wait on the Steam Store for longer than their enrichment budget.
+ * <p/>
+ * Games are enriched by a bounded pool of workers, and a game already being enriched is never enriched twice at once.
+ * Games a request stops waiting for, or which could not be enriched, are written to the EnrichmentQueue table, keyed by
+ * appid. Each instance polls the table for games left by requests, other instances or before a restart, claiming each
+ * with a lease so only one instance enriches it at a time. A game is removed from the table once its multiplayer status
+ * has been stored, and abandoned once it has been claimed the maximum number of times.
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class EnrichmentQueue {
+
+    public static final String GAMES_METRIC_NAME = "enrichment.queue.games";
+    public static final String IN_FLIGHT_METRIC_NAME = "enrichment.queue.in.flight";
+    public static final String OUTCOME_TAG = "outcome";
+
+    private static final String CLAIM_EXPRESSION = "SET #leaseExpiry = :leaseExpiry ADD #attempts :one";
+    private static final String UNCLAIMED_CONDITION =
+            "attribute_exists(#appid) AND (attribute_not_exists(#leaseExpiry) OR #leaseExpiry < :now)";
+    private static final String ENQUEUE_EXPRESSION = "SET #enqueuedAt = if_not_exists(#enqueuedAt, :enqueuedAt)";
+    private static final String SET_NAME_IF_ABSENT_EXPRESSION = ", #name = if_not_exists(#name, :name)";
+
+    private final AmazonDynamoDB amazonDynamoDB;
+    private final SteamRequestSender steamRequestSender;
+    private final GameRepository gameRepository;
+    private final WriteBehindQueue writeBehindQueue;
+    private final EnrichmentProperties enrichmentProperties;
+    @Qualifier(ExecutorConfig.ENRICHMENT_EXECUTOR)
+    private final Executor enrichmentExecutor;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, CompletableFuture<Game>> inFlight = new ConcurrentHashMap<>();
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "enrichment-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Map<String, AttributeValue> pollStartKey;
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder(IN_FLIGHT_METRIC_NAME, this, EnrichmentQueue::getInFlightCount)
+                .description("The number of games whose multiplayer status is being found")
+                .register(meterRegistry);
+        long pollIntervalNanos = enrichmentProperties.getPollInterval().toNanos();
+        poller.scheduleWithFixedDelay(this::pollSafely, pollIntervalNanos, pollIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+    }
+
+    /**
+     * Finds the multiplayer status and categories of a game off the calling thread, joining the enrichment of the game
+     * already in flight if there is one
+     *
+     * @param game the game to enrich
+     * @return a future completed with a copy of the game holding its multiplayer status and categories once they have
+     * been stored, or completed exceptionally if the game's details could not be requested or every worker is busy
+     */
+    public CompletableFuture<Game> enrich(Game game) {
+        CompletableFuture<Game> enrichment = new CompletableFuture<>();
+        CompletableFuture<Game> existing = inFlight.putIfAbsent(game.getAppid(), enrichment);
+        if (existing != null) {
+            return existing;
+        }
+        Game copy = new Game();
+        copy.setAppid(game.getAppid());
+        copy.setName(game.getName());
+        try {
+            enrichmentExecutor.execute(() -> storeMultiplayerStatus(copy, enrichment));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(game.getAppid(), enrichment);
+            count("rejected");
+            enrichment.completeExceptionally(e);
+        }
+        return enrichment;
+    }
+
+    /**
+     * Finds the multiplayer status and categories of a collection of games off the calling thread, enriching at most
+     * the given number of them at the same time. The number is capped one below the number of workers, so a single
+     * request always leaves a worker for other requests and the enrichment queue. Each game is started once an earlier
+     * one completes, in the order given. Cancelling the future of a game which has not yet been started stops it from
+     * being started.
+     *
+     * @param games       the games to enrich
+     * @param parallelism the maximum number of the games enriched at the same time
+     * @return a future for each game, in the order given, completed as {@link #enrich(Game)} describes
+     */
+    public List<CompletableFuture<Game>> enrichAll(List<Game> games, int parallelism) {
+        List<CompletableFuture<Game>> enrichments = new ArrayList<>(games.size());
+        Queue<Map.Entry<Game, CompletableFuture<Game>>> remaining = new ConcurrentLinkedQueue<>();
+        for (Game game : games) {
+            CompletableFuture<Game> enrichment = new CompletableFuture<>();
+            enrichments.add(enrichment);
+            remaining.add(Map.entry(game, enrichment));
+        }
+        int started = Math.max(1, Math.min(parallelism, enrichmentProperties.getWorkers() - 1));
+        for (int i = 0; i < started; i++) {
+            startNext(remaining);
+        }
+        return enrichments;
+    }
+
+    /**
+     * Writes games to the enrichment queue, off the calling thread, so that their multiplayer status is still found if
+     * their enrichment fails or the application stops before it completes. Games are written with an update which only
+     * sets attributes not yet stored, so a game another instance has already queued or claimed keeps its lease and
+     * attempts. Writes of a game still waiting to be written are coalesced by the write-behind queue.
+     * <p/>
+     * A game being enriched is remembered as queued until its enrichment completes, so it is written only once while
+     * in flight, and removed from the enrichment queue once its multiplayer status has been stored. Nothing is
+     * remembered once the enrichment completes, so a game another instance later removes from the enrichment queue is
+     * written again the next time it is persisted.
+     *
+     * @param games the games to queue
+     */
+    public void persist(Collection<Game> games) {
+        for (Game game : games) {
+            String appId = game.getAppid();
+            CompletableFuture<Game> enrichment = inFlight.get(appId);
+            if (enrichment == null) {
+                writeToQueue(game);
+            } else if (queued.add(appId)) {
+                writeToQueue(game);
+                enrichment.whenComplete((enriched, e) -> queued.remove(appId));
+            }
+        }
+    }
+
+    /**
+     * Reads the next page of the enrichment queue, claiming each game not leased by another instance. Claimed games
+     * whose multiplayer status and categories have been stored since they were queued are removed, the rest are
+     * enriched.
+     */
+    void poll() {
+        ScanResult page = amazonDynamoDB.scan(new ScanRequest(PendingEnrichment.TABLE_NAME)
+                .withLimit(Math.max(1, enrichmentProperties.getPollBatchSize()))
+                .withExclusiveStartKey(pollStartKey));
+        pollStartKey = page.getLastEvaluatedKey();
+        List<Game> claimed = new ArrayList<>();
+        for (Map<String, AttributeValue> item : page.getItems()) {
+            String appId = item.get(PendingEnrichment.APPID_ATTRIBUTE_NAME).getS();
+            if (inFlight.containsKey(appId)) {
+                continue;
+            }
+            Integer attempts = claim(appId);
+            if (attempts == null) {
+                continue;
+            }
+            if (attempts > enrichmentProperties.getMaxAttempts()) {
+                log.warn("Abandoning the enrichment of game [{}] after [{}] attempts", appId, attempts - 1);
+                remove(appId);
+                count("abandoned");
+                continue;
+            }
+            Game game = new Game();
+            game.setAppid(appId);
+            AttributeValue name = item.get(PendingEnrichment.NAME_ATTRIBUTE_NAME);
+            game.setName(name == null ? null : name.getS());
+            claimed.add(game);
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+        Map<String, Game> storedGames = gameRepository.findGamesByAppids(
+                        claimed.stream().map(Game::getAppid).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Game::getAppid, Function.identity(), (first, second) -> first));
+        for (Game game : claimed) {
+            Game storedGame = storedGames.get(game.getAppid());
+            if (storedGame != null && storedGame.isEnriched()) {
+                remove(game.getAppid());
+                count("already_known");
+            } else {
+                queued.add(game.getAppid());
+                enrich(game).whenComplete((enriched, e) -> queued.remove(game.getAppid()));
+            }
+        }
+        log.debug("Claimed [{}] games from the enrichment queue", claimed.size());
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Starts enriching the next of a request's games which has not been cancelled, starting the one after it once it
+     * completes
+     *
+     * @param remaining the request's games which have not yet been started, with the future to complete for each
+     */
+    private void startNext(Queue<Map.Entry<Game, CompletableFuture<Game>>> remaining) {
+        Map.Entry<Game, CompletableFuture<Game>> next;
+        while ((next = remaining.poll()) != null) {
+            CompletableFuture<Game> result = next.getValue();
+            if (result.isDone()) {
+                continue;
+            }
+            CompletableFuture<Game> enrichment = enrich(next.getKey());
+            if (enrichment.isDone()) {
+                enrichment.whenComplete((game, e) -> complete(result, game, e));
+                continue;
+            }
+            enrichment.whenComplete((game, e) -> {
+                complete(result, game, e);
+                startNext(remaining);
+            });
+            return;
+        }
+    }
+
+    private static void complete(CompletableFuture<Game> result, Game game, Throwable e) {
+        if (e == null) {
+            result.complete(game);
+        } else {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Requests the details of a game from the Steam Store and stores its multiplayer status and categories, removing
+     * the game from the enrichment queue if it was queued
+     *
+     * @param game       the game to enrich
+     * @param enrichment the future completed once the game's multiplayer status and categories have been stored
+     */
+    private void storeMultiplayerStatus(Game game, CompletableFuture<Game> enrichment) {
+        try {
+            GameData gameData = steamRequestSender.requestAppDetailsFromSteamApi(game.getAppid());
+            game.setMultiplayer(gameData.isMultiplayer());
+            game.setCategoryIds(gameData.getCategoryIds());
+            gameRepository.saveMultiplayerIfAbsent(game);
+            if (queued.contains(game.getAppid())) {
+                remove(game.getAppid());
+            }
+            count("enriched");
+            enrichment.complete(game);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to find the multiplayer status of game [{}]", game.getAppid(), e);
+            count("failed");
+            enrichment.completeExceptionally(e);
+        } finally {
+            inFlight.remove(game.getAppid(), enrichment);
+        }
+    }
+
+    /**
+     * Writes a game to the enrichment queue through the write-behind queue
+     *
+     * @param game the game to queue
+     */
+    private void writeToQueue(Game game) {
+        UpdateItemRequest enqueue = enqueue(game, clock.millis());
+        writeBehindQueue.submit(PendingEnrichment.TABLE_NAME + game.getAppid(), () -> amazonDynamoDB.updateItem(enqueue));
+    }
+
+    /**
+     * Creates an update adding a game to the enrichment queue, setting only its name and when it was queued, and only
+     * if they are not yet stored
+     *
+     * @param game       the game to queue
+     * @param enqueuedAt when the game was queued, in milliseconds since the epoch
+     * @return the update
+     */
+    private static UpdateItemRequest enqueue(Game game, long enqueuedAt) {
+        Map<String, String> attributeNames = new HashMap<>();
+        Map<String, AttributeValue> attributeValues = new HashMap<>();
+        attributeNames.put("#enqueuedAt", PendingEnrichment.ENQUEUED_AT_ATTRIBUTE_NAME);
+        attributeValues.put(":enqueuedAt", new AttributeValue().withN(String.valueOf(enqueuedAt)));
+        String updateExpression = ENQUEUE_EXPRESSION;
+        if (game.getName() != null) {
+            attributeNames.put("#name", PendingEnrichment.NAME_ATTRIBUTE_NAME);
+            attributeValues.put(":name", new AttributeValue(game.getName()));
+            updateExpression += SET_NAME_IF_ABSENT_EXPRESSION;
+        }
+        return new UpdateItemRequest()
+                .withTableName(PendingEnrichment.TABLE_NAME)
+                .withKey(key(game.getAppid()))
+                .withUpdateExpression(updateExpression)
+                .withExpressionAttributeNames(attributeNames)
+                .withExpressionAttributeValues(attributeValues);
+    }
+
+    /**
+     * Claims a game within the enrichment queue for the length of the lease, unless another instance holds a lease
+     * on it
+     *
+     * @param appId the appid of the game to claim
+     * @return the number of times the game has been claimed, including this claim, or null if it could not be claimed
+     */
+    private Integer claim(String appId) {
+        long now = clock.millis();
+        Map<String, String> attributeNames = new HashMap<>();
+        attributeNames.put("#appid", PendingEnrichment.APPID_ATTRIBUTE_NAME);
+        attributeNames.put("#leaseExpiry", PendingEnrichment.LEASE_EXPIRY_ATTRIBUTE_NAME);
+        attributeNames.put("#attempts", PendingEnrichment.ATTEMPTS_ATTRIBUTE_NAME);
+        Map<String, AttributeValue> attributeValues = new HashMap<>();
+        attributeValues.put(":leaseExpiry", new AttributeValue().withN(String.valueOf(now + enrichmentProperties.getLease().toMillis())));
+        attributeValues.put(":now", new AttributeValue().withN(String.valueOf(now)));
+        attributeValues.put(":one", new AttributeValue().withN("1"));
+        try {
+            Map<String, AttributeValue> claimed = amazonDynamoDB.updateItem(new UpdateItemRequest()
+                    .withTableName(PendingEnrichment.TABLE_NAME)
+                    .withKey(key(appId))
+                    .withUpdateExpression(CLAIM_EXPRESSION)
+                    .withConditionExpression(UNCLAIMED_CONDITION)
+                    .withExpressionAttributeNames(attributeNames)
+                    .withExpressionAttributeValues(attributeValues)
+                    .withReturnValues(ReturnValue.UPDATED_NEW)).getAttributes();
+            return Integer.valueOf(claimed.get(PendingEnrichment.ATTEMPTS_ATTRIBUTE_NAME).getN());
+        } catch (ConditionalCheckFailedException e) {
+            log.debug("Game [{}] has been claimed by another instance or removed from the enrichment queue", appId);
+            return null;
+        }
+    }
+
+    private void remove(String appId) {
+        amazonDynamoDB.deleteItem(PendingEnrichment.TABLE_NAME, key(appId));
+        queued.remove(appId);
+    }
+
+    private void pollSafely() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            log.warn("Failed to poll the enrichment queue", e);
+        }
+    }
+
+    private static Map<String, AttributeValue> key(String appId) {
+        return Map.of(PendingEnrichment.APPID_ATTRIBUTE_NAME, new AttributeValue(appId));
+    }
+
+    private void count(String outcome) {
+        Counter.builder(GAMES_METRIC_NAME)
+                .description("The number of games the enrichment queue found the multiplayer status of, by what happened to them")
+                .tag(OUTCOME_TAG, outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+}
@@ -0,0 +1,150 @@
+package com.sggc.infrastructure;
+
+import com.sggc.config.ExecutorConfig;
+import com.sggc.config.GameCatalogProperties;
+import com.sggc.models.Game;
+import com.sggc.repositories.GameRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Represents the filling of the Game table from the libraries of users requested from the Steam API, which list the
+ * name of each game they own. Games not yet known to be in the Game table are looked up off the request thread, one
+ * BatchGetItem sized batch at a time so the lookups never compete with requests for the game lookup executor, and
+ * those missing have their names stored through the {@link WriteBehindQueue}, off the request thread too.
+ * <p/>
+ * Every appid found in or added to the Game table is remembered, so each game is looked up at most once while the
+ * application runs. A missing game's name is stored with a conditional update of just the name, so a game whose
+ * multiplayer status and categories were stored between the lookup and the write keeps them.
+ */
+@Log4j2
+@Component
+public class GameCatalog {
+
+    public static final String GAMES_METRIC_NAME = "game.catalog.games";
+    public static final String OUTCOME_TAG = "outcome";
+
+    private static final int LOOKUP_BATCH_SIZE = 100;
+    private static final String NAME_WRITE_KEY_SEPARATOR = "#name#";
+
+    private final GameRepository gameRepository;
+    private final WriteBehindQueue writeBehindQueue;
+    private final GameCatalogProperties gameCatalogProperties;
+    private final Executor gameCatalogExecutor;
+    private final MeterRegistry meterRegistry;
+    private final BitSet knownAppIds = new BitSet();
+
+    public GameCatalog(GameRepository gameRepository, WriteBehindQueue writeBehindQueue,
+                       GameCatalogProperties gameCatalogProperties,
+                       @Qualifier(ExecutorConfig.GAME_CATALOG_EXECUTOR) Executor gameCatalogExecutor,
+                       MeterRegistry meterRegistry) {
+        this.gameRepository = gameRepository;
+        this.writeBehindQueue = writeBehindQueue;
+        this.gameCatalogProperties = gameCatalogProperties;
+        this.gameCatalogExecutor = gameCatalogExecutor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isEnabled() {
+        return gameCatalogProperties.isEnabled();
+    }
+
+    /**
+     * Returns whether a game is already known to be in the Game table, so callers can leave known games out before
+     * handing games to {@link #addMissingGames(Map)}
+     *
+     * @param appId the appid of the game
+     * @return true if the game has been found in or added to the Game table
+     */
+    public boolean isKnown(int appId) {
+        synchronized (knownAppIds) {
+            return appId >= 0 && knownAppIds.get(appId);
+        }
+    }
+
+    /**
+     * Adds any of the given games which are missing from the Game table to it, off the calling thread. If too many
+     * libraries are already waiting the games are skipped, as they will be listed again by later requests.
+     *
+     * @param namesByAppId the name of each game by appid
+     */
+    public void addMissingGames(Map<Integer, String> namesByAppId) {
+        if (!isEnabled()) {
+            return;
+        }
+        Map<Integer, String> unknownGames = new HashMap<>();
+        synchronized (knownAppIds) {
+            namesByAppId.forEach((appId, name) -> {
+                if (appId >= 0 && !knownAppIds.get(appId)) {
+                    unknownGames.put(appId, name);
+                }
+            });
+        }
+        if (unknownGames.isEmpty()) {
+            return;
+        }
+        try {
+            gameCatalogExecutor.execute(() -> addUnknownGames(unknownGames));
+        } catch (RejectedExecutionException e) {
+            log.debug("Game catalog queue is full, skipping [{}] games", unknownGames.size());
+            count("skipped", unknownGames.size());
+        }
+    }
+
+    /**
+     * Looks up games not yet known to be in the Game table, saving those which are missing
+     *
+     * @param unknownGames the name of each game by appid
+     */
+    private void addUnknownGames(Map<Integer, String> unknownGames) {
+        try {
+            List<String> appIds = unknownGames.keySet().stream().map(String::valueOf).collect(Collectors.toList());
+            Set<String> existingAppIds = new HashSet<>();
+            for (int from = 0; from < appIds.size(); from += LOOKUP_BATCH_SIZE) {
+                gameRepository.findGamesByAppids(appIds.subList(from, Math.min(appIds.size(), from + LOOKUP_BATCH_SIZE)))
+                        .forEach(game -> existingAppIds.add(game.getAppid()));
+            }
+            List<Integer> missingAppIds = unknownGames.keySet().stream()
+                    .filter(appId -> !existingAppIds.contains(String.valueOf(appId)))
+                    .collect(Collectors.toList());
+            for (Integer appId : missingAppIds) {
+                String appid = String.valueOf(appId);
+                String name = unknownGames.get(appId);
+                writeBehindQueue.submit(Game.TABLE_NAME + NAME_WRITE_KEY_SEPARATOR + appid,
+                        () -> gameRepository.saveNameIfAbsent(appid, name));
+            }
+            synchronized (knownAppIds) {
+                unknownGames.keySet().forEach(knownAppIds::set);
+            }
+            count("existing", unknownGames.size() - missingAppIds.size());
+            count("added", missingAppIds.size());
+            log.debug("Added [{}] of [{}] games missing from the Game table", missingAppIds.size(), unknownGames.size());
+        } catch (RuntimeException e) {
+            log.warn("Failed to add [{}] games to the Game table", unknownGames.size(), e);
+            count("failed", unknownGames.size());
+        }
+    }
+
+    private void count(String outcome, int amount) {
+        if (amount > 0) {
+            Counter.builder(GAMES_METRIC_NAME)
+                    .description("The number of games listed in libraries requested from the Steam API, by what happened to them")
+                    .tag(OUTCOME_TAG, outcome)
+                    .register(meterRegistry)
+                    .increment(amount);
+        }
+    }
+}
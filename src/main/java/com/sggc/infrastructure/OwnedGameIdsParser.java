@@ -0,0 +1,131 @@
+package com.sggc.infrastructure;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Represents a streaming parser for the body of the Steam API's GetOwnedGames endpoint. The body is read token by
+ * token and only the appid of each game is kept, along with its name if the response includes app info, every other
+ * field is skipped without being materialized.
+ */
+public class OwnedGameIdsParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final String RESPONSE_FIELD = "response";
+    private static final String GAMES_FIELD = "games";
+    private static final String APP_ID_FIELD = "appid";
+    private static final String NAME_FIELD = "name";
+    private static final int INITIAL_CAPACITY = 256;
+
+    private OwnedGameIdsParser() {
+    }
+
+    /**
+     * Parses the ids of the games listed within a GetOwnedGames response body
+     *
+     * @param responseBody the body of the response from the Steam API
+     * @return the sorted, distinct ids of the games within the response, empty if the response lists no games
+     * @throws IOException if the body cannot be read or is not valid JSON
+     */
+    public static int[] parse(InputStream responseBody) throws IOException {
+        return parse(responseBody, null);
+    }
+
+    /**
+     * Parses the ids of the games listed within a GetOwnedGames response body, passing the name of each game listed
+     * with one to a consumer as it is read
+     *
+     * @param responseBody the body of the response from the Steam API
+     * @param nameConsumer the consumer of the name and appid of each game listed with a name, or null to skip names
+     * @return the sorted, distinct ids of the games within the response, empty if the response lists no games
+     * @throws IOException if the body cannot be read or is not valid JSON
+     */
+    public static int[] parse(InputStream responseBody, ObjIntConsumer<String> nameConsumer) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(responseBody)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("GetOwnedGames response body is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                if (parser.nextToken() == JsonToken.START_OBJECT && RESPONSE_FIELD.equals(fieldName)) {
+                    return parseResponseObject(parser, nameConsumer);
+                }
+                parser.skipChildren();
+            }
+            return new int[0];
+        }
+    }
+
+    /**
+     * Parses the ids of the games within the 'response' object, the parser must be positioned at its start
+     */
+    private static int[] parseResponseObject(JsonParser parser, ObjIntConsumer<String> nameConsumer) throws IOException {
+        int[] gameIds = new int[0];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && GAMES_FIELD.equals(fieldName)) {
+                gameIds = parseGamesArray(parser, nameConsumer);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return gameIds;
+    }
+
+    /**
+     * Parses the ids of the games within the 'games' array, the parser must be positioned at its start
+     */
+    private static int[] parseGamesArray(JsonParser parser, ObjIntConsumer<String> nameConsumer) throws IOException {
+        int[] gameIds = new int[INITIAL_CAPACITY];
+        int gameCount = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            boolean hasAppId = false;
+            String name = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+                if (valueToken == JsonToken.VALUE_NUMBER_INT && APP_ID_FIELD.equals(fieldName)) {
+                    if (gameCount == gameIds.length) {
+                        gameIds = Arrays.copyOf(gameIds, gameIds.length * 2);
+                    }
+                    gameIds[gameCount++] = parser.getIntValue();
+                    hasAppId = true;
+                } else if (nameConsumer != null && valueToken == JsonToken.VALUE_STRING && NAME_FIELD.equals(fieldName)) {
+                    name = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (hasAppId && name != null) {
+                nameConsumer.accept(name, gameIds[gameCount - 1]);
+            }
+        }
+        return sortedDistinct(gameIds, gameCount);
+    }
+
+    /**
+     * Sorts the first given number of ids and removes any duplicates
+     */
+    private static int[] sortedDistinct(int[] gameIds, int gameCount) {
+        Arrays.sort(gameIds, 0, gameCount);
+        int distinctCount = 0;
+        for (int i = 0; i < gameCount; i++) {
+            if (distinctCount == 0 || gameIds[distinctCount - 1] != gameIds[i]) {
+                gameIds[distinctCount++] = gameIds[i];
+            }
+        }
+        return Arrays.copyOf(gameIds, distinctCount);
+    }
+}
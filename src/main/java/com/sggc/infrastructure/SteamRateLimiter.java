@@ -0,0 +1,307 @@
+package com.sggc.infrastructure;
+
+import com.sggc.config.SteamRateLimitProperties;
+import com.sggc.exceptions.SteamRateLimitException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Represents a rate limiter for outbound requests to Steam. Each Steam host is given its own token bucket, requests
+ * wait for a permit from their host's bucket before being sent. Requests throttled by Steam, or failed with a server
+ * error, are retried after backing off, either for as long as Steam's Retry-After header specifies or exponentially
+ * with jitter. Each throttled request also pauses its host's bucket for the back off and slows its rate, which recovers
+ * gradually as requests succeed.
+ */
+@Log4j2
+@Component
+public class SteamRateLimiter {
+
+    public static final String PERMITS_METRIC_NAME = "steam.ratelimiter.permits";
+    public static final String WAIT_METRIC_NAME = "steam.ratelimiter.wait";
+    public static final String THROTTLES_METRIC_NAME = "steam.ratelimiter.throttles";
+    public static final String REJECTIONS_METRIC_NAME = "steam.ratelimiter.rejections";
+    public static final String RATE_METRIC_NAME = "steam.ratelimiter.rate";
+    public static final String HOST_TAG = "host";
+    public static final String STATUS_TAG = "status";
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final SteamRateLimitProperties rateLimitProperties;
+    private final MeterRegistry meterRegistry;
+    private final LongSupplier nanoClock;
+    private final Sleeper sleeper;
+    private final Map<SteamHost, TokenBucket> buckets = new EnumMap<>(SteamHost.class);
+
+    @Autowired
+    public SteamRateLimiter(SteamRateLimitProperties rateLimitProperties, MeterRegistry meterRegistry) {
+        this(rateLimitProperties, meterRegistry, System::nanoTime, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    SteamRateLimiter(SteamRateLimitProperties rateLimitProperties, MeterRegistry meterRegistry, LongSupplier nanoClock,
+                     Sleeper sleeper) {
+        this.rateLimitProperties = rateLimitProperties;
+        this.meterRegistry = meterRegistry;
+        this.nanoClock = nanoClock;
+        this.sleeper = sleeper;
+        buckets.put(SteamHost.API, createBucket(SteamHost.API, rateLimitProperties.getApi()));
+        buckets.put(SteamHost.STORE, createBucket(SteamHost.STORE, rateLimitProperties.getStore()));
+    }
+
+    /**
+     * Sends a request to a Steam host once a permit is available, retrying it if Steam throttles it or fails with a
+     * server error
+     *
+     * @param host    the Steam host the request is sent to
+     * @param request the request to send
+     * @param <T>     the type of the response
+     * @return the response to the request
+     * @throws SteamRateLimitException if a permit does not become available in time, or the request is still throttled
+     *                                 once it has been retried the maximum number of times
+     * @throws HttpStatusCodeException if the request still fails with a server error once it has been retried the
+     *                                 maximum number of times, or fails with any other error status
+     */
+    public <T> T execute(SteamHost host, Supplier<T> request) {
+        if (!rateLimitProperties.isEnabled()) {
+            return request.get();
+        }
+        TokenBucket bucket = buckets.get(host);
+        for (int attempt = 0; ; attempt++) {
+            acquire(host, bucket);
+            try {
+                T response = request.get();
+                bucket.recover(nanoClock.getAsLong());
+                return response;
+            } catch (HttpStatusCodeException e) {
+                if (!isRetryable(e.getRawStatusCode())) {
+                    throw e;
+                }
+                Duration backoff = backoff(e, attempt);
+                counter(THROTTLES_METRIC_NAME, host).tag(STATUS_TAG, String.valueOf(e.getRawStatusCode()))
+                        .register(meterRegistry)
+                        .increment();
+                bucket.throttle(nanoClock.getAsLong(), backoff.toNanos());
+                if (attempt >= rateLimitProperties.getMaxRetries()) {
+                    if (e.getRawStatusCode() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+                        throw new SteamRateLimitException(host.getTagValue(), backoff, e);
+                    }
+                    throw e;
+                }
+                log.warn("Request to Steam host [{}] failed with status [{}], backing off for [{}] before retrying.",
+                        host, e.getRawStatusCode(), backoff);
+            }
+        }
+    }
+
+    /**
+     * Waits for a permit from a host's bucket, failing if one will not be available within the maximum wait
+     *
+     * @param host   the host the permit is for
+     * @param bucket the host's bucket
+     * @throws SteamRateLimitException if a permit will not be available within the maximum wait
+     */
+    private void acquire(SteamHost host, TokenBucket bucket) {
+        long maxWaitNanos = rateLimitProperties.getMaxWait().toNanos();
+        long waitNanos = bucket.reserve(nanoClock.getAsLong(), maxWaitNanos);
+        if (waitNanos < 0) {
+            counter(REJECTIONS_METRIC_NAME, host).register(meterRegistry).increment();
+            throw new SteamRateLimitException(host.getTagValue(), Duration.ofNanos(-waitNanos), null);
+        }
+        Timer.builder(WAIT_METRIC_NAME)
+                .description("The time requests to Steam waited for a permit")
+                .tag(HOST_TAG, host.getTagValue())
+                .register(meterRegistry)
+                .record(waitNanos, TimeUnit.NANOSECONDS);
+        if (waitNanos > 0) {
+            try {
+                sleeper.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a permit to send a request to Steam", e);
+            }
+        }
+        counter(PERMITS_METRIC_NAME, host).register(meterRegistry).increment();
+    }
+
+    /**
+     * Determines how long to back off for after a request was throttled or failed, preferring the Retry-After header
+     * of the response over an exponential back off with jitter
+     *
+     * @param e       the exception the request failed with
+     * @param attempt the number of times the request has already been retried
+     * @return how long to back off for
+     */
+    private Duration backoff(HttpStatusCodeException e, int attempt) {
+        Duration retryAfter = parseRetryAfter(e.getResponseHeaders());
+        if (retryAfter != null) {
+            return retryAfter;
+        }
+        long initialBackoffNanos = rateLimitProperties.getInitialBackoff().toNanos();
+        long maxBackoffNanos = rateLimitProperties.getMaxBackoff().toNanos();
+        long backoffNanos = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt, 16));
+        return Duration.ofNanos(backoffNanos / 2 + ThreadLocalRandom.current().nextLong(backoffNanos / 2 + 1));
+    }
+
+    /**
+     * Parses the Retry-After header of a response, which may either be a number of seconds or a HTTP date
+     *
+     * @param headers the headers of the response
+     * @return how long the response asked to wait before retrying, or null if it did not specify
+     */
+    private Duration parseRetryAfter(HttpHeaders headers) {
+        if (headers == null) {
+            return null;
+        }
+        String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter == null) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                return Duration.ofMillis(Math.max(0, headers.getFirstDate(HttpHeaders.RETRY_AFTER) - System.currentTimeMillis()));
+            } catch (IllegalArgumentException ex) {
+                log.warn("Could not parse Retry-After header [{}], falling back to exponential back off", retryAfter);
+                return null;
+            }
+        }
+    }
+
+    private boolean isRetryable(int status) {
+        return status == HttpStatus.TOO_MANY_REQUESTS.value() || HttpStatus.Series.resolve(status) == HttpStatus.Series.SERVER_ERROR;
+    }
+
+    private TokenBucket createBucket(SteamHost host, SteamRateLimitProperties.Bucket bucketProperties) {
+        TokenBucket bucket = new TokenBucket(bucketProperties.getPermitsPerSecond(), bucketProperties.getBurst(),
+                rateLimitProperties, nanoClock.getAsLong());
+        Gauge.builder(RATE_METRIC_NAME, bucket, TokenBucket::getRate)
+                .description("The rate at which permits to send requests to Steam are currently issued")
+                .baseUnit("permits/s")
+                .tag(HOST_TAG, host.getTagValue())
+                .register(meterRegistry);
+        return bucket;
+    }
+
+    private Counter.Builder counter(String name, SteamHost host) {
+        return Counter.builder(name).tag(HOST_TAG, host.getTagValue());
+    }
+
+    /**
+     * Represents a Steam host requests are rate limited against
+     */
+    public enum SteamHost {
+        API,
+        STORE;
+
+        public String getTagValue() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Represents a way of waiting, so that tests need not wait in real time
+     */
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    /**
+     * Represents a token bucket whose rate can be slowed when its host throttles requests. Permits are reserved ahead of
+     * time, so the bucket's tokens go negative while callers are waiting, and the bucket's refill time is pushed into
+     * the future while it is paused.
+     */
+    private static class TokenBucket {
+        private final double configuredRate;
+        private final double minRate;
+        private final double capacity;
+        private final SteamRateLimitProperties rateLimitProperties;
+        private double rate;
+        private double tokens;
+        private long lastRefillNanos;
+
+        TokenBucket(double permitsPerSecond, int burst, SteamRateLimitProperties rateLimitProperties, long nowNanos) {
+            this.configuredRate = permitsPerSecond;
+            this.minRate = permitsPerSecond * rateLimitProperties.getMinRateFactor();
+            this.capacity = Math.max(1, burst);
+            this.rateLimitProperties = rateLimitProperties;
+            this.rate = permitsPerSecond;
+            this.tokens = capacity;
+            this.lastRefillNanos = nowNanos;
+        }
+
+        /**
+         * Reserves a permit
+         *
+         * @param nowNanos     the current time
+         * @param maxWaitNanos the longest the caller is willing to wait for the permit
+         * @return how long the caller must wait before using the permit, or the negated wait if it would exceed the
+         * maximum wait in which case no permit is reserved
+         */
+        synchronized long reserve(long nowNanos, long maxWaitNanos) {
+            refill(nowNanos);
+            long waitNanos = Math.max(0, lastRefillNanos - nowNanos);
+            if (tokens < 1) {
+                waitNanos += (long) Math.ceil((1 - tokens) / rate * NANOS_PER_SECOND);
+            }
+            if (waitNanos > maxWaitNanos) {
+                return -waitNanos;
+            }
+            tokens -= 1;
+            return waitNanos;
+        }
+
+        /**
+         * Pauses the bucket and slows its rate after its host throttled a request
+         *
+         * @param nowNanos   the current time
+         * @param pauseNanos how long to pause the bucket for
+         */
+        synchronized void throttle(long nowNanos, long pauseNanos) {
+            refill(nowNanos);
+            tokens = Math.min(tokens, 0);
+            lastRefillNanos = Math.max(lastRefillNanos, nowNanos + pauseNanos);
+            rate = Math.max(minRate, rate * rateLimitProperties.getThrottledRateFactor());
+        }
+
+        /**
+         * Speeds a slowed bucket back up towards its configured rate after its host accepted a request
+         *
+         * @param nowNanos the current time
+         */
+        synchronized void recover(long nowNanos) {
+            if (rate < configuredRate) {
+                refill(nowNanos);
+                rate = Math.min(configuredRate, rate + configuredRate * rateLimitProperties.getRecoveryRateFactor());
+            }
+        }
+
+        synchronized double getRate() {
+            return rate;
+        }
+
+        private void refill(long nowNanos) {
+            if (nowNanos > lastRefillNanos) {
+                tokens = Math.min(capacity, tokens + (nowNanos - lastRefillNanos) * rate / NANOS_PER_SECOND);
+                lastRefillNanos = nowNanos;
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.sggc.infrastructure;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Represents a single-flight layer for requests to Steam. Concurrent callers requesting the same endpoint with the same
+ * parameter share one outbound request, and receive its result or failure, rather than each sending their own. If the
+ * caller sending the request is interrupted, e.g. as its request stage timed out, its failure is not shared: one of
+ * the callers awaiting it sends the request again instead.
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class SteamRequestCoalescer {
+
+    public static final String EXECUTED_REQUESTS_METRIC_NAME = "steam.requests.executed";
+    public static final String COALESCED_REQUESTS_METRIC_NAME = "steam.requests.coalesced";
+    public static final String ENDPOINT_TAG = "endpoint";
+
+    private static final Object ABANDONED = new Object();
+
+    private final ConcurrentMap<RequestKey, CompletableFuture<Object>> inFlightRequests = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Performs a request to Steam, unless an identical request is already in flight, in which case the result of that
+     * request is awaited instead.
+     *
+     * @param endpoint      the Steam endpoint being requested
+     * @param parameter     the parameter identifying the resource requested from the endpoint e.g. a user or app id
+     * @param exceptionType the checked exception the request may throw
+     * @param request       the request to perform
+     * @param <T>           the type of the response
+     * @param <E>           the type of the checked exception the request may throw
+     * @return the response to the request
+     * @throws E if the request, or the identical in-flight request, throws an exception
+     */
+    @SuppressWarnings("unchecked")
+    public <T, E extends Exception> T coalesce(String endpoint, String parameter, Class<E> exceptionType,
+                                               SteamRequest<T, E> request) throws E {
+        RequestKey key = new RequestKey(endpoint, parameter);
+        while (true) {
+            CompletableFuture<Object> ownRequest = new CompletableFuture<>();
+            CompletableFuture<Object> inFlightRequest = inFlightRequests.putIfAbsent(key, ownRequest);
+            if (inFlightRequest == null) {
+                return send(key, ownRequest, exceptionType, request);
+            }
+            log.debug("Identical request to [{}] for [{}] already in flight, awaiting its response", endpoint, parameter);
+            counter(COALESCED_REQUESTS_METRIC_NAME, endpoint).increment();
+            Object response = await(inFlightRequest, exceptionType);
+            if (response != ABANDONED) {
+                return (T) response;
+            }
+            log.debug("In-flight request to [{}] for [{}] was interrupted, requesting it again", endpoint, parameter);
+        }
+    }
+
+    /**
+     * Sends a request on behalf of every caller awaiting it, sharing its response or failure with them. A failure of a
+     * request whose caller was interrupted is not shared, instead the request is abandoned so that a waiting caller
+     * sends it again.
+     *
+     * @param key           identifies the request
+     * @param ownRequest    the in-flight request awaited by identical callers
+     * @param exceptionType the checked exception the request may throw
+     * @param request       the request to perform
+     * @param <T>           the type of the response
+     * @param <E>           the type of the checked exception the request may throw
+     * @return the response to the request
+     * @throws E if the request throws an exception
+     */
+    private <T, E extends Exception> T send(RequestKey key, CompletableFuture<Object> ownRequest, Class<E> exceptionType,
+                                            SteamRequest<T, E> request) throws E {
+        counter(EXECUTED_REQUESTS_METRIC_NAME, key.getEndpoint()).increment();
+        try {
+            T response = request.send();
+            ownRequest.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            fail(key, ownRequest, e);
+            throw e;
+        } catch (Exception e) {
+            fail(key, ownRequest, e);
+            throw exceptionType.cast(e);
+        } finally {
+            inFlightRequests.remove(key, ownRequest);
+        }
+    }
+
+    /**
+     * Fails an in-flight request, unless its caller was interrupted, in which case the request is removed before it is
+     * abandoned, so that the callers awaiting it cannot find it again when they retry
+     *
+     * @param key        identifies the request
+     * @param ownRequest the in-flight request awaited by identical callers
+     * @param failure    the failure of the request
+     */
+    private void fail(RequestKey key, CompletableFuture<Object> ownRequest, Throwable failure) {
+        if (Thread.currentThread().isInterrupted() || isInterruption(failure)) {
+            inFlightRequests.remove(key, ownRequest);
+            ownRequest.complete(ABANDONED);
+        } else {
+            ownRequest.completeExceptionally(failure);
+        }
+    }
+
+    /**
+     * Determines whether a failure was caused by its thread being interrupted or its work being cancelled, rather than
+     * by the request itself
+     *
+     * @param failure the failure of a request
+     * @return true if the failure was caused by an interruption otherwise false
+     */
+    private static boolean isInterruption(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof InterruptedException || cause instanceof ClosedByInterruptException
+                    || cause instanceof CancellationException
+                    || (cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits for an in-flight request to complete, rethrowing any exception it failed with
+     *
+     * @param inFlightRequest the request to wait for
+     * @param exceptionType   the checked exception the request may throw
+     * @return the response to the request, or {@link #ABANDONED} if the request's caller was interrupted
+     * @throws E if the request failed with a checked exception
+     */
+    private <E extends Exception> Object await(CompletableFuture<Object> inFlightRequest, Class<E> exceptionType) throws E {
+        try {
+            return inFlightRequest.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while awaiting an in-flight Steam request", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (exceptionType.isInstance(cause)) {
+                throw exceptionType.cast(cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Unexpected error from an in-flight Steam request", cause);
+        }
+    }
+
+    private Counter counter(String name, String endpoint) {
+        return Counter.builder(name)
+                .tag(ENDPOINT_TAG, endpoint)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Represents a request to Steam which may throw a checked exception
+     *
+     * @param <T> the type of the response
+     * @param <E> the type of the checked exception the request may throw
+     */
+    @FunctionalInterface
+    public interface SteamRequest<T, E extends Exception> {
+        T send() throws E;
+    }
+
+    /**
+     * Identifies a request by the endpoint requested and the parameter it was requested with
+     */
+    @Value
+    private static class RequestKey {
+        String endpoint;
+        String parameter;
+    }
+}
@@ -1,22 +1,34 @@
 package com.sggc.infrastructure;
 
-import com.google.gson.*;
 import com.sggc.config.SteamProperties;
+import com.sggc.infrastructure.SteamRateLimiter.SteamHost;
 import com.sggc.exceptions.SecretRetrievalException;
-import com.sggc.models.GameCategory;
 import com.sggc.models.GameData;
-import com.sggc.models.SteamGameCategory;
+import com.sggc.models.steam.response.GetAppListResponse;
 import com.sggc.models.steam.response.GetOwnedGamesResponse;
 import com.sggc.models.steam.response.ResolveVanityUrlResponse;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.URI;
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Represents an interface for communicating with the Steam API
@@ -30,17 +42,31 @@ public class SteamRequestSender {
     public static final String STEAM_KEY_QUERY_PARAM_KEY = "key";
     public static final String STEAM_ID_QUERY_PARAM_KEY = "steamid";
     public static final String STEAM_APP_IDS_QUERY_PARAM_KEY = "appids";
+    public static final String APP_IDS_FILTER_QUERY_PARAM_KEY = "appids_filter";
+    public static final String INCLUDE_APP_INFO_QUERY_PARAM_KEY = "include_appinfo";
     public static final String VANITY_URL_QUERY_PARAM_KEY = "vanityurl";
+    public static final String APP_DETAILS_FILTERS_QUERY_PARAM_KEY = "filters";
+    public static final String IF_MODIFIED_SINCE_QUERY_PARAM_KEY = "if_modified_since";
+    public static final String LAST_APP_ID_QUERY_PARAM_KEY = "last_appid";
+    public static final String MAX_RESULTS_QUERY_PARAM_KEY = "max_results";
 
     public static final String STEAM_API_KEY_SECRET_ID = "SteamAPIKey";
     public static final String GET_OWNED_GAMES_ENDPOINT = "/IPlayerService/GetOwnedGames/v1/";
     public static final String RESOLVE_VANITY_URL_ENDPOINT = "/ISteamUser/ResolveVanityURL/v1/";
     public static final String GET_APP_DETAILS_ENDPOINT = "/api/appdetails/";
+    public static final String GET_APP_LIST_ENDPOINT = "/IStoreService/GetAppList/v1/";
+    public static final String GET_OWNED_GAME_IDS_REQUEST = GET_OWNED_GAMES_ENDPOINT + "appids";
+    public static final String GET_OWNED_CANDIDATE_IDS_REQUEST = GET_OWNED_GAMES_ENDPOINT + "appids_filter";
+    public static final String APP_DETAILS_RESPONSE_SIZE_METRIC_NAME = "steam.store.appdetails.response.size";
 
     private final RestTemplate restTemplate;
     private final AwsSecretRetriever secretManagerService;
 
     private final SteamProperties steamProperties;
+    private final SteamRequestCoalescer steamRequestCoalescer;
+    private final SteamRateLimiter steamRateLimiter;
+    private final GameCatalog gameCatalog;
+    private final MeterRegistry meterRegistry;
 
     /**
      * Retrieves the games owned by a specified user via the Steam API
@@ -50,133 +76,270 @@ public class SteamRequestSender {
      * @throws SecretRetrievalException if an error occurs retrieving the Steam API key secret from AWS secrets manager
      */
     public GetOwnedGamesResponse requestUsersOwnedGamesFromSteamApi(String userId) throws SecretRetrievalException {
+        return steamRequestCoalescer.coalesce(GET_OWNED_GAMES_ENDPOINT, userId, SecretRetrievalException.class,
+                () -> sendGetOwnedGamesRequest(userId));
+    }
+
+    /**
+     * Sends a request to the Steam API's GetOwnedGames endpoint for the games owned by a specified user
+     *
+     * @param userId the id of the user whose owned games will be retrieved
+     * @return the response from the Steam API parsed into a {@link GetOwnedGamesResponse} object
+     * @throws SecretRetrievalException if an error occurs retrieving the Steam API key secret from AWS secrets manager
+     */
+    private GetOwnedGamesResponse sendGetOwnedGamesRequest(String userId) throws SecretRetrievalException {
         URI requestUri = steamApiRequest(GET_OWNED_GAMES_ENDPOINT)
                 .queryParam(STEAM_ID_QUERY_PARAM_KEY, userId)
                 .build()
                 .toUri();
 
         log.debug("Contacting [{}] to get owned games of user [{}].", sanitizeRequestUri(requestUri), userId);
-        return restTemplate.getForObject(requestUri, GetOwnedGamesResponse.class);
+        return steamRateLimiter.execute(SteamHost.API,
+                () -> restTemplate.getForObject(requestUri, GetOwnedGamesResponse.class));
     }
 
     /**
-     * Retrieves the details of a specific game's details via the Steam Store's API
+     * Retrieves the ids of the games owned by a specified user via the Steam API. Unlike
+     * {@link #requestUsersOwnedGamesFromSteamApi(String)} the response is streamed and only the ids of the games are
+     * kept, so large libraries are retrieved without creating an object per game. If the game catalog is enabled the
+     * name of each game is requested too, and the games not yet known to the catalog are handed to it to be added to the
+     * Game table, so once the catalog has seen a library its games are not collected again.
      *
-     * @param appId the appid of the game whose details are being requested
-     * @return a GameData object parsed from the response from the Steam API containing the details of the specified app
+     * @param userId the id of the user whose owned games will be retrieved
+     * @return the sorted, distinct ids of the games owned by the user, empty if the user owns no games
+     * @throws SecretRetrievalException if an error occurs retrieving the Steam API key secret from AWS secrets manager
      */
-    public GameData requestAppDetailsFromSteamApi(String appId) throws IOException {
-        //TODO abstract the URI creation into a method
-        UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder.fromUriString(steamProperties.getStoreAddress() + GET_APP_DETAILS_ENDPOINT);
+    public int[] requestUsersOwnedGameIdsFromSteamApi(String userId) throws SecretRetrievalException {
+        return steamRequestCoalescer.coalesce(GET_OWNED_GAME_IDS_REQUEST, userId, SecretRetrievalException.class,
+                () -> sendGetOwnedGameIdsRequest(userId));
+    }
+
+    /**
+     * Sends a request to the Steam API's GetOwnedGames endpoint, streaming the ids of the games owned by a specified
+     * user from the response
+     *
+     * @param userId the id of the user whose owned games will be retrieved
+     * @return the sorted, distinct ids of the games owned by the user, empty if the user owns no games
+     * @throws SecretRetrievalException if an error occurs retrieving the Steam API key secret from AWS secrets manager
+     */
+    private int[] sendGetOwnedGameIdsRequest(String userId) throws SecretRetrievalException {
+        UriComponentsBuilder uriComponentsBuilder = steamApiRequest(GET_OWNED_GAMES_ENDPOINT)
+                .queryParam(STEAM_ID_QUERY_PARAM_KEY, userId);
+        if (!gameCatalog.isEnabled()) {
+            URI requestUri = uriComponentsBuilder.build().toUri();
+            log.debug("Contacting [{}] to get owned game ids of user [{}].", sanitizeRequestUri(requestUri), userId);
+            return steamRateLimiter.execute(SteamHost.API, () -> restTemplate.execute(requestUri, HttpMethod.GET, null,
+                    response -> OwnedGameIdsParser.parse(response.getBody())));
+        }
         URI requestUri = uriComponentsBuilder
-                .queryParam(STEAM_APP_IDS_QUERY_PARAM_KEY, appId)
+                .queryParam(INCLUDE_APP_INFO_QUERY_PARAM_KEY, true)
                 .build()
                 .toUri();
 
-        log.debug("Contacting [{}] to get details of game [{}].", requestUri, appId);
-        String response = restTemplate.getForObject(requestUri, String.class);
-        return parseGameDetailsList(response);
+        log.debug("Contacting [{}] to get owned games of user [{}].", sanitizeRequestUri(requestUri), userId);
+        Map<Integer, String> unknownNamesByAppId = new HashMap<>();
+        int[] ownedGameIds = steamRateLimiter.execute(SteamHost.API, () -> restTemplate.execute(requestUri, HttpMethod.GET, null,
+                response -> OwnedGameIdsParser.parse(response.getBody(), (name, appId) -> {
+                    if (!gameCatalog.isKnown(appId)) {
+                        unknownNamesByAppId.put(appId, name);
+                    }
+                })));
+        if (!unknownNamesByAppId.isEmpty()) {
+            gameCatalog.addMissingGames(unknownNamesByAppId);
+        }
+        return ownedGameIds;
     }
 
     /**
-     * Sends a request to the Steam API's ResolveVanityURL endpoint to retrieve a vanity URL's Steam user id equivalent
+     * Retrieves which of the given candidate games a specified user owns via the Steam API, passing the candidates in
+     * the appids_filter of the GetOwnedGames endpoint so the response only lists owned candidates rather than the
+     * user's whole library. Large candidate sets are split across several requests.
      *
-     * @param vanityUrl the vanity URL to resolve
-     * @return a response from the Steam API containing the resolved Steam user id
+     * @param userId          the id of the user whose owned games will be retrieved
+     * @param candidateAppIds the sorted, distinct ids of the games the user may own
+     * @return the sorted, distinct ids of the candidate games owned by the user, empty if the user owns none of them
+     * @throws SecretRetrievalException if an error occurs retrieving the Steam API key secret from AWS secrets manager
      */
-    public ResolveVanityUrlResponse resolveVanityUrl(String vanityUrl) throws SecretRetrievalException {
-        URI requestUri = steamApiRequest(RESOLVE_VANITY_URL_ENDPOINT)
-                .queryParam(VANITY_URL_QUERY_PARAM_KEY, vanityUrl)
+    public int[] requestUsersOwnedGameIdsFromSteamApi(String userId, int[] candidateAppIds) throws SecretRetrievalException {
+        int chunkSize = Math.max(1, steamProperties.getOwnedGamesFilterChunkSize());
+        int[] ownedGameIds = new int[0];
+        for (int from = 0; from < candidateAppIds.length; from += chunkSize) {
+            int[] chunk = Arrays.copyOfRange(candidateAppIds, from, Math.min(from + chunkSize, candidateAppIds.length));
+            int[] ownedChunk = steamRequestCoalescer.coalesce(GET_OWNED_CANDIDATE_IDS_REQUEST, userId + Arrays.toString(chunk),
+                    SecretRetrievalException.class, () -> sendFilteredGetOwnedGameIdsRequest(userId, chunk));
+            int size = ownedGameIds.length;
+            ownedGameIds = Arrays.copyOf(ownedGameIds, size + ownedChunk.length);
+            System.arraycopy(ownedChunk, 0, ownedGameIds, size, ownedChunk.length);
+        }
+        return ownedGameIds;
+    }
+
+    /**
+     * Sends a request to the Steam API's GetOwnedGames endpoint filtered to the given appids, streaming the ids of
+     * the games owned by a specified user from the response
+     *
+     * @param userId          the id of the user whose owned games will be retrieved
+     * @param candidateAppIds the sorted ids of the games the response is limited to
+     * @return the sorted, distinct ids of the candidate games owned by the user
+     * @throws SecretRetrievalException if an error occurs retrieving the Steam API key secret from AWS secrets manager
+     */
+    private int[] sendFilteredGetOwnedGameIdsRequest(String userId, int[] candidateAppIds) throws SecretRetrievalException {
+        UriComponentsBuilder uriComponentsBuilder = steamApiRequest(GET_OWNED_GAMES_ENDPOINT)
+                .queryParam(STEAM_ID_QUERY_PARAM_KEY, userId);
+        for (int i = 0; i < candidateAppIds.length; i++) {
+            uriComponentsBuilder.queryParam(APP_IDS_FILTER_QUERY_PARAM_KEY + "[" + i + "]", candidateAppIds[i]);
+        }
+        URI requestUri = uriComponentsBuilder
                 .build()
+                .encode()
                 .toUri();
 
-        log.debug("Contacting [{}] to resolve vanity URL [{}].", sanitizeRequestUri(requestUri), vanityUrl);
-        return restTemplate.getForObject(requestUri, ResolveVanityUrlResponse.class);
-    }
-
-    /**
-     * Parses the game details list from Steam GetAppDetails endpoint into a model object
-     *
-     * @param stringToParse the string to parse
-     * @return a {@link GameData} object serialized from the response from the Steam API
-     * @throws IOException if an error occurs while serializing the string into JSON
-     */
-    private GameData parseGameDetailsList(String stringToParse) throws IOException {
-        JsonObject rootObject = getAppDetailsResponseRootObject(stringToParse);
-        boolean responseSuccess = isAppDetailsResponseSuccessful(rootObject);
-        /*
-        Sometimes steam no longer has info on the Game Id e.g. 33910 ARMA II, this is probably because the devs of the games
-        in question may have created a new steam product for the exact same game (demo perhaps?), so to avoid crashing if the game no longer
-        has any details, we'll pass it through as a multiplayer game. Which is better than excluding games that could be multiplayer
-        */
-        if (!responseSuccess) {
-            log.debug("Could not determine whether game was multiplayer. Will be treated as multiplayer.");
-            return new GameData(Collections.singleton(new GameCategory(SteamGameCategory.MULTIPLAYER)));
-        } else  {
-            if (doesGameHaveCategories(rootObject)){
-                log.debug("Could not determine whether game was multiplayer. Will be treated as multiplayer.");
-                return new GameData(Collections.singleton(new GameCategory(SteamGameCategory.MULTIPLAYER)));
+        log.debug("Contacting [{}] to get which of [{}] games user [{}] owns.", GET_OWNED_GAMES_ENDPOINT, candidateAppIds.length, userId);
+        return steamRateLimiter.execute(SteamHost.API, () -> restTemplate.execute(requestUri, HttpMethod.GET, null,
+                response -> OwnedGameIdsParser.parse(response.getBody())));
+    }
+
+    /**
+     * Retrieves the details of a specific game's details via the Steam Store's API
+     *
+     * @param appId the appid of the game whose details are being requested
+     * @return a GameData object parsed from the response from the Steam API containing the details of the specified app
+     */
+    public GameData requestAppDetailsFromSteamApi(String appId) throws IOException {
+        return steamRequestCoalescer.coalesce(GET_APP_DETAILS_ENDPOINT, appId, IOException.class,
+                () -> sendAppDetailsRequest(appId));
+    }
+
+    /**
+     * Sends a request to the Steam Store's appdetails endpoint for the details of a specific game. If filters are
+     * configured only the filtered details are requested, falling back to the full details of the game if the
+     * filtered response cannot be used.
+     *
+     * @param appId the appid of the game whose details are being requested
+     * @return a GameData object parsed from the response from the Steam API containing the details of the specified app
+     * @throws IOException if an error occurs while parsing the response
+     */
+    private GameData sendAppDetailsRequest(String appId) throws IOException {
+        String filters = steamProperties.getAppDetailsFilters();
+        if (StringUtils.isNotBlank(filters)) {
+            GameData gameData = sendAppDetailsRequest(appId, filters, AppDetailsParser::parseIfComplete);
+            if (gameData != null) {
+                return gameData;
             }
+            log.debug("Filtered details of game [{}] did not include its categories, requesting its full details.", appId);
+        }
+        return sendAppDetailsRequest(appId, null, AppDetailsParser::parse);
+    }
+
+    /**
+     * Sends a request to the Steam Store's appdetails endpoint, parsing the response as it is streamed rather than
+     * reading it into memory first, and recording the size of the response
+     *
+     * @param appId   the appid of the game whose details are being requested
+     * @param filters the fields the response should be limited to, or null for the full details of the game
+     * @param parser  the parser of the response
+     * @return the details parsed from the response
+     * @throws IOException if the response is empty or cannot be parsed
+     */
+    private GameData sendAppDetailsRequest(String appId, String filters, AppDetailsReader parser) throws IOException {
+        UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder.fromUriString(steamProperties.getStoreAddress() + GET_APP_DETAILS_ENDPOINT)
+                .queryParam(STEAM_APP_IDS_QUERY_PARAM_KEY, appId);
+        if (filters != null) {
+            uriComponentsBuilder.queryParam(APP_DETAILS_FILTERS_QUERY_PARAM_KEY, filters);
+        }
+        URI requestUri = uriComponentsBuilder
+                .build()
+                .toUri();
+
+        log.debug("Contacting [{}] to get details of game [{}].", requestUri, appId);
+        try {
+            return steamRateLimiter.execute(SteamHost.STORE, () -> restTemplate.execute(requestUri, HttpMethod.GET, null,
+                    response -> parseAppDetails(filters, response.getBody(), parser)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        String dataField = "data";
-        rootObject = rootObject.getAsJsonObject(dataField);
-        Gson gson = new Gson();
-        return gson.fromJson(rootObject.toString(), GameData.class);
     }
 
     /**
-     * Returns the 'root' object from the Steam store's Get App Details endpoint.
-     * @param jsonString string representing the response from the endpoint.
+     * Parses a response from the Steam Store's appdetails endpoint as it is streamed, recording its size. Once parsed,
+     * the rest of the response is read so it is measured in full. This transfers no more than closing the response
+     * would, as the HTTP client reads the rest of a response on close so its connection can be reused. Parsing
+     * failures are rethrown unchecked so that they are not wrapped by the {@link RestTemplate}
      *
-     * @return a Json object containing the details the Steam store contains on a game.
-     * @throws IOException if an error occurs while serializing the string into JSON
+     * @param filters      the fields the response was limited to, or null for the full details of the game
+     * @param responseBody the body of the response
+     * @param parser       the parser of the response
+     * @return the details parsed from the response
      */
-    public JsonObject getAppDetailsResponseRootObject(String jsonString) throws IOException {
-        JsonElement jsonTree = parseResponseStringToJson(jsonString);
-        JsonObject obj = jsonTree.getAsJsonObject();
-        // The root of the response is an id of the game thus get the responses root value
-        String gameId = obj.keySet().iterator().next();
-        return obj.getAsJsonObject(gameId);
+    private GameData parseAppDetails(String filters, InputStream responseBody, AppDetailsReader parser) {
+        CountingInputStream countingBody = new CountingInputStream(responseBody);
+        try {
+            GameData gameData = parser.parse(new InputStreamReader(countingBody, StandardCharsets.UTF_8));
+            countingBody.transferTo(OutputStream.nullOutputStream());
+            DistributionSummary.builder(APP_DETAILS_RESPONSE_SIZE_METRIC_NAME)
+                    .description("The size of the responses from the Steam Store's appdetails endpoint")
+                    .baseUnit(BaseUnits.BYTES)
+                    .tag("filtered", String.valueOf(filters != null))
+                    .register(meterRegistry)
+                    .record(countingBody.getCount());
+            return gameData;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     /**
-     * Determines whether the response from the Steam store's Get App Details endpoint was successful.
+     * Retrieves a page of the games on the Steam Store which have changed since a given time via the Steam API's
+     * GetAppList endpoint. Games are listed in appid order, so the next page starts after the last appid of the
+     * previous one.
      *
-     * @param obj the response from the HTTP request deserialized into a {@link JsonObject} for easier parsing.
-     * @return a Json representation of the categories field in the response.
+     * @param modifiedSince only games changed after this time, in seconds since the epoch, are listed, 0 lists every game
+     * @param lastAppId     the appid the page starts after, 0 for the first page
+     * @param maxResults    the maximum number of games listed by the page
+     * @return the page of games
+     * @throws SecretRetrievalException if an error occurs retrieving the Steam API key secret from AWS secrets manager
      */
-    private boolean isAppDetailsResponseSuccessful(JsonObject obj) {
-        String successFieldKey = "success";
-        return Boolean.parseBoolean(obj.get(successFieldKey).toString());
+    public GetAppListResponse requestAppListFromSteamApi(long modifiedSince, int lastAppId, int maxResults) throws SecretRetrievalException {
+        URI requestUri = steamApiRequest(GET_APP_LIST_ENDPOINT)
+                .queryParam(IF_MODIFIED_SINCE_QUERY_PARAM_KEY, modifiedSince)
+                .queryParam(LAST_APP_ID_QUERY_PARAM_KEY, lastAppId)
+                .queryParam(MAX_RESULTS_QUERY_PARAM_KEY, maxResults)
+                .build()
+                .toUri();
+
+        log.debug("Contacting [{}] to list games changed since [{}] after appid [{}].", sanitizeRequestUri(requestUri),
+                modifiedSince, lastAppId);
+        return steamRateLimiter.execute(SteamHost.API,
+                () -> restTemplate.getForObject(requestUri, GetAppListResponse.class));
     }
 
     /**
-     * Determines whether the Steam store's details for a game includes any categories.
+     * Sends a request to the Steam API's ResolveVanityURL endpoint to retrieve a vanity URL's Steam user id equivalent
      *
-     * @param obj the response from the HTTP request deserialized into a {@link JsonObject} for easier parsing.
-     * @return a Json representation of the categories field in the response.
+     * @param vanityUrl the vanity URL to resolve
+     * @return a response from the Steam API containing the resolved Steam user id
      */
-    private boolean doesGameHaveCategories(JsonObject obj) {
-        String dataFieldKey = "data";
-        String gameCategoriesFieldKey = "categories";
-        JsonElement gameCategories = obj.get(dataFieldKey).getAsJsonObject().get(gameCategoriesFieldKey);
-        return gameCategories == null || gameCategories.toString().trim().isEmpty();
+    public ResolveVanityUrlResponse resolveVanityUrl(String vanityUrl) throws SecretRetrievalException {
+        return steamRequestCoalescer.coalesce(RESOLVE_VANITY_URL_ENDPOINT, vanityUrl, SecretRetrievalException.class,
+                () -> sendResolveVanityUrlRequest(vanityUrl));
     }
 
     /**
-     * Parses a response string to JSON
+     * Sends a request to the Steam API's ResolveVanityURL endpoint
      *
-     * @param stringToParse the string to parse
-     * @return JSON representation of the string
-     * @throws IOException if an error occurs while serializing the string into JSON
+     * @param vanityUrl the vanity URL to resolve
+     * @return a response from the Steam API containing the resolved Steam user id
+     * @throws SecretRetrievalException if an error occurs retrieving the Steam API key secret from AWS secrets manager
      */
-    private JsonElement parseResponseStringToJson(String stringToParse) throws IOException {
-        try {
-            return JsonParser.parseString(stringToParse);
+    private ResolveVanityUrlResponse sendResolveVanityUrlRequest(String vanityUrl) throws SecretRetrievalException {
+        URI requestUri = steamApiRequest(RESOLVE_VANITY_URL_ENDPOINT)
+                .queryParam(VANITY_URL_QUERY_PARAM_KEY, vanityUrl)
+                .build()
+                .toUri();
 
-        } catch (JsonSyntaxException e) {
-            throw new IOException("Error when parsing response string into JSON object", e);
-        }
+        log.debug("Contacting [{}] to resolve vanity URL [{}].", sanitizeRequestUri(requestUri), vanityUrl);
+        return steamRateLimiter.execute(SteamHost.API,
+                () -> restTemplate.getForObject(requestUri, ResolveVanityUrlResponse.class));
     }
 
     /**
@@ -234,5 +397,12 @@ public class SteamRequestSender {
         return UriComponentsBuilder.fromUriString(steamProperties.getApiAddress() + endpoint)
                 .queryParam(STEAM_KEY_QUERY_PARAM_KEY, getSteamApiKey());
     }
-}
 
+    /**
+     * Represents a parser of responses from the Steam Store's appdetails endpoint
+     */
+    @FunctionalInterface
+    private interface AppDetailsReader {
+        GameData parse(Reader responseBody) throws IOException;
+    }
+}
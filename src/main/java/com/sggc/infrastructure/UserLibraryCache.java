@@ -0,0 +1,134 @@
+package com.sggc.infrastructure;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.sggc.config.CachingConfig;
+import com.sggc.config.ConfiguredCaffeineCacheManager;
+import com.sggc.models.User;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Represents an in-memory near-cache of the libraries of users stored in DynamoDB, so that the libraries of users
+ * looked up repeatedly are served without reading from DynamoDB. The cache is bounded by the total number of game ids
+ * it holds, and each library expires from the cache when its user's TTL in DynamoDB elapses, so that the cache never
+ * serves a library DynamoDB would have removed.
+ */
+@Log4j2
+@Component
+public class UserLibraryCache {
+
+    public static final String GAME_IDS_METRIC_NAME = "user.library.cache.game.ids";
+    public static final String HIT_RATIO_METRIC_NAME = "user.library.cache.hit.ratio";
+
+    private final Clock systemClock;
+    private final Cache<Object, Object> libraries;
+
+    public UserLibraryCache(ConfiguredCaffeineCacheManager cacheManager, Clock systemClock, MeterRegistry meterRegistry) {
+        this.systemClock = systemClock;
+        this.libraries = cacheManager.registerCache(CachingConfig.USER_LIBRARIES_CACHE_NAME,
+                (userId, library) -> Math.max(1, ((CachedLibrary) library).getOwnedGameIds().length),
+                new RemovalDateExpiry());
+        Gauge.builder(GAME_IDS_METRIC_NAME, libraries, cache -> cache.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(cache.estimatedSize()))
+                        .orElse(cache.estimatedSize()))
+                .description("The number of game ids held by the user library cache")
+                .register(meterRegistry);
+        Gauge.builder(HIT_RATIO_METRIC_NAME, libraries, cache -> cache.stats().hitRate())
+                .description("The ratio of user library lookups served by the user library cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Retrieves the ids of the games owned by a user from the cache
+     *
+     * @param userId the Steam id of the user
+     * @return the sorted appids of the games owned by the user, shared with the cache so must never be modified, or
+     * empty if the user's library is not cached
+     */
+    public Optional<int[]> getOwnedGameIds(String userId) {
+        return Optional.ofNullable((CachedLibrary) libraries.getIfPresent(userId))
+                .map(CachedLibrary::getOwnedGameIds);
+    }
+
+    /**
+     * Determines whether the library of a user is cached, without counting towards the cache's hit ratio, so that
+     * checking a library before looking it up counts the lookup once
+     *
+     * @param userId the Steam id of the user
+     * @return true if the user's library is cached otherwise false
+     */
+    public boolean contains(String userId) {
+        return libraries.policy().getIfPresentQuietly(userId) != null;
+    }
+
+    /**
+     * Caches the library of a user until the user's removal date, unless the removal date has already passed
+     *
+     * @param user the user whose library will be cached
+     */
+    public void put(User user) {
+        if (user.getOwnedGameIds() == null || timeUntil(user.getRemovalDate()).isZero()) {
+            log.debug("User [{}] has no library or is due to be removed, not caching their library", user.getId());
+            return;
+        }
+        libraries.put(user.getId(),
+                new CachedLibrary(user.getOwnedGameIds(), user.getRemovalDate()));
+    }
+
+    /**
+     * Removes every library from the cache
+     */
+    public void invalidateAll() {
+        libraries.invalidateAll();
+    }
+
+    /**
+     * Calculates the time remaining until a removal date
+     *
+     * @param removalDate the removal date in epoch seconds
+     * @return the time remaining until the removal date, zero if it has passed
+     */
+    private Duration timeUntil(long removalDate) {
+        Duration remaining = Duration.between(systemClock.instant(), Instant.ofEpochSecond(removalDate));
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    /**
+     * Represents a cached library of a user
+     */
+    @Value
+    private static class CachedLibrary {
+        int[] ownedGameIds;
+        long removalDate;
+    }
+
+    /**
+     * Represents an expiry which expires each library when its user's removal date passes
+     */
+    private class RemovalDateExpiry implements Expiry<Object, Object> {
+
+        @Override
+        public long expireAfterCreate(Object userId, Object library, long currentTime) {
+            return timeUntil(((CachedLibrary) library).getRemovalDate()).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(Object userId, Object library, long currentTime, long currentDuration) {
+            return expireAfterCreate(userId, library, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Object userId, Object library, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
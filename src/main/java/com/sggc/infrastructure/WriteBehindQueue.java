@@ -0,0 +1,381 @@
+package com.sggc.infrastructure;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.sggc.config.WriteBehindProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Represents a write-behind queue for DynamoDB, so that requests do not wait for their writes to be made. Writes are
+ * coalesced by key, so only the latest write for each user or game is made, and are flushed on a single background
+ * thread once enough are queued to fill a batch or the flush interval elapses, whichever comes first.
+ * <p/>
+ * Entities are written with BatchWriteItem, retrying any items DynamoDB leaves unprocessed and queueing them again if
+ * they are still unprocessed once the retries are exhausted. Writes which cannot be batched, such as conditional
+ * updates, are made individually during the flush. The queue is bounded; writes which do not fit are handled by the
+ * configured overflow policy. Once the application begins shutting down, the queue stops accepting writes and drains.
+ */
+@Log4j2
+@Component
+public class WriteBehindQueue {
+
+    public static final String WRITES_METRIC_NAME = "write.behind.writes";
+    public static final String PENDING_METRIC_NAME = "write.behind.pending";
+    public static final String FLUSH_METRIC_NAME = "write.behind.flush";
+    public static final String OUTCOME_TAG = "outcome";
+
+    private static final int MAX_BATCH_WRITE_ITEMS = 25;
+
+    private final AmazonDynamoDB amazonDynamoDB;
+    private final DynamoDBMapper dynamoDBMapper;
+    private final DynamoDBMapperConfig dynamoDBMapperConfig;
+    private final WriteBehindProperties writeBehindProperties;
+    private final MeterRegistry meterRegistry;
+    private final Timer flushLatency;
+    private final Map<String, PendingWrite> pending = new LinkedHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private volatile boolean shuttingDown;
+
+    public WriteBehindQueue(AmazonDynamoDB amazonDynamoDB, DynamoDBMapperConfig dynamoDBMapperConfig,
+                            WriteBehindProperties writeBehindProperties, MeterRegistry meterRegistry) {
+        this.amazonDynamoDB = amazonDynamoDB;
+        this.dynamoDBMapper = new DynamoDBMapper(amazonDynamoDB, dynamoDBMapperConfig);
+        this.dynamoDBMapperConfig = dynamoDBMapperConfig;
+        this.writeBehindProperties = writeBehindProperties;
+        this.meterRegistry = meterRegistry;
+        this.flushLatency = Timer.builder(FLUSH_METRIC_NAME)
+                .description("The time taken to flush the write-behind queue to DynamoDB")
+                .register(meterRegistry);
+        Gauge.builder(PENDING_METRIC_NAME, this, WriteBehindQueue::getPendingCount)
+                .description("The number of writes waiting in the write-behind queue")
+                .register(meterRegistry);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long flushIntervalNanos = writeBehindProperties.getFlushInterval().toNanos();
+        flusher.scheduleWithFixedDelay(this::flushPending, flushIntervalNanos, flushIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Queues an entity mapped to a DynamoDB table to be saved, replacing any write of the same entity still queued.
+     * The entity is written to the table the repositories' mapper configuration resolves for it, so that any table
+     * name override applies to writes as it does to reads.
+     *
+     * @param entity the entity to save
+     * @param <T>    the type of the entity
+     */
+    public <T> void save(T entity) {
+        @SuppressWarnings("unchecked")
+        Class<T> entityType = (Class<T>) entity.getClass();
+        DynamoDBMapperTableModel<T> tableModel = dynamoDBMapper.getTableModel(entityType);
+        String tableName = resolveTableName(entity);
+        enqueue(tableName + tableModel.convertKey(entity), new PendingWrite(tableName, tableModel.convert(entity), null, 0));
+    }
+
+    /**
+     * Resolves the table an entity is mapped to as the mapper does, using the configured resolvers if there are any
+     *
+     * @param entity the entity
+     * @return the name of the entity's table
+     */
+    private String resolveTableName(Object entity) {
+        if (dynamoDBMapperConfig.getObjectTableNameResolver() != null) {
+            return dynamoDBMapperConfig.getObjectTableNameResolver().getTableName(entity, dynamoDBMapperConfig);
+        }
+        DynamoDBMapperConfig.TableNameResolver resolver = dynamoDBMapperConfig.getTableNameResolver() == null
+                ? DynamoDBMapperConfig.DefaultTableNameResolver.INSTANCE
+                : dynamoDBMapperConfig.getTableNameResolver();
+        return resolver.getTableName(entity.getClass(), dynamoDBMapperConfig);
+    }
+
+    /**
+     * Queues a write which cannot be batched, such as a conditional update, replacing any write with the same key still
+     * queued
+     *
+     * @param key   the key writes are coalesced by
+     * @param write the write to make
+     */
+    public void submit(String key, Runnable write) {
+        enqueue(key, new PendingWrite(null, null, write, 0));
+    }
+
+    /**
+     * Writes every write currently queued, waiting until they have been written
+     */
+    public void flush() {
+        try {
+            flusher.submit(this::flushPending).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-behind queue to flush", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to flush the write-behind queue", e.getCause());
+        }
+    }
+
+    /**
+     * Stops accepting writes and drains the queue, giving up once the shutdown timeout elapses
+     */
+    @PreDestroy
+    public void shutdown() {
+        shuttingDown = true;
+        flusher.shutdown();
+        long deadline = System.nanoTime() + writeBehindProperties.getShutdownTimeout().toNanos();
+        try {
+            flusher.awaitTermination(writeBehindProperties.getShutdownTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            while (getPendingCount() > 0 && System.nanoTime() < deadline) {
+                flushPending();
+                if (getPendingCount() > 0) {
+                    TimeUnit.NANOSECONDS.sleep(writeBehindProperties.getUnprocessedBackoff().toNanos());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int lost = getPendingCount();
+        if (lost > 0) {
+            log.error("Write-behind queue did not drain before shutting down, [{}] writes were lost", lost);
+        } else {
+            log.info("Write-behind queue drained");
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Queues a write, requesting a flush once a batch worth of writes are queued. Writes are made straight away if the
+     * queue is disabled or shutting down, and handled by the overflow policy if the queue is full.
+     *
+     * @param key   the key writes are coalesced by
+     * @param write the write to queue
+     */
+    private void enqueue(String key, PendingWrite write) {
+        if (!writeBehindProperties.isEnabled() || shuttingDown) {
+            writeNow(write);
+            return;
+        }
+        boolean full;
+        boolean batchFilled = false;
+        synchronized (pending) {
+            full = !pending.containsKey(key) && pending.size() >= writeBehindProperties.getMaxPending();
+            if (!full) {
+                if (pending.put(key, write) != null) {
+                    count("coalesced", 1);
+                }
+                batchFilled = pending.size() >= getBatchSize();
+            }
+        }
+        if (full) {
+            overflow(write);
+        } else if (batchFilled && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushPending);
+            } catch (RejectedExecutionException e) {
+                log.debug("Write-behind queue is shutting down, leaving the flush to the drain");
+            }
+        }
+    }
+
+    private void overflow(PendingWrite write) {
+        if (writeBehindProperties.getOverflowPolicy() == WriteBehindProperties.OverflowPolicy.DROP) {
+            log.warn("Write-behind queue is full, dropping write");
+            count("dropped", 1);
+        } else {
+            log.debug("Write-behind queue is full, writing on the calling thread");
+            count("written_through", 1);
+            writeNow(write);
+        }
+    }
+
+    private void writeNow(PendingWrite write) {
+        if (write.isBatchable()) {
+            amazonDynamoDB.putItem(write.getTableName(), write.getItem());
+        } else {
+            write.getWrite().run();
+        }
+        count("written", 1);
+    }
+
+    /**
+     * Takes every write currently queued and writes it, batching the writes which can be batched
+     */
+    private void flushPending() {
+        flushRequested.set(false);
+        List<Map.Entry<String, PendingWrite>> writes;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            writes = new ArrayList<>(pending.entrySet());
+            pending.clear();
+        }
+        try {
+            flushLatency.record(() -> write(writes));
+        } catch (RuntimeException e) {
+            log.error("Unexpected error while flushing the write-behind queue", e);
+        }
+    }
+
+    private void write(List<Map.Entry<String, PendingWrite>> writes) {
+        List<Map.Entry<String, PendingWrite>> batchable = new ArrayList<>();
+        for (Map.Entry<String, PendingWrite> write : writes) {
+            if (write.getValue().isBatchable()) {
+                batchable.add(write);
+            } else {
+                writeIndividually(write);
+            }
+        }
+        for (int from = 0; from < batchable.size(); from += getBatchSize()) {
+            writeBatch(batchable.subList(from, Math.min(batchable.size(), from + getBatchSize())));
+        }
+        log.debug("Flushed [{}] writes from the write-behind queue", writes.size());
+    }
+
+    private void writeIndividually(Map.Entry<String, PendingWrite> write) {
+        try {
+            write.getValue().getWrite().run();
+            count("written", 1);
+        } catch (RuntimeException e) {
+            log.warn("Write [{}] failed", write.getKey(), e);
+            requeue(write);
+        }
+    }
+
+    /**
+     * Writes a batch of entities with BatchWriteItem, retrying any items DynamoDB leaves unprocessed with an
+     * exponential back off, and queueing them again if they are still unprocessed once the retries are exhausted
+     *
+     * @param batch the batch of entities to write
+     */
+    private void writeBatch(List<Map.Entry<String, PendingWrite>> batch) {
+        Map<String, List<WriteRequest>> requestItems = new HashMap<>();
+        Map<Map<String, AttributeValue>, Map.Entry<String, PendingWrite>> writesByItem = new HashMap<>();
+        for (Map.Entry<String, PendingWrite> write : batch) {
+            requestItems.computeIfAbsent(write.getValue().getTableName(), tableName -> new ArrayList<>())
+                    .add(new WriteRequest(new PutRequest(write.getValue().getItem())));
+            writesByItem.put(write.getValue().getItem(), write);
+        }
+        try {
+            for (int attempt = 0; ; attempt++) {
+                BatchWriteItemResult result = amazonDynamoDB.batchWriteItem(new BatchWriteItemRequest(requestItems));
+                requestItems = result.getUnprocessedItems() == null ? Collections.emptyMap() : result.getUnprocessedItems();
+                if (requestItems.isEmpty() || attempt >= writeBehindProperties.getMaxUnprocessedRetries()) {
+                    break;
+                }
+                log.debug("DynamoDB left [{}] items unprocessed, backing off before retrying", countItems(requestItems));
+                backoff(attempt);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Batch of [{}] writes failed", batch.size(), e);
+            batch.forEach(this::requeue);
+            return;
+        }
+        int unprocessed = countItems(requestItems);
+        count("written", batch.size() - unprocessed);
+        requestItems.values().stream()
+                .flatMap(List::stream)
+                .map(writeRequest -> writesByItem.get(writeRequest.getPutRequest().getItem()))
+                .forEach(this::requeue);
+    }
+
+    /**
+     * Queues a failed write again, unless a newer write with the same key has been queued since or the write has
+     * already been queued again the maximum number of times
+     *
+     * @param write the failed write
+     */
+    private void requeue(Map.Entry<String, PendingWrite> write) {
+        PendingWrite retry = write.getValue().retry();
+        if (retry.getAttempts() > writeBehindProperties.getMaxUnprocessedRetries()) {
+            log.error("Write [{}] still failed after being queued again [{}] times, discarding it",
+                    write.getKey(), retry.getAttempts() - 1);
+            count("failed", 1);
+            return;
+        }
+        synchronized (pending) {
+            pending.putIfAbsent(write.getKey(), retry);
+        }
+        count("requeued", 1);
+    }
+
+    private void backoff(int attempt) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(writeBehindProperties.getUnprocessedBackoff().toNanos() << Math.min(attempt, 16));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off before retrying unprocessed items", e);
+        }
+    }
+
+    private int getBatchSize() {
+        return Math.max(1, Math.min(MAX_BATCH_WRITE_ITEMS, writeBehindProperties.getBatchSize()));
+    }
+
+    private static int countItems(Map<String, List<WriteRequest>> requestItems) {
+        return requestItems.values().stream().mapToInt(List::size).sum();
+    }
+
+    private void count(String outcome, int amount) {
+        if (amount > 0) {
+            Counter.builder(WRITES_METRIC_NAME)
+                    .description("The number of writes handled by the write-behind queue, by what happened to them")
+                    .tag(OUTCOME_TAG, outcome)
+                    .register(meterRegistry)
+                    .increment(amount);
+        }
+    }
+
+    /**
+     * Represents a queued write, either an item to be put in a table as part of a batch or a write to be made
+     * individually
+     */
+    @Value
+    private static class PendingWrite {
+        String tableName;
+        Map<String, AttributeValue> item;
+        Runnable write;
+        int attempts;
+
+        boolean isBatchable() {
+            return item != null;
+        }
+
+        PendingWrite retry() {
+            return new PendingWrite(tableName, item, write, attempts + 1);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.sggc.migration;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs the migration of the legacy Game table in the background once the application has started, so that the
+ * application keeps serving requests, reading from both tables, while the migration runs. Only enabled when
+ * 'game-migration.run-on-startup' is set, which should be done for a single instance of the application.
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "game-migration", name = "run-on-startup", havingValue = "true")
+public class GameTableMigrationRunner implements ApplicationRunner {
+
+    private final GameTableMigrator gameTableMigrator;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Thread migration = new Thread(() -> {
+            try {
+                gameTableMigrator.migrate();
+            } catch (RuntimeException e) {
+                log.error("Migration of games failed, it can safely be re-run", e);
+            }
+        }, "game-migration");
+        migration.setDaemon(true);
+        migration.start();
+    }
+}
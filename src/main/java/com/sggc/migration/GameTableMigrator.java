@@ -0,0 +1,216 @@
+package com.sggc.migration;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.sggc.config.GameMigrationProperties;
+import com.sggc.models.Game;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Value;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Represents a migration of games from the legacy Game table, keyed by a generated id, to the Game table keyed by
+ * appid. The legacy table is scanned in parallel segments, each on its own thread, and every game is copied with a
+ * conditional put so that the migration can run while the application is serving requests:
+ * <ul>
+ *     <li>games already in the Game table whose multiplayer status is known are never overwritten, as they were
+ *     either written by the application since the cut over began or copied by an earlier run</li>
+ *     <li>when the legacy table holds several games for one appid, the first copied wins unless a later duplicate
+ *     knows the game's multiplayer status and the copied game does not</li>
+ * </ul>
+ * The migration is therefore idempotent, and can be re-run until it reports no more games copied.
+ */
+@Log4j2
+@Component
+public class GameTableMigrator {
+
+    public static final String ITEMS_METRIC_NAME = "game.migration.items";
+    public static final String OUTCOME_TAG = "outcome";
+
+    private static final String ID_ATTRIBUTE_NAME = "id";
+    private static final String NEW_GAME_CONDITION = "attribute_not_exists(#appid)";
+    private static final String NEW_OR_UNKNOWN_MULTIPLAYER_GAME_CONDITION =
+            "attribute_not_exists(#appid) OR attribute_not_exists(#multiplayer)";
+
+    private final AmazonDynamoDB amazonDynamoDB;
+    private final GameMigrationProperties gameMigrationProperties;
+    private final MeterRegistry meterRegistry;
+
+    public GameTableMigrator(AmazonDynamoDB amazonDynamoDB, GameMigrationProperties gameMigrationProperties,
+                             MeterRegistry meterRegistry) {
+        this.amazonDynamoDB = amazonDynamoDB;
+        this.gameMigrationProperties = gameMigrationProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Copies every game in the legacy Game table to the Game table, scanning the legacy table in parallel segments
+     *
+     * @return a summary of what happened to each game scanned
+     */
+    public MigrationResult migrate() {
+        int totalSegments = Math.max(1, gameMigrationProperties.getTotalSegments());
+        log.info("Migrating games from table [{}] to table [{}] in [{}] segments",
+                gameMigrationProperties.getLegacyTableName(), Game.TABLE_NAME, totalSegments);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService segmentExecutor = Executors.newFixedThreadPool(totalSegments,
+                runnable -> new Thread(runnable, "game-migration-" + threadCount.incrementAndGet()));
+        try {
+            List<CompletableFuture<MigrationResult>> segments = IntStream.range(0, totalSegments)
+                    .mapToObj(segment -> CompletableFuture.supplyAsync(
+                            () -> migrateSegment(segment, totalSegments), segmentExecutor))
+                    .collect(Collectors.toList());
+            MigrationResult result = segments.stream()
+                    .map(CompletableFuture::join)
+                    .reduce(MigrationResult.EMPTY, MigrationResult::plus);
+            log.info("Migration of games completed [{}]", result);
+            return result;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        } finally {
+            segmentExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Scans a single segment of the legacy Game table page by page, copying each page's games to the Game table
+     *
+     * @param segment       the segment to scan
+     * @param totalSegments the number of segments the table is scanned in
+     * @return a summary of what happened to each game scanned within the segment
+     */
+    private MigrationResult migrateSegment(int segment, int totalSegments) {
+        ScanRequest request = new ScanRequest(gameMigrationProperties.getLegacyTableName())
+                .withSegment(segment)
+                .withTotalSegments(totalSegments);
+        MigrationResult result = MigrationResult.EMPTY;
+        do {
+            ScanResult page = amazonDynamoDB.scan(request);
+            result = result.plus(migratePage(page.getItems()));
+            request.setExclusiveStartKey(page.getLastEvaluatedKey());
+        } while (request.getExclusiveStartKey() != null);
+        log.debug("Migrated segment [{}] of [{}] [{}]", segment, totalSegments, result);
+        return result;
+    }
+
+    /**
+     * Deduplicates a page of legacy games by appid, then copies each remaining game to the Game table
+     *
+     * @param items the page of legacy games
+     * @return a summary of what happened to each game within the page
+     */
+    private MigrationResult migratePage(List<Map<String, AttributeValue>> items) {
+        Map<String, Map<String, AttributeValue>> gamesByAppid = new HashMap<>();
+        int skipped = 0;
+        for (Map<String, AttributeValue> item : items) {
+            AttributeValue appId = item.get(Game.APPID_ATTRIBUTE_NAME);
+            if (appId == null || appId.getS() == null) {
+                log.warn("Skipping legacy game [{}] as it has no appid", item.get(ID_ATTRIBUTE_NAME));
+                skipped++;
+                continue;
+            }
+            gamesByAppid.merge(appId.getS(), item,
+                    (found, duplicate) -> knowsMultiplayer(found) ? found : duplicate);
+        }
+        int copied = 0;
+        for (Map<String, AttributeValue> item : gamesByAppid.values()) {
+            if (copy(item)) {
+                copied++;
+            }
+        }
+        int duplicates = items.size() - skipped - copied;
+        count("copied", copied);
+        count("duplicate", duplicates);
+        count("skipped", skipped);
+        return new MigrationResult(items.size(), copied, duplicates, skipped);
+    }
+
+    /**
+     * Copies a legacy game to the Game table, unless a game for the same appid which at least as much is known about
+     * is already there
+     *
+     * @param legacyItem the legacy game
+     * @return true if the game was copied, otherwise false
+     */
+    private boolean copy(Map<String, AttributeValue> legacyItem) {
+        Map<String, AttributeValue> item = new HashMap<>(legacyItem);
+        item.remove(ID_ATTRIBUTE_NAME);
+        boolean knowsMultiplayer = knowsMultiplayer(item);
+        Map<String, String> attributeNames = new HashMap<>();
+        attributeNames.put("#appid", Game.APPID_ATTRIBUTE_NAME);
+        if (knowsMultiplayer) {
+            attributeNames.put("#multiplayer", Game.MULTIPLAYER_ATTRIBUTE_NAME);
+        }
+        try {
+            amazonDynamoDB.putItem(new PutItemRequest(Game.TABLE_NAME, item)
+                    .withConditionExpression(knowsMultiplayer ? NEW_OR_UNKNOWN_MULTIPLAYER_GAME_CONDITION : NEW_GAME_CONDITION)
+                    .withExpressionAttributeNames(attributeNames));
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    private boolean knowsMultiplayer(Map<String, AttributeValue> item) {
+        AttributeValue multiplayer = item.get(Game.MULTIPLAYER_ATTRIBUTE_NAME);
+        return multiplayer != null && !Boolean.TRUE.equals(multiplayer.getNULL());
+    }
+
+    private void count(String outcome, int amount) {
+        Counter.builder(ITEMS_METRIC_NAME)
+                .description("The number of legacy games scanned by the game migration, by what happened to them")
+                .tag(OUTCOME_TAG, outcome)
+                .register(meterRegistry)
+                .increment(amount);
+    }
+
+    /**
+     * Represents a summary of what happened to each legacy game scanned by a migration
+     */
+    @Value
+    public static class MigrationResult {
+        static final MigrationResult EMPTY = new MigrationResult(0, 0, 0, 0);
+
+        /**
+         * The number of legacy games scanned
+         */
+        long scanned;
+        /**
+         * The number of games copied to the Game table
+         */
+        long copied;
+        /**
+         * The number of games not copied as a game with the same appid already was
+         */
+        long duplicates;
+        /**
+         * The number of games not copied as they have no appid
+         */
+        long skipped;
+
+        MigrationResult plus(MigrationResult other) {
+            return new MigrationResult(scanned + other.scanned, copied + other.copied,
+                    duplicates + other.duplicates, skipped + other.skipped);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.sggc.models;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+
+/**
+ * Represents how far a crawl of the Steam Store has got, so that it can resume where it stopped after a restart
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDBTable(tableName = CrawlCheckpoint.TABLE_NAME)
+public class CrawlCheckpoint {
+    public static final String TABLE_NAME = "CrawlCheckpoint";
+
+    @Id
+    private String id;
+    //Games changed after this time, in seconds since the epoch, are crawled by the current pass
+    private long modifiedSince;
+    //The time the current pass began, in seconds since the epoch, or 0 if no pass is in progress
+    private long passStartedAt;
+    //The appid of the last game crawled by the current pass, or 0 if it has not crawled any
+    private int lastAppId;
+
+    @DynamoDBHashKey
+    public String getId() {
+        return id;
+    }
+}
@@ -2,48 +2,132 @@ package com.sggc.models;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.*;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.annotation.Id;
 
+import java.util.BitSet;
+
 /**
  * Represents a model of a Steam Game
  */
 @Data
 @RequiredArgsConstructor
-@DynamoDBTable(tableName = "Game")
+@DynamoDBTable(tableName = Game.TABLE_NAME)
 public class Game {
+    public static final String TABLE_NAME = "GameV2";
+    public static final String APPID_ATTRIBUTE_NAME = "appid";
+    public static final String NAME_ATTRIBUTE_NAME = "name";
+    public static final String MULTIPLAYER_ATTRIBUTE_NAME = "multiplayer";
+    public static final String CATEGORIES_ATTRIBUTE_NAME = "categories";
+
     @Id
-    @JsonIgnore
-    private String id;
     @JsonProperty("appid")
-    @DynamoDBIndexHashKey(globalSecondaryIndexName = "appid-index")
     private String appid;
     private String name;
     @JsonIgnore
     private Boolean multiplayer;
+    //The ids of every Steam category of the game indexed by category id, null until the game's details have been requested
+    @JsonIgnore
+    private BitSet categoryIds;
+    //Whether the game was returned while its multiplayer status was still being found, never stored
+    private boolean enrichmentPending;
 
-    @DynamoDBHashKey
-    @DynamoDBAutoGeneratedKey
-    public String getId() {
-        return id;
-    }
-
-    @DynamoDBAttribute
+    @DynamoDBHashKey(attributeName = APPID_ATTRIBUTE_NAME)
     public String getAppid() {
         return appid;
     }
 
-    @DynamoDBAttribute
+    @DynamoDBAttribute(attributeName = NAME_ATTRIBUTE_NAME)
     public String getName() {
         return name;
     }
 
-    @DynamoDBAttribute
+    @DynamoDBAttribute(attributeName = MULTIPLAYER_ATTRIBUTE_NAME)
     public Boolean getMultiplayer() {
         return multiplayer;
     }
 
-}
+    @DynamoDBIgnore
+    public BitSet getCategoryIds() {
+        return categoryIds;
+    }
+
+    /**
+     * Returns the ids of the game's categories in the compact binary form they are persisted in, a little-endian
+     * bitset indexed by category id
+     *
+     * @return the encoded category ids of the game, or null if the game's details have not been requested
+     */
+    @DynamoDBAttribute(attributeName = CATEGORIES_ATTRIBUTE_NAME)
+    @JsonIgnore
+    public byte[] getEncodedCategoryIds() {
+        return categoryIds == null ? null : categoryIds.toByteArray();
+    }
+
+    public void setEncodedCategoryIds(byte[] encodedCategoryIds) {
+        categoryIds = encodedCategoryIds == null ? null : BitSet.valueOf(encodedCategoryIds);
+    }
 
+    /**
+     * Determines whether the game's details have been requested from the Steam Store, that is whether both its
+     * multiplayer status and categories are known
+     *
+     * @return true if the game's details have been requested otherwise false
+     */
+    @DynamoDBIgnore
+    @JsonIgnore
+    public boolean isEnriched() {
+        return multiplayer != null && categoryIds != null;
+    }
+
+    /**
+     * Determines whether the game is within every one of a collection of categories
+     *
+     * @param categories the categories the game must be within
+     * @return true if the game is within every category, false if it is not or its categories are not yet known
+     */
+    public boolean isInAllCategories(BitSet categories) {
+        if (categoryIds == null) {
+            return false;
+        }
+        for (int categoryId = categories.nextSetBit(0); categoryId >= 0; categoryId = categories.nextSetBit(categoryId + 1)) {
+            if (!categoryIds.get(categoryId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the game is multiplayer, which is unknown until the game's details have been requested from the
+     * Steam Store
+     *
+     * @return the multiplayer status of the game
+     */
+    @DynamoDBIgnore
+    @JsonIgnore
+    public MultiplayerStatus getMultiplayerStatus() {
+        if (multiplayer == null) {
+            return MultiplayerStatus.UNKNOWN;
+        }
+        return multiplayer ? MultiplayerStatus.MULTIPLAYER : MultiplayerStatus.NOT_MULTIPLAYER;
+    }
+
+    @DynamoDBIgnore
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public boolean isEnrichmentPending() {
+        return enrichmentPending;
+    }
+
+    /**
+     * Represents whether a game is multiplayer, including whether it is yet known
+     */
+    public enum MultiplayerStatus {
+        MULTIPLAYER,
+        NOT_MULTIPLAYER,
+        UNKNOWN
+    }
+}
@@ -10,6 +10,19 @@ import lombok.RequiredArgsConstructor;
 @Data
 public class GameCategory {
 
-    private final SteamGameCategory id;
-    
+    //The id Steam uses to identify the category, which may not be one the application recognises
+    private final int id;
+
+    public GameCategory(SteamGameCategory category) {
+        this(category.getId());
+    }
+
+    /**
+     * Returns the category matching the id of this category
+     *
+     * @return the matching category, or null if the category is not one the application recognises
+     */
+    public SteamGameCategory getCategory() {
+        return SteamGameCategory.fromId(id);
+    }
 }
@@ -3,6 +3,7 @@ package com.sggc.models;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 
+import java.util.BitSet;
 import java.util.Set;
 /**
  * Represents a model of a GameData object returned by the Steam API.
@@ -11,4 +12,29 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class GameData {
     private final Set<GameCategory> categories;
+
+    /**
+     * Determines whether Steam considers the game multiplayer, that is whether it is within the multiplayer category
+     *
+     * @return true if the game is multiplayer otherwise false
+     */
+    public boolean isMultiplayer() {
+        return categories.stream().anyMatch(category -> category.getId() == SteamGameCategory.MULTIPLAYER.getId());
+    }
+
+    /**
+     * Returns the ids of every category of the game, including those the application does not recognise, as a bitset
+     * indexed by category id
+     *
+     * @return the category ids of the game
+     */
+    public BitSet getCategoryIds() {
+        BitSet categoryIds = new BitSet();
+        for (GameCategory category : categories) {
+            if (category.getId() >= 0) {
+                categoryIds.set(category.getId());
+            }
+        }
+        return categoryIds;
+    }
 }
@@ -0,0 +1,46 @@
+package com.sggc.models;
+
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents a game waiting in the enrichment queue for its multiplayer status to be found. Games are keyed by appid,
+ * so each game is queued at most once. Games are queued with an update which only sets attributes not yet stored, and
+ * the lease and attempts of a queued game are only ever updated in place by the instance claiming it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@DynamoDBTable(tableName = PendingEnrichment.TABLE_NAME)
+public class PendingEnrichment {
+    public static final String TABLE_NAME = "EnrichmentQueue";
+    public static final String APPID_ATTRIBUTE_NAME = "appid";
+    public static final String NAME_ATTRIBUTE_NAME = "name";
+    public static final String ENQUEUED_AT_ATTRIBUTE_NAME = "enqueuedAt";
+    public static final String LEASE_EXPIRY_ATTRIBUTE_NAME = "leaseExpiry";
+    public static final String ATTEMPTS_ATTRIBUTE_NAME = "attempts";
+
+    private String appid;
+    private String name;
+    //When the game was queued, in milliseconds since the epoch
+    private long enqueuedAt;
+
+    @DynamoDBHashKey(attributeName = APPID_ATTRIBUTE_NAME)
+    public String getAppid() {
+        return appid;
+    }
+
+    @DynamoDBAttribute(attributeName = NAME_ATTRIBUTE_NAME)
+    public String getName() {
+        return name;
+    }
+
+    @DynamoDBAttribute(attributeName = ENQUEUED_AT_ATTRIBUTE_NAME)
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+}
@@ -2,15 +2,63 @@ package com.sggc.models;
 
 import com.google.gson.annotations.SerializedName;
 
+/**
+ * Represents the categories of Steam games which requests can filter by, each with the id Steam uses to identify it.
+ * Every category id of a game is stored, so a category added here can be filtered by without requesting the details
+ * of games again.
+ */
 public enum SteamGameCategory {
     @SerializedName("1")
     MULTIPLAYER(1),
     @SerializedName("2")
-    SINGLE_PLAYER(2);
+    SINGLE_PLAYER(2),
+    @SerializedName("9")
+    CO_OP(9),
+    @SerializedName("20")
+    MMO(20),
+    @SerializedName("24")
+    SHARED_SPLIT_SCREEN(24),
+    @SerializedName("27")
+    CROSS_PLATFORM_MULTIPLAYER(27),
+    @SerializedName("36")
+    ONLINE_PVP(36),
+    @SerializedName("37")
+    SHARED_SPLIT_SCREEN_PVP(37),
+    @SerializedName("38")
+    ONLINE_CO_OP(38),
+    @SerializedName("39")
+    SHARED_SPLIT_SCREEN_CO_OP(39),
+    @SerializedName("44")
+    REMOTE_PLAY_TOGETHER(44),
+    @SerializedName("47")
+    LAN_PVP(47),
+    @SerializedName("48")
+    LAN_CO_OP(48),
+    @SerializedName("49")
+    PVP(49);
 
     private final int id;
 
     SteamGameCategory(int id) {
         this.id = id;
     }
-}
\ No newline at end of file
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the category matching the id Steam uses to identify it
+     *
+     * @param id the Steam id of the category
+     * @return the matching category, or null if the category is not one the application recognises
+     */
+    public static SteamGameCategory fromId(int id) {
+        for (SteamGameCategory category : values()) {
+            if (category.id == id) {
+                return category;
+            }
+        }
+        return null;
+    }
+}
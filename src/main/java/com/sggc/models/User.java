@@ -3,8 +3,10 @@ package com.sggc.models;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAttribute;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBAutoGeneratedKey;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBHashKey;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBIgnore;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTable;
-import lombok.AllArgsConstructor;
+import com.sggc.util.AppIds;
+import com.sggc.util.OwnedGameIdsCodec;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.annotation.Id;
@@ -17,13 +19,22 @@ import java.util.Set;
 @Data
 @DynamoDBTable(tableName = "User")
 @RequiredArgsConstructor
-@AllArgsConstructor
 public class User {
 
+    public static final String LEGACY_OWNED_GAME_IDS_ATTRIBUTE_NAME = "ownedGameIds";
+    public static final String ENCODED_OWNED_GAME_IDS_ATTRIBUTE_NAME = "ownedGameIdsEncoded";
+
     @Id
     private String id;
 
-    private Set<String> ownedGameIds;
+    //The sorted, distinct appids of the games owned by the user, shared with callers so must never be modified
+    private int[] ownedGameIds;
+
+    public User(String id, int[] ownedGameIds, long removalDate) {
+        this.id = id;
+        setOwnedGameIds(ownedGameIds);
+        this.removalDate = removalDate;
+    }
 
     @DynamoDBHashKey
     @DynamoDBAutoGeneratedKey
@@ -31,11 +42,48 @@ public class User {
         return id;
     }
 
-    @DynamoDBAttribute
-    public Set<String> getOwnedGameIds() {
+    @DynamoDBIgnore
+    public int[] getOwnedGameIds() {
         return ownedGameIds;
     }
 
+    public void setOwnedGameIds(int[] ownedGameIds) {
+        this.ownedGameIds = ownedGameIds == null ? null : AppIds.sortedDistinct(ownedGameIds);
+    }
+
+    /**
+     * Returns the ids of the games owned by the user in the compact binary form they are persisted in
+     *
+     * @return the encoded ids of the games owned by the user, or null if the user has no library
+     */
+    @DynamoDBAttribute(attributeName = ENCODED_OWNED_GAME_IDS_ATTRIBUTE_NAME)
+    public byte[] getEncodedOwnedGameIds() {
+        return ownedGameIds == null ? null : OwnedGameIdsCodec.encode(ownedGameIds);
+    }
+
+    public void setEncodedOwnedGameIds(byte[] encodedOwnedGameIds) {
+        if (encodedOwnedGameIds != null) {
+            ownedGameIds = OwnedGameIdsCodec.decode(encodedOwnedGameIds);
+        }
+    }
+
+    /**
+     * Users persisted before the ids of their games were encoded hold them in a string set. The set is read when no
+     * encoded ids are present and is never written, so it is removed the next time the user is saved.
+     *
+     * @return always null
+     */
+    @DynamoDBAttribute(attributeName = LEGACY_OWNED_GAME_IDS_ATTRIBUTE_NAME)
+    public Set<String> getLegacyOwnedGameIds() {
+        return null;
+    }
+
+    public void setLegacyOwnedGameIds(Set<String> legacyOwnedGameIds) {
+        if (ownedGameIds == null) {
+            ownedGameIds = AppIds.parse(legacyOwnedGameIds);
+        }
+    }
+
     //TTL (time-to-live) field for DynamoDB
     private long removalDate;
 }
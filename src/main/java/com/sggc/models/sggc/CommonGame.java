@@ -0,0 +1,19 @@
+package com.sggc.models.sggc;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.sggc.models.Game;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents a game owned by some of the users in a request, with how many of the users own it
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommonGame {
+    @JsonUnwrapped
+    private Game game;
+    private int owners;
+}
@@ -0,0 +1,71 @@
+package com.sggc.models.sggc;
+
+import com.sggc.errors.ApiError;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Represents a single line of a streamed response of common games. A game is sent as soon as it is known to be
+ * common, and the stream always ends with either a summary or an error
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CommonGamesStreamRecord {
+    private RecordType type;
+    private Object body;
+
+    /**
+     * Creates a record of a single common game
+     *
+     * @param game the common game, with how many users own it if the request gave a minimum number of owners
+     * @return a record of the game
+     */
+    public static CommonGamesStreamRecord game(Object game) {
+        return new CommonGamesStreamRecord(RecordType.GAME, game);
+    }
+
+    /**
+     * Creates the final record of a stream which completed successfully
+     *
+     * @param summary the summary of the games sent
+     * @return the final record of the stream
+     */
+    public static CommonGamesStreamRecord summary(Summary summary) {
+        return new CommonGamesStreamRecord(RecordType.SUMMARY, summary);
+    }
+
+    /**
+     * Creates the final record of a stream which failed
+     *
+     * @param error the error which ended the stream
+     * @return the final record of the stream
+     */
+    public static CommonGamesStreamRecord error(ApiError error) {
+        return new CommonGamesStreamRecord(RecordType.ERROR, error);
+    }
+
+    public enum RecordType {
+        GAME,
+        SUMMARY,
+        ERROR
+    }
+
+    /**
+     * Represents the summary of the games sent by a stream
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Summary {
+        /**
+         * The number of games sent, including those whose details are still being found
+         */
+        private int games;
+        /**
+         * The number of games sent labelled as pending, as their details are still being found
+         */
+        private int pending;
+    }
+}
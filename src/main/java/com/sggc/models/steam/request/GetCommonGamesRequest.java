@@ -1,10 +1,12 @@
 package com.sggc.models.steam.request;
 
+import com.sggc.models.SteamGameCategory;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.Size;
 import java.util.Set;
 
@@ -19,4 +21,9 @@ public class GetCommonGamesRequest {
     @Size(min = 2, message = "{com.sggc.lessThanTwoGameIds.message}")
     private Set<String> steamIds;
     private boolean multiplayerOnly;
+    //When set, games owned by at least this many of the users are returned ranked by how many own them
+    @Min(value = 1, message = "{com.sggc.minimumOwnersTooLow.message}")
+    private Integer minimumOwners;
+    //When set, only games within every one of these categories are returned
+    private Set<SteamGameCategory> categories;
 }
@@ -0,0 +1,44 @@
+package com.sggc.models.steam.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Represents a page of the response from the Steam API's GetAppList endpoint, listing apps in appid order
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class GetAppListResponse {
+    private Response response;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Response {
+        private List<App> apps;
+        @JsonProperty("have_more_results")
+        private boolean haveMoreResults;
+        @JsonProperty("last_appid")
+        private int lastAppid;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class App {
+        private int appid;
+        private String name;
+        //The time the app was last changed, in seconds since the epoch
+        @JsonProperty("last_modified")
+        private long lastModified;
+    }
+}
@@ -0,0 +1,12 @@
+package com.sggc.repositories;
+
+import com.sggc.models.CrawlCheckpoint;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository interface for retrieving the checkpoints of crawls
+ */
+@Repository
+public interface CrawlCheckpointRepository extends CrudRepository<CrawlCheckpoint, String> {
+}
@@ -10,6 +10,5 @@ import org.springframework.stereotype.Repository;
  */
 @Repository
 @EnableScan
-public interface GameRepository extends CrudRepository<Game, String> {
-    Game findGameByAppid(String appId);
+public interface GameRepository extends CrudRepository<Game, String>, GameRepositoryCustom {
 }
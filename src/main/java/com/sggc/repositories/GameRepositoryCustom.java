@@ -0,0 +1,48 @@
+package com.sggc.repositories;
+
+import com.sggc.models.Game;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Repository fragment for retrieving many games at once, and for updating individual attributes of games
+ */
+public interface GameRepositoryCustom {
+
+    /**
+     * Retrieves the games matching a collection of app ids, using as few DynamoDB calls as possible
+     *
+     * @param appIds the app ids of the games to retrieve
+     * @return the games which were found, app ids without a matching game are left out
+     */
+    Set<Game> findGamesByAppids(Collection<String> appIds);
+
+    /**
+     * Stores the multiplayer status and categories of a game, unless both have already been stored for it. Only the
+     * game's multiplayer status and categories are written, along with its name if the game is not yet in the Game
+     * table.
+     *
+     * @param game the game whose multiplayer status and categories will be stored
+     * @return true if they were stored, false if both had already been stored for the game
+     */
+    boolean saveMultiplayerIfAbsent(Game game);
+
+    /**
+     * Stores the multiplayer status and categories of a game, replacing any already stored for it. Only the game's
+     * multiplayer status and categories are written, along with its name if the game is not yet in the Game table.
+     *
+     * @param game the game whose multiplayer status and categories will be stored
+     */
+    void saveMultiplayer(Game game);
+
+    /**
+     * Stores the name of a game, unless a name has already been stored for it. Only the game's name is written, so a
+     * game whose multiplayer status and categories are already stored keeps them.
+     *
+     * @param appId the appid of the game
+     * @param name  the name of the game
+     * @return true if the name was stored, false if one had already been stored for the game
+     */
+    boolean saveNameIfAbsent(String appId, String name);
+}
@@ -0,0 +1,331 @@
+package com.sggc.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ExecuteStatementRequest;
+import com.amazonaws.services.dynamodbv2.model.ExecuteStatementResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.sggc.config.ExecutorConfig;
+import com.sggc.config.GameLookupProperties;
+import com.sggc.config.GameMigrationProperties;
+import com.sggc.models.Game;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Qualifier;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Represents the implementation of {@link GameRepositoryCustom}. Games are keyed by appid, so each batch of appids is
+ * resolved by a single BatchGetItem call, retrying any keys DynamoDB leaves unprocessed. Batches are resolved at the
+ * same time on a bounded executor.
+ * <p/>
+ * While the legacy Game table is being migrated, appids missing from the Game table are also looked up in the legacy
+ * table. Its games are only indexed by appid through a GSI, which BatchGetItem cannot read from, so each batch is
+ * resolved by a single PartiQL statement against the index instead, following the statement's next token for as long
+ * as DynamoDB returns a partial result.
+ * <p/>
+ * The multiplayer status and categories of a game are stored with a conditional update of just those attributes, so
+ * that requests enriching the same game at the same time write them once, the rest costing only a failed condition. The catalog
+ * crawler replaces the status of games which have changed with the same update, minus the condition. The names of
+ * games added from users' libraries are likewise stored with a conditional update of just the name, so that they
+ * never replace a game's stored multiplayer status or categories.
+ */
+@Log4j2
+public class GameRepositoryCustomImpl implements GameRepositoryCustom {
+
+    public static final String CALLS_METRIC_NAME = "game.lookup.dynamodb.calls";
+    public static final String LATENCY_METRIC_NAME = "game.lookup";
+    public static final String SKIPPED_MULTIPLAYER_WRITES_METRIC_NAME = "game.multiplayer.writes.skipped";
+
+    private static final int MAX_BATCH_GET_KEYS = 100;
+    private static final int MAX_STATEMENT_IN_VALUES = 50;
+    private static final String SELECT_BY_APPIDS_STATEMENT = "SELECT * FROM \"%s\".\"%s\" WHERE \"%s\" IN [%s]";
+    private static final String SET_MULTIPLAYER_EXPRESSION = "SET #multiplayer = :multiplayer";
+    private static final String SET_CATEGORIES_EXPRESSION = ", #categories = :categories";
+    private static final String SET_NAME_IF_ABSENT_EXPRESSION = ", #name = if_not_exists(#name, :name)";
+    private static final String SET_NAME_EXPRESSION = "SET #name = :name";
+    private static final String NAME_ABSENT_CONDITION = "attribute_not_exists(#name)";
+    private static final String MULTIPLAYER_ABSENT_CONDITION = "attribute_not_exists(#multiplayer)";
+    private static final String CATEGORIES_ABSENT_CONDITION = " OR attribute_not_exists(#categories)";
+
+    private final AmazonDynamoDB amazonDynamoDB;
+    private final DynamoDBMapper dynamoDBMapper;
+    private final GameLookupProperties gameLookupProperties;
+    private final GameMigrationProperties gameMigrationProperties;
+    private final Executor gameLookupExecutor;
+    private final DistributionSummary callsPerLookup;
+    private final Timer lookupLatency;
+    private final Counter skippedMultiplayerWrites;
+
+    public GameRepositoryCustomImpl(AmazonDynamoDB amazonDynamoDB, GameLookupProperties gameLookupProperties,
+                                    GameMigrationProperties gameMigrationProperties,
+                                    @Qualifier(ExecutorConfig.GAME_LOOKUP_EXECUTOR) Executor gameLookupExecutor,
+                                    MeterRegistry meterRegistry) {
+        this.amazonDynamoDB = amazonDynamoDB;
+        this.dynamoDBMapper = new DynamoDBMapper(amazonDynamoDB);
+        this.gameLookupProperties = gameLookupProperties;
+        this.gameMigrationProperties = gameMigrationProperties;
+        this.gameLookupExecutor = gameLookupExecutor;
+        this.callsPerLookup = DistributionSummary.builder(CALLS_METRIC_NAME)
+                .description("The number of DynamoDB calls made to look up a collection of games")
+                .baseUnit("calls")
+                .register(meterRegistry);
+        this.lookupLatency = Timer.builder(LATENCY_METRIC_NAME)
+                .description("The time taken to look up a collection of games in DynamoDB")
+                .register(meterRegistry);
+        this.skippedMultiplayerWrites = Counter.builder(SKIPPED_MULTIPLAYER_WRITES_METRIC_NAME)
+                .description("The number of writes of a game's multiplayer status skipped as one had already been stored")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Set<Game> findGamesByAppids(Collection<String> appIds) {
+        if (appIds.isEmpty()) {
+            return new HashSet<>();
+        }
+        AtomicInteger calls = new AtomicInteger();
+        Set<Game> games = lookupLatency.record(() -> findGames(new HashSet<>(appIds), calls));
+        callsPerLookup.record(calls.get());
+        log.debug("Found [{}] of [{}] games in [{}] DynamoDB calls", games.size(), appIds.size(), calls.get());
+        return games;
+    }
+
+    @Override
+    public boolean saveMultiplayerIfAbsent(Game game) {
+        try {
+            String condition = MULTIPLAYER_ABSENT_CONDITION;
+            if (game.getCategoryIds() != null) {
+                condition += CATEGORIES_ABSENT_CONDITION;
+            }
+            amazonDynamoDB.updateItem(multiplayerUpdate(game).withConditionExpression(condition));
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            log.debug("Multiplayer status of game [{}] has already been stored, skipping", game.getAppid());
+            skippedMultiplayerWrites.increment();
+            return false;
+        }
+    }
+
+    @Override
+    public void saveMultiplayer(Game game) {
+        amazonDynamoDB.updateItem(multiplayerUpdate(game));
+    }
+
+    @Override
+    public boolean saveNameIfAbsent(String appId, String name) {
+        try {
+            amazonDynamoDB.updateItem(new UpdateItemRequest()
+                    .withTableName(Game.TABLE_NAME)
+                    .withKey(Map.of(Game.APPID_ATTRIBUTE_NAME, new AttributeValue(appId)))
+                    .withUpdateExpression(SET_NAME_EXPRESSION)
+                    .withConditionExpression(NAME_ABSENT_CONDITION)
+                    .withExpressionAttributeNames(Map.of("#name", Game.NAME_ATTRIBUTE_NAME))
+                    .withExpressionAttributeValues(Map.of(":name", new AttributeValue(name))));
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            log.debug("Name of game [{}] has already been stored, skipping", appId);
+            return false;
+        }
+    }
+
+    /**
+     * Creates an update of just the multiplayer status and categories of a game, setting its name too if none has been
+     * stored
+     *
+     * @param game the game whose multiplayer status will be stored
+     * @return the unconditional update
+     */
+    private UpdateItemRequest multiplayerUpdate(Game game) {
+        DynamoDBMapperTableModel<Game> tableModel = dynamoDBMapper.getTableModel(Game.class);
+        Map<String, String> attributeNames = new HashMap<>();
+        Map<String, AttributeValue> attributeValues = new HashMap<>();
+        attributeNames.put("#multiplayer", Game.MULTIPLAYER_ATTRIBUTE_NAME);
+        attributeValues.put(":multiplayer", tableModel.field(Game.MULTIPLAYER_ATTRIBUTE_NAME).convert(game.getMultiplayer()));
+        String updateExpression = SET_MULTIPLAYER_EXPRESSION;
+        if (game.getCategoryIds() != null) {
+            attributeNames.put("#categories", Game.CATEGORIES_ATTRIBUTE_NAME);
+            attributeValues.put(":categories", new AttributeValue().withB(ByteBuffer.wrap(game.getEncodedCategoryIds())));
+            updateExpression += SET_CATEGORIES_EXPRESSION;
+        }
+        if (game.getName() != null) {
+            attributeNames.put("#name", Game.NAME_ATTRIBUTE_NAME);
+            attributeValues.put(":name", new AttributeValue(game.getName()));
+            updateExpression += SET_NAME_IF_ABSENT_EXPRESSION;
+        }
+        return new UpdateItemRequest()
+                .withTableName(Game.TABLE_NAME)
+                .withKey(Map.of(Game.APPID_ATTRIBUTE_NAME, new AttributeValue(game.getAppid())))
+                .withUpdateExpression(updateExpression)
+                .withExpressionAttributeNames(attributeNames)
+                .withExpressionAttributeValues(attributeValues);
+    }
+
+    /**
+     * Looks up a collection of appids in the Game table, looking up any which are missing in the legacy Game table
+     * while dual reads are enabled
+     *
+     * @param appIds the distinct appids to look up
+     * @param calls  a count of the DynamoDB calls made by the lookup
+     * @return the games which were found
+     */
+    private Set<Game> findGames(Set<String> appIds, AtomicInteger calls) {
+        int batchSize = Math.min(MAX_BATCH_GET_KEYS, gameLookupProperties.getBatchSize());
+        Set<Game> games = findGamesInBatches(partition(appIds, batchSize), batch -> getGames(batch, calls));
+        if (gameMigrationProperties.isDualRead() && games.size() < appIds.size()) {
+            Set<String> missingAppIds = new HashSet<>(appIds);
+            games.forEach(game -> missingAppIds.remove(game.getAppid()));
+            List<List<String>> legacyBatches = partition(missingAppIds, Math.min(MAX_STATEMENT_IN_VALUES, batchSize));
+            games.addAll(findGamesInBatches(legacyBatches, batch -> findLegacyGames(batch, calls)));
+        }
+        return games;
+    }
+
+    /**
+     * Resolves each batch of appids, resolving a lone batch on the calling thread and otherwise resolving every batch
+     * at the same time on the game lookup executor
+     *
+     * @param batches the batches of appids to resolve
+     * @param lookup  the lookup resolving a single batch
+     * @return the games which were found
+     */
+    private Set<Game> findGamesInBatches(List<List<String>> batches, Function<List<String>, Collection<Game>> lookup) {
+        if (batches.isEmpty()) {
+            return new HashSet<>();
+        }
+        if (batches.size() == 1) {
+            return new HashSet<>(lookup.apply(batches.get(0)));
+        }
+        List<CompletableFuture<Collection<Game>>> lookups = batches.stream()
+                .map(batch -> CompletableFuture.supplyAsync(() -> lookup.apply(batch), gameLookupExecutor))
+                .collect(Collectors.toList());
+        Set<Game> games = new HashSet<>();
+        try {
+            for (CompletableFuture<Collection<Game>> batchLookup : lookups) {
+                games.addAll(batchLookup.join());
+            }
+        } catch (CompletionException e) {
+            lookups.forEach(batchLookup -> batchLookup.cancel(true));
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return games;
+    }
+
+    /**
+     * Resolves a batch of appids from the Game table with BatchGetItem, retrying any keys DynamoDB leaves unprocessed
+     * with an exponential back off
+     *
+     * @param appIds the batch of appids to resolve
+     * @param calls  a count of the DynamoDB calls made by the lookup
+     * @return the games which were found
+     * @throws IllegalStateException if keys are still unprocessed once they have been retried the maximum number of
+     *                               times
+     */
+    private List<Game> getGames(List<String> appIds, AtomicInteger calls) {
+        Map<String, KeysAndAttributes> requestItems = Map.of(Game.TABLE_NAME, new KeysAndAttributes()
+                .withKeys(appIds.stream()
+                        .map(appId -> Map.of(Game.APPID_ATTRIBUTE_NAME, new AttributeValue(appId)))
+                        .collect(Collectors.toList())));
+        List<Game> games = new ArrayList<>(appIds.size());
+        for (int attempt = 0; ; attempt++) {
+            BatchGetItemResult result = amazonDynamoDB.batchGetItem(new BatchGetItemRequest(requestItems));
+            calls.incrementAndGet();
+            if (result.getResponses() != null) {
+                result.getResponses().getOrDefault(Game.TABLE_NAME, Collections.emptyList())
+                        .forEach(item -> games.add(dynamoDBMapper.marshallIntoObject(Game.class, item)));
+            }
+            requestItems = result.getUnprocessedKeys();
+            if (requestItems == null || requestItems.isEmpty()) {
+                return games;
+            }
+            int unprocessed = requestItems.get(Game.TABLE_NAME).getKeys().size();
+            if (attempt >= gameLookupProperties.getMaxUnprocessedRetries()) {
+                throw new IllegalStateException(String.format(
+                        "[%d] games were still unprocessed by DynamoDB after [%d] retries", unprocessed, attempt));
+            }
+            log.debug("DynamoDB left [{}] games unprocessed, backing off before retrying", unprocessed);
+            backoff(attempt);
+        }
+    }
+
+    /**
+     * Resolves a batch of appids from the legacy Game table's appid index with a single statement, following the
+     * statement's next token for as long as DynamoDB returns a partial result. The legacy table may hold several games
+     * for the same appid, in which case a game whose multiplayer status is known is preferred.
+     *
+     * @param appIds the batch of appids to resolve
+     * @param calls  a count of the DynamoDB calls made by the lookup
+     * @return the games which were found
+     */
+    private Collection<Game> findLegacyGames(List<String> appIds, AtomicInteger calls) {
+        ExecuteStatementRequest request = new ExecuteStatementRequest()
+                .withStatement(String.format(SELECT_BY_APPIDS_STATEMENT, gameMigrationProperties.getLegacyTableName(),
+                        gameMigrationProperties.getLegacyAppidIndexName(), Game.APPID_ATTRIBUTE_NAME,
+                        String.join(",", Collections.nCopies(appIds.size(), "?"))))
+                .withParameters(appIds.stream().map(AttributeValue::new).collect(Collectors.toList()));
+        Map<String, Game> games = new HashMap<>(appIds.size());
+        do {
+            ExecuteStatementResult result = amazonDynamoDB.executeStatement(request);
+            calls.incrementAndGet();
+            result.getItems().stream()
+                    .map(item -> dynamoDBMapper.marshallIntoObject(Game.class, item))
+                    .forEach(game -> games.merge(game.getAppid(), game,
+                            (found, duplicate) -> found.getMultiplayer() != null ? found : duplicate));
+            request.setNextToken(result.getNextToken());
+        } while (request.getNextToken() != null);
+        return games.values();
+    }
+
+    private void backoff(int attempt) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(gameLookupProperties.getUnprocessedBackoff().toNanos() << Math.min(attempt, 16));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off before retrying unprocessed games", e);
+        }
+    }
+
+    /**
+     * Splits a collection of appids into batches no larger than a batch size
+     *
+     * @param appIds    the appids to split
+     * @param batchSize the maximum size of each batch
+     * @return the batches of appids
+     */
+    private List<List<String>> partition(Collection<String> appIds, int batchSize) {
+        int size = Math.max(1, batchSize);
+        List<String> remaining = new ArrayList<>(appIds);
+        List<List<String>> batches = new ArrayList<>();
+        for (int from = 0; from < remaining.size(); from += size) {
+            batches.add(remaining.subList(from, Math.min(remaining.size(), from + size)));
+        }
+        return batches;
+    }
+}
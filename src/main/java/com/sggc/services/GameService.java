@@ -1,20 +1,26 @@
 package com.sggc.services;
 
-import com.sggc.infrastructure.SteamRequestSender;
+import com.sggc.config.EnrichmentProperties;
+import com.sggc.infrastructure.EnrichmentQueue;
 import com.sggc.models.Game;
-import com.sggc.models.GameCategory;
-import com.sggc.models.GameData;
+import com.sggc.models.Game.MultiplayerStatus;
 import com.sggc.models.SteamGameCategory;
 import com.sggc.repositories.GameRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 
 /**
@@ -26,63 +32,173 @@ import java.util.stream.Collectors;
 public class GameService {
 
     private final GameRepository gameRepository;
-    private final SteamRequestSender steamRequestHandler;
+    private final EnrichmentQueue enrichmentQueue;
+    private final EnrichmentProperties enrichmentProperties;
 
     /**
-     * Retrieve details of games from the DB via the game's app id
+     * Retrieve details of games from the DB via the game's app id. When only multiplayer games are requested, the
+     * multiplayer status of games for which it is unknown is found from the Steam Store, waiting no longer than the
+     * request's enrichment budget. Games whose status is still being found once the budget is spent are returned
+     * labelled as pending, and left in the enrichment queue so a later request finds their status stored.
      *
      * @param gameIds         a collection of game id's to search for
      * @param multiplayerOnly indicates whether non-multiplayer games should be filtered out of the returned collection
      * @return a collection of found games
      */
     public Set<Game> findGamesById(Set<String> gameIds, boolean multiplayerOnly) {
-        //Sometimes games have been removed from steam but still appear in users game libraries, thus remove nulls from the list.
-        Set<Game> commonGames = gameIds.stream().map(gameRepository::findGameByAppid).filter(Objects::nonNull).collect(Collectors.toSet());
-        if (multiplayerOnly) {
-            commonGames = commonGames.stream().filter(game -> {
-                try {
-                    return isGameMultiplayer(game);
-                } catch (IOException e) {
-                    log.error("Error occurred while trying to determine whether game is multiplayer",e);
-                    throw new UncheckedIOException(e);
-                }
-            }).collect(Collectors.toSet());
-        }
-        return commonGames;
+        return findGamesById(gameIds, multiplayerOnly, Collections.emptySet());
     }
 
     /**
-     * Determines whether a provided game is considered multiplayer by Steam. If the status is not currently saved
-     * within the DB, then a request will be sent to the Steam API to determine whether the game is multiplayer,
-     * the result will be stored in the DB
+     * Retrieve details of games from the DB via the game's app id, keeping only the games within every one of a
+     * collection of categories. Games are filtered by the categories stored with them, so no calls are made to the
+     * Steam Store for games whose details have already been requested. The details of the remaining games are found
+     * from the Steam Store, several at a time, waiting no longer than the request's enrichment budget. Games whose details are still being
+     * found once the budget is spent are returned labelled as pending, and left in the enrichment queue so a later
+     * request finds their details stored.
      *
-     * @param game the game to check
-     * @return true if the game is multiplayer otherwise false
-     * @throws IOException if an error occurs requesting the games details from the Steam API
+     * @param gameIds         a collection of game id's to search for
+     * @param multiplayerOnly indicates whether non-multiplayer games should be filtered out of the returned collection
+     * @param categories      the categories every returned game must be within, none to return games of any category
+     * @return a collection of found games
      */
-    private boolean isGameMultiplayer(Game game) throws IOException {
-        log.debug("Attempting to determine whether game [{}] is multiplayer", game.getAppid());
-        if (game.getMultiplayer() != null) {
-            log.debug("Game's multiplayer status is known, returning");
-            return game.getMultiplayer();
-        } else {
-            log.debug("Game's multiplayer status is unknown, contacting Steam API");
-            GameData parsedResponse = steamRequestHandler.requestAppDetailsFromSteamApi(game.getAppid());
-            //Check for presence of multiplayer category
-            for (GameCategory category : parsedResponse.getCategories()) {
-                if (category.getId() == SteamGameCategory.MULTIPLAYER) {
-                    log.debug("Game is multiplayer, store in DB for future reference");
-                    game.setMultiplayer(true);
-                    gameRepository.save(game);
-                    return true;
-                }
+    public Set<Game> findGamesById(Set<String> gameIds, boolean multiplayerOnly, Set<SteamGameCategory> categories) {
+        Set<Game> matchingGames = new HashSet<>();
+        streamGamesById(gameIds, multiplayerOnly, categories, matchingGames::add);
+        return matchingGames;
+    }
+
+    /**
+     * Retrieve details of games from the DB via the game's app id, passing each game to a consumer as soon as it is
+     * known to pass a request's filters. Games whose details are stored are passed once they are read, the remaining
+     * games as each is enriched from the Steam Store. Games whose details are still being found once the request's
+     * enrichment budget is spent are passed last, labelled as pending, and left in the enrichment queue.
+     * <p/>
+     * The consumer is only ever called on the calling thread, so it may block, e.g. while writing to a slow client,
+     * without holding up the threads enriching games.
+     *
+     * @param gameIds         a collection of game id's to search for
+     * @param multiplayerOnly indicates whether non-multiplayer games should be filtered out
+     * @param categories      the categories every game must be within, none to pass games of any category
+     * @param gameConsumer    the consumer each found game is passed to
+     */
+    public void streamGamesById(Set<String> gameIds, boolean multiplayerOnly, Set<SteamGameCategory> categories,
+                                Consumer<Game> gameConsumer) {
+        //Sometimes games have been removed from steam but still appear in users game libraries, these are left out of the lookup's result.
+        Set<Game> commonGames = gameRepository.findGamesByAppids(gameIds);
+        if (!multiplayerOnly && categories.isEmpty()) {
+            commonGames.forEach(gameConsumer);
+            return;
+        }
+        BitSet requiredCategoryIds = new BitSet();
+        categories.forEach(category -> requiredCategoryIds.set(category.getId()));
+        List<Game> unknownGames = new ArrayList<>();
+        for (Game game : commonGames) {
+            if (multiplayerOnly && game.getMultiplayerStatus() == MultiplayerStatus.UNKNOWN || !categories.isEmpty() && game.getCategoryIds() == null) {
+                unknownGames.add(game);
+            } else if (matches(game, multiplayerOnly, requiredCategoryIds)) {
+                gameConsumer.accept(game);
+            }
+        }
+        if (unknownGames.isEmpty()) {
+            return;
+        }
+        log.debug("Details of [{}] games are unknown, enriching them", unknownGames.size());
+        List<CompletableFuture<Game>> enrichments = enrichmentQueue.enrichAll(unknownGames, enrichmentProperties.getPerRequestParallelism());
+        boolean[] resolved = new boolean[enrichments.size()];
+        for (int index : awaitEnrichments(enrichments)) {
+            resolved[index] = true;
+            acceptIfEnriched(unknownGames.get(index), enrichments.get(index), multiplayerOnly, requiredCategoryIds, gameConsumer);
+        }
+        List<Game> pendingGames = new ArrayList<>();
+        for (int i = 0; i < unknownGames.size(); i++) {
+            Game game = unknownGames.get(i);
+            CompletableFuture<Game> enrichment = enrichments.get(i);
+            //Games not yet started once the budget is spent are left to the enrichment queue
+            enrichment.cancel(false);
+            if (!resolved[i] && !acceptIfEnriched(game, enrichment, multiplayerOnly, requiredCategoryIds, gameConsumer)) {
+                game.setEnrichmentPending(true);
+                pendingGames.add(game);
             }
-            log.debug("Game is not multiplayer, store in DB for future reference");
-            game.setMultiplayer(false);
-            gameRepository.save(game);
+        }
+        if (!pendingGames.isEmpty()) {
+            log.debug("Returning [{}] games whose details are still being found", pendingGames.size());
+            enrichmentQueue.persist(pendingGames);
+            pendingGames.forEach(gameConsumer);
+        }
+    }
+
+    /**
+     * Copies the details found by the enrichment of a game onto it, passing it to a consumer if it passes a request's
+     * filters
+     *
+     * @param game                the game which was enriched
+     * @param enrichment          the enrichment of the game
+     * @param multiplayerOnly     whether the game must be multiplayer
+     * @param requiredCategoryIds the ids of the categories the game must be within
+     * @param gameConsumer        the consumer the game is passed to
+     * @return true if the game's details were found, otherwise false if its enrichment failed or has not completed
+     */
+    private static boolean acceptIfEnriched(Game game, CompletableFuture<Game> enrichment, boolean multiplayerOnly,
+                                            BitSet requiredCategoryIds, Consumer<Game> gameConsumer) {
+        if (!enrichment.isDone() || enrichment.isCompletedExceptionally()) {
             return false;
         }
+        Game enrichedGame = enrichment.join();
+        game.setMultiplayer(enrichedGame.getMultiplayer());
+        game.setCategoryIds(enrichedGame.getCategoryIds());
+        if (matches(game, multiplayerOnly, requiredCategoryIds)) {
+            gameConsumer.accept(game);
+        }
+        return true;
     }
-}
 
+    /**
+     * Determines whether a game, whose details are known, passes a request's filters. A game whose multiplayer status is
+     * unknown never passes a multiplayer only filter.
+     *
+     * @param game                the game to check
+     * @param multiplayerOnly     whether the game must be multiplayer
+     * @param requiredCategoryIds the ids of the categories the game must be within
+     * @return true if the game passes the filters otherwise false
+     */
+    private static boolean matches(Game game, boolean multiplayerOnly, BitSet requiredCategoryIds) {
+        if (multiplayerOnly && game.getMultiplayerStatus() != MultiplayerStatus.MULTIPLAYER) {
+            return false;
+        }
+        return requiredCategoryIds.isEmpty() || game.isInAllCategories(requiredCategoryIds);
+    }
 
+    /**
+     * Waits for the enrichment of games to complete, for no longer than the request's enrichment budget, returning
+     * the index of each enrichment which completed successfully in the order they completed. Enrichments which failed
+     * are left out, so their games are treated as pending
+     *
+     * @param enrichments the enrichments to wait for
+     * @return the indexes of the enrichments which completed successfully within the budget, in order of completion
+     */
+    private List<Integer> awaitEnrichments(List<CompletableFuture<Game>> enrichments) {
+        BlockingQueue<Integer> completedIndexes = new LinkedBlockingQueue<>();
+        for (int i = 0; i < enrichments.size(); i++) {
+            int index = i;
+            enrichments.get(i).whenComplete((game, e) -> completedIndexes.add(index));
+        }
+        List<Integer> enrichedIndexes = new ArrayList<>();
+        long deadline = System.nanoTime() + enrichmentProperties.getRequestBudget().toNanos();
+        try {
+            for (int remaining = enrichments.size(); remaining > 0; remaining--) {
+                Integer index = completedIndexes.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (index == null) {
+                    log.debug("Not every game could be enriched within the request's enrichment budget");
+                    break;
+                }
+                if (!enrichments.get(index).isCompletedExceptionally()) {
+                    enrichedIndexes.add(index);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return enrichedIndexes;
+    }
+}
@@ -1,23 +1,43 @@
 package com.sggc.services;
 
+import com.sggc.config.ExecutorConfig;
+import com.sggc.config.UserLibraryLookupProperties;
 import com.sggc.exceptions.SecretRetrievalException;
 import com.sggc.exceptions.TooFewSteamIdsException;
 import com.sggc.exceptions.UserHasNoGamesException;
 import com.sggc.infrastructure.SteamRequestSender;
-import com.sggc.models.Game;
+import com.sggc.infrastructure.UserLibraryCache;
+import com.sggc.infrastructure.WriteBehindQueue;
 import com.sggc.models.User;
-import com.sggc.models.steam.response.GetOwnedGamesResponse;
 import com.sggc.repositories.UserRepository;
+import com.sggc.util.AppIds;
 import com.sggc.util.DateUtil;
+import com.sggc.util.OwnerCounts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.Value;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.time.Clock;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * Represents a service for interacting with User objects
@@ -27,39 +47,131 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class UserService {
 
+    public static final String LIBRARY_LOOKUPS_METRIC_NAME = "user.library.lookups";
+    public static final String LIBRARY_LOOKUPS_AVOIDED_METRIC_NAME = "user.library.lookups.avoided";
+    public static final String SOURCE_TAG = "source";
+
     private final UserRepository userRepository;
     private final SteamRequestSender steamRequestHandler;
+    private final UserLibraryCache userLibraryCache;
+    private final WriteBehindQueue writeBehindQueue;
     private final Clock systemClock;
+    private final UserLibraryLookupProperties userLibraryLookupProperties;
+    @Qualifier(ExecutorConfig.USER_LIBRARY_LOOKUP_EXECUTOR)
+    private final Executor userLibraryLookupExecutor;
+    private final MeterRegistry meterRegistry;
 
     /**
      * Retrieves the Steam games owned by a user by user id
      *
      * @param userId the Steam id of the user
-     * @return a collection of game id's owned by the user
+     * @return the sorted appids of the games owned by the user, which must never be modified
      * @throws UserHasNoGamesException  if the user does not own any games
      * @throws SecretRetrievalException if an error occurs attempting to retrieve the Steam API key secret from AWS
      *                                  secrets manager
      */
-    public Set<String> findOwnedGamesByUserId(String userId) throws SecretRetrievalException, UserHasNoGamesException {
+    public int[] findOwnedGamesByUserId(String userId) throws SecretRetrievalException, UserHasNoGamesException {
         log.debug("Attempting to find user with id [{}]",userId);
+        Optional<int[]> cachedOwnedGameIds = userLibraryCache.getOwnedGameIds(userId);
+        if (cachedOwnedGameIds.isPresent()) {
+            log.debug("User with matching id has been found in the user library cache");
+            return cachedOwnedGameIds.get();
+        }
+        Optional<int[]> storedOwnedGameIds = findStoredOwnedGamesByUserId(userId);
+        if (storedOwnedGameIds.isPresent()) {
+            return storedOwnedGameIds.get();
+        }
+        return requestOwnedGamesFromSteam(userId);
+    }
+
+    /**
+     * Determines whether the libraries of every user are held in the user library cache, so that their common games
+     * can be found without waiting on the database or the Steam API. The check is not counted in the cache's hit
+     * ratio, as the libraries are then looked up again
+     *
+     * @param userIds the Steam ids of the users
+     * @return true if every user's library is cached otherwise false
+     */
+    public boolean areLibrariesCached(Set<String> userIds) {
+        for (String userId : userIds) {
+            if (!userLibraryCache.contains(userId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Retrieves the Steam games owned by a user from the database, caching the user's library if it is found
+     *
+     * @param userId the Steam id of the user
+     * @return the sorted appids of the games owned by the user, or empty if the user is not in the database
+     */
+    private Optional<int[]> findStoredOwnedGamesByUserId(String userId) {
         Optional<User> user = userRepository.findById(userId);
         if (user.isPresent()) {
             log.debug("User with matching id has been found in DB");
-            return user.get().getOwnedGameIds();
-        } else {
-            log.debug("User with matching id hasn't been found in DB, will request details from Steam API");
-            Set<String> usersOwnedGameIds = getUsersOwnedGameIds(userId);
-            if (usersOwnedGameIds.isEmpty()) {
-                log.error("User: [{}] owns no Steam games, throwing exception", userId);
-                throw new UserHasNoGamesException(userId);
-            }
-            userRepository.save(new User(userId, usersOwnedGameIds, calculateUserRemovalDate()));
-            return usersOwnedGameIds;
+            userLibraryCache.put(user.get());
+            return Optional.of(user.get().getOwnedGameIds());
+        }
+        log.debug("User with matching id hasn't been found in DB, will request details from Steam API");
+        return Optional.empty();
+    }
+
+    /**
+     * Retrieves the Steam games owned by a user from the Steam API. If there are few enough candidate games and
+     * filtered lookups are enabled, only the candidates the user owns are requested. Such a partial library is neither
+     * saved nor cached, unless the user owns none of the candidates, in which case their whole library is requested
+     * to tell whether they own any games at all.
+     *
+     * @param userId          the Steam id of the user
+     * @param candidateAppIds the sorted appids of the games the user's library is intersected with, or null to
+     *                        request the user's whole library
+     * @return the sorted appids of the games owned by the user, at least those among the candidates
+     * @throws UserHasNoGamesException  if the user does not own any games
+     * @throws SecretRetrievalException if an error occurs attempting to retrieve the Steam API key secret from AWS
+     *                                  secrets manager
+     */
+    private int[] requestOwnedGamesFromSteam(String userId, int[] candidateAppIds) throws SecretRetrievalException, UserHasNoGamesException {
+        if (candidateAppIds == null || !userLibraryLookupProperties.isFilteredSteamLookups()
+                || candidateAppIds.length > userLibraryLookupProperties.getMaxFilteredCandidates()) {
+            return requestOwnedGamesFromSteam(userId);
+        }
+        int[] ownedCandidateAppIds = steamRequestHandler.requestUsersOwnedGameIdsFromSteamApi(userId, candidateAppIds);
+        if (ownedCandidateAppIds.length == 0) {
+            log.debug("User [{}] owns none of the [{}] candidate games, requesting their whole library", userId, candidateAppIds.length);
+            return requestOwnedGamesFromSteam(userId);
+        }
+        return ownedCandidateAppIds;
+    }
+
+    /**
+     * Retrieves the Steam games owned by a user from the Steam API, saving the user and caching their library
+     *
+     * @param userId the Steam id of the user
+     * @return the sorted appids of the games owned by the user
+     * @throws UserHasNoGamesException  if the user does not own any games
+     * @throws SecretRetrievalException if an error occurs attempting to retrieve the Steam API key secret from AWS
+     *                                  secrets manager
+     */
+    private int[] requestOwnedGamesFromSteam(String userId) throws SecretRetrievalException, UserHasNoGamesException {
+        int[] usersOwnedGameIds = steamRequestHandler.requestUsersOwnedGameIdsFromSteamApi(userId);
+        if (usersOwnedGameIds.length == 0) {
+            log.error("User: [{}] owns no Steam games, throwing exception", userId);
+            throw new UserHasNoGamesException(userId);
         }
+        User newUser = new User(userId, usersOwnedGameIds, calculateUserRemovalDate());
+        writeBehindQueue.save(newUser);
+        userLibraryCache.put(newUser);
+        return newUser.getOwnedGameIds();
     }
 
     /**
-     * Returns a collection of game id's owned by each user specified
+     * Returns a collection of game id's owned by each user specified. Libraries are resolved cheapest first: those in
+     * the user library cache, then those in the database, and only the users found in neither are requested from the
+     * Steam API. Libraries are intersected as they are resolved, and once the intersection is empty no further
+     * libraries are looked up, since they can no longer change the outcome. Users requested from the Steam API once
+     * the candidate common games are known may only be asked which of the candidates they own.
      *
      * @param userIds user id's to determine common games
      * @return a collection of strings representing ids of Steam games owned by all users
@@ -70,46 +182,192 @@ public class UserService {
      */
     public Set<String> getIdsOfGamesOwnedByAllUsers(Set<String> userIds) throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
         if(userIds.size() > 1) {
-            Set<String> combinedGameIds = new HashSet<>();
-            for (String userId : userIds) {
-                Set<String> usersOwnedGameIds = findOwnedGamesByUserId(userId);
-                if (combinedGameIds.isEmpty()) {
-                    combinedGameIds = usersOwnedGameIds;
-                } else {
-                    combinedGameIds.retainAll(usersOwnedGameIds);
-                }
+            GroupQueryPlan plan = new GroupQueryPlan();
+            List<int[]> cachedLibraries = new ArrayList<>();
+            List<String> uncachedUserIds = findCachedLibraries(userIds, cachedLibraries, plan);
+            Intersection intersection = new Intersection(cachedLibraries.isEmpty() ? null : AppIds.intersectAll(cachedLibraries));
+            List<String> unstoredUserIds = new ArrayList<>();
+            intersectLibraries(LibrarySource.DATABASE, uncachedUserIds,
+                    (userId, candidateAppIds) -> findStoredOwnedGamesByUserId(userId), intersection, unstoredUserIds, plan);
+            intersectLibraries(LibrarySource.STEAM, unstoredUserIds,
+                    (userId, candidateAppIds) -> Optional.of(requestOwnedGamesFromSteam(userId, candidateAppIds)),
+                    intersection, new ArrayList<>(), plan);
+            plan.record(meterRegistry);
+            log.debug("Resolved the common games of [{}] users with plan [{}]", userIds.size(), plan);
+            return AppIds.toStrings(intersection.getGameIds());
+        }
+        log.error("Collection of user ids contains less than two entries, throwing exception");
+        throw new TooFewSteamIdsException();
+    }
+
+    /**
+     * Returns the ids of the games owned by at least a minimum number of the users specified, with how many of the
+     * users own each. Libraries are resolved cheapest first, as they are for games owned by all users, but every
+     * library is needed in full to count owners, so users are never asked only for candidate games.
+     *
+     * @param userIds       user id's to determine common games
+     * @param minimumOwners the minimum number of users who must own a game for it to be returned
+     * @return the ids of Steam games owned by at least the minimum number of users, mapped to how many users own each
+     * @throws UserHasNoGamesException  if the user does not own any games
+     * @throws SecretRetrievalException if an error occurs attempting to retrieve the Steam API key secret from AWS
+     *                                  secrets manager
+     * @throws TooFewSteamIdsException if userIds contains less than two entries
+     */
+    public Map<String, Integer> getIdsOfGamesOwnedByAtLeast(Set<String> userIds, int minimumOwners) throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
+        if (userIds.size() > 1) {
+            GroupQueryPlan plan = new GroupQueryPlan();
+            List<int[]> libraries = new ArrayList<>(userIds.size());
+            List<String> uncachedUserIds = findCachedLibraries(userIds, libraries, plan);
+            List<String> unstoredUserIds = new ArrayList<>();
+            lookUpLibraries(LibrarySource.DATABASE, uncachedUserIds, (userId, candidateAppIds) -> findStoredOwnedGamesByUserId(userId),
+                    () -> null, libraries::add, unstoredUserIds, plan);
+            lookUpLibraries(LibrarySource.STEAM, unstoredUserIds, (userId, candidateAppIds) -> Optional.of(requestOwnedGamesFromSteam(userId)),
+                    () -> null, libraries::add, new ArrayList<>(), plan);
+            plan.record(meterRegistry);
+            log.debug("Resolved the owners of the games of [{}] users with plan [{}]", userIds.size(), plan);
+            OwnerCounts ownerCounts = AppIds.countOwners(libraries, minimumOwners);
+            Map<String, Integer> ownersByGameId = new HashMap<>((int) (ownerCounts.size() / 0.75f) + 1);
+            for (int i = 0; i < ownerCounts.size(); i++) {
+                ownersByGameId.put(String.valueOf(ownerCounts.getAppIds()[i]), ownerCounts.getOwners()[i]);
             }
-            return combinedGameIds;
+            return ownersByGameId;
         }
         log.error("Collection of user ids contains less than two entries, throwing exception");
         throw new TooFewSteamIdsException();
     }
 
     /**
-     * Returns a collection of the ids of Steam games owned by a user by user id, empty if the user owns no Steam games
+     * Collects the libraries of users held in the user library cache
      *
-     * @param userId the Steam id of the user
-     * @return a collection of strings representing ids of Steam games, empty if the user owns no Steam games
+     * @param userIds   user id's whose libraries will be looked up
+     * @param libraries collects the sorted appids of the games owned by each cached user
+     * @param plan      the plan of the query, recording the lookups made
+     * @return the user id's whose library is not cached
+     */
+    private List<String> findCachedLibraries(Set<String> userIds, List<int[]> libraries, GroupQueryPlan plan) {
+        List<String> uncachedUserIds = new ArrayList<>();
+        for (String userId : userIds) {
+            Optional<int[]> cachedOwnedGameIds = userLibraryCache.getOwnedGameIds(userId);
+            if (cachedOwnedGameIds.isPresent()) {
+                libraries.add(cachedOwnedGameIds.get());
+            } else {
+                uncachedUserIds.add(userId);
+            }
+        }
+        plan.lookedUp(LibrarySource.MEMORY, userIds.size());
+        return uncachedUserIds;
+    }
+
+    /**
+     * Looks up the libraries of users from one source, narrowing the running intersection with each library as soon
+     * as it arrives. Once the intersection is empty the remaining lookups are skipped, or cancelled if already
+     * submitted, as their result can no longer change the outcome.
+     *
+     * @param source            the source the libraries are looked up from
+     * @param userIds           user id's whose libraries will be looked up
+     * @param lookup            the lookup of a user's library from the source
+     * @param intersection      the running intersection
+     * @param unresolvedUserIds collects the user id's whose library the source does not hold
+     * @param plan              the plan of the query, recording the lookups made and avoided
+     * @throws UserHasNoGamesException  if the user does not own any games
      * @throws SecretRetrievalException if an error occurs attempting to retrieve the Steam API key secret from AWS
      *                                  secrets manager
      */
-    private Set<String> getUsersOwnedGameIds(String userId) throws SecretRetrievalException {
-        Set<String> gameIdList = new HashSet<>();
-        GetOwnedGamesResponse.Response response = steamRequestHandler.requestUsersOwnedGamesFromSteamApi(userId).getResponse();
-        return response.getGames() != null ? parseGameIdsFromResponse(response) : gameIdList;
+    private void intersectLibraries(LibrarySource source, List<String> userIds, LibraryLookup lookup, Intersection intersection,
+                                    List<String> unresolvedUserIds, GroupQueryPlan plan) throws UserHasNoGamesException, SecretRetrievalException {
+        if (intersection.isEmpty()) {
+            plan.avoided(source, userIds.size());
+            return;
+        }
+        lookUpLibraries(source, userIds, lookup, intersection::getGameIds, intersection::add, unresolvedUserIds, plan);
+    }
+
+    /**
+     * Looks up the libraries of users from one source, handing each library to a consumer as soon as it arrives.
+     * Lookups are run at the same time if library lookups are concurrent. Once the consumer needs no further
+     * libraries the remaining lookups are skipped, or cancelled if already submitted.
+     *
+     * @param source            the source the libraries are looked up from
+     * @param userIds           user id's whose libraries will be looked up
+     * @param lookup            the lookup of a user's library from the source
+     * @param candidateAppIds   supplies the sorted appids each library is needed for, or null if libraries are needed in full
+     * @param libraryConsumer   consumes each library, returning false once no further libraries are needed
+     * @param unresolvedUserIds collects the user id's whose library the source does not hold
+     * @param plan              the plan of the query, recording the lookups made and avoided
+     * @throws UserHasNoGamesException  if the user does not own any games
+     * @throws SecretRetrievalException if an error occurs attempting to retrieve the Steam API key secret from AWS
+     *                                  secrets manager
+     */
+    private void lookUpLibraries(LibrarySource source, List<String> userIds, LibraryLookup lookup, Supplier<int[]> candidateAppIds,
+                                 Predicate<int[]> libraryConsumer, List<String> unresolvedUserIds, GroupQueryPlan plan)
+            throws UserHasNoGamesException, SecretRetrievalException {
+        if (!userLibraryLookupProperties.isConcurrent() || userIds.size() < 2) {
+            for (int i = 0; i < userIds.size(); i++) {
+                plan.lookedUp(source, 1);
+                Optional<int[]> usersOwnedGameIds = lookup.find(userIds.get(i), candidateAppIds.get());
+                if (usersOwnedGameIds.isEmpty()) {
+                    unresolvedUserIds.add(userIds.get(i));
+                } else if (!libraryConsumer.test(usersOwnedGameIds.get())) {
+                    log.debug("No further libraries are needed, skipping the remaining users");
+                    plan.avoided(source, userIds.size() - i - 1);
+                    return;
+                }
+            }
+            return;
+        }
+        CompletionService<LookupResult> completionService = new ExecutorCompletionService<>(userLibraryLookupExecutor);
+        List<Future<LookupResult>> lookups = new ArrayList<>();
+        int[] submittedCandidateAppIds = candidateAppIds.get();
+        try {
+            for (String userId : userIds) {
+                lookups.add(completionService.submit(() -> new LookupResult(userId, lookup.find(userId, submittedCandidateAppIds).orElse(null))));
+            }
+            plan.lookedUp(source, lookups.size());
+            for (int i = 0; i < lookups.size(); i++) {
+                LookupResult result = awaitLookup(completionService.take());
+                if (result.getOwnedGameIds() == null) {
+                    unresolvedUserIds.add(result.getUserId());
+                } else if (!libraryConsumer.test(result.getOwnedGameIds())) {
+                    log.debug("No further libraries are needed, cancelling [{}] outstanding lookups", lookups.size() - i - 1);
+                    plan.avoided(source, lookups.size() - i - 1);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for users' libraries to be retrieved", e);
+        } finally {
+            lookups.forEach(submitted -> submitted.cancel(true));
+        }
     }
 
     /**
-     * Parses the Steam GetOwnedGamesResponse into a collection of game id's
+     * Retrieves the result of a completed library lookup, rethrowing any exception thrown during the lookup
      *
-     * @param response the Steam GetOwnedGameResponse
-     * @return a collection of strings representing ids of Steam games
+     * @param lookup the completed lookup
+     * @param <T>    the type of the result of the lookup
+     * @return the result of the lookup
+     * @throws UserHasNoGamesException  if the user does not own any games
+     * @throws SecretRetrievalException if an error occurs attempting to retrieve the Steam API key secret from AWS
+     *                                  secrets manager
+     * @throws InterruptedException if the thread is interrupted while waiting for the lookup
      */
-    private Set<String> parseGameIdsFromResponse(GetOwnedGamesResponse.Response response) {
-        return response.getGames()
-                .stream()
-                .map(Game::getAppid)
-                .collect(Collectors.toSet());
+    private <T> T awaitLookup(Future<T> lookup) throws UserHasNoGamesException, SecretRetrievalException, InterruptedException {
+        try {
+            return lookup.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UserHasNoGamesException) {
+                throw (UserHasNoGamesException) cause;
+            }
+            if (cause instanceof SecretRetrievalException) {
+                throw (SecretRetrievalException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Unexpected error while retrieving a user's library", cause);
+        }
     }
 
     /**
@@ -123,4 +381,112 @@ public class UserService {
     }
 
 
+    /**
+     * Represents a source a user's library can be looked up from, cheapest first
+     */
+    private enum LibrarySource {
+        MEMORY, DATABASE, STEAM;
+
+        private String getTagValue() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Represents a lookup of a user's library from a single source
+     */
+    @FunctionalInterface
+    private interface LibraryLookup {
+        /**
+         * @param userId          the Steam id of the user
+         * @param candidateAppIds the sorted appids the user's library is intersected with, or null if no library has
+         *                        been seen yet
+         * @return the sorted appids of the games owned by the user, of which only those among the candidates are
+         * required, or empty if the source does not hold the library
+         */
+        Optional<int[]> find(String userId, int[] candidateAppIds) throws UserHasNoGamesException, SecretRetrievalException;
+    }
+
+    /**
+     * Represents the library of a user looked up from a single source, with null owned game ids if the source does not
+     * hold the library
+     */
+    @Value
+    private static class LookupResult {
+        String userId;
+        int[] ownedGameIds;
+    }
+
+    /**
+     * Represents the running intersection of the libraries of a group of users. The intersection is never larger than
+     * the smallest library seen so far, so each step walks at most that many ids.
+     */
+    private static class Intersection {
+        private int[] gameIds;
+
+        /**
+         * @param gameIds the intersection of the libraries seen so far, or null if no library has been seen yet
+         */
+        private Intersection(int[] gameIds) {
+            this.gameIds = gameIds;
+        }
+
+        /**
+         * @return the sorted appids of the games owned by every user seen so far, or null if no library has been seen yet
+         */
+        private int[] getGameIds() {
+            return gameIds;
+        }
+
+        /**
+         * Narrows the intersection down to the games also owned by the given user
+         *
+         * @param usersOwnedGameIds the sorted appids of the games owned by the next user
+         * @return true if games remain in common, otherwise false as no further library can change the outcome
+         */
+        private boolean add(int[] usersOwnedGameIds) {
+            gameIds = gameIds == null ? usersOwnedGameIds : AppIds.intersect(gameIds, usersOwnedGameIds);
+            return gameIds.length > 0;
+        }
+
+        private boolean isEmpty() {
+            return gameIds != null && gameIds.length == 0;
+        }
+    }
+
+    /**
+     * Represents the decisions made resolving the libraries of a group of users, the number of lookups made and the
+     * number avoided from each source because the users had no games in common
+     */
+    @ToString
+    private static class GroupQueryPlan {
+        private final Map<LibrarySource, Integer> lookups = new EnumMap<>(LibrarySource.class);
+        private final Map<LibrarySource, Integer> avoided = new EnumMap<>(LibrarySource.class);
+
+        private void lookedUp(LibrarySource source, int count) {
+            lookups.merge(source, count, Integer::sum);
+        }
+
+        private void avoided(LibrarySource source, int count) {
+            if (count > 0) {
+                avoided.merge(source, count, Integer::sum);
+            }
+        }
+
+        /**
+         * Adds the lookups made and avoided by this query to the running totals of every query
+         */
+        private void record(MeterRegistry meterRegistry) {
+            lookups.forEach((source, count) -> Counter.builder(LIBRARY_LOOKUPS_METRIC_NAME)
+                    .description("The number of user library lookups made by common games and minimum owners queries")
+                    .tag(SOURCE_TAG, source.getTagValue())
+                    .register(meterRegistry)
+                    .increment(count));
+            avoided.forEach((source, count) -> Counter.builder(LIBRARY_LOOKUPS_AVOIDED_METRIC_NAME)
+                    .description("The number of user library lookups skipped or cancelled by common games queries once the users had no games in common")
+                    .tag(SOURCE_TAG, source.getTagValue())
+                    .register(meterRegistry)
+                    .increment(count));
+        }
+    }
 }
@@ -0,0 +1,279 @@
+package com.sggc.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Utility class for working with game appids held as sorted arrays of distinct ints, so that libraries can be stored
+ * and intersected without hashing or boxing each id. Arrays passed to and returned from this class are never modified.
+ */
+public class AppIds {
+
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * The ratio of array lengths past which an intersection gallops through the larger array rather than merging
+     */
+    private static final int GALLOP_RATIO = 32;
+
+    private AppIds() {
+    }
+
+    /**
+     * Parses a collection of appids in decimal
+     *
+     * @param appIds the appids in decimal
+     * @return the sorted, distinct appids
+     * @throws IllegalArgumentException if any appid is not an integer
+     */
+    public static int[] parse(Collection<String> appIds) {
+        int[] parsed = new int[appIds.size()];
+        int i = 0;
+        for (String appId : appIds) {
+            try {
+                parsed[i++] = Integer.parseInt(appId);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Appid [" + appId + "] is not an integer", e);
+            }
+        }
+        return sortedDistinct(parsed);
+    }
+
+    /**
+     * Converts sorted appids to a collection of appids in decimal
+     *
+     * @param appIds the appids
+     * @return the appids in decimal
+     */
+    public static Set<String> toStrings(int[] appIds) {
+        Set<String> strings = new HashSet<>((int) (appIds.length / 0.75f) + 1);
+        for (int appId : appIds) {
+            strings.add(String.valueOf(appId));
+        }
+        return strings;
+    }
+
+    /**
+     * Returns the given appids sorted with duplicates removed, without copying them if they already are
+     *
+     * @param appIds the appids in any order
+     * @return the sorted, distinct appids
+     */
+    public static int[] sortedDistinct(int[] appIds) {
+        if (isSortedDistinct(appIds)) {
+            return appIds;
+        }
+        int[] sorted = appIds.clone();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[distinct - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+    }
+
+    /**
+     * Intersects any number of libraries, smallest first, so that each step walks no more ids than the smallest
+     * library holds and the intersection can stop as soon as it is empty
+     *
+     * @param libraries the sorted, distinct appids of each library
+     * @return the sorted appids present in every library, empty if there are no libraries
+     */
+    public static int[] intersectAll(Collection<int[]> libraries) {
+        if (libraries.isEmpty()) {
+            return EMPTY;
+        }
+        List<int[]> smallestFirst = new ArrayList<>(libraries);
+        smallestFirst.sort(Comparator.comparingInt(library -> library.length));
+        int[] intersection = smallestFirst.get(0);
+        for (int i = 1; i < smallestFirst.size() && intersection.length > 0; i++) {
+            intersection = intersect(intersection, smallestFirst.get(i));
+        }
+        return intersection;
+    }
+
+    /**
+     * Intersects two libraries, walking the smaller library and either merging it with the larger one or, when the
+     * larger one is many times the size, galloping through the larger one to find each id
+     *
+     * @param first  the sorted, distinct appids of a library
+     * @param second the sorted, distinct appids of another library
+     * @return the sorted appids present in both libraries
+     */
+    public static int[] intersect(int[] first, int[] second) {
+        int[] smaller = first.length <= second.length ? first : second;
+        int[] larger = smaller == first ? second : first;
+        if (smaller.length == 0) {
+            return EMPTY;
+        }
+        int[] intersection = new int[smaller.length];
+        int size = larger.length / smaller.length >= GALLOP_RATIO
+                ? gallop(smaller, larger, intersection)
+                : merge(smaller, larger, intersection);
+        return size == intersection.length ? intersection : Arrays.copyOf(intersection, size);
+    }
+
+    /**
+     * Counts how many libraries own each game owned by at least a minimum number of the libraries. A game owned by at
+     * least k of n libraries must be owned by at least one of the n - k + 1 smallest, so only their union is counted
+     * against the remaining libraries, and a game is dropped as soon as the libraries left to count could no longer
+     * bring it up to the minimum. When every library must own a game this does the same work as {@link #intersectAll}.
+     *
+     * @param libraries     the sorted, distinct appids of each library
+     * @param minimumOwners the minimum number of libraries which must own a game for it to be counted
+     * @return the sorted appids of the games owned by at least the minimum number of libraries, with how many own each
+     */
+    public static OwnerCounts countOwners(Collection<int[]> libraries, int minimumOwners) {
+        int required = Math.max(1, minimumOwners);
+        if (required > libraries.size()) {
+            return new OwnerCounts(EMPTY, EMPTY);
+        }
+        List<int[]> smallestFirst = new ArrayList<>(libraries);
+        smallestFirst.sort(Comparator.comparingInt(library -> library.length));
+        int candidateLibraries = smallestFirst.size() - required + 1;
+        OwnerCounts counts = new OwnerCounts(smallestFirst.get(0), ones(smallestFirst.get(0).length));
+        for (int i = 1; i < candidateLibraries; i++) {
+            counts = union(counts, smallestFirst.get(i));
+        }
+        for (int i = candidateLibraries; i < smallestFirst.size() && counts.size() > 0; i++) {
+            int librariesLeft = smallestFirst.size() - i - 1;
+            counts = countIn(counts, smallestFirst.get(i), required - librariesLeft);
+        }
+        return counts;
+    }
+
+    /**
+     * Adds a library to the counts, adding any game not yet counted
+     */
+    private static OwnerCounts union(OwnerCounts counts, int[] library) {
+        int[] appIds = counts.getAppIds();
+        int[] owners = counts.getOwners();
+        int[] unionAppIds = new int[appIds.length + library.length];
+        int[] unionOwners = new int[unionAppIds.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < appIds.length || j < library.length) {
+            if (j == library.length || (i < appIds.length && appIds[i] < library[j])) {
+                unionAppIds[size] = appIds[i];
+                unionOwners[size++] = owners[i++];
+            } else if (i == appIds.length || appIds[i] > library[j]) {
+                unionAppIds[size] = library[j++];
+                unionOwners[size++] = 1;
+            } else {
+                unionAppIds[size] = appIds[i];
+                unionOwners[size++] = owners[i++] + 1;
+                j++;
+            }
+        }
+        return new OwnerCounts(Arrays.copyOf(unionAppIds, size), Arrays.copyOf(unionOwners, size));
+    }
+
+    /**
+     * Counts the games already counted which a library also owns, without adding the library's other games, keeping
+     * only games owned by at least the given number of libraries once this one is counted
+     */
+    private static OwnerCounts countIn(OwnerCounts counts, int[] library, int minimumOwners) {
+        int[] appIds = counts.getAppIds();
+        int[] owners = counts.getOwners();
+        int[] keptAppIds = new int[appIds.length];
+        int[] keptOwners = new int[appIds.length];
+        int size = 0;
+        int position = 0;
+        for (int i = 0; i < appIds.length; i++) {
+            position = seek(library, position, appIds[i]);
+            int owned = position < library.length && library[position] == appIds[i] ? 1 : 0;
+            if (owners[i] + owned >= minimumOwners) {
+                keptAppIds[size] = appIds[i];
+                keptOwners[size++] = owners[i] + owned;
+            }
+        }
+        return new OwnerCounts(Arrays.copyOf(keptAppIds, size), Arrays.copyOf(keptOwners, size));
+    }
+
+    /**
+     * Finds the position of the first appid at or after a position which is not less than the given appid, doubling
+     * the step until it is passed then binary searching the last step
+     */
+    private static int seek(int[] library, int from, int appId) {
+        int low = from;
+        int high = from;
+        int step = 1;
+        while (high < library.length && library[high] < appId) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        int found = Arrays.binarySearch(library, low, Math.min(high + 1, library.length), appId);
+        return found >= 0 ? found : -found - 1;
+    }
+
+    private static int[] ones(int length) {
+        int[] ones = new int[length];
+        Arrays.fill(ones, 1);
+        return ones;
+    }
+
+    private static int merge(int[] smaller, int[] larger, int[] intersection) {
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < smaller.length && j < larger.length) {
+            if (smaller[i] < larger[j]) {
+                i++;
+            } else if (smaller[i] > larger[j]) {
+                j++;
+            } else {
+                intersection[size++] = smaller[i];
+                i++;
+                j++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Finds each id of the smaller array in the larger array by doubling the step from the last match until the id is
+     * passed, then binary searching the last step
+     */
+    private static int gallop(int[] smaller, int[] larger, int[] intersection) {
+        int size = 0;
+        int low = 0;
+        for (int appId : smaller) {
+            int step = 1;
+            int high = low;
+            while (high < larger.length && larger[high] < appId) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int found = Arrays.binarySearch(larger, low, Math.min(high + 1, larger.length), appId);
+            if (found >= 0) {
+                intersection[size++] = appId;
+                low = found + 1;
+            } else {
+                low = -found - 1;
+            }
+            if (low >= larger.length) {
+                break;
+            }
+        }
+        return size;
+    }
+
+    private static boolean isSortedDistinct(int[] appIds) {
+        for (int i = 1; i < appIds.length; i++) {
+            if (appIds[i] <= appIds[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,94 @@
+package com.sggc.util;
+
+import java.util.Arrays;
+
+/**
+ * Utility class for encoding the ids of the games owned by a user in a compact binary form for storage in DynamoDB.
+ * <p/>
+ * The ids are sorted and each is stored as the difference from the previous id as an unsigned LEB128 varint, preceded
+ * by a format version and the number of ids. As a library's appids are dense, most differences fit in one or two bytes,
+ * where the same id stored as a decimal string takes up to seven.
+ */
+public class OwnedGameIdsCodec {
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final int MAX_VARINT_BYTES = 5;
+
+    private OwnedGameIdsCodec() {
+    }
+
+    /**
+     * Encodes the appids of the games owned by a user
+     *
+     * @param appIds the appids of the games, each non-negative
+     * @return the encoded appids
+     * @throws IllegalArgumentException if any appid is negative
+     */
+    public static byte[] encode(int[] appIds) {
+        return encodeSorted(AppIds.sortedDistinct(appIds));
+    }
+
+    /**
+     * Decodes the appids of the games owned by a user encoded by {@link #encode(int[])}
+     *
+     * @param encoded the encoded appids
+     * @return the sorted, distinct appids of the games
+     * @throws IllegalArgumentException if the appids are not encoded in a known format
+     */
+    public static int[] decode(byte[] encoded) {
+        if (encoded.length == 0 || encoded[0] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Owned game ids are not encoded in a known format");
+        }
+        int[] position = {1};
+        int count = readVarint(encoded, position);
+        if (count > encoded.length - position[0]) {
+            throw new IllegalArgumentException("Owned game ids are truncated");
+        }
+        int[] appIds = new int[count];
+        int previous = 0;
+        for (int i = 0; i < appIds.length; i++) {
+            previous += readVarint(encoded, position);
+            appIds[i] = previous;
+        }
+        return appIds;
+    }
+
+    private static byte[] encodeSorted(int[] appIds) {
+        if (appIds.length > 0 && appIds[0] < 0) {
+            throw new IllegalArgumentException("Appid [" + appIds[0] + "] is negative");
+        }
+        byte[] encoded = new byte[1 + MAX_VARINT_BYTES * (appIds.length + 1)];
+        encoded[0] = FORMAT_VERSION;
+        int position = writeVarint(encoded, 1, appIds.length);
+        int previous = 0;
+        for (int appId : appIds) {
+            position = writeVarint(encoded, position, appId - previous);
+            previous = appId;
+        }
+        return Arrays.copyOf(encoded, position);
+    }
+
+    private static int writeVarint(byte[] buffer, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    private static int readVarint(byte[] buffer, int[] position) {
+        int value = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT_BYTES; shift += 7) {
+            if (position[0] >= buffer.length) {
+                throw new IllegalArgumentException("Owned game ids are truncated");
+            }
+            byte b = buffer[position[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Owned game ids contain a malformed varint");
+    }
+}
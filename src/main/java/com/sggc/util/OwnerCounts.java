@@ -0,0 +1,16 @@
+package com.sggc.util;
+
+import lombok.Value;
+
+/**
+ * Represents a collection of games with the number of libraries owning each, as parallel arrays sorted by appid
+ */
+@Value
+public class OwnerCounts {
+    int[] appIds;
+    int[] owners;
+
+    public int size() {
+        return appIds.length;
+    }
+}
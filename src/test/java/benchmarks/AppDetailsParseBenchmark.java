@@ -0,0 +1,109 @@
+package benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sggc.infrastructure.AppDetailsParser;
+import com.sggc.models.GameData;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares parsing the example appdetails responses by building a JSON tree, re-serializing the 'data' object and
+ * deserializing it again with Gson (the previous approach) against the single-pass {@link AppDetailsParser}, and
+ * against parsing the same responses as returned when filtered to only their categories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppDetailsParseBenchmark {
+
+    private List<String> responseBodies;
+    private List<String> filteredResponseBodies;
+    private int next;
+
+    @Setup
+    public void setup() {
+        responseBodies = SteamStubServer.readResponseBodies(SteamStubServer.GET_APP_DETAILS_STUBS_PATH);
+        filteredResponseBodies = new ArrayList<>();
+        for (String responseBody : responseBodies) {
+            filteredResponseBodies.add(filterToCategories(responseBody));
+        }
+        System.out.printf("Mean appdetails response size: full=%d bytes, filtered=%d bytes%n",
+                meanSizeInBytes(responseBodies), meanSizeInBytes(filteredResponseBodies));
+    }
+
+    @Benchmark
+    public GameData treeAndRebind() {
+        JsonObject rootObject = JsonParser.parseString(nextResponseBody()).getAsJsonObject();
+        rootObject = rootObject.getAsJsonObject(rootObject.keySet().iterator().next());
+        JsonElement categories = rootObject.getAsJsonObject("data").get("categories");
+        if (!Boolean.parseBoolean(rootObject.get("success").toString()) || categories == null) {
+            throw new IllegalStateException("The example responses are expected to be successful and contain categories");
+        }
+        return new Gson().fromJson(rootObject.getAsJsonObject("data").toString(), GameData.class);
+    }
+
+    @Benchmark
+    public GameData streaming() throws IOException {
+        return AppDetailsParser.parse(new StringReader(nextResponseBody()));
+    }
+
+    @Benchmark
+    public GameData streamingFiltered() throws IOException {
+        next = (next + 1) % filteredResponseBodies.size();
+        return AppDetailsParser.parse(new StringReader(filteredResponseBodies.get(next)));
+    }
+
+    private String nextResponseBody() {
+        next = (next + 1) % responseBodies.size();
+        return responseBodies.get(next);
+    }
+
+    /**
+     * Reduces an appdetails response to what the endpoint returns when called with 'filters=categories'
+     */
+    private static String filterToCategories(String responseBody) {
+        JsonObject rootObject = JsonParser.parseString(responseBody).getAsJsonObject();
+        String appId = rootObject.keySet().iterator().next();
+        JsonObject appObject = rootObject.getAsJsonObject(appId);
+
+        JsonObject filteredData = new JsonObject();
+        filteredData.add("categories", appObject.getAsJsonObject("data").get("categories"));
+        JsonObject filteredAppObject = new JsonObject();
+        filteredAppObject.add("success", appObject.get("success"));
+        filteredAppObject.add("data", filteredData);
+        JsonObject filteredRootObject = new JsonObject();
+        filteredRootObject.add(appId, filteredAppObject);
+        return filteredRootObject.toString();
+    }
+
+    private static long meanSizeInBytes(List<String> bodies) {
+        long totalSize = 0;
+        for (String body : bodies) {
+            totalSize += body.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return totalSize / bodies.size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AppDetailsParseBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
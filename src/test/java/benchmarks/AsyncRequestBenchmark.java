@@ -0,0 +1,141 @@
+package benchmarks;
+
+import com.sggc.config.EnrichmentProperties;
+import com.sggc.config.ExecutorConfig;
+import com.sggc.config.GameCatalogProperties;
+import com.sggc.config.GameLookupProperties;
+import com.sggc.config.RequestHandlingProperties;
+import com.sggc.config.UserLibraryLookupProperties;
+import com.sggc.controllers.SggcController;
+import com.sggc.models.sggc.SggcResponse;
+import com.sggc.models.steam.request.GetCommonGamesRequest;
+import com.sggc.services.GameService;
+import com.sggc.services.UserService;
+import com.sggc.services.VanityUrlService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Compares the throughput of {@link SggcController} under a mixed load of hot requests, whose users' libraries are
+ * cached, and cold requests, whose libraries must first be requested from Steam, when each request holds a servlet
+ * thread until it completes against when its stages run on the request executor configured within
+ * {@link ExecutorConfig}.
+ * <p/>
+ * Both modes are given the same {@value #TOTAL_THREADS} threads, so the comparison measures how requests are scheduled
+ * rather than how many threads serve them. When blocking, a fixed pool of {@value #TOTAL_THREADS} threads stands in for
+ * Tomcat's workers. When asynchronous, half of them are servlet threads, finding the common games of hot requests from the
+ * cache, and half are request executor workers, resolving cold requests and looking up the games of every request. The services are stubbed, a cold library lookup sleeping for {@value #COLD_LIBRARY_LOOKUP_MILLIS}ms in place of the Steam
+ * request. Throughput is reported per request type in operations per second, the sample time mode reports their
+ * latency.
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class AsyncRequestBenchmark {
+
+    private static final int TOTAL_THREADS = 16;
+    private static final long COLD_LIBRARY_LOOKUP_MILLIS = 100;
+    private static final Set<String> HOT_STEAM_IDS = Set.of("HotSteamId1", "HotSteamId2");
+    private static final Set<String> COLD_STEAM_IDS = Set.of("ColdSteamId1", "ColdSteamId2");
+    private static final Set<String> COMMON_GAME_IDS = Set.of("10", "20", "30");
+
+    @Param({"blocking", "async"})
+    public String handling;
+
+    private ExecutorService servletExecutor;
+    private ThreadPoolTaskExecutor requestExecutor;
+    private SggcController sggcController;
+    private GetCommonGamesRequest hotRequest;
+    private GetCommonGamesRequest coldRequest;
+
+    @Setup
+    public void setup() throws Exception {
+        VanityUrlService vanityUrlService = mock(VanityUrlService.class, withSettings().stubOnly());
+        when(vanityUrlService.validateSteamIdsAndVanityUrls(any())).thenReturn(List.of());
+        when(vanityUrlService.resolveVanityUrls(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        UserService userService = mock(UserService.class, withSettings().stubOnly());
+        when(userService.areLibrariesCached(any())).thenAnswer(invocation -> HOT_STEAM_IDS.equals(invocation.getArgument(0)));
+        when(userService.getIdsOfGamesOwnedByAllUsers(any())).thenAnswer(invocation -> {
+            if (COLD_STEAM_IDS.equals(invocation.getArgument(0))) {
+                Thread.sleep(COLD_LIBRARY_LOOKUP_MILLIS);
+            }
+            return COMMON_GAME_IDS;
+        });
+        GameService gameService = mock(GameService.class, withSettings().stubOnly());
+        when(gameService.findGamesById(any(), anyBoolean(), any())).thenReturn(Set.of());
+
+        RequestHandlingProperties requestHandlingProperties = new RequestHandlingProperties();
+        Executor stageExecutor;
+        int servletThreads = TOTAL_THREADS;
+        if ("async".equals(handling)) {
+            servletThreads = TOTAL_THREADS / 2;
+            requestHandlingProperties.setWorkers(TOTAL_THREADS - servletThreads);
+            requestExecutor = new ExecutorConfig(new UserLibraryLookupProperties(), new GameLookupProperties(),
+                    new GameCatalogProperties(), new EnrichmentProperties(), requestHandlingProperties).requestExecutor();
+            requestExecutor.initialize();
+            stageExecutor = requestExecutor;
+        } else {
+            stageExecutor = Runnable::run;
+        }
+        sggcController = new SggcController(gameService, userService, vanityUrlService, requestHandlingProperties, stageExecutor);
+        servletExecutor = Executors.newFixedThreadPool(servletThreads);
+        hotRequest = new GetCommonGamesRequest();
+        hotRequest.setSteamIds(HOT_STEAM_IDS);
+        coldRequest = new GetCommonGamesRequest();
+        coldRequest.setSteamIds(COLD_STEAM_IDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        servletExecutor.shutdownNow();
+        if (requestExecutor != null) {
+            requestExecutor.shutdown();
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(24)
+    public ResponseEntity<SggcResponse> hotRequest() throws Exception {
+        return send(hotRequest);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(8)
+    public ResponseEntity<SggcResponse> coldRequest() throws Exception {
+        return send(coldRequest);
+    }
+
+    /**
+     * Sends a request to the controller on a servlet thread, waiting for its response once the servlet thread has
+     * returned
+     */
+    private ResponseEntity<SggcResponse> send(GetCommonGamesRequest request) throws Exception {
+        return servletExecutor.submit(() -> sggcController.getGamesAllUsersOwn(request)).get().join();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(AsyncRequestBenchmark.class.getSimpleName()).build()).run();
+    }
+}
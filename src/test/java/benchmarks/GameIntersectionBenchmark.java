@@ -0,0 +1,103 @@
+package benchmarks;
+
+import com.sggc.util.AppIds;
+import com.sggc.util.OwnerCounts;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares intersecting the libraries of a group of users held as sets of decimal appids with
+ * {@link Set#retainAll(java.util.Collection)} against intersecting them held as sorted int arrays with
+ * {@link AppIds#intersectAll(java.util.Collection)}, smallest library first. Counting the games owned by all users and by at
+ * least half of them with {@link AppIds#countOwners(java.util.Collection, int)} shows the cost of threshold queries
+ * against the plain intersection.
+ * <p/>
+ * Each group has one library of the given size, the rest vary between a tenth of it and the full size, and all
+ * libraries share a core of popular games. Run with the GC profiler (enabled by {@link #main(String[])}),
+ * gc.alloc.rate.norm reports the bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GameIntersectionBenchmark {
+
+    private static final int MAX_APP_ID = 3000000;
+    private static final int POPULAR_GAMES = 100;
+
+    @Param({"2", "8", "32"})
+    public int groupSize;
+
+    @Param({"200", "2000", "20000"})
+    public int librarySize;
+
+    private List<Set<String>> stringLibraries;
+    private List<int[]> intLibraries;
+
+    @Setup
+    public void setup() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] popularGames = random.ints(0, MAX_APP_ID).distinct().limit(POPULAR_GAMES).toArray();
+        stringLibraries = new ArrayList<>();
+        intLibraries = new ArrayList<>();
+        for (int i = 0; i < groupSize; i++) {
+            int size = i == 0 ? librarySize : random.nextInt(Math.max(1, librarySize / 10), librarySize + 1);
+            int[] library = random.ints(0, MAX_APP_ID)
+                    .distinct()
+                    .limit(Math.max(0, size - POPULAR_GAMES))
+                    .toArray();
+            int[] withPopularGames = new int[library.length + popularGames.length];
+            System.arraycopy(library, 0, withPopularGames, 0, library.length);
+            System.arraycopy(popularGames, 0, withPopularGames, library.length, popularGames.length);
+            intLibraries.add(AppIds.sortedDistinct(withPopularGames));
+            stringLibraries.add(AppIds.toStrings(intLibraries.get(i)));
+        }
+    }
+
+    @Benchmark
+    public Set<String> hashSetRetainAll() {
+        Set<String> combinedGameIds = null;
+        for (Set<String> library : stringLibraries) {
+            if (combinedGameIds == null) {
+                combinedGameIds = new HashSet<>(library);
+            } else {
+                combinedGameIds.retainAll(library);
+            }
+        }
+        return combinedGameIds;
+    }
+
+    @Benchmark
+    public int[] sortedIntArrays() {
+        return AppIds.intersectAll(intLibraries);
+    }
+
+    @Benchmark
+    public OwnerCounts countOwnersAllUsers() {
+        return AppIds.countOwners(intLibraries, groupSize);
+    }
+
+    @Benchmark
+    public OwnerCounts countOwnersHalfOfUsers() {
+        return AppIds.countOwners(intLibraries, Math.max(1, groupSize / 2));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(GameIntersectionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
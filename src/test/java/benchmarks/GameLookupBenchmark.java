@@ -0,0 +1,104 @@
+package benchmarks;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.sggc.config.GameLookupProperties;
+import com.sggc.config.GameMigrationProperties;
+import com.sggc.models.Game;
+import com.sggc.repositories.GameRepositoryCustomImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import util.clientfactories.LocalDynamoDbClientFactory;
+import util.containers.SggcDynamoDbLocalContainer;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.sggc.repositories.GameRepositoryCustomImpl.CALLS_METRIC_NAME;
+
+/**
+ * Compares the end-to-end latency of looking up the games common to a group of users in DynamoDB Local, once with a
+ * GetItem per app id and once with the batched lookup of {@link GameRepositoryCustomImpl}. The batched lookup's mean number of DynamoDB calls per lookup is printed once each
+ * trial ends, the per app id lookup always makes one call per app id.
+ * <p/>
+ * Requires Docker, DynamoDB Local is started from the local developer setup's Dockerfile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class GameLookupBenchmark {
+
+    @Param({"100", "1000"})
+    public int commonGames;
+
+    private SggcDynamoDbLocalContainer dynamoDbContainer;
+    private ExecutorService gameLookupExecutor;
+    private SimpleMeterRegistry meterRegistry;
+    private DynamoDBMapper dynamoDBMapper;
+    private GameRepositoryCustomImpl gameRepository;
+    private Set<String> appIds;
+
+    @Setup
+    public void setup() {
+        dynamoDbContainer = new SggcDynamoDbLocalContainer();
+        dynamoDbContainer.start();
+        AmazonDynamoDB amazonDynamoDB = new LocalDynamoDbClientFactory()
+                .createClient(dynamoDbContainer.getMappedPort(SggcDynamoDbLocalContainer.EXPOSED_PORT));
+        dynamoDBMapper = new DynamoDBMapper(amazonDynamoDB);
+
+        appIds = IntStream.range(0, commonGames).mapToObj(i -> String.valueOf(10 + i * 10)).collect(Collectors.toSet());
+        List<Game> games = appIds.stream().map(appId -> {
+            Game game = new Game();
+            game.setAppid(appId);
+            game.setName("Game " + appId);
+            game.setMultiplayer(true);
+            return game;
+        }).collect(Collectors.toList());
+        dynamoDBMapper.batchSave(games);
+
+        GameLookupProperties gameLookupProperties = new GameLookupProperties();
+        GameMigrationProperties gameMigrationProperties = new GameMigrationProperties();
+        gameMigrationProperties.setDualRead(false);
+        gameLookupExecutor = Executors.newFixedThreadPool(gameLookupProperties.getMaxThreads());
+        meterRegistry = new SimpleMeterRegistry();
+        gameRepository = new GameRepositoryCustomImpl(amazonDynamoDB, gameLookupProperties, gameMigrationProperties,
+                gameLookupExecutor, meterRegistry);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%nMean DynamoDB calls per batched lookup of %d games: %.1f%n", commonGames,
+                meterRegistry.get(CALLS_METRIC_NAME).summary().mean());
+        gameLookupExecutor.shutdown();
+        dynamoDbContainer.stop();
+    }
+
+    @Benchmark
+    public Set<Game> perAppIdLookup() {
+        return appIds.stream()
+                .map(appId -> dynamoDBMapper.load(Game.class, appId))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    @Benchmark
+    public Set<Game> batchedLookup() {
+        return gameRepository.findGamesByAppids(appIds);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(GameLookupBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,112 @@
+package benchmarks;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sggc.infrastructure.OwnedGameIdsParser;
+import com.sggc.models.Game;
+import com.sggc.models.steam.response.GetOwnedGamesResponse;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares extracting the ids of a user's owned games from a GetOwnedGames response by deserializing the whole
+ * response into {@link Game} objects against streaming only the appids with {@link OwnedGameIdsParser}, and against
+ * streaming the response to a request whose appids_filter limits it to a group's candidate common games.
+ * <p/>
+ * Before running the benchmark {@link #main(String[])} prints the size of the full and candidate filtered responses.
+ * <p/>
+ * Run with the GC profiler (enabled by {@link #main(String[])}), gc.alloc.rate.norm reports the bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OwnedGamesParseBenchmark {
+
+    private static final int[] LIBRARY_SIZES = {200, 5000, 20000};
+    private static final int FILTERED_CANDIDATES = 200;
+
+    @Param({"200", "5000", "20000"})
+    public int librarySize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private byte[] responseBody;
+    private byte[] filteredResponseBody;
+
+    @Setup
+    public void setup() {
+        responseBody = createResponseBody(librarySize).getBytes(StandardCharsets.UTF_8);
+        filteredResponseBody = createResponseBody(Math.min(librarySize, FILTERED_CANDIDATES)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Set<String> databind() throws IOException {
+        GetOwnedGamesResponse response = objectMapper.readValue(responseBody, GetOwnedGamesResponse.class);
+        return response.getResponse().getGames()
+                .stream()
+                .map(Game::getAppid)
+                .collect(Collectors.toSet());
+    }
+
+    @Benchmark
+    public int[] streaming() throws IOException {
+        return OwnedGameIdsParser.parse(new ByteArrayInputStream(responseBody));
+    }
+
+    @Benchmark
+    public int[] streamingCandidateFiltered() throws IOException {
+        return OwnedGameIdsParser.parse(new ByteArrayInputStream(filteredResponseBody));
+    }
+
+    /**
+     * Creates a GetOwnedGames response body resembling one returned by Steam for a library of the given size
+     */
+    private static String createResponseBody(int librarySize) {
+        StringBuilder body = new StringBuilder("{\"response\":{\"game_count\":").append(librarySize).append(",\"games\":[");
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < librarySize; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            int playtime = random.nextInt(10000);
+            body.append("{\"appid\":").append(10 + i * 10)
+                    .append(",\"playtime_forever\":").append(playtime)
+                    .append(",\"playtime_windows_forever\":").append(playtime)
+                    .append(",\"playtime_mac_forever\":0,\"playtime_linux_forever\":0")
+                    .append(",\"rtime_last_played\":").append(1500000000 + random.nextInt(100000000))
+                    .append('}');
+        }
+        return body.append("]}}").toString();
+    }
+
+    private static void printResponseSizes() {
+        System.out.printf("%-12s %14s %14s%n", "librarySize", "full bytes", "filtered bytes");
+        for (int librarySize : LIBRARY_SIZES) {
+            System.out.printf("%-12d %14d %14d%n", librarySize,
+                    createResponseBody(librarySize).getBytes(StandardCharsets.UTF_8).length,
+                    createResponseBody(Math.min(librarySize, FILTERED_CANDIDATES)).getBytes(StandardCharsets.UTF_8).length);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        printResponseSizes();
+        new Runner(new OptionsBuilder()
+                .include(OwnedGamesParseBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,115 @@
+package benchmarks;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.sggc.config.CachingProperties;
+import com.sggc.config.GameCatalogProperties;
+import com.sggc.config.ConfiguredCaffeineCacheManager;
+import com.sggc.config.RestConfig;
+import com.sggc.config.SteamHttpClientProperties;
+import com.sggc.config.SteamProperties;
+import com.sggc.config.SteamRateLimitProperties;
+import com.sggc.exceptions.SecretRetrievalException;
+import com.sggc.infrastructure.AwsSecretRetriever;
+import com.sggc.infrastructure.GameCatalog;
+import com.sggc.infrastructure.SteamRateLimiter;
+import com.sggc.infrastructure.SteamRequestCoalescer;
+import com.sggc.infrastructure.SteamRequestSender;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput and tail latency of the Steam requests made by {@link SteamRequestSender} when backed by the
+ * default, unpooled {@link RestTemplate} against the pooled keep-alive client configured within {@link RestConfig}.
+ * Requests are served by an in-process WireMock server loaded with the example Steam stubs.
+ * <p/>
+ * Throughput is reported in operations per millisecond, the sample time mode reports the p99 latency of each request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(32)
+@Fork(1)
+public class SteamHttpClientBenchmark {
+
+    private static final String[] STUBBED_APP_IDS = {"3830", "4000", "6860", "1158850", "1880360"};
+    private static final String[] STUBBED_USER_IDS = {"DummySteamId1", "DummySteamId2"};
+
+    @Param({"simple", "pooled"})
+    public String transport;
+
+    private WireMockServer steamStubServer;
+    private CloseableHttpClient pooledHttpClient;
+    private SteamRequestSender steamRequestSender;
+
+    @Setup
+    public void setup() {
+        steamStubServer = SteamStubServer.start();
+        SteamProperties steamProperties = new SteamProperties(steamStubServer.baseUrl(), steamStubServer.baseUrl(), null, 200);
+
+        RestTemplate restTemplate;
+        if ("pooled".equals(transport)) {
+            RestConfig restConfig = new RestConfig(new SteamHttpClientProperties(), steamProperties);
+            pooledHttpClient = restConfig.steamHttpClient(restConfig.steamConnectionManager());
+            restTemplate = restConfig.restTemplate(pooledHttpClient);
+        } else {
+            restTemplate = new RestTemplate();
+        }
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SteamRateLimitProperties rateLimitProperties = new SteamRateLimitProperties();
+        rateLimitProperties.setEnabled(false);
+        GameCatalogProperties gameCatalogProperties = new GameCatalogProperties();
+        gameCatalogProperties.setEnabled(false);
+        steamRequestSender = new SteamRequestSender(restTemplate, new StubbedSecretRetriever(), steamProperties,
+                new SteamRequestCoalescer(meterRegistry), new SteamRateLimiter(rateLimitProperties, meterRegistry),
+                new GameCatalog(null, null, gameCatalogProperties, Runnable::run, meterRegistry), meterRegistry);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (pooledHttpClient != null) {
+            pooledHttpClient.close();
+        }
+        steamStubServer.stop();
+    }
+
+    @Benchmark
+    public Object requestAppDetails() throws IOException {
+        String appId = STUBBED_APP_IDS[ThreadLocalRandom.current().nextInt(STUBBED_APP_IDS.length)];
+        return steamRequestSender.requestAppDetailsFromSteamApi(appId);
+    }
+
+    @Benchmark
+    public Object requestOwnedGames() throws SecretRetrievalException {
+        String userId = STUBBED_USER_IDS[ThreadLocalRandom.current().nextInt(STUBBED_USER_IDS.length)];
+        return steamRequestSender.requestUsersOwnedGamesFromSteamApi(userId);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(SteamHttpClientBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * Returns the Steam API key the example stubs expect without contacting AWS Secrets Manager.
+     */
+    private static class StubbedSecretRetriever extends AwsSecretRetriever {
+        StubbedSecretRetriever() {
+            super(null, new ConfiguredCaffeineCacheManager(new CachingProperties(), new SimpleMeterRegistry(), "cacheManager"));
+        }
+
+        @Override
+        public String getSecretValue(String secretId) {
+            return SteamStubServer.STUBBED_STEAM_API_KEY;
+        }
+    }
+}
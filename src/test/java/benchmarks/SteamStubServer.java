@@ -0,0 +1,83 @@
+package benchmarks;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.stubbing.StubMapping;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Represents an in-process WireMock server preloaded with the example Steam stubs used for local development. To be
+ * used by benchmarks so that they exercise realistic Steam payloads without any network dependencies.
+ */
+public class SteamStubServer {
+
+    public static final String STEAM_STUB_EXAMPLES_PATH = "Local-Developer-Setup/Steam/Wiremock-Stub-Examples/";
+    public static final String GET_APP_DETAILS_STUBS_PATH = STEAM_STUB_EXAMPLES_PATH + "get-app-details/";
+    public static final String GET_OWNED_GAMES_STUBS_PATH = STEAM_STUB_EXAMPLES_PATH + "get-owned-games/";
+    public static final String STUBBED_STEAM_API_KEY = "DUMMY_STEAM_API_KEY";
+
+    private SteamStubServer() {
+    }
+
+    /**
+     * Starts a WireMock server on a free port with every example Steam stub registered.
+     *
+     * @return the started server
+     */
+    public static WireMockServer start() {
+        WireMockServer server = new WireMockServer(options().dynamicPort().containerThreads(64));
+        server.start();
+        try (Stream<Path> stubs = Files.walk(Paths.get(STEAM_STUB_EXAMPLES_PATH))) {
+            for (Path stub : stubs.filter(path -> path.toString().endsWith(".json")).collect(Collectors.toList())) {
+                server.addStubMapping(StubMapping.buildFrom(new String(Files.readAllBytes(stub), StandardCharsets.UTF_8)));
+            }
+        } catch (IOException e) {
+            server.stop();
+            throw new UncheckedIOException("Exception occurred when trying to load the example Steam stubs", e);
+        }
+        return server;
+    }
+
+    /**
+     * Reads the body the given example stub responds with.
+     *
+     * @param stubPath the path of the example stub
+     * @return the stub's response body
+     */
+    public static String readResponseBody(String stubPath) {
+        try {
+            String mappingJson = new String(Files.readAllBytes(Paths.get(stubPath)), StandardCharsets.UTF_8);
+            return StubMapping.buildFrom(mappingJson).getResponse().getBody();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Exception occurred when trying to read example Steam stub " + stubPath, e);
+        }
+    }
+
+    /**
+     * Reads the bodies of every example stub within the given directory.
+     *
+     * @param stubDirectory the directory containing the example stubs
+     * @return the response bodies of each stub
+     */
+    public static List<String> readResponseBodies(String stubDirectory) {
+        try (Stream<Path> stubs = Files.list(Paths.get(stubDirectory))) {
+            return stubs.map(Path::toString)
+                    .filter(path -> path.endsWith(".json"))
+                    .sorted()
+                    .map(SteamStubServer::readResponseBody)
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Exception occurred when trying to list example Steam stubs in " + stubDirectory, e);
+        }
+    }
+}
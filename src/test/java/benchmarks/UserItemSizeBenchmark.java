@@ -0,0 +1,139 @@
+package benchmarks;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.sggc.models.User;
+import com.sggc.util.AppIds;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a user whose owned game ids are stored as a string set against one whose ids are stored encoded
+ * in a single binary attribute.
+ * <p/>
+ * Before running the benchmark {@link #main(String[])} prints the size of each item and the read capacity units a
+ * strongly consistent read of it consumes, calculated as DynamoDB does (4 KB per read capacity unit, an eventually
+ * consistent read consumes half).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserItemSizeBenchmark {
+
+    private static final int[] LIBRARY_SIZES = {200, 2000, 10000, 30000};
+    private static final int READ_CAPACITY_UNIT_BYTES = 4096;
+    private static final DynamoDBMapperTableModel<User> TABLE_MODEL = new DynamoDBMapper((AmazonDynamoDB) Proxy.newProxyInstance(
+            AmazonDynamoDB.class.getClassLoader(), new Class<?>[]{AmazonDynamoDB.class}, (proxy, method, args) -> {
+                throw new UnsupportedOperationException();
+            })).getTableModel(User.class);
+
+    @Param({"200", "2000", "10000", "30000"})
+    public int librarySize;
+
+    private Map<String, AttributeValue> stringSetItem;
+    private Map<String, AttributeValue> encodedItem;
+
+    @Setup
+    public void setup() {
+        User user = createUser(librarySize);
+        stringSetItem = toStringSetItem(user);
+        encodedItem = TABLE_MODEL.convert(user);
+    }
+
+    @Benchmark
+    public User stringSet() {
+        return TABLE_MODEL.unconvert(stringSetItem);
+    }
+
+    @Benchmark
+    public User encoded() {
+        return TABLE_MODEL.unconvert(encodedItem);
+    }
+
+    /**
+     * Creates a user owning the given number of games, with appids spread over the range Steam assigns them from
+     */
+    private static User createUser(int librarySize) {
+        int[] ownedGameIds = ThreadLocalRandom.current().ints(1, 300000)
+                .distinct()
+                .limit(librarySize)
+                .map(appId -> appId * 10)
+                .toArray();
+        return new User("76561197960287930", ownedGameIds, 1700000000L);
+    }
+
+    /**
+     * Creates the item a user was persisted as before owned game ids were encoded
+     */
+    private static Map<String, AttributeValue> toStringSetItem(User user) {
+        Map<String, AttributeValue> item = new HashMap<>(TABLE_MODEL.convert(user));
+        item.remove(User.ENCODED_OWNED_GAME_IDS_ATTRIBUTE_NAME);
+        item.put(User.LEGACY_OWNED_GAME_IDS_ATTRIBUTE_NAME, new AttributeValue().withSS(AppIds.toStrings(user.getOwnedGameIds())));
+        return item;
+    }
+
+    /**
+     * Calculates the size of an item as DynamoDB does, the length of each attribute name plus the size of its value
+     */
+    private static int itemSize(Map<String, AttributeValue> item) {
+        int size = 0;
+        for (Map.Entry<String, AttributeValue> attribute : item.entrySet()) {
+            size += utf8Length(attribute.getKey());
+            AttributeValue value = attribute.getValue();
+            if (value.getS() != null) {
+                size += utf8Length(value.getS());
+            } else if (value.getN() != null) {
+                size += numberSize(value.getN());
+            } else if (value.getB() != null) {
+                size += value.getB().remaining();
+            } else if (value.getSS() != null) {
+                size += value.getSS().stream().mapToInt(UserItemSizeBenchmark::utf8Length).sum();
+            }
+        }
+        return size;
+    }
+
+    private static int utf8Length(String value) {
+        return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static int numberSize(String number) {
+        return (number.replaceAll("[^0-9]", "").length() + 1) / 2 + 1;
+    }
+
+    private static int readCapacityUnits(int itemSize) {
+        return (itemSize + READ_CAPACITY_UNIT_BYTES - 1) / READ_CAPACITY_UNIT_BYTES;
+    }
+
+    private static void printItemSizes() {
+        System.out.printf("%-12s %-10s %12s %12s%n", "librarySize", "encoding", "item bytes", "RCU/read");
+        for (int librarySize : LIBRARY_SIZES) {
+            User user = createUser(librarySize);
+            int stringSetSize = itemSize(toStringSetItem(user));
+            int encodedSize = itemSize(TABLE_MODEL.convert(user));
+            System.out.printf("%-12d %-10s %12d %12d%n", librarySize, "stringSet", stringSetSize, readCapacityUnits(stringSetSize));
+            System.out.printf("%-12d %-10s %12d %12d%n", librarySize, "encoded", encodedSize, readCapacityUnits(encodedSize));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        printItemSizes();
+        new Runner(new OptionsBuilder()
+                .include(UserItemSizeBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
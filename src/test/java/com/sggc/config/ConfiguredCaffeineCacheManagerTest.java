@@ -0,0 +1,82 @@
+package com.sggc.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConfiguredCaffeineCacheManagerTest {
+
+    private CachingProperties cachingProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private ConfiguredCaffeineCacheManager cacheManager;
+
+    @BeforeEach
+    void setup() {
+        cachingProperties = new CachingProperties();
+        cachingProperties.getCaches().put("someCache", new CachingProperties.CacheSpec(2L, null, Duration.ofMinutes(5), null));
+        meterRegistry = new SimpleMeterRegistry();
+        cacheManager = new ConfiguredCaffeineCacheManager(cachingProperties, meterRegistry, "cacheManager");
+    }
+
+    @Test
+    @DisplayName("Given a cache with a maximum size, when more entries than its maximum size are written, then entries are evicted")
+    void givenACacheWithAMaximumSizeWhenMoreEntriesThanItsMaximumSizeAreWrittenThenEntriesAreEvicted() {
+        Cache<Object, Object> nativeCache = nativeCache("someCache");
+        for (int i = 0; i < 10; i++) {
+            nativeCache.put(i, i);
+        }
+        nativeCache.cleanUp();
+
+        assertEquals(2, nativeCache.estimatedSize());
+        assertEquals(Duration.ofMinutes(5).toNanos(),
+                nativeCache.policy().expireAfterWrite().orElseThrow().getExpiresAfter().toNanos());
+    }
+
+    @Test
+    @DisplayName("Given a cache without its own specification, when the cache is created, then the default specification is used")
+    void givenACacheWithoutItsOwnSpecificationWhenTheCacheIsCreatedThenTheDefaultSpecificationIsUsed() {
+        Cache<Object, Object> nativeCache = nativeCache("someOtherCache");
+
+        assertEquals(cachingProperties.getDefaults().getMaximumSize(),
+                nativeCache.policy().eviction().orElseThrow().getMaximum());
+    }
+
+    @Test
+    @DisplayName("Given a cache which has been read from, when its metrics are retrieved, then its hits and misses are recorded")
+    void givenACacheWhichHasBeenReadFromWhenItsMetricsAreRetrievedThenItsHitsAndMissesAreRecorded() {
+        org.springframework.cache.Cache cache = cacheManager.getCache("someCache");
+        cache.get("someKey");
+        cache.put("someKey", "someValue");
+        cache.get("someKey");
+        cache.get("someKey");
+
+        assertEquals(2, meterRegistry.get("cache.gets").tags("cache", "someCache", "result", "hit",
+                "cacheManager", "cacheManager").functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tags("cache", "someCache", "result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Given a loading cache with a refresh after write, when the cache is registered, then its entries are refreshed after write")
+    void givenALoadingCacheWithARefreshAfterWriteWhenTheCacheIsRegisteredThenItsEntriesAreRefreshedAfterWrite() {
+        cachingProperties.getCaches().put("someLoadingCache",
+                new CachingProperties.CacheSpec(10L, null, Duration.ofHours(1), Duration.ofMinutes(10)));
+
+        Cache<Object, Object> nativeCache = cacheManager.registerLoadingCache("someLoadingCache", key -> key);
+
+        assertEquals(Duration.ofMinutes(10).toNanos(),
+                nativeCache.policy().refreshAfterWrite().orElseThrow().getExpiresAfter().toNanos());
+        assertSame(nativeCache, nativeCache("someLoadingCache"));
+    }
+
+    private Cache<Object, Object> nativeCache(String cacheName) {
+        return ((CaffeineCache) cacheManager.getCache(cacheName)).getNativeCache();
+    }
+}
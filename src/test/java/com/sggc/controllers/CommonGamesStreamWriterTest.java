@@ -0,0 +1,107 @@
+package com.sggc.controllers;
+
+import com.sggc.errors.ApiError;
+import com.sggc.models.sggc.CommonGamesStreamRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CommonGamesStreamWriterTest {
+
+    private static final CommonGamesStreamRecord GAME = CommonGamesStreamRecord.game("SomeGame");
+    private static final CommonGamesStreamRecord SUMMARY = CommonGamesStreamRecord.summary(new CommonGamesStreamRecord.Summary(1, 0));
+    private static final CommonGamesStreamRecord ERROR = CommonGamesStreamRecord.error(new ApiError("Exception", "Internal server error."));
+
+    @Mock
+    private ResponseBodyEmitter emitter;
+
+    private CommonGamesStreamWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        writer = new CommonGamesStreamWriter(emitter);
+    }
+
+    @Test
+    @DisplayName("Given records have been written, when the stream is ended, then the final record is written last and the stream is completed")
+    void givenRecordsHaveBeenWrittenWhenTheStreamIsEndedThenTheFinalRecordIsWrittenLastAndTheStreamIsCompleted() throws IOException {
+        assertTrue(writer.write(GAME));
+        writer.end(SUMMARY);
+
+        InOrder inOrder = inOrder(emitter);
+        inOrder.verify(emitter).send(GAME, MediaType.APPLICATION_JSON);
+        inOrder.verify(emitter).send("\n", MediaType.TEXT_PLAIN);
+        inOrder.verify(emitter).send(SUMMARY, MediaType.APPLICATION_JSON);
+        inOrder.verify(emitter).send("\n", MediaType.TEXT_PLAIN);
+        inOrder.verify(emitter).complete();
+    }
+
+    @Test
+    @DisplayName("Given the stream has ended, when the producer writes a record or the stream is ended again, then nothing more is written")
+    void givenTheStreamHasEndedWhenTheProducerWritesARecordOrTheStreamIsEndedAgainThenNothingMoreIsWritten() throws IOException {
+        writer.end(ERROR);
+
+        assertFalse(writer.write(GAME));
+        writer.end(SUMMARY);
+
+        verify(emitter).send(ERROR, MediaType.APPLICATION_JSON);
+        verify(emitter, never()).send(eq(GAME), any(MediaType.class));
+        verify(emitter, never()).send(eq(SUMMARY), any(MediaType.class));
+        verify(emitter).complete();
+    }
+
+    @Test
+    @DisplayName("Given the producer is blocked writing a record, when the stream is ended, then the ending thread returns at once and the producer writes the final record once its write returns")
+    void givenTheProducerIsBlockedWritingARecordWhenTheStreamIsEndedThenTheEndingThreadReturnsAtOnceAndTheProducerWritesTheFinalRecordOnceItsWriteReturns() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch clientReading = new CountDownLatch(1);
+        AtomicReference<Thread> finalRecordWriter = new AtomicReference<>();
+        doAnswer(invocation -> {
+            if (GAME.equals(invocation.getArgument(0))) {
+                writing.countDown();
+                clientReading.await();
+            } else if (ERROR.equals(invocation.getArgument(0))) {
+                finalRecordWriter.set(Thread.currentThread());
+            }
+            return null;
+        }).when(emitter).send(any(), any(MediaType.class));
+        AtomicReference<Thread> producer = new AtomicReference<>();
+        CompletableFuture<Boolean> write = CompletableFuture.supplyAsync(() -> {
+            producer.set(Thread.currentThread());
+            try {
+                return writer.write(GAME);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        writer.end(ERROR);
+
+        verify(emitter, never()).send(ERROR, MediaType.APPLICATION_JSON);
+        verify(emitter, never()).complete();
+        clientReading.countDown();
+        assertTrue(write.get(5, TimeUnit.SECONDS));
+        assertSame(producer.get(), finalRecordWriter.get());
+        verify(emitter).complete();
+        assertFalse(writer.write(GAME));
+    }
+}
@@ -1,10 +1,14 @@
 package com.sggc.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sggc.config.ExecutorConfig;
+import com.sggc.config.RequestHandlingProperties;
 import com.sggc.errors.ApiError;
 import com.sggc.exceptions.TooFewSteamIdsException;
 import com.sggc.exceptions.UserHasNoGamesException;
 import com.sggc.exceptions.VanityUrlResolutionException;
+import com.sggc.models.Game;
+import com.sggc.models.sggc.CommonGamesStreamRecord;
 import com.sggc.models.sggc.SggcResponse;
 import com.sggc.models.steam.request.GetCommonGamesRequest;
 import com.sggc.services.GameService;
@@ -15,9 +19,14 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import util.constants.SggcVanityUrlValidationErrorMessageConstants;
 
@@ -25,13 +34,25 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static util.util.TestUtils.createExampleGame;
 
 @WebMvcTest(controllers = SggcController.class)
+@Import({RequestHandlingProperties.class, SggcControllerIT.RequestHandlingTestConfig.class})
 public class SggcControllerIT {
 
     public static final String SGGC_CONTROLLER_URI = "/api/sggc/";
@@ -92,9 +113,7 @@ public class SggcControllerIT {
         );
         SggcResponse expectedResponse = new SggcResponse(false, error);
 
-        mockMvc.perform(post(SGGC_CONTROLLER_URI)
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(mapper.writeValueAsString(sggcRequest)))
+        performAsync(sggcRequest)
                 .andExpect(status().isBadRequest())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.content().json(mapper.writeValueAsString(expectedResponse), false));
@@ -122,9 +141,7 @@ public class SggcControllerIT {
         );
         SggcResponse expectedResponse = new SggcResponse(false, error);
 
-        mockMvc.perform(post(SGGC_CONTROLLER_URI)
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(mapper.writeValueAsString(sggcRequest)))
+        performAsync(sggcRequest)
                 .andExpect(status().isNotFound())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.content().json(mapper.writeValueAsString(expectedResponse), false));
@@ -153,9 +170,7 @@ public class SggcControllerIT {
         );
         SggcResponse expectedResponse = new SggcResponse(false, error);
 
-        mockMvc.perform(post(SGGC_CONTROLLER_URI)
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(mapper.writeValueAsString(sggcRequest)))
+        performAsync(sggcRequest)
                 .andExpect(status().isNotFound())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.content().json(mapper.writeValueAsString(expectedResponse), false));
@@ -186,9 +201,7 @@ public class SggcControllerIT {
         );
         SggcResponse expectedResponse = new SggcResponse(false, error);
 
-        mockMvc.perform(post(SGGC_CONTROLLER_URI)
-                        .contentType(MediaType.APPLICATION_JSON)
-                        .content(mapper.writeValueAsString(sggcRequest)))
+        performAsync(sggcRequest)
                 .andExpect(status().isBadRequest())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.content().json(mapper.writeValueAsString(expectedResponse), false));
@@ -218,4 +231,99 @@ public class SggcControllerIT {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.content().json(mapper.writeValueAsString(expectedResponse), false));
     }
+
+    @Test
+    @DisplayName("Given a request for a stream of common games, when the games are found, then each game will be sent as a line of JSON followed by a summary.")
+    public void givenARequestForAStreamOfCommonGamesWhenTheGamesAreFoundThenEachGameWillBeSentAsALineOfJsonFollowedByASummary() throws Exception {
+        GetCommonGamesRequest sggcRequest = new GetCommonGamesRequest();
+        sggcRequest.setMultiplayerOnly(true);
+        String mockSteamId1 = "someSteamId1";
+        String mockSteamId2 = "someSteamId2";
+        sggcRequest.setSteamIds(Set.of(mockSteamId1,mockSteamId2));
+
+        when(vanityUrlService.validateSteamIdsAndVanityUrls(Set.of(mockSteamId1,mockSteamId2))).thenReturn(new ArrayList<>());
+        when(vanityUrlService.resolveVanityUrls(Set.of(mockSteamId1,mockSteamId2))).thenReturn(Set.of(mockSteamId1,mockSteamId2));
+        when(userService.getIdsOfGamesOwnedByAllUsers(Set.of(mockSteamId1,mockSteamId2))).thenReturn(Set.of("10", "20"));
+        Game game10 = createExampleGame("10", true, "Some game name");
+        Game game20 = createExampleGame("20", null, "Some other game name");
+        game20.setEnrichmentPending(true);
+        doAnswer(invocation -> {
+            Consumer<Game> gameConsumer = invocation.getArgument(3);
+            gameConsumer.accept(game10);
+            gameConsumer.accept(game20);
+            return null;
+        }).when(gameService).streamGamesById(eq(Set.of("10", "20")), eq(true), eq(Set.of()), any());
+
+        String expectedBody = mapper.writeValueAsString(CommonGamesStreamRecord.game(game10)) + "\n"
+                + mapper.writeValueAsString(CommonGamesStreamRecord.game(game20)) + "\n"
+                + mapper.writeValueAsString(CommonGamesStreamRecord.summary(new CommonGamesStreamRecord.Summary(2, 1))) + "\n";
+
+        performStream(sggcRequest)
+                .andExpect(status().isOk())
+                .andExpect(content().string(expectedBody));
+    }
+
+    @Test
+    @DisplayName("Given a request for a stream of common games, when a user is found to own no games, then the stream will end with an appropriate error.")
+    public void givenARequestForAStreamOfCommonGamesWhenAUserIsFoundToOwnNoGamesThenTheStreamWillEndWithAnAppropriateError() throws Exception {
+        GetCommonGamesRequest sggcRequest = new GetCommonGamesRequest();
+        String mockSteamId1 = "someSteamId1";
+        String mockSteamId2 = "someSteamId2";
+        sggcRequest.setSteamIds(Set.of(mockSteamId1,mockSteamId2));
+
+        when(vanityUrlService.validateSteamIdsAndVanityUrls(Set.of(mockSteamId1,mockSteamId2))).thenReturn(new ArrayList<>());
+        when(vanityUrlService.resolveVanityUrls(Set.of(mockSteamId1,mockSteamId2))).thenReturn(Set.of(mockSteamId1,mockSteamId2));
+        when(userService.getIdsOfGamesOwnedByAllUsers(Set.of(mockSteamId1,mockSteamId2)))
+                .thenThrow(new UserHasNoGamesException(mockSteamId1));
+
+        final ApiError error = new ApiError(
+                "UserHasNoGamesException",
+                "User with Id: someSteamId1 has no games associated with their account, or doesn't exist.",
+                null
+        );
+
+        performStream(sggcRequest)
+                .andExpect(status().isOk())
+                .andExpect(content().string(mapper.writeValueAsString(CommonGamesStreamRecord.error(error)) + "\n"));
+        verify(gameService, never()).streamGamesById(any(), anyBoolean(), any(), any());
+    }
+
+    /**
+     * Performs a request for common games, dispatching the asynchronous result of the controller once it completes
+     *
+     * @param sggcRequest the request for common games
+     * @return the actions on the dispatched result
+     */
+    private ResultActions performAsync(GetCommonGamesRequest sggcRequest) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(post(SGGC_CONTROLLER_URI)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(mapper.writeValueAsString(sggcRequest)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
+
+    /**
+     * Performs a request for a stream of common games, dispatching the request once the stream has completed
+     *
+     * @param sggcRequest the request for common games
+     * @return the actions on the dispatched stream
+     */
+    private ResultActions performStream(GetCommonGamesRequest sggcRequest) throws Exception {
+        MvcResult mvcResult = mockMvc.perform(post(SGGC_CONTROLLER_URI + "stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .content(mapper.writeValueAsString(sggcRequest)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(mvcResult));
+    }
+
+    @TestConfiguration
+    static class RequestHandlingTestConfig {
+        @Bean(ExecutorConfig.REQUEST_EXECUTOR)
+        public Executor requestExecutor() {
+            return Runnable::run;
+        }
+    }
 }
@@ -1,34 +1,61 @@
 package com.sggc.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sggc.config.RequestHandlingProperties;
 import com.sggc.errors.ApiError;
+import com.sggc.exceptions.RequestStageTimeoutException;
 import com.sggc.exceptions.SecretRetrievalException;
 import com.sggc.exceptions.TooFewSteamIdsException;
 import com.sggc.exceptions.UserHasNoGamesException;
 import com.sggc.exceptions.VanityUrlResolutionException;
 import com.sggc.models.Game;
+import com.sggc.models.SteamGameCategory;
+import com.sggc.models.sggc.CommonGame;
 import com.sggc.models.sggc.SggcResponse;
 import com.sggc.models.steam.request.GetCommonGamesRequest;
 import com.sggc.services.GameService;
 import com.sggc.services.UserService;
 import com.sggc.services.VanityUrlService;
 import com.sggc.validation.ValidationResult;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static util.constants.SggcVanityUrlValidationErrorMessageConstants.VANITY_URL_NOT_ALPHANUMERIC_ERROR_MESSAGE;
 
 @ExtendWith(MockitoExtension.class)
@@ -43,17 +70,23 @@ class SggcControllerTest {
     @Mock
     private VanityUrlService vanityUrlService;
 
-    @InjectMocks
+    private RequestHandlingProperties requestHandlingProperties;
     private SggcController sggcController;
 
+    @BeforeEach
+    void setUp() {
+        requestHandlingProperties = new RequestHandlingProperties();
+        sggcController = new SggcController(gameService, userService, vanityUrlService, requestHandlingProperties, Runnable::run);
+    }
+
     @Test
     @DisplayName("Given a valid request, when after processing the request, then it will return a successful response whose body includes a list of games.")
     void IfProvidedWithAValidRequestItWillReturnASuccessfulResponseWhoseBodyIncludesAListOfGames() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
         when(userService.getIdsOfGamesOwnedByAllUsers(any())).thenReturn(new HashSet<>());
         Game exampleGame = new Game();
-        when(gameService.findGamesById(any(), anyBoolean())).thenReturn(Set.of(exampleGame));
+        when(gameService.findGamesById(any(), anyBoolean(), any())).thenReturn(Set.of(exampleGame));
 
-        ResponseEntity<SggcResponse> response = sggcController.getGamesAllUsersOwn(new GetCommonGamesRequest());
+        ResponseEntity<SggcResponse> response = sggcController.getGamesAllUsersOwn(new GetCommonGamesRequest()).join();
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
@@ -63,6 +96,78 @@ class SggcControllerTest {
     }
 
 
+    @Test
+    @DisplayName("Given a request whose users' libraries are all cached, when after processing the request, then its common games will be found on the calling thread and its games looked up on the request executor.")
+    void IfEveryUsersLibraryIsCachedItsCommonGamesWillBeFoundOnTheCallingThreadAndItsGamesLookedUpOnTheRequestExecutor() throws Exception {
+        Set<String> steamIds = Set.of("1", "2");
+        when(userService.areLibrariesCached(steamIds)).thenReturn(true);
+        when(userService.getIdsOfGamesOwnedByAllUsers(steamIds)).thenReturn(Set.of("10"));
+        Game exampleGame = new Game();
+        when(gameService.findGamesById(Set.of("10"), false, Set.of())).thenReturn(Set.of(exampleGame));
+        List<Runnable> stages = new ArrayList<>();
+        sggcController = new SggcController(gameService, userService, vanityUrlService, requestHandlingProperties, stages::add);
+
+        GetCommonGamesRequest request = new GetCommonGamesRequest();
+        request.setSteamIds(steamIds);
+        CompletableFuture<ResponseEntity<SggcResponse>> response = sggcController.getGamesAllUsersOwn(request);
+
+        verify(userService).getIdsOfGamesOwnedByAllUsers(steamIds);
+        verify(gameService, never()).findGamesById(any(), anyBoolean(), any());
+        assertFalse(response.isDone());
+        assertEquals(1, stages.size());
+        stages.get(0).run();
+        assertEquals(HttpStatus.OK, response.join().getStatusCode());
+        assertEquals(Set.of(exampleGame), response.join().getBody().getBody());
+        verify(vanityUrlService, never()).resolveVanityUrls(any());
+    }
+
+    @Test
+    @DisplayName("Given a request with a minimum number of owners, when after processing the request, then it will return the games owned by at least that many users, most owned first.")
+    void IfProvidedWithAMinimumNumberOfOwnersItWillReturnTheGamesOwnedByAtLeastThatManyUsersMostOwnedFirst() throws Exception {
+        Set<String> steamIds = Set.of("1", "2", "3");
+        when(vanityUrlService.resolveVanityUrls(steamIds)).thenReturn(steamIds);
+        when(userService.getIdsOfGamesOwnedByAtLeast(steamIds, 2)).thenReturn(Map.of("10", 2, "20", 3, "30", 2));
+        Game game10 = new Game();
+        game10.setAppid("10");
+        Game game20 = new Game();
+        game20.setAppid("20");
+        Game game30 = new Game();
+        game30.setAppid("30");
+        when(gameService.findGamesById(Set.of("10", "20", "30"), false, Set.of())).thenReturn(Set.of(game30, game10, game20));
+
+        GetCommonGamesRequest request = new GetCommonGamesRequest();
+        request.setSteamIds(steamIds);
+        request.setMinimumOwners(2);
+        ResponseEntity<SggcResponse> response = sggcController.getGamesAllUsersOwn(request).join();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(List.of(new CommonGame(game20, 3), new CommonGame(game10, 2), new CommonGame(game30, 2)),
+                response.getBody().getBody());
+    }
+
+    @Test
+    @DisplayName("Given a request with categories, when after processing the request, then only the games within every category will be requested.")
+    void IfProvidedWithCategoriesOnlyTheGamesWithinEveryCategoryWillBeRequested() throws Exception {
+        Set<String> steamIds = Set.of("1", "2");
+        when(vanityUrlService.resolveVanityUrls(steamIds)).thenReturn(steamIds);
+        when(userService.getIdsOfGamesOwnedByAllUsers(steamIds)).thenReturn(Set.of("10", "20"));
+        Game game10 = new Game();
+        game10.setAppid("10");
+        Set<SteamGameCategory> categories = Set.of(SteamGameCategory.ONLINE_CO_OP, SteamGameCategory.CROSS_PLATFORM_MULTIPLAYER);
+        when(gameService.findGamesById(Set.of("10", "20"), true, categories)).thenReturn(Set.of(game10));
+
+        GetCommonGamesRequest request = new GetCommonGamesRequest();
+        request.setSteamIds(steamIds);
+        request.setMultiplayerOnly(true);
+        request.setCategories(categories);
+        ResponseEntity<SggcResponse> response = sggcController.getGamesAllUsersOwn(request).join();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(Set.of(game10), response.getBody().getBody());
+    }
+
     @Test
     @DisplayName("Given a request, when If one of the users specified in the request has no games, then it will return a 404 error with an appropriate message.")
     void IfOneOfTheUsersSpecifiedInTheRequestHasNoGamesItWillReturnA404ErrorWithAnAppropriateMessage() throws Exception {
@@ -80,7 +185,7 @@ class SggcControllerTest {
         request.setSteamIds(Set.of(mockSteamId1, mockSteamId2));
         request.setMultiplayerOnly(true);
 
-        ResponseEntity<SggcResponse> response = sggcController.getGamesAllUsersOwn(request);
+        ResponseEntity<SggcResponse> response = sggcController.getGamesAllUsersOwn(request).join();
 
         SggcResponse expectedResponse = new SggcResponse(false, new ApiError("UserHasNoGamesException",
                 "User with Id: 76561198045206222 has no games associated with their account, or doesn't exist.", null));
@@ -106,7 +211,7 @@ class SggcControllerTest {
         request.setSteamIds(Set.of(mockSteamId, mockInvalidVanityUrl));
         request.setMultiplayerOnly(true);
 
-        ResponseEntity<SggcResponse> response = sggcController.getGamesAllUsersOwn(request);
+        ResponseEntity<SggcResponse> response = sggcController.getGamesAllUsersOwn(request).join();
 
         SggcResponse expectedResponse = new SggcResponse(false, new ApiError("ValidationException",
                 "Request body violates validation rules. Please review the response object for more information.", validationErrors));
@@ -129,12 +234,96 @@ class SggcControllerTest {
         request.setSteamIds(Set.of(mockSteamId1, mockSteamId2));
         request.setMultiplayerOnly(true);
 
-        SecretRetrievalException expectedException =
-                assertThrows(SecretRetrievalException.class, () ->
-                        sggcController.getGamesAllUsersOwn(request));
+        CompletionException expectedException =
+                assertThrows(CompletionException.class, () ->
+                        sggcController.getGamesAllUsersOwn(request).join());
 
+        assertInstanceOf(SecretRetrievalException.class, expectedException.getCause());
         assertEquals("Exception occurred when attempting to retrieve secret [someSecretId] from AWS secrets manager."
-                , expectedException.getMessage());
+                , expectedException.getCause().getMessage());
+    }
+
+    @Test
+    @DisplayName("Given a request, when a stage of the request does not complete within its timeout, then the request fails with an exception naming the stage.")
+    void IfAStageOfTheRequestDoesNotCompleteWithinItsTimeoutTheRequestFailsWithAnExceptionNamingTheStage() throws Exception {
+        Set<String> steamIds = Set.of("1", "2");
+        when(vanityUrlService.resolveVanityUrls(steamIds)).thenReturn(steamIds);
+        CountDownLatch libraryLookupReleased = new CountDownLatch(1);
+        when(userService.getIdsOfGamesOwnedByAllUsers(steamIds)).thenAnswer(invocation -> {
+            libraryLookupReleased.await();
+            return Set.of("10");
+        });
+        requestHandlingProperties.setLibraryLookupTimeout(Duration.ofMillis(50));
+        ExecutorService requestExecutor = Executors.newSingleThreadExecutor();
+        sggcController = new SggcController(gameService, userService, vanityUrlService, requestHandlingProperties, requestExecutor);
+
+        GetCommonGamesRequest request = new GetCommonGamesRequest();
+        request.setSteamIds(steamIds);
+        try {
+            CompletionException expectedException =
+                    assertThrows(CompletionException.class, () ->
+                            sggcController.getGamesAllUsersOwn(request).join());
+
+            assertInstanceOf(RequestStageTimeoutException.class, expectedException.getCause());
+            assertEquals("library lookup", ((RequestStageTimeoutException) expectedException.getCause()).getStage());
+            verify(gameService, never()).findGamesById(any(), anyBoolean(), any());
+        } finally {
+            libraryLookupReleased.countDown();
+            requestExecutor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Given a request, when a stage of the request does not complete within its timeout, then the thread running the stage is interrupted.")
+    void IfAStageOfTheRequestDoesNotCompleteWithinItsTimeoutTheThreadRunningTheStageIsInterrupted() throws Exception {
+        Set<String> steamIds = Set.of("1", "2");
+        when(vanityUrlService.resolveVanityUrls(steamIds)).thenReturn(steamIds);
+        CountDownLatch libraryLookupInterrupted = new CountDownLatch(1);
+        when(userService.getIdsOfGamesOwnedByAllUsers(steamIds)).thenAnswer(invocation -> {
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                libraryLookupInterrupted.countDown();
+                throw e;
+            }
+            return Set.of("10");
+        });
+        requestHandlingProperties.setLibraryLookupTimeout(Duration.ofMillis(50));
+        ExecutorService requestExecutor = Executors.newSingleThreadExecutor();
+        sggcController = new SggcController(gameService, userService, vanityUrlService, requestHandlingProperties, requestExecutor);
+
+        GetCommonGamesRequest request = new GetCommonGamesRequest();
+        request.setSteamIds(steamIds);
+        try {
+            assertThrows(CompletionException.class, () -> sggcController.getGamesAllUsersOwn(request).join());
+
+            assertTrue(libraryLookupInterrupted.await(5, TimeUnit.SECONDS));
+        } finally {
+            requestExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Given the request executor rejects every task, when a stream of common games is requested, then the stream will end with an error on the completing thread.")
+    void IfTheRequestExecutorRejectsEveryTaskAStreamOfCommonGamesWillEndWithAnErrorOnTheCompletingThread() throws Exception {
+        sggcController = new SggcController(gameService, userService, vanityUrlService, requestHandlingProperties, runnable -> {
+            throw new RejectedExecutionException("Request executor is saturated");
+        });
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(sggcController).build();
+        GetCommonGamesRequest request = new GetCommonGamesRequest();
+        request.setSteamIds(Set.of("1", "2"));
+
+        MvcResult mvcResult = mockMvc.perform(post("/" + SggcController.SGGC_API_URI + "/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .content(new ObjectMapper().writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("RejectedExecutionException")));
+        verify(vanityUrlService, never()).resolveVanityUrls(any());
     }
 
     @Test
@@ -150,7 +339,7 @@ class SggcControllerTest {
         request.setSteamIds(Set.of(mockVanityUrl, mockSteamId));
         request.setMultiplayerOnly(true);
 
-        ResponseEntity<SggcResponse> response = sggcController.getGamesAllUsersOwn(request);
+        ResponseEntity<SggcResponse> response = sggcController.getGamesAllUsersOwn(request).join();
 
         SggcResponse expectedResponse = new SggcResponse(false, new ApiError("VanityUrlResolutionException",
                 "Vanity Url: SomeVanityUrl could not be resolved to a steam id"));
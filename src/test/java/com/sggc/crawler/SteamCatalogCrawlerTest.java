@@ -0,0 +1,181 @@
+package com.sggc.crawler;
+
+import com.sggc.config.SteamCatalogCrawlerProperties;
+import com.sggc.crawler.SteamCatalogCrawler.CrawlResult;
+import com.sggc.exceptions.SteamRateLimitException;
+import com.sggc.infrastructure.SteamRequestSender;
+import com.sggc.models.CrawlCheckpoint;
+import com.sggc.models.GameCategory;
+import com.sggc.models.GameData;
+import com.sggc.models.SteamGameCategory;
+import com.sggc.models.steam.response.GetAppListResponse;
+import com.sggc.repositories.CrawlCheckpointRepository;
+import com.sggc.repositories.GameRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static com.sggc.crawler.SteamCatalogCrawler.CHECKPOINT_ID;
+import static com.sggc.crawler.SteamCatalogCrawler.GAMES_METRIC_NAME;
+import static com.sggc.crawler.SteamCatalogCrawler.OUTCOME_TAG;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static util.util.TestUtils.createEnrichedGame;
+import static util.util.TestUtils.createExampleGame;
+
+@ExtendWith(MockitoExtension.class)
+class SteamCatalogCrawlerTest {
+
+    private static final long NOW = 1700000000L;
+    private static final int PAGE_SIZE = 1000;
+    private static final GameData MULTIPLAYER_GAME = new GameData(Set.of(new GameCategory(SteamGameCategory.MULTIPLAYER)));
+    private static final GameData SINGLE_PLAYER_GAME = new GameData(Set.of(new GameCategory(SteamGameCategory.SINGLE_PLAYER)));
+
+    @Mock
+    private SteamRequestSender steamRequestSender;
+
+    @Mock
+    private GameRepository gameRepository;
+
+    @Mock
+    private CrawlCheckpointRepository crawlCheckpointRepository;
+
+    private SteamCatalogCrawlerProperties steamCatalogCrawlerProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private SteamCatalogCrawler steamCatalogCrawler;
+
+    @BeforeEach
+    void setUp() {
+        steamCatalogCrawlerProperties = new SteamCatalogCrawlerProperties();
+        steamCatalogCrawlerProperties.setPageSize(PAGE_SIZE);
+        meterRegistry = new SimpleMeterRegistry();
+        steamCatalogCrawler = new SteamCatalogCrawler(steamRequestSender, gameRepository, crawlCheckpointRepository,
+                steamCatalogCrawlerProperties, Clock.fixed(Instant.ofEpochSecond(NOW), ZoneOffset.UTC), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Given no crawl has run, when the Steam Store is crawled, then every game whose multiplayer status is unknown is enriched and the completed pass is checkpointed")
+    void givenNoCrawlHasRunWhenTheSteamStoreIsCrawledThenEveryGameWhoseMultiplayerStatusIsUnknownIsEnrichedAndTheCompletedPassIsCheckpointed() throws Exception {
+        when(crawlCheckpointRepository.findById(CHECKPOINT_ID)).thenReturn(Optional.empty());
+        when(steamRequestSender.requestAppListFromSteamApi(0, 0, PAGE_SIZE))
+                .thenReturn(page(false, 30, app(10), app(20), app(30)));
+        when(gameRepository.findGamesByAppids(List.of("10", "20", "30"))).thenReturn(Set.of(
+                createEnrichedGame("10", "SomeGame10", SteamGameCategory.MULTIPLAYER), createExampleGame("20", null, "SomeGame20")));
+        when(steamRequestSender.requestAppDetailsFromSteamApi("20")).thenReturn(SINGLE_PLAYER_GAME);
+        when(steamRequestSender.requestAppDetailsFromSteamApi("30")).thenReturn(MULTIPLAYER_GAME);
+
+        CrawlResult result = steamCatalogCrawler.crawl();
+
+        verify(gameRepository).saveMultiplayerIfAbsent(createEnrichedGame("20", "SomeGame20", SteamGameCategory.SINGLE_PLAYER));
+        verify(gameRepository).saveMultiplayerIfAbsent(createEnrichedGame("30", "SomeGame30", SteamGameCategory.MULTIPLAYER));
+        verify(steamRequestSender, never()).requestAppDetailsFromSteamApi("10");
+        assertEquals(new CrawlResult(3, 2, 1, 0, true), result);
+        assertEquals(new CrawlCheckpoint(CHECKPOINT_ID, NOW, 0, 0), savedCheckpoint());
+        assertEquals(2, meterRegistry.get(GAMES_METRIC_NAME).tag(OUTCOME_TAG, "enriched").counter().count());
+    }
+
+    @Test
+    @DisplayName("Given the request budget runs out part way through a page, when the Steam Store is crawled again, then the crawl resumes after the last game enriched")
+    void givenTheRequestBudgetRunsOutPartWayThroughAPageWhenTheSteamStoreIsCrawledAgainThenTheCrawlResumesAfterTheLastGameEnriched() throws Exception {
+        steamCatalogCrawlerProperties.setRequestBudget(2);
+        when(crawlCheckpointRepository.findById(CHECKPOINT_ID)).thenReturn(Optional.empty());
+        when(steamRequestSender.requestAppListFromSteamApi(0, 0, PAGE_SIZE))
+                .thenReturn(page(true, 30, app(10), app(20), app(30)));
+        when(gameRepository.findGamesByAppids(any())).thenReturn(Set.of(createEnrichedGame("10", "SomeGame10", SteamGameCategory.MULTIPLAYER)));
+        when(steamRequestSender.requestAppDetailsFromSteamApi("20")).thenReturn(MULTIPLAYER_GAME);
+
+        CrawlResult result = steamCatalogCrawler.crawl();
+
+        assertEquals(new CrawlResult(2, 1, 1, 0, false), result);
+        CrawlCheckpoint checkpoint = savedCheckpoint();
+        assertEquals(new CrawlCheckpoint(CHECKPOINT_ID, 0, NOW, 20), checkpoint);
+
+        when(crawlCheckpointRepository.findById(CHECKPOINT_ID)).thenReturn(Optional.of(checkpoint));
+        when(steamRequestSender.requestAppListFromSteamApi(0, 20, PAGE_SIZE)).thenReturn(page(false, 30, app(30)));
+        when(steamRequestSender.requestAppDetailsFromSteamApi("30")).thenReturn(MULTIPLAYER_GAME);
+
+        steamCatalogCrawler.crawl();
+
+        verify(gameRepository).saveMultiplayerIfAbsent(createEnrichedGame("30", "SomeGame30", SteamGameCategory.MULTIPLAYER));
+        assertEquals(new CrawlCheckpoint(CHECKPOINT_ID, NOW, 0, 0), savedCheckpoint());
+    }
+
+    @Test
+    @DisplayName("Given a previous pass has completed, when the Steam Store is crawled, then only games changed since it began are listed and their multiplayer status replaced")
+    void givenAPreviousPassHasCompletedWhenTheSteamStoreIsCrawledThenOnlyGamesChangedSinceItBeganAreListedAndTheirMultiplayerStatusReplaced() throws Exception {
+        when(crawlCheckpointRepository.findById(CHECKPOINT_ID))
+                .thenReturn(Optional.of(new CrawlCheckpoint(CHECKPOINT_ID, NOW - 3600, 0, 0)));
+        when(steamRequestSender.requestAppListFromSteamApi(NOW - 3600, 0, PAGE_SIZE)).thenReturn(page(false, 10, app(10)));
+        when(gameRepository.findGamesByAppids(List.of("10"))).thenReturn(Set.of(createExampleGame("10", true, "SomeGame10")));
+        when(steamRequestSender.requestAppDetailsFromSteamApi("10")).thenReturn(SINGLE_PLAYER_GAME);
+
+        steamCatalogCrawler.crawl();
+
+        verify(gameRepository).saveMultiplayer(createEnrichedGame("10", "SomeGame10", SteamGameCategory.SINGLE_PLAYER));
+        assertEquals(new CrawlCheckpoint(CHECKPOINT_ID, NOW, 0, 0), savedCheckpoint());
+    }
+
+    @Test
+    @DisplayName("Given the details of a game cannot be requested, when the Steam Store is crawled, then the game is skipped and counted as failed")
+    void givenTheDetailsOfAGameCannotBeRequestedWhenTheSteamStoreIsCrawledThenTheGameIsSkippedAndCountedAsFailed() throws Exception {
+        when(crawlCheckpointRepository.findById(CHECKPOINT_ID)).thenReturn(Optional.empty());
+        when(steamRequestSender.requestAppListFromSteamApi(0, 0, PAGE_SIZE)).thenReturn(page(false, 20, app(10), app(20)));
+        when(gameRepository.findGamesByAppids(any())).thenReturn(Set.of());
+        when(steamRequestSender.requestAppDetailsFromSteamApi("10")).thenThrow(new IOException("Invalid response"));
+        when(steamRequestSender.requestAppDetailsFromSteamApi("20")).thenReturn(MULTIPLAYER_GAME);
+
+        CrawlResult result = steamCatalogCrawler.crawl();
+
+        assertEquals(new CrawlResult(3, 1, 0, 1, true), result);
+        verify(gameRepository, times(1)).saveMultiplayerIfAbsent(any());
+        assertEquals(1, meterRegistry.get(GAMES_METRIC_NAME).tag(OUTCOME_TAG, "failed").counter().count());
+    }
+
+    @Test
+    @DisplayName("Given Steam throttles the crawl, when the Steam Store is crawled, then the crawl stops and the checkpoint is left before the throttled game")
+    void givenSteamThrottlesTheCrawlWhenTheSteamStoreIsCrawledThenTheCrawlStopsAndTheCheckpointIsLeftBeforeTheThrottledGame() throws Exception {
+        when(crawlCheckpointRepository.findById(CHECKPOINT_ID)).thenReturn(Optional.empty());
+        when(steamRequestSender.requestAppListFromSteamApi(0, 0, PAGE_SIZE))
+                .thenReturn(page(false, 30, app(10), app(20), app(30)));
+        when(gameRepository.findGamesByAppids(any())).thenReturn(Set.of());
+        when(steamRequestSender.requestAppDetailsFromSteamApi("10")).thenReturn(MULTIPLAYER_GAME);
+        when(steamRequestSender.requestAppDetailsFromSteamApi("20"))
+                .thenThrow(new SteamRateLimitException("store", Duration.ofSeconds(30), null));
+
+        CrawlResult result = steamCatalogCrawler.crawl();
+
+        assertEquals(new CrawlResult(3, 1, 0, 0, false), result);
+        verify(steamRequestSender, never()).requestAppDetailsFromSteamApi("30");
+        assertEquals(new CrawlCheckpoint(CHECKPOINT_ID, 0, NOW, 10), savedCheckpoint());
+    }
+
+    private CrawlCheckpoint savedCheckpoint() {
+        ArgumentCaptor<CrawlCheckpoint> checkpoint = ArgumentCaptor.forClass(CrawlCheckpoint.class);
+        verify(crawlCheckpointRepository, atLeastOnce()).save(checkpoint.capture());
+        CrawlCheckpoint saved = checkpoint.getValue();
+        return new CrawlCheckpoint(saved.getId(), saved.getModifiedSince(), saved.getPassStartedAt(), saved.getLastAppId());
+    }
+
+    private static GetAppListResponse page(boolean haveMoreResults, int lastAppId, GetAppListResponse.App... apps) {
+        return new GetAppListResponse(new GetAppListResponse.Response(List.of(apps), haveMoreResults, lastAppId));
+    }
+
+    private static GetAppListResponse.App app(int appId) {
+        return new GetAppListResponse.App(appId, "SomeGame" + appId, NOW - 60);
+    }
+}
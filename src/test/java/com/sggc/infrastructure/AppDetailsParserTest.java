@@ -0,0 +1,109 @@
+package com.sggc.infrastructure;
+
+import com.sggc.models.GameCategory;
+import com.sggc.models.GameData;
+import com.sggc.models.SteamGameCategory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AppDetailsParserTest {
+
+    private static final GameData ASSUMED_MULTIPLAYER_GAME_DATA =
+            new GameData(Collections.singleton(new GameCategory(SteamGameCategory.MULTIPLAYER)));
+
+    @Test
+    @DisplayName("Given a successful response, when the response is parsed, then only the game's categories are returned")
+    void givenASuccessfulResponseWhenTheResponseIsParsedThenOnlyTheGamesCategoriesAreReturned() throws IOException {
+        String responseJson = "{\"4000\":{\"success\":true,\"data\":{\"type\":\"game\",\"name\":\"Garry's Mod\"," +
+                "\"developers\":[\"Facepunch Studios\"],\"price_overview\":{\"final\":799}," +
+                "\"categories\":[{\"id\":2,\"description\":\"Single-player\"},{\"id\":1,\"description\":\"Multi-player\"}]," +
+                "\"screenshots\":[{\"id\":0,\"path_full\":\"https://example.com/0.jpg\"}]}}}";
+
+        GameData expected = new GameData(Set.of(new GameCategory(SteamGameCategory.SINGLE_PLAYER),
+                new GameCategory(SteamGameCategory.MULTIPLAYER)));
+        assertEquals(expected, AppDetailsParser.parse(new StringReader(responseJson)));
+    }
+
+    @Test
+    @DisplayName("Given a successful response with categories the application does not recognise, when the response is parsed, then every category id is kept")
+    void givenASuccessfulResponseWithCategoriesTheApplicationDoesNotRecogniseWhenTheResponseIsParsedThenEveryCategoryIdIsKept() throws IOException {
+        String responseJson = "{\"4000\":{\"success\":true,\"data\":{\"categories\":[{\"id\":1},{\"id\":38},{\"id\":62}]}}}";
+
+        GameData gameData = AppDetailsParser.parse(new StringReader(responseJson));
+
+        assertEquals(new GameData(Set.of(new GameCategory(1), new GameCategory(38), new GameCategory(62))), gameData);
+        assertEquals(BitSet.valueOf(new long[]{(1L << 1) | (1L << 38) | (1L << 62)}), gameData.getCategoryIds());
+        assertNull(new GameCategory(62).getCategory());
+    }
+
+    @Test
+    @DisplayName("Given a successful response whose data precedes its success flag, when the response is parsed, then the game's categories are returned")
+    void givenASuccessfulResponseWhoseDataPrecedesItsSuccessFlagWhenTheResponseIsParsedThenTheGamesCategoriesAreReturned() throws IOException {
+        String responseJson = "{\"4000\":{\"data\":{\"categories\":[{\"id\":2}],\"name\":\"Some game\"},\"success\":true}}";
+
+        GameData expected = new GameData(Set.of(new GameCategory(SteamGameCategory.SINGLE_PLAYER)));
+        assertEquals(expected, AppDetailsParser.parse(new StringReader(responseJson)));
+    }
+
+    @Test
+    @DisplayName("Given a successful response with an empty list of categories, when the response is parsed, then no categories are returned")
+    void givenASuccessfulResponseWithAnEmptyListOfCategoriesWhenTheResponseIsParsedThenNoCategoriesAreReturned() throws IOException {
+        String responseJson = "{\"4000\":{\"success\":true,\"data\":{\"categories\":[]}}}";
+
+        assertEquals(new GameData(Collections.emptySet()), AppDetailsParser.parse(new StringReader(responseJson)));
+    }
+
+    @Test
+    @DisplayName("Given an unsuccessful response, when the response is parsed, then the game is assumed to be multiplayer")
+    void givenAnUnsuccessfulResponseWhenTheResponseIsParsedThenTheGameIsAssumedToBeMultiplayer() throws IOException {
+        assertEquals(ASSUMED_MULTIPLAYER_GAME_DATA, AppDetailsParser.parse(new StringReader("{\"33910\":{\"success\":false}}")));
+    }
+
+    @Test
+    @DisplayName("Given a successful response without categories, when the response is parsed, then the game is assumed to be multiplayer")
+    void givenASuccessfulResponseWithoutCategoriesWhenTheResponseIsParsedThenTheGameIsAssumedToBeMultiplayer() throws IOException {
+        assertEquals(ASSUMED_MULTIPLAYER_GAME_DATA,
+                AppDetailsParser.parse(new StringReader("{\"4000\":{\"success\":true,\"data\":{\"name\":\"Some game\"}}}")));
+        assertEquals(ASSUMED_MULTIPLAYER_GAME_DATA,
+                AppDetailsParser.parse(new StringReader("{\"4000\":{\"success\":true,\"data\":{\"categories\":null}}}")));
+    }
+
+    @Test
+    @DisplayName("Given invalid response json, when the response is parsed, then an exception will be thrown")
+    void givenInvalidResponseJsonWhenTheResponseIsParsedThenAnExceptionWillBeThrown() {
+        assertThrows(IOException.class, () -> AppDetailsParser.parse(new StringReader("{\"4000\":{\"success\" false}}")));
+        assertThrows(IOException.class, () -> AppDetailsParser.parse(new StringReader("[]")));
+        assertThrows(IOException.class, () -> AppDetailsParser.parse(new StringReader("{}")));
+    }
+
+    @Test
+    @DisplayName("Given a successful filtered response with empty data, when the response is parsed if complete, then null is returned")
+    void givenASuccessfulFilteredResponseWithEmptyDataWhenTheResponseIsParsedIfCompleteThenNullIsReturned() throws IOException {
+        assertNull(AppDetailsParser.parseIfComplete(new StringReader("{\"4000\":{\"success\":true,\"data\":[]}}")));
+    }
+
+    @Test
+    @DisplayName("Given a successful filtered response with categories, when the response is parsed if complete, then the game's categories are returned")
+    void givenASuccessfulFilteredResponseWithCategoriesWhenTheResponseIsParsedIfCompleteThenTheGamesCategoriesAreReturned() throws IOException {
+        String responseJson = "{\"4000\":{\"success\":true,\"data\":{\"categories\":[{\"id\":1}]}}}";
+
+        GameData expected = new GameData(Set.of(new GameCategory(SteamGameCategory.MULTIPLAYER)));
+        assertEquals(expected, AppDetailsParser.parseIfComplete(new StringReader(responseJson)));
+    }
+
+    @Test
+    @DisplayName("Given an unsuccessful filtered response, when the response is parsed if complete, then the game is assumed to be multiplayer")
+    void givenAnUnsuccessfulFilteredResponseWhenTheResponseIsParsedIfCompleteThenTheGameIsAssumedToBeMultiplayer() throws IOException {
+        assertEquals(ASSUMED_MULTIPLAYER_GAME_DATA, AppDetailsParser.parseIfComplete(new StringReader("{\"33910\":{\"success\":false}}")));
+    }
+}
@@ -4,7 +4,9 @@ import com.amazonaws.services.secretsmanager.AWSSecretsManager;
 import com.amazonaws.services.secretsmanager.model.GetSecretValueRequest;
 import com.amazonaws.services.secretsmanager.model.GetSecretValueResult;
 import com.sggc.config.CachingConfig;
+import com.sggc.config.CachingProperties;
 import com.sggc.exceptions.SecretRetrievalException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,7 +17,7 @@ import org.springframework.context.annotation.Import;
 import static org.mockito.Mockito.*;
 
 @SpringBootTest(classes = AwsSecretRetriever.class)
-@Import(CachingConfig.class)
+@Import({CachingConfig.class, CachingProperties.class, SimpleMeterRegistry.class})
 class AwsSecretsRetrieverCachingIT {
 
     @MockBean
@@ -4,16 +4,24 @@ import com.amazonaws.services.secretsmanager.AWSSecretsManager;
 import com.amazonaws.services.secretsmanager.model.AWSSecretsManagerException;
 import com.amazonaws.services.secretsmanager.model.GetSecretValueRequest;
 import com.amazonaws.services.secretsmanager.model.GetSecretValueResult;
+import com.sggc.config.CachingConfig;
+import com.sggc.config.CachingProperties;
+import com.sggc.config.ConfiguredCaffeineCacheManager;
 import com.sggc.exceptions.SecretRetrievalException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class AwsSecretsRetrieverTest {
@@ -21,9 +29,16 @@ class AwsSecretsRetrieverTest {
     @Mock
     private AWSSecretsManager client;
 
-    @InjectMocks
+    private CachingProperties cachingProperties;
     private AwsSecretRetriever secretManagerService;
 
+    @BeforeEach
+    void setup() {
+        cachingProperties = new CachingProperties();
+        secretManagerService = new AwsSecretRetriever(client,
+                new ConfiguredCaffeineCacheManager(cachingProperties, new SimpleMeterRegistry(), "cacheManager"));
+    }
+
     @Test
     @DisplayName("Given a request to retrieve a secret, when the secret is found ,then the secret's value should be returned.")
     void GivenRequestToRetrieveSecretWhenTheSecretIsFoundThenTheSecretsValueShouldBeReturned() throws SecretRetrievalException {
@@ -54,4 +69,37 @@ class AwsSecretsRetrieverTest {
         assertTrue(expectedException.getCause() instanceof AWSSecretsManagerException);
     }
 
+    @Test
+    @DisplayName("Given a cached secret due a refresh, when the secret is retrieved, then the cached value is returned and the secret is reloaded in the background.")
+    void GivenCachedSecretDueARefreshWhenTheSecretIsRetrievedThenTheCachedValueIsReturnedAndTheSecretIsReloadedInTheBackground() throws SecretRetrievalException {
+        cachingProperties.getCaches().put(CachingConfig.SECRETS_CACHE_NAME,
+                new CachingProperties.CacheSpec(10L, null, Duration.ofHours(1), Duration.ofNanos(1)));
+        secretManagerService = new AwsSecretRetriever(client,
+                new ConfiguredCaffeineCacheManager(cachingProperties, new SimpleMeterRegistry(), "cacheManager"));
+        String mockSecretId = "secretId";
+        GetSecretValueRequest valueRequest = new GetSecretValueRequest()
+                .withSecretId(mockSecretId);
+        when(client.getSecretValue(valueRequest))
+                .thenReturn(new GetSecretValueResult().withSecretString("oldSecretValue"))
+                .thenReturn(new GetSecretValueResult().withSecretString("rotatedSecretValue"));
+
+        assertEquals("oldSecretValue", secretManagerService.getSecretValue(mockSecretId));
+        assertEquals("oldSecretValue", secretManagerService.getSecretValue(mockSecretId));
+
+        verify(client, timeout(5000).times(2)).getSecretValue(valueRequest);
+        await(() -> "rotatedSecretValue".equals(secretManagerService.getSecretValue(mockSecretId)));
+    }
+
+    private static void await(Callable<Boolean> condition) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        try {
+            while (!condition.call()) {
+                assertTrue(System.nanoTime() < deadline, "Condition was not met in time");
+                Thread.sleep(10);
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
 }
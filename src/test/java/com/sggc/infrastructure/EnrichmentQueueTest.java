@@ -0,0 +1,302 @@
+package com.sggc.infrastructure;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
+import com.sggc.config.EnrichmentProperties;
+import com.sggc.models.Game;
+import com.sggc.models.GameCategory;
+import com.sggc.models.GameData;
+import com.sggc.models.PendingEnrichment;
+import com.sggc.models.SteamGameCategory;
+import com.sggc.repositories.GameRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.OngoingStubbing;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.sggc.infrastructure.EnrichmentQueue.GAMES_METRIC_NAME;
+import static com.sggc.infrastructure.EnrichmentQueue.OUTCOME_TAG;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static util.util.TestUtils.createEnrichedGame;
+import static util.util.TestUtils.createExampleGame;
+
+@ExtendWith(MockitoExtension.class)
+class EnrichmentQueueTest {
+
+    private static final long NOW = 1700000000000L;
+    private static final GameData MULTIPLAYER_GAME = new GameData(Set.of(new GameCategory(SteamGameCategory.MULTIPLAYER)));
+
+    @Mock
+    private AmazonDynamoDB amazonDynamoDB;
+
+    @Mock
+    private SteamRequestSender steamRequestSender;
+
+    @Mock
+    private GameRepository gameRepository;
+
+    @Mock
+    private WriteBehindQueue writeBehindQueue;
+
+    private EnrichmentProperties enrichmentProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private List<Runnable> submittedWork;
+    private EnrichmentQueue enrichmentQueue;
+
+    @BeforeEach
+    void setUp() {
+        enrichmentProperties = new EnrichmentProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        submittedWork = new ArrayList<>();
+        enrichmentQueue = new EnrichmentQueue(amazonDynamoDB, steamRequestSender, gameRepository, writeBehindQueue,
+                enrichmentProperties, submittedWork::add, Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC),
+                meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Given a game is already being enriched, when it is enriched again, then the enrichment in flight is joined rather than requesting its details twice")
+    void givenAGameIsAlreadyBeingEnrichedWhenItIsEnrichedAgainThenTheEnrichmentInFlightIsJoinedRatherThanRequestingItsDetailsTwice() throws Exception {
+        when(steamRequestSender.requestAppDetailsFromSteamApi("10")).thenReturn(MULTIPLAYER_GAME);
+
+        CompletableFuture<Game> first = enrichmentQueue.enrich(createExampleGame("10", null, "SomeGame"));
+        CompletableFuture<Game> second = enrichmentQueue.enrich(createExampleGame("10", null, "SomeGame"));
+
+        assertSame(first, second);
+        assertEquals(1, submittedWork.size());
+        assertEquals(1, enrichmentQueue.getInFlightCount());
+        submittedWork.get(0).run();
+        assertEquals(createEnrichedGame("10", "SomeGame", SteamGameCategory.MULTIPLAYER), first.get());
+        verify(gameRepository).saveMultiplayerIfAbsent(createEnrichedGame("10", "SomeGame", SteamGameCategory.MULTIPLAYER));
+        assertEquals(0, enrichmentQueue.getInFlightCount());
+        verifyNoInteractions(amazonDynamoDB);
+    }
+
+    @Test
+    @DisplayName("Given more games than a request may enrich at once, when they are enriched, then each game is started once an earlier one completes")
+    void givenMoreGamesThanARequestMayEnrichAtOnceWhenTheyAreEnrichedThenEachGameIsStartedOnceAnEarlierOneCompletes() throws Exception {
+        when(steamRequestSender.requestAppDetailsFromSteamApi(any())).thenReturn(MULTIPLAYER_GAME);
+
+        List<CompletableFuture<Game>> enrichments = enrichmentQueue.enrichAll(List.of(createExampleGame("10", null, "SomeGame10"),
+                createExampleGame("20", null, "SomeGame20"), createExampleGame("30", null, "SomeGame30")), 2);
+
+        assertEquals(2, submittedWork.size());
+        submittedWork.get(0).run();
+        assertEquals(createEnrichedGame("10", "SomeGame10", SteamGameCategory.MULTIPLAYER), enrichments.get(0).get());
+        assertEquals(3, submittedWork.size());
+        submittedWork.get(1).run();
+        submittedWork.get(2).run();
+        assertEquals(createEnrichedGame("30", "SomeGame30", SteamGameCategory.MULTIPLAYER), enrichments.get(2).get());
+    }
+
+    @Test
+    @DisplayName("Given a request may enrich as many games at once as there are workers, when its games are enriched, then a worker is left for other requests")
+    void givenARequestMayEnrichAsManyGamesAtOnceAsThereAreWorkersWhenItsGamesAreEnrichedThenAWorkerIsLeftForOtherRequests() {
+        List<CompletableFuture<Game>> enrichments = enrichmentQueue.enrichAll(List.of(createExampleGame("10", null, "SomeGame10"),
+                createExampleGame("20", null, "SomeGame20"), createExampleGame("30", null, "SomeGame30"),
+                createExampleGame("40", null, "SomeGame40"), createExampleGame("50", null, "SomeGame50")),
+                enrichmentProperties.getWorkers());
+
+        assertEquals(enrichmentProperties.getWorkers() - 1, submittedWork.size());
+        assertEquals(5, enrichments.size());
+    }
+
+    @Test
+    @DisplayName("Given a request stops waiting for its games, when their enrichments are cancelled, then the games not yet started are never started")
+    void givenARequestStopsWaitingForItsGamesWhenTheirEnrichmentsAreCancelledThenTheGamesNotYetStartedAreNeverStarted() throws Exception {
+        when(steamRequestSender.requestAppDetailsFromSteamApi("10")).thenThrow(new IOException("Invalid response"));
+
+        List<CompletableFuture<Game>> enrichments = enrichmentQueue.enrichAll(List.of(createExampleGame("10", null, "SomeGame10"),
+                createExampleGame("20", null, "SomeGame20")), 1);
+        enrichments.forEach(enrichment -> enrichment.cancel(false));
+        submittedWork.get(0).run();
+
+        assertEquals(1, submittedWork.size());
+        assertTrue(enrichments.get(1).isCancelled());
+        verify(steamRequestSender, never()).requestAppDetailsFromSteamApi("20");
+    }
+
+    @Test
+    @DisplayName("Given the details of a game cannot be requested, when it is enriched, then the enrichment fails and the game can be enriched again")
+    void givenTheDetailsOfAGameCannotBeRequestedWhenItIsEnrichedThenTheEnrichmentFailsAndTheGameCanBeEnrichedAgain() throws Exception {
+        when(steamRequestSender.requestAppDetailsFromSteamApi("10")).thenThrow(new IOException("Invalid response"));
+
+        CompletableFuture<Game> enrichment = enrichmentQueue.enrich(createExampleGame("10", null, "SomeGame"));
+        submittedWork.get(0).run();
+
+        assertTrue(enrichment.isCompletedExceptionally());
+        verify(gameRepository, never()).saveMultiplayerIfAbsent(any());
+        assertEquals(1, meterRegistry.get(GAMES_METRIC_NAME).tag(OUTCOME_TAG, "failed").counter().count());
+        enrichmentQueue.enrich(createExampleGame("10", null, "SomeGame"));
+        assertEquals(2, submittedWork.size());
+    }
+
+    @Test
+    @DisplayName("Given every worker is busy, when a game is enriched, then the enrichment fails straight away")
+    void givenEveryWorkerIsBusyWhenAGameIsEnrichedThenTheEnrichmentFailsStraightAway() {
+        enrichmentQueue = new EnrichmentQueue(amazonDynamoDB, steamRequestSender, gameRepository, writeBehindQueue,
+                enrichmentProperties, runnable -> {
+            throw new RejectedExecutionException();
+        }, Clock.systemUTC(), meterRegistry);
+
+        CompletableFuture<Game> enrichment = enrichmentQueue.enrich(createExampleGame("10", null, "SomeGame"));
+
+        assertTrue(enrichment.isCompletedExceptionally());
+        assertEquals(0, enrichmentQueue.getInFlightCount());
+        assertEquals(1, meterRegistry.get(GAMES_METRIC_NAME).tag(OUTCOME_TAG, "rejected").counter().count());
+    }
+
+    @Test
+    @DisplayName("Given a game being enriched is persisted to the enrichment queue, when it is persisted again, then it is only written once")
+    void givenAGameBeingEnrichedIsPersistedToTheEnrichmentQueueWhenItIsPersistedAgainThenItIsOnlyWrittenOnce() {
+        enrichmentQueue.enrich(createExampleGame("10", null, "SomeGame"));
+
+        enrichmentQueue.persist(List.of(createExampleGame("10", null, "SomeGame")));
+        enrichmentQueue.persist(List.of(createExampleGame("10", null, "SomeGame"), createExampleGame("20", null, "SomeOtherGame")));
+
+        verify(writeBehindQueue).submit(eq(PendingEnrichment.TABLE_NAME + "10"), any());
+        verify(writeBehindQueue).submit(eq(PendingEnrichment.TABLE_NAME + "20"), any());
+        verifyNoMoreInteractions(writeBehindQueue);
+    }
+
+    @Test
+    @DisplayName("Given a game not being enriched is persisted to the enrichment queue, when it is persisted again, then it is written again under the same key so the write-behind queue coalesces the writes")
+    void givenAGameNotBeingEnrichedIsPersistedToTheEnrichmentQueueWhenItIsPersistedAgainThenItIsWrittenAgainUnderTheSameKeySoTheWriteBehindQueueCoalescesTheWrites() {
+        enrichmentQueue.persist(List.of(createExampleGame("10", null, "SomeGame")));
+        enrichmentQueue.persist(List.of(createExampleGame("10", null, "SomeGame")));
+
+        verify(writeBehindQueue, times(2)).submit(eq(PendingEnrichment.TABLE_NAME + "10"), any());
+    }
+
+    @Test
+    @DisplayName("Given a persisted game's enrichment has failed, when it is persisted again, then it is written again and nothing is remembered for it")
+    void givenAPersistedGamesEnrichmentHasFailedWhenItIsPersistedAgainThenItIsWrittenAgainAndNothingIsRememberedForIt() throws Exception {
+        when(steamRequestSender.requestAppDetailsFromSteamApi("10")).thenThrow(new IOException("Invalid response"));
+
+        enrichmentQueue.enrich(createExampleGame("10", null, "SomeGame"));
+        enrichmentQueue.persist(List.of(createExampleGame("10", null, "SomeGame")));
+        submittedWork.get(0).run();
+        enrichmentQueue.persist(List.of(createExampleGame("10", null, "SomeGame")));
+
+        verify(writeBehindQueue, times(2)).submit(eq(PendingEnrichment.TABLE_NAME + "10"), any());
+        verify(amazonDynamoDB, never()).deleteItem(any(String.class), any());
+    }
+
+    @Test
+    @DisplayName("Given a game is persisted to the enrichment queue, when it is written, then only its absent name and queue time are set, keeping any lease and attempts")
+    void givenAGameIsPersistedToTheEnrichmentQueueWhenItIsWrittenThenOnlyItsAbsentNameAndQueueTimeAreSetKeepingAnyLeaseAndAttempts() {
+        enrichmentQueue.persist(List.of(createExampleGame("10", null, "SomeGame")));
+
+        ArgumentCaptor<Runnable> write = ArgumentCaptor.forClass(Runnable.class);
+        verify(writeBehindQueue).submit(eq(PendingEnrichment.TABLE_NAME + "10"), write.capture());
+        write.getValue().run();
+        ArgumentCaptor<UpdateItemRequest> request = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(amazonDynamoDB).updateItem(request.capture());
+        assertEquals(PendingEnrichment.TABLE_NAME, request.getValue().getTableName());
+        assertEquals(key("10"), request.getValue().getKey());
+        assertEquals("SET #enqueuedAt = if_not_exists(#enqueuedAt, :enqueuedAt), #name = if_not_exists(#name, :name)",
+                request.getValue().getUpdateExpression());
+        assertEquals(new AttributeValue().withN(String.valueOf(NOW)), request.getValue().getExpressionAttributeValues().get(":enqueuedAt"));
+        assertEquals(new AttributeValue("SomeGame"), request.getValue().getExpressionAttributeValues().get(":name"));
+    }
+
+    @Test
+    @DisplayName("Given a queued game is enriched, when its multiplayer status has been stored, then it is removed from the enrichment queue")
+    void givenAQueuedGameIsEnrichedWhenItsMultiplayerStatusHasBeenStoredThenItIsRemovedFromTheEnrichmentQueue() throws Exception {
+        when(steamRequestSender.requestAppDetailsFromSteamApi("10")).thenReturn(MULTIPLAYER_GAME);
+
+        enrichmentQueue.enrich(createExampleGame("10", null, "SomeGame"));
+        enrichmentQueue.persist(List.of(createExampleGame("10", null, "SomeGame")));
+        submittedWork.get(0).run();
+
+        verify(amazonDynamoDB).deleteItem(PendingEnrichment.TABLE_NAME, key("10"));
+    }
+
+    @Test
+    @DisplayName("Given a claimed game could not be enriched, when it is enriched again without being queued, then it is not removed from the enrichment queue")
+    void givenAClaimedGameCouldNotBeEnrichedWhenItIsEnrichedAgainWithoutBeingQueuedThenItIsNotRemovedFromTheEnrichmentQueue() throws Exception {
+        when(amazonDynamoDB.scan(any(ScanRequest.class))).thenReturn(new ScanResult().withItems(item("10")));
+        whenClaimed("10").thenReturn(attempts(1));
+        when(gameRepository.findGamesByAppids(List.of("10"))).thenReturn(Set.of(createExampleGame("10", null, "SomeGame")));
+        when(steamRequestSender.requestAppDetailsFromSteamApi("10"))
+                .thenThrow(new IOException("Invalid response"))
+                .thenReturn(MULTIPLAYER_GAME);
+
+        enrichmentQueue.poll();
+        submittedWork.get(0).run();
+        enrichmentQueue.enrich(createExampleGame("10", null, "SomeGame"));
+        submittedWork.get(1).run();
+
+        verify(gameRepository).saveMultiplayerIfAbsent(createEnrichedGame("10", "SomeGame", SteamGameCategory.MULTIPLAYER));
+        verify(amazonDynamoDB, never()).deleteItem(any(String.class), any());
+    }
+
+    @Test
+    @DisplayName("Given games in the enrichment queue, when it is polled, then unleased games are claimed and only those whose details are unknown are enriched")
+    void givenGamesInTheEnrichmentQueueWhenItIsPolledThenUnleasedGamesAreClaimedAndOnlyThoseWhoseDetailsAreUnknownAreEnriched() {
+        when(amazonDynamoDB.scan(any(ScanRequest.class))).thenReturn(new ScanResult().withItems(
+                item("10"), item("20"), item("30"), item("40")));
+        whenClaimed("10").thenReturn(attempts(1));
+        whenClaimed("20").thenThrow(new ConditionalCheckFailedException("Leased"));
+        whenClaimed("30").thenReturn(attempts(enrichmentProperties.getMaxAttempts() + 1));
+        whenClaimed("40").thenReturn(attempts(2));
+        when(gameRepository.findGamesByAppids(List.of("10", "40"))).thenReturn(Set.of(
+                createExampleGame("10", true, "SomeGame10"), createEnrichedGame("40", "SomeGame40", SteamGameCategory.SINGLE_PLAYER)));
+
+        enrichmentQueue.poll();
+
+        assertEquals(1, submittedWork.size());
+        assertEquals(1, enrichmentQueue.getInFlightCount());
+        verify(amazonDynamoDB).deleteItem(PendingEnrichment.TABLE_NAME, key("30"));
+        verify(amazonDynamoDB).deleteItem(PendingEnrichment.TABLE_NAME, key("40"));
+        verify(amazonDynamoDB, never()).deleteItem(PendingEnrichment.TABLE_NAME, key("20"));
+        assertEquals(1, meterRegistry.get(GAMES_METRIC_NAME).tag(OUTCOME_TAG, "abandoned").counter().count());
+        assertEquals(1, meterRegistry.get(GAMES_METRIC_NAME).tag(OUTCOME_TAG, "already_known").counter().count());
+    }
+
+    private OngoingStubbing<UpdateItemResult> whenClaimed(String appId) {
+        return when(amazonDynamoDB.updateItem(argThat((UpdateItemRequest request) -> request != null
+                && request.getKey().equals(key(appId))
+                && request.getExpressionAttributeValues().get(":now").getN().equals(String.valueOf(NOW)))));
+    }
+
+    private static UpdateItemResult attempts(int attempts) {
+        return new UpdateItemResult().withAttributes(Map.of(PendingEnrichment.ATTEMPTS_ATTRIBUTE_NAME,
+                new AttributeValue().withN(String.valueOf(attempts))));
+    }
+
+    private static Map<String, AttributeValue> item(String appId) {
+        return Map.of(PendingEnrichment.APPID_ATTRIBUTE_NAME, new AttributeValue(appId),
+                PendingEnrichment.NAME_ATTRIBUTE_NAME, new AttributeValue("SomeGame" + appId));
+    }
+
+    private static Map<String, AttributeValue> key(String appId) {
+        return Map.of(PendingEnrichment.APPID_ATTRIBUTE_NAME, new AttributeValue(appId));
+    }
+}
@@ -0,0 +1,137 @@
+package com.sggc.infrastructure;
+
+import com.sggc.config.GameCatalogProperties;
+import com.sggc.models.Game;
+import com.sggc.repositories.GameRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.sggc.infrastructure.GameCatalog.GAMES_METRIC_NAME;
+import static com.sggc.infrastructure.GameCatalog.OUTCOME_TAG;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GameCatalogTest {
+
+    @Mock
+    private GameRepository gameRepository;
+
+    @Mock
+    private WriteBehindQueue writeBehindQueue;
+
+    private GameCatalogProperties gameCatalogProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private GameCatalog gameCatalog;
+
+    @BeforeEach
+    void setUp() {
+        gameCatalogProperties = new GameCatalogProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        gameCatalog = new GameCatalog(gameRepository, writeBehindQueue, gameCatalogProperties, Runnable::run, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Given games listed in a library, when they are added to the catalog, then only the names of the games missing from the Game table are saved, with a conditional update")
+    void givenGamesListedInALibraryWhenTheyAreAddedToTheCatalogThenOnlyTheNamesOfTheGamesMissingFromTheGameTableAreSavedWithAConditionalUpdate() {
+        when(gameRepository.findGamesByAppids(any())).thenReturn(Set.of(game("10", "SomeGame")));
+
+        gameCatalog.addMissingGames(Map.of(10, "SomeGame", 20, "SomeOtherGame"));
+
+        ArgumentCaptor<Runnable> write = ArgumentCaptor.forClass(Runnable.class);
+        verify(writeBehindQueue).submit(eq(Game.TABLE_NAME + "#name#20"), write.capture());
+        verifyNoMoreInteractions(writeBehindQueue);
+        write.getValue().run();
+        verify(gameRepository).saveNameIfAbsent("20", "SomeOtherGame");
+        verify(gameRepository, never()).save(any());
+        assertEquals(1, meterRegistry.get(GAMES_METRIC_NAME).tag(OUTCOME_TAG, "added").counter().count());
+        assertEquals(1, meterRegistry.get(GAMES_METRIC_NAME).tag(OUTCOME_TAG, "existing").counter().count());
+    }
+
+    @Test
+    @DisplayName("Given games already added to the catalog, when they are listed again, then they are not looked up again")
+    void givenGamesAlreadyAddedToTheCatalogWhenTheyAreListedAgainThenTheyAreNotLookedUpAgain() {
+        when(gameRepository.findGamesByAppids(any())).thenReturn(Set.of());
+
+        gameCatalog.addMissingGames(Map.of(10, "SomeGame"));
+        gameCatalog.addMissingGames(Map.of(10, "SomeGame", 20, "SomeOtherGame"));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<String>> lookups = ArgumentCaptor.forClass(Collection.class);
+        verify(gameRepository, times(2)).findGamesByAppids(lookups.capture());
+        assertEquals(List.of(List.of("10"), List.of("20")), lookups.getAllValues());
+    }
+
+    @Test
+    @DisplayName("Given more games than fit in a BatchGetItem call, when they are added to the catalog, then they are looked up in batches of at most 100")
+    void givenMoreGamesThanFitInABatchGetItemCallWhenTheyAreAddedToTheCatalogThenTheyAreLookedUpInBatchesOfAtMost100() {
+        when(gameRepository.findGamesByAppids(any())).thenReturn(Set.of());
+        Map<Integer, String> namesByAppId = new HashMap<>();
+        for (int appId = 0; appId < 250; appId++) {
+            namesByAppId.put(appId, "Game " + appId);
+        }
+
+        gameCatalog.addMissingGames(namesByAppId);
+
+        verify(gameRepository, times(3)).findGamesByAppids(any());
+        verify(writeBehindQueue, times(250)).submit(any(), any());
+    }
+
+    @Test
+    @DisplayName("Given games added to the catalog, when they are checked, then only those games are known")
+    void givenGamesAddedToTheCatalogWhenTheyAreCheckedThenOnlyThoseGamesAreKnown() {
+        when(gameRepository.findGamesByAppids(any())).thenReturn(Set.of());
+
+        gameCatalog.addMissingGames(Map.of(10, "SomeGame"));
+
+        assertTrue(gameCatalog.isKnown(10));
+        assertFalse(gameCatalog.isKnown(20));
+    }
+
+    @Test
+    @DisplayName("Given the catalog is disabled, when games are added to it, then nothing is looked up or saved")
+    void givenTheCatalogIsDisabledWhenGamesAreAddedToItThenNothingIsLookedUpOrSaved() {
+        gameCatalogProperties.setEnabled(false);
+
+        gameCatalog.addMissingGames(Map.of(10, "SomeGame"));
+
+        verifyNoInteractions(gameRepository, writeBehindQueue);
+    }
+
+    @Test
+    @DisplayName("Given the catalog's queue is full, when games are added to it, then they are skipped")
+    void givenTheCatalogsQueueIsFullWhenGamesAreAddedToItThenTheyAreSkipped() {
+        gameCatalog = new GameCatalog(gameRepository, writeBehindQueue, gameCatalogProperties, runnable -> {
+            throw new RejectedExecutionException();
+        }, meterRegistry);
+
+        gameCatalog.addMissingGames(Map.of(10, "SomeGame"));
+
+        verifyNoInteractions(gameRepository, writeBehindQueue);
+        assertEquals(1, meterRegistry.get(GAMES_METRIC_NAME).tag(OUTCOME_TAG, "skipped").counter().count());
+    }
+
+    private static Game game(String appId, String name) {
+        Game game = new Game();
+        game.setAppid(appId);
+        game.setName(name);
+        return game;
+    }
+}
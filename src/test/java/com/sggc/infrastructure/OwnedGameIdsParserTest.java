@@ -0,0 +1,85 @@
+package com.sggc.infrastructure;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OwnedGameIdsParserTest {
+
+    @Test
+    @DisplayName("Given a response listing owned games, when the response is parsed, then the sorted ids of the games are returned")
+    void givenAResponseListingOwnedGamesWhenTheResponseIsParsedThenTheSortedIdsOfTheGamesAreReturned() throws IOException {
+        String responseJson = "{\n" +
+                "  \"response\": {\n" +
+                "    \"game_count\": 3,\n" +
+                "    \"games\": [\n" +
+                "      {\n" +
+                "        \"appid\": 4000,\n" +
+                "        \"playtime_forever\": 379,\n" +
+                "        \"content_descriptorids\": [1, 5]\n" +
+                "      },\n" +
+                "      {\n" +
+                "        \"appid\": 3830,\n" +
+                "        \"playtime_forever\": 127\n" +
+                "      },\n" +
+                "      {\n" +
+                "        \"playtime_forever\": 0,\n" +
+                "        \"appid\": 6860\n" +
+                "      }\n" +
+                "    ]\n" +
+                "  }\n" +
+                "}";
+
+        assertArrayEquals(new int[]{3830, 4000, 6860}, OwnedGameIdsParser.parse(toStream(responseJson)));
+    }
+
+    @Test
+    @DisplayName("Given a response listing owned games with their app info, when the response is parsed, then the name of each game is passed to the consumer")
+    void givenAResponseListingOwnedGamesWithTheirAppInfoWhenTheResponseIsParsedThenTheNameOfEachGameIsPassedToTheConsumer() throws IOException {
+        String responseJson = "{\"response\":{\"game_count\":3,\"games\":[" +
+                "{\"appid\":4000,\"name\":\"Garry's Mod\",\"img_icon_url\":\"4a6f25cfa2426445d0d9d6e233408de4d371ce8b\"}," +
+                "{\"name\":\"Shadow Complex\",\"appid\":3830}," +
+                "{\"appid\":6860}]}}";
+        Map<Integer, String> namesByAppId = new HashMap<>();
+
+        assertArrayEquals(new int[]{3830, 4000, 6860},
+                OwnedGameIdsParser.parse(toStream(responseJson), (name, appId) -> namesByAppId.put(appId, name)));
+        assertEquals(Map.of(4000, "Garry's Mod", 3830, "Shadow Complex"), namesByAppId);
+    }
+
+    @Test
+    @DisplayName("Given a response listing the same game twice, when the response is parsed, then the game's id is returned once")
+    void givenAResponseListingTheSameGameTwiceWhenTheResponseIsParsedThenTheGamesIdIsReturnedOnce() throws IOException {
+        String responseJson = "{\"response\":{\"game_count\":2,\"games\":[{\"appid\":10},{\"appid\":10}]}}";
+
+        assertArrayEquals(new int[]{10}, OwnedGameIdsParser.parse(toStream(responseJson)));
+    }
+
+    @Test
+    @DisplayName("Given a response without any games, when the response is parsed, then no ids are returned")
+    void givenAResponseWithoutAnyGamesWhenTheResponseIsParsedThenNoIdsAreReturned() throws IOException {
+        assertArrayEquals(new int[0], OwnedGameIdsParser.parse(toStream("{\"response\":{}}")));
+        assertArrayEquals(new int[0], OwnedGameIdsParser.parse(toStream("{\"response\":{\"game_count\":0,\"games\":[]}}")));
+    }
+
+    @Test
+    @DisplayName("Given invalid response json, when the response is parsed, then an exception will be thrown")
+    void givenInvalidResponseJsonWhenTheResponseIsParsedThenAnExceptionWillBeThrown() {
+        assertThrows(IOException.class, () -> OwnedGameIdsParser.parse(toStream("{\"response\":{\"games\":[{\"appid\" 10}]}}")));
+        assertThrows(IOException.class, () -> OwnedGameIdsParser.parse(toStream("[]")));
+    }
+
+    private InputStream toStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
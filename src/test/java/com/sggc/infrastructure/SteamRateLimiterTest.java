@@ -0,0 +1,152 @@
+package com.sggc.infrastructure;
+
+import com.sggc.config.SteamRateLimitProperties;
+import com.sggc.exceptions.SteamRateLimitException;
+import com.sggc.infrastructure.SteamRateLimiter.SteamHost;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.sggc.infrastructure.SteamRateLimiter.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SteamRateLimiterTest {
+
+    private final AtomicLong nanoClock = new AtomicLong();
+    private SteamRateLimitProperties rateLimitProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private SteamRateLimiter steamRateLimiter;
+
+    @BeforeEach
+    void setup() {
+        rateLimitProperties = new SteamRateLimitProperties();
+        rateLimitProperties.setStore(new SteamRateLimitProperties.Bucket(2, 2));
+        rateLimitProperties.setMaxRetries(2);
+        meterRegistry = new SimpleMeterRegistry();
+        steamRateLimiter = new SteamRateLimiter(rateLimitProperties, meterRegistry, nanoClock::get, nanoClock::addAndGet);
+    }
+
+    @Test
+    @DisplayName("Given a host's burst has been used, when another request is sent, then it waits for the host's next permit")
+    void givenAHostsBurstHasBeenUsedWhenAnotherRequestIsSentThenItWaitsForTheHostsNextPermit() {
+        steamRateLimiter.execute(SteamHost.STORE, () -> "first");
+        steamRateLimiter.execute(SteamHost.STORE, () -> "second");
+        assertEquals(0, nanoClock.get());
+
+        assertEquals("third", steamRateLimiter.execute(SteamHost.STORE, () -> "third"));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), nanoClock.get());
+        assertEquals(3, meterRegistry.get(PERMITS_METRIC_NAME).tag(HOST_TAG, "store").counter().count());
+        assertEquals(500, meterRegistry.get(WAIT_METRIC_NAME).tag(HOST_TAG, "store").timer().max(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("Given a request which is throttled with a Retry-After header, when it is sent, then it is retried once the Retry-After has elapsed")
+    void givenARequestWhichIsThrottledWithARetryAfterHeaderWhenItIsSentThenItIsRetriedOnceTheRetryAfterHasElapsed() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String response = steamRateLimiter.execute(SteamHost.STORE, () -> {
+            if (attempts.getAndIncrement() == 0) {
+                throw tooManyRequests("3");
+            }
+            return "SomeResponse";
+        });
+
+        assertEquals("SomeResponse", response);
+        assertEquals(2, attempts.get());
+        assertTrue(nanoClock.get() >= TimeUnit.SECONDS.toNanos(3));
+        assertEquals(1, meterRegistry.get(THROTTLES_METRIC_NAME).tags(HOST_TAG, "store", STATUS_TAG, "429").counter().count());
+        assertEquals(1.1, meterRegistry.get(RATE_METRIC_NAME).tag(HOST_TAG, "store").gauge().value(), 0.001);
+    }
+
+    @Test
+    @DisplayName("Given a request which is always throttled, when it is sent, then a rate limit exception is thrown once it has been retried the maximum number of times")
+    void givenARequestWhichIsAlwaysThrottledWhenItIsSentThenARateLimitExceptionIsThrownOnceItHasBeenRetriedTheMaximumNumberOfTimes() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        SteamRateLimitException exception = assertThrows(SteamRateLimitException.class,
+                () -> steamRateLimiter.execute(SteamHost.STORE, () -> {
+                    attempts.incrementAndGet();
+                    throw tooManyRequests("1");
+                }));
+
+        assertEquals(3, attempts.get());
+        assertEquals(Duration.ofSeconds(1), exception.getRetryAfter());
+    }
+
+    @Test
+    @DisplayName("Given a request which always fails with a server error, when it is sent, then the server error is thrown once it has been retried the maximum number of times")
+    void givenARequestWhichAlwaysFailsWithAServerErrorWhenItIsSentThenTheServerErrorIsThrownOnceItHasBeenRetriedTheMaximumNumberOfTimes() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(HttpServerErrorException.class, () -> steamRateLimiter.execute(SteamHost.API, () -> {
+            attempts.incrementAndGet();
+            throw HttpServerErrorException.create(HttpStatus.BAD_GATEWAY, "Bad Gateway", HttpHeaders.EMPTY, null, null);
+        }));
+
+        assertEquals(3, attempts.get());
+        assertTrue(nanoClock.get() >= rateLimitProperties.getInitialBackoff().toNanos() / 2);
+    }
+
+    @Test
+    @DisplayName("Given a request which fails with a client error, when it is sent, then it is not retried")
+    void givenARequestWhichFailsWithAClientErrorWhenItIsSentThenItIsNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(HttpClientErrorException.class, () -> steamRateLimiter.execute(SteamHost.API, () -> {
+            attempts.incrementAndGet();
+            throw HttpClientErrorException.create(HttpStatus.NOT_FOUND, "Not Found", HttpHeaders.EMPTY, null, null);
+        }));
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    @DisplayName("Given a host asked for a Retry-After longer than the maximum wait, when another request is sent, then it is rejected without being sent")
+    void givenAHostAskedForARetryAfterLongerThanTheMaximumWaitWhenAnotherRequestIsSentThenItIsRejectedWithoutBeingSent() {
+        rateLimitProperties.setMaxRetries(0);
+        assertThrows(SteamRateLimitException.class,
+                () -> steamRateLimiter.execute(SteamHost.STORE, () -> {
+                    throw tooManyRequests("60");
+                }));
+        AtomicInteger attempts = new AtomicInteger();
+
+        SteamRateLimitException exception = assertThrows(SteamRateLimitException.class,
+                () -> steamRateLimiter.execute(SteamHost.STORE, attempts::incrementAndGet));
+
+        assertEquals(0, attempts.get());
+        assertTrue(exception.getRetryAfter().compareTo(Duration.ofSeconds(60)) >= 0);
+        assertEquals(1, meterRegistry.get(REJECTIONS_METRIC_NAME).tag(HOST_TAG, "store").counter().count());
+        assertEquals(1, steamRateLimiter.execute(SteamHost.API, () -> 1));
+    }
+
+    @Test
+    @DisplayName("Given rate limiting is disabled, when a throttled request is sent, then it is neither limited nor retried")
+    void givenRateLimitingIsDisabledWhenAThrottledRequestIsSentThenItIsNeitherLimitedNorRetried() {
+        rateLimitProperties.setEnabled(false);
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThrows(HttpClientErrorException.class, () -> steamRateLimiter.execute(SteamHost.STORE, () -> {
+            attempts.incrementAndGet();
+            throw tooManyRequests("1");
+        }));
+
+        assertEquals(1, attempts.get());
+        assertEquals(0, nanoClock.get());
+    }
+
+    private static HttpClientErrorException tooManyRequests(String retryAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, retryAfter);
+        return HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", headers, null, null);
+    }
+}
@@ -0,0 +1,151 @@
+package com.sggc.infrastructure;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.sggc.infrastructure.SteamRequestCoalescer.COALESCED_REQUESTS_METRIC_NAME;
+import static com.sggc.infrastructure.SteamRequestCoalescer.EXECUTED_REQUESTS_METRIC_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SteamRequestCoalescerTest {
+
+    private static final String MOCK_ENDPOINT = "/some/endpoint/";
+
+    private SimpleMeterRegistry meterRegistry;
+    private SteamRequestCoalescer steamRequestCoalescer;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setup() {
+        meterRegistry = new SimpleMeterRegistry();
+        steamRequestCoalescer = new SteamRequestCoalescer(meterRegistry);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Given an identical request is in flight, when a request is made, then both callers share the response of a single request")
+    void givenAnIdenticalRequestIsInFlightWhenARequestIsMadeThenBothCallersShareTheResponseOfASingleRequest() throws Exception {
+        AtomicInteger requestsSent = new AtomicInteger();
+        CountDownLatch releaseResponse = new CountDownLatch(1);
+
+        Future<String> firstCaller = executor.submit(() -> steamRequestCoalescer.coalesce(MOCK_ENDPOINT, "1", IOException.class, () -> {
+            requestsSent.incrementAndGet();
+            awaitRelease(releaseResponse);
+            return "SomeResponse";
+        }));
+        awaitMetric(EXECUTED_REQUESTS_METRIC_NAME, 1);
+
+        Thread releaser = new Thread(() -> {
+            awaitMetric(COALESCED_REQUESTS_METRIC_NAME, 1);
+            releaseResponse.countDown();
+        });
+        releaser.start();
+        String secondCallerResponse = steamRequestCoalescer.coalesce(MOCK_ENDPOINT, "1", IOException.class, () -> {
+            requestsSent.incrementAndGet();
+            return "AnotherResponse";
+        });
+
+        assertEquals("SomeResponse", firstCaller.get());
+        assertEquals("SomeResponse", secondCallerResponse);
+        assertEquals(1, requestsSent.get());
+    }
+
+    @Test
+    @DisplayName("Given an identical request is in flight, when the request fails, then both callers receive the failure")
+    void givenAnIdenticalRequestIsInFlightWhenTheRequestFailsThenBothCallersReceiveTheFailure() {
+        CountDownLatch releaseResponse = new CountDownLatch(1);
+
+        Future<String> firstCaller = executor.submit(() -> steamRequestCoalescer.<String, IOException>coalesce(MOCK_ENDPOINT, "1", IOException.class, () -> {
+            awaitRelease(releaseResponse);
+            throw new IOException("Some failure");
+        }));
+        awaitMetric(EXECUTED_REQUESTS_METRIC_NAME, 1);
+
+        Thread releaser = new Thread(() -> {
+            awaitMetric(COALESCED_REQUESTS_METRIC_NAME, 1);
+            releaseResponse.countDown();
+        });
+        releaser.start();
+        IOException secondCallerException = assertThrows(IOException.class, () ->
+                steamRequestCoalescer.coalesce(MOCK_ENDPOINT, "1", IOException.class, () -> "AnotherResponse"));
+
+        ExecutionException firstCallerException = assertThrows(ExecutionException.class, firstCaller::get);
+        assertSame(firstCallerException.getCause(), secondCallerException);
+    }
+
+    @Test
+    @DisplayName("Given an identical request is in flight, when the caller sending it is interrupted, then the waiting caller sends the request itself rather than receiving the failure")
+    void givenAnIdenticalRequestIsInFlightWhenTheCallerSendingItIsInterruptedThenTheWaitingCallerSendsTheRequestItselfRatherThanReceivingTheFailure() throws Exception {
+        CountDownLatch releaseResponse = new CountDownLatch(1);
+        ExecutorService followerExecutor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> firstCaller = executor.submit(() -> steamRequestCoalescer.coalesce(MOCK_ENDPOINT, "1", IOException.class, () -> {
+                try {
+                    releaseResponse.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a permit", e);
+                }
+                return "SomeResponse";
+            }));
+            awaitMetric(EXECUTED_REQUESTS_METRIC_NAME, 1);
+            Future<String> secondCaller = followerExecutor.submit(() ->
+                    steamRequestCoalescer.coalesce(MOCK_ENDPOINT, "1", IOException.class, () -> "AnotherResponse"));
+            awaitMetric(COALESCED_REQUESTS_METRIC_NAME, 1);
+
+            firstCaller.cancel(true);
+
+            assertEquals("AnotherResponse", secondCaller.get(5, TimeUnit.SECONDS));
+            assertEquals(2, meterRegistry.counter(EXECUTED_REQUESTS_METRIC_NAME, SteamRequestCoalescer.ENDPOINT_TAG, MOCK_ENDPOINT).count());
+            assertEquals("ThirdResponse", steamRequestCoalescer.coalesce(MOCK_ENDPOINT, "1", IOException.class, () -> "ThirdResponse"));
+        } finally {
+            followerExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Given requests with different parameters, when requests are made, then each request is sent")
+    void givenRequestsWithDifferentParametersWhenRequestsAreMadeThenEachRequestIsSent() throws IOException {
+        assertEquals("1", steamRequestCoalescer.coalesce(MOCK_ENDPOINT, "1", IOException.class, () -> "1"));
+        assertEquals("2", steamRequestCoalescer.coalesce(MOCK_ENDPOINT, "2", IOException.class, () -> "2"));
+        assertEquals("1", steamRequestCoalescer.coalesce(MOCK_ENDPOINT, "1", IOException.class, () -> "1"));
+
+        assertEquals(3, meterRegistry.counter(EXECUTED_REQUESTS_METRIC_NAME, SteamRequestCoalescer.ENDPOINT_TAG, MOCK_ENDPOINT).count());
+        assertEquals(0, meterRegistry.counter(COALESCED_REQUESTS_METRIC_NAME, SteamRequestCoalescer.ENDPOINT_TAG, MOCK_ENDPOINT).count());
+    }
+
+    private void awaitRelease(CountDownLatch releaseResponse) {
+        try {
+            releaseResponse.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void awaitMetric(String metricName, int expectedCount) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.counter(metricName, SteamRequestCoalescer.ENDPOINT_TAG, MOCK_ENDPOINT).count() < expectedCount) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + metricName);
+            }
+            Thread.yield();
+        }
+    }
+}
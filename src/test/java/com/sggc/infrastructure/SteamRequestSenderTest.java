@@ -5,12 +5,16 @@ import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.read.ListAppender;
 import com.sggc.config.SteamProperties;
+import com.sggc.config.SteamRateLimitProperties;
 import com.sggc.exceptions.SecretRetrievalException;
 import com.sggc.models.GameCategory;
 import com.sggc.models.GameData;
 import com.sggc.models.SteamGameCategory;
+import com.sggc.models.steam.response.GetAppListResponse;
 import com.sggc.models.steam.response.GetOwnedGamesResponse;
 import com.sggc.models.steam.response.ResolveVanityUrlResponse;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
@@ -19,16 +23,27 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import static com.sggc.infrastructure.SteamRequestSender.APP_DETAILS_RESPONSE_SIZE_METRIC_NAME;
 import static com.sggc.infrastructure.SteamRequestSender.STEAM_API_KEY_SECRET_ID;
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
 import static util.util.TestUtils.createExampleGame;
 
 @ExtendWith(MockitoExtension.class)
@@ -42,12 +57,19 @@ class SteamRequestSenderTest {
     @Mock
     private AwsSecretRetriever secretManagerService;
 
+    @Mock
+    private GameCatalog gameCatalog;
+
     private SteamRequestSender steamRequestSender;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     public void setup() {
-        SteamProperties mockSteamProperties = new SteamProperties(MOCK_API_ADDRESS, MOCK_STORE_ADDRESS);
-        steamRequestSender = new SteamRequestSender(restTemplate, secretManagerService, mockSteamProperties);
+        SteamProperties mockSteamProperties = new SteamProperties(MOCK_API_ADDRESS, MOCK_STORE_ADDRESS, null, 2);
+        meterRegistry = new SimpleMeterRegistry();
+        steamRequestSender = new SteamRequestSender(restTemplate, secretManagerService, mockSteamProperties,
+                new SteamRequestCoalescer(meterRegistry), new SteamRateLimiter(new SteamRateLimitProperties(), meterRegistry),
+                gameCatalog, meterRegistry);
     }
 
     @Test
@@ -68,6 +90,61 @@ class SteamRequestSenderTest {
         assertEquals(mockResponse, steamRequestSender.requestUsersOwnedGamesFromSteamApi("12345678910"));
     }
 
+    @Test
+    @DisplayName("Given the game catalog is enabled, when a request is made to retrieve a user's owned game ids then the " +
+            "names of the games should be requested and handed to the game catalog")
+    void givenTheGameCatalogIsEnabledWhenARequestIsMadeToRetrieveAUsersOwnedGameIdsThenTheNamesOfTheGamesShouldBeRequestedAndHandedToTheGameCatalog() throws Exception {
+        URI mockURI = URI.create(MOCK_API_ADDRESS + "/IPlayerService/GetOwnedGames/v1/?key=SomeKey&steamid=12345678910&include_appinfo=true");
+        String mockResponseJson = "{\"response\":{\"game_count\":2,\"games\":[{\"appid\":20,\"name\":\"SomeGame\"}," +
+                "{\"appid\":10,\"name\":\"SomeOtherGame\"}]}}";
+        ClientHttpResponse mockResponse = mock(ClientHttpResponse.class);
+
+        when(gameCatalog.isEnabled()).thenReturn(true);
+        when(secretManagerService.getSecretValue(STEAM_API_KEY_SECRET_ID)).thenReturn("SomeKey");
+        when(mockResponse.getBody()).thenReturn(new ByteArrayInputStream(mockResponseJson.getBytes(StandardCharsets.UTF_8)));
+        when(restTemplate.execute(eq(mockURI), eq(HttpMethod.GET), isNull(), any(ResponseExtractor.class)))
+                .thenAnswer(invocation -> invocation.<ResponseExtractor<int[]>>getArgument(3).extractData(mockResponse));
+
+        assertArrayEquals(new int[]{10, 20}, steamRequestSender.requestUsersOwnedGameIdsFromSteamApi("12345678910"));
+        verify(gameCatalog).addMissingGames(Map.of(10, "SomeOtherGame", 20, "SomeGame"));
+    }
+
+    @Test
+    @DisplayName("Given the game catalog already knows some of a user's games, when a request is made to retrieve the user's " +
+            "owned game ids then only the unknown games should be handed to the game catalog")
+    void givenTheGameCatalogAlreadyKnowsSomeOfAUsersGamesWhenARequestIsMadeToRetrieveTheUsersOwnedGameIdsThenOnlyTheUnknownGamesShouldBeHandedToTheGameCatalog() throws Exception {
+        URI mockURI = URI.create(MOCK_API_ADDRESS + "/IPlayerService/GetOwnedGames/v1/?key=SomeKey&steamid=12345678910&include_appinfo=true");
+        String mockResponseJson = "{\"response\":{\"game_count\":2,\"games\":[{\"appid\":20,\"name\":\"SomeGame\"}," +
+                "{\"appid\":10,\"name\":\"SomeOtherGame\"}]}}";
+        ClientHttpResponse mockResponse = mock(ClientHttpResponse.class);
+
+        when(gameCatalog.isEnabled()).thenReturn(true);
+        when(gameCatalog.isKnown(20)).thenReturn(true);
+        when(secretManagerService.getSecretValue(STEAM_API_KEY_SECRET_ID)).thenReturn("SomeKey");
+        when(mockResponse.getBody()).thenReturn(new ByteArrayInputStream(mockResponseJson.getBytes(StandardCharsets.UTF_8)));
+        when(restTemplate.execute(eq(mockURI), eq(HttpMethod.GET), isNull(), any(ResponseExtractor.class)))
+                .thenAnswer(invocation -> invocation.<ResponseExtractor<int[]>>getArgument(3).extractData(mockResponse));
+
+        assertArrayEquals(new int[]{10, 20}, steamRequestSender.requestUsersOwnedGameIdsFromSteamApi("12345678910"));
+        verify(gameCatalog).addMissingGames(Map.of(10, "SomeOtherGame"));
+    }
+
+    @Test
+    @DisplayName("Given candidate games, when a request is made to retrieve which of them a user owns then the " +
+            "candidates should be passed in the appids filter, split across requests of at most the configured size")
+    void givenCandidateGamesWhenARequestIsMadeToRetrieveWhichOfThemAUserOwnsThenTheCandidatesShouldBePassedInTheAppidsFilterSplitAcrossRequestsOfAtMostTheConfiguredSize() throws SecretRetrievalException {
+        URI mockFirstURI = URI.create(MOCK_API_ADDRESS + "/IPlayerService/GetOwnedGames/v1/?key=SomeKey&steamid=12345678910" +
+                "&appids_filter%5B0%5D=10&appids_filter%5B1%5D=20");
+        URI mockSecondURI = URI.create(MOCK_API_ADDRESS + "/IPlayerService/GetOwnedGames/v1/?key=SomeKey&steamid=12345678910" +
+                "&appids_filter%5B0%5D=30");
+
+        when(secretManagerService.getSecretValue(STEAM_API_KEY_SECRET_ID)).thenReturn("SomeKey");
+        when(restTemplate.execute(eq(mockFirstURI), eq(HttpMethod.GET), isNull(), any(ResponseExtractor.class))).thenReturn(new int[]{10});
+        when(restTemplate.execute(eq(mockSecondURI), eq(HttpMethod.GET), isNull(), any(ResponseExtractor.class))).thenReturn(new int[]{30});
+
+        assertArrayEquals(new int[]{10, 30}, steamRequestSender.requestUsersOwnedGameIdsFromSteamApi("12345678910", new int[]{10, 20, 30}));
+    }
+
     @Nested
     @DisplayName("Retrieve application details tests")
     class RetrieveApplicationDetails {
@@ -105,11 +182,12 @@ class SteamRequestSenderTest {
 
             GameCategory multiplayerCategory = new GameCategory(SteamGameCategory.MULTIPLAYER);
             GameCategory singlePlayerCategory = new GameCategory(SteamGameCategory.SINGLE_PLAYER);
-            GameCategory unknownCategory = new GameCategory(null);
+            GameCategory coOpCategory = new GameCategory(SteamGameCategory.CO_OP);
+            GameCategory onlineCoOpCategory = new GameCategory(SteamGameCategory.ONLINE_CO_OP);
             GameData expectedGameDataResponse =
-                    new GameData(Set.of(singlePlayerCategory, multiplayerCategory, unknownCategory));
+                    new GameData(Set.of(singlePlayerCategory, multiplayerCategory, coOpCategory, onlineCoOpCategory));
 
-            when(restTemplate.getForObject(mockURI, String.class)).thenReturn(mockResponseJson);
+            whenAppDetailsRequested(mockURI, mockResponseJson);
             assertEquals(expectedGameDataResponse, steamRequestSender.requestAppDetailsFromSteamApi("SomeAppId"));
         }
 
@@ -126,7 +204,7 @@ class SteamRequestSenderTest {
             GameData expectedGameDataResponse =
                     new GameData(Collections.singleton(new GameCategory(SteamGameCategory.MULTIPLAYER)));
 
-            when(restTemplate.getForObject(mockURI, String.class)).thenReturn(mockResponseJson);
+            whenAppDetailsRequested(mockURI, mockResponseJson);
             assertEquals(expectedGameDataResponse, steamRequestSender.requestAppDetailsFromSteamApi("SomeAppId"));
         }
 
@@ -145,7 +223,7 @@ class SteamRequestSenderTest {
             GameData expectedGameDataResponse =
                     new GameData(Collections.singleton(new GameCategory(SteamGameCategory.MULTIPLAYER)));
 
-            when(restTemplate.getForObject(mockURI, String.class)).thenReturn(mockResponseJson);
+            whenAppDetailsRequested(mockURI, mockResponseJson);
             assertEquals(expectedGameDataResponse, steamRequestSender.requestAppDetailsFromSteamApi("SomeAppId"));
         }
 
@@ -160,9 +238,90 @@ class SteamRequestSenderTest {
                     "    }\n" +
                     "}";
 
-            when(restTemplate.getForObject(mockURI, String.class)).thenReturn(mockResponseJson);
+            whenAppDetailsRequested(mockURI, mockResponseJson);
             assertThrows(IOException.class, () -> steamRequestSender.requestAppDetailsFromSteamApi("SomeAppId"));
         }
+
+        @Test
+        @DisplayName("Given filters are configured, when a successful request is made to retrieve an application's details " +
+                "then only the filtered details should be requested and the size of the response recorded")
+        void givenFiltersAreConfiguredWhenASuccessfulRequestIsMadeToRetrieveAnApplicationDetailsThenOnlyTheFilteredDetailsShouldBeRequestedAndTheSizeOfTheResponseRecorded() throws IOException {
+            useAppDetailsFilters("categories");
+            URI mockFilteredURI = URI.create(MOCK_STORE_ADDRESS + "/api/appdetails/?appids=SomeAppId&filters=categories");
+            String mockResponseJson = "{\"SomeAppId\":{\"success\":true,\"data\":{\"categories\":[{\"id\":2}]}}}";
+            GameData expectedGameDataResponse =
+                    new GameData(Collections.singleton(new GameCategory(SteamGameCategory.SINGLE_PLAYER)));
+
+            whenAppDetailsRequested(mockFilteredURI, mockResponseJson);
+            assertEquals(expectedGameDataResponse, steamRequestSender.requestAppDetailsFromSteamApi("SomeAppId"));
+            verify(restTemplate, times(1)).execute(any(URI.class), eq(HttpMethod.GET), isNull(), any(ResponseExtractor.class));
+
+            DistributionSummary responseSize = meterRegistry.get(APP_DETAILS_RESPONSE_SIZE_METRIC_NAME)
+                    .tag("filtered", "true")
+                    .summary();
+            assertEquals(1, responseSize.count());
+            assertEquals(mockResponseJson.length(), responseSize.totalAmount());
+        }
+
+        @Test
+        @DisplayName("Given filters are configured, when the filtered details of an application don't include its categories " +
+                "then the full details of the application should be requested")
+        void givenFiltersAreConfiguredWhenTheFilteredDetailsOfAnApplicationDontIncludeItsCategoriesThenTheFullDetailsOfTheApplicationShouldBeRequested() throws IOException {
+            useAppDetailsFilters("categories");
+            URI mockFilteredURI = URI.create(MOCK_STORE_ADDRESS + "/api/appdetails/?appids=SomeAppId&filters=categories");
+            URI mockURI = URI.create(MOCK_STORE_ADDRESS + "/api/appdetails/?appids=SomeAppId");
+            String mockFilteredResponseJson = "{\"SomeAppId\":{\"success\":true,\"data\":[]}}";
+            String mockResponseJson = "{\"SomeAppId\":{\"success\":true,\"data\":{\"name\":\"SomeGame\"," +
+                    "\"categories\":[{\"id\":1}]}}}";
+            GameData expectedGameDataResponse =
+                    new GameData(Collections.singleton(new GameCategory(SteamGameCategory.MULTIPLAYER)));
+
+            whenAppDetailsRequested(mockFilteredURI, mockFilteredResponseJson);
+            whenAppDetailsRequested(mockURI, mockResponseJson);
+            assertEquals(expectedGameDataResponse, steamRequestSender.requestAppDetailsFromSteamApi("SomeAppId"));
+            verify(restTemplate).execute(eq(mockFilteredURI), eq(HttpMethod.GET), isNull(), any(ResponseExtractor.class));
+            verify(restTemplate).execute(eq(mockURI), eq(HttpMethod.GET), isNull(), any(ResponseExtractor.class));
+        }
+
+        /**
+         * Stubs a request for application details so that its response is streamed from the specified JSON
+         *
+         * @param requestUri   the URI of the request
+         * @param responseJson the body of the response
+         */
+        private void whenAppDetailsRequested(URI requestUri, String responseJson) throws IOException {
+            ClientHttpResponse mockResponse = mock(ClientHttpResponse.class);
+            when(mockResponse.getBody()).thenReturn(new ByteArrayInputStream(responseJson.getBytes(StandardCharsets.UTF_8)));
+            when(restTemplate.execute(eq(requestUri), eq(HttpMethod.GET), isNull(), any(ResponseExtractor.class)))
+                    .thenAnswer(invocation -> invocation.<ResponseExtractor<GameData>>getArgument(3).extractData(mockResponse));
+        }
+
+        /**
+         * Rebuilds the sender under test so that its requests for application details use the specified filters
+         *
+         * @param filters the filters to use
+         */
+        private void useAppDetailsFilters(String filters) {
+            SteamProperties steamProperties = new SteamProperties(MOCK_API_ADDRESS, MOCK_STORE_ADDRESS, filters, 2);
+            steamRequestSender = new SteamRequestSender(restTemplate, secretManagerService, steamProperties,
+                    new SteamRequestCoalescer(meterRegistry), new SteamRateLimiter(new SteamRateLimitProperties(), meterRegistry),
+                gameCatalog, meterRegistry);
+        }
+    }
+
+    @Test
+    @DisplayName("Given a time games were changed since, when a request is made to list the games on the Steam Store then " +
+            "only games changed since that time, after the given appid, should be requested")
+    void givenATimeGamesWereChangedSinceWhenARequestIsMadeToListTheGamesOnTheSteamStoreThenOnlyGamesChangedSinceThatTimeAfterTheGivenAppidShouldBeRequested() throws SecretRetrievalException {
+        URI mockURI = URI.create(MOCK_API_ADDRESS + "/IStoreService/GetAppList/v1/?key=SomeKey&if_modified_since=1700000000" +
+                "&last_appid=20&max_results=1000");
+        GetAppListResponse mockResponse = new GetAppListResponse(new GetAppListResponse.Response(
+                List.of(new GetAppListResponse.App(30, "SomeGame", 1700000100L)), false, 30));
+
+        when(restTemplate.getForObject(mockURI, GetAppListResponse.class)).thenReturn(mockResponse);
+        when(secretManagerService.getSecretValue(STEAM_API_KEY_SECRET_ID)).thenReturn("SomeKey");
+
+        assertEquals(mockResponse, steamRequestSender.requestAppListFromSteamApi(1700000000L, 20, 1000));
     }
 
     @Test
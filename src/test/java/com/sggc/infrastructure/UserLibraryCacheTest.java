@@ -0,0 +1,114 @@
+package com.sggc.infrastructure;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.sggc.config.CachingConfig;
+import com.sggc.config.CachingProperties;
+import com.sggc.config.ConfiguredCaffeineCacheManager;
+import com.sggc.models.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import static com.sggc.infrastructure.UserLibraryCache.GAME_IDS_METRIC_NAME;
+import static com.sggc.infrastructure.UserLibraryCache.HIT_RATIO_METRIC_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserLibraryCacheTest {
+
+    private static final Instant NOW = Instant.parse("2018-08-22T10:00:00Z");
+
+    private CachingProperties cachingProperties;
+    private ConfiguredCaffeineCacheManager cacheManager;
+    private SimpleMeterRegistry meterRegistry;
+    private UserLibraryCache userLibraryCache;
+
+    @BeforeEach
+    void setup() {
+        cachingProperties = new CachingProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        cacheManager = new ConfiguredCaffeineCacheManager(cachingProperties, meterRegistry, "cacheManager");
+        userLibraryCache = new UserLibraryCache(cacheManager, Clock.fixed(NOW, ZoneOffset.UTC), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Given a cached user, when the user's library is retrieved, then the library is returned")
+    void givenACachedUserWhenTheUsersLibraryIsRetrievedThenTheLibraryIsReturned() {
+        userLibraryCache.put(new User("1", new int[]{10, 20}, NOW.plusSeconds(60).getEpochSecond()));
+
+        assertArrayEquals(new int[]{10, 20}, userLibraryCache.getOwnedGameIds("1").orElseThrow());
+        assertTrue(userLibraryCache.getOwnedGameIds("2").isEmpty());
+        nativeCache().cleanUp();
+        assertEquals(0.5, meterRegistry.get(HIT_RATIO_METRIC_NAME).gauge().value());
+        assertEquals(2, meterRegistry.get(GAME_IDS_METRIC_NAME).gauge().value());
+    }
+
+    @Test
+    @DisplayName("Given a cached user, when the cache is checked for the user's library, then it is found without counting towards the hit ratio")
+    void givenACachedUserWhenTheCacheIsCheckedForTheUsersLibraryThenItIsFoundWithoutCountingTowardsTheHitRatio() {
+        userLibraryCache.put(new User("1", new int[]{10, 20}, NOW.plusSeconds(60).getEpochSecond()));
+
+        assertTrue(userLibraryCache.contains("1"));
+        assertFalse(userLibraryCache.contains("2"));
+        assertTrue(userLibraryCache.getOwnedGameIds("1").isPresent());
+        nativeCache().cleanUp();
+        assertEquals(1.0, meterRegistry.get(HIT_RATIO_METRIC_NAME).gauge().value());
+    }
+
+    @Test
+    @DisplayName("Given a user due to be removed, when the user is cached, then the user's library expires from the cache when the user is removed")
+    void givenAUserDueToBeRemovedWhenTheUserIsCachedThenTheUsersLibraryExpiresFromTheCacheWhenTheUserIsRemoved() {
+        userLibraryCache.put(new User("1", new int[]{10}, NOW.plus(Duration.ofHours(2)).getEpochSecond()));
+
+        assertEquals(Duration.ofHours(2).toNanos(), expiresAfterNanos("1"), TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    @DisplayName("Given a user removed further in the future than the cache's expire after write, when the user is cached, then the user's library expires after the cache's expire after write")
+    void givenAUserRemovedFurtherInTheFutureThanTheCachesExpireAfterWriteWhenTheUserIsCachedThenTheUsersLibraryExpiresAfterTheCachesExpireAfterWrite() {
+        userLibraryCache.put(new User("1", new int[]{10}, NOW.plus(Duration.ofDays(3)).getEpochSecond()));
+
+        Duration expireAfterWrite = cachingProperties.getSpec(CachingConfig.USER_LIBRARIES_CACHE_NAME).getExpireAfterWrite();
+        assertEquals(expireAfterWrite.toNanos(), expiresAfterNanos("1"), TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    @DisplayName("Given a user whose removal date has passed, when the user is cached, then the user's library is not cached")
+    void givenAUserWhoseRemovalDateHasPassedWhenTheUserIsCachedThenTheUsersLibraryIsNotCached() {
+        userLibraryCache.put(new User("1", new int[]{10}, NOW.minusSeconds(1).getEpochSecond()));
+
+        assertTrue(userLibraryCache.getOwnedGameIds("1").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Given the cache holds more game ids than its maximum weight, when the cache is cleaned up, then libraries are evicted")
+    void givenTheCacheHoldsMoreGameIdsThanItsMaximumWeightWhenTheCacheIsCleanedUpThenLibrariesAreEvicted() {
+        cachingProperties.getCaches().put(CachingConfig.USER_LIBRARIES_CACHE_NAME,
+                new CachingProperties.CacheSpec(null, 3L, Duration.ofDays(1), null));
+        userLibraryCache = new UserLibraryCache(cacheManager, Clock.fixed(NOW, ZoneOffset.UTC), meterRegistry);
+        long removalDate = NOW.plusSeconds(60).getEpochSecond();
+
+        userLibraryCache.put(new User("1", new int[]{10, 20}, removalDate));
+        userLibraryCache.put(new User("2", new int[]{30, 40}, removalDate));
+        nativeCache().cleanUp();
+
+        assertEquals(1, nativeCache().estimatedSize());
+        assertTrue(nativeCache().policy().eviction().orElseThrow().weightedSize().orElseThrow() <= 3);
+    }
+
+    private long expiresAfterNanos(String userId) {
+        return nativeCache().policy().expireVariably().orElseThrow()
+                .getExpiresAfter(userId, TimeUnit.NANOSECONDS).orElseThrow();
+    }
+
+    private Cache<Object, Object> nativeCache() {
+        return ((CaffeineCache) cacheManager.getCache(CachingConfig.USER_LIBRARIES_CACHE_NAME)).getNativeCache();
+    }
+}
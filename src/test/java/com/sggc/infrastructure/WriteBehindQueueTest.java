@@ -0,0 +1,238 @@
+package com.sggc.infrastructure;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+import com.amazonaws.util.BinaryUtils;
+import com.sggc.config.WriteBehindProperties;
+import com.sggc.models.User;
+import com.sggc.util.OwnedGameIdsCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.sggc.infrastructure.WriteBehindQueue.OUTCOME_TAG;
+import static com.sggc.infrastructure.WriteBehindQueue.WRITES_METRIC_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WriteBehindQueueTest {
+
+    @Mock
+    private AmazonDynamoDB amazonDynamoDB;
+
+    private WriteBehindProperties writeBehindProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private WriteBehindQueue writeBehindQueue;
+
+    @BeforeEach
+    void setup() {
+        writeBehindProperties = new WriteBehindProperties();
+        writeBehindProperties.setFlushInterval(Duration.ofHours(1));
+        writeBehindProperties.setBatchSize(1000);
+        writeBehindProperties.setUnprocessedBackoff(Duration.ZERO);
+        meterRegistry = new SimpleMeterRegistry();
+        writeBehindQueue = new WriteBehindQueue(amazonDynamoDB, DynamoDBMapperConfig.DEFAULT, writeBehindProperties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        writeBehindQueue.shutdown();
+    }
+
+    @Test
+    @DisplayName("Given several writes of the same user, when the queue is flushed, then only the latest write of the user is made")
+    void givenSeveralWritesOfTheSameUserWhenTheQueueIsFlushedThenOnlyTheLatestWriteOfTheUserIsMade() {
+        when(amazonDynamoDB.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(new BatchWriteItemResult());
+        writeBehindQueue.save(new User("1", new int[]{10}, 100));
+        writeBehindQueue.save(new User("1", new int[]{10, 20}, 200));
+        writeBehindQueue.save(new User("2", new int[]{30}, 300));
+        verifyNoInteractions(amazonDynamoDB);
+
+        writeBehindQueue.flush();
+
+        ArgumentCaptor<BatchWriteItemRequest> request = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(amazonDynamoDB).batchWriteItem(request.capture());
+        List<Map<String, AttributeValue>> items = itemsOf(request.getValue());
+        assertEquals(2, items.size());
+        assertTrue(items.stream().anyMatch(item -> item.get("id").getS().equals("1")
+                && OwnedGameIdsCodec.decode(BinaryUtils.copyAllBytesFrom(item.get(User.ENCODED_OWNED_GAME_IDS_ATTRIBUTE_NAME).getB())).length == 2
+                && item.get("removalDate").getN().equals("200")));
+        assertEquals(1, count("coalesced"));
+        assertEquals(2, count("written"));
+        assertEquals(0, writeBehindQueue.getPendingCount());
+    }
+
+    @Test
+    @DisplayName("Given the mapper configuration overrides table names, when the queue is flushed, then the entities are written to the overridden table")
+    void givenTheMapperConfigurationOverridesTableNamesWhenTheQueueIsFlushedThenTheEntitiesAreWrittenToTheOverriddenTable() {
+        writeBehindQueue.shutdown();
+        writeBehindQueue = new WriteBehindQueue(amazonDynamoDB, DynamoDBMapperConfig.builder()
+                .withTableNameOverride(DynamoDBMapperConfig.TableNameOverride.withTableNamePrefix("Test"))
+                .build(), writeBehindProperties, meterRegistry);
+        when(amazonDynamoDB.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(new BatchWriteItemResult());
+        writeBehindQueue.save(new User("1", new int[]{10}, 100));
+
+        writeBehindQueue.flush();
+
+        ArgumentCaptor<BatchWriteItemRequest> request = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(amazonDynamoDB).batchWriteItem(request.capture());
+        assertEquals(Set.of("TestUser"), request.getValue().getRequestItems().keySet());
+    }
+
+    @Test
+    @DisplayName("Given more writes than fit in a BatchWriteItem call, when the queue is flushed, then the writes are split into batches of at most 25 items")
+    void givenMoreWritesThanFitInABatchWriteItemCallWhenTheQueueIsFlushedThenTheWritesAreSplitIntoBatchesOfAtMost25Items() {
+        when(amazonDynamoDB.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(new BatchWriteItemResult());
+        IntStream.range(0, 30).forEach(i -> writeBehindQueue.save(new User(String.valueOf(i), new int[]{10}, 100)));
+
+        writeBehindQueue.flush();
+
+        ArgumentCaptor<BatchWriteItemRequest> requests = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(amazonDynamoDB, atLeast(2)).batchWriteItem(requests.capture());
+        List<Integer> batchSizes = requests.getAllValues().stream()
+                .map(request -> itemsOf(request).size())
+                .collect(Collectors.toList());
+        assertTrue(batchSizes.stream().allMatch(batchSize -> batchSize <= 25));
+        assertEquals(30, batchSizes.stream().mapToInt(Integer::intValue).sum());
+    }
+
+    @Test
+    @DisplayName("Given DynamoDB leaves items unprocessed, when the queue is flushed, then the unprocessed items are retried")
+    void givenDynamoDbLeavesItemsUnprocessedWhenTheQueueIsFlushedThenTheUnprocessedItemsAreRetried() {
+        when(amazonDynamoDB.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenAnswer(invocation -> {
+                    BatchWriteItemRequest request = invocation.getArgument(0);
+                    List<WriteRequest> writes = request.getRequestItems().get("User");
+                    return new BatchWriteItemResult().withUnprocessedItems(Map.of("User", writes.subList(1, writes.size())));
+                })
+                .thenReturn(new BatchWriteItemResult());
+        writeBehindQueue.save(new User("1", new int[]{10}, 100));
+        writeBehindQueue.save(new User("2", new int[]{10}, 100));
+
+        writeBehindQueue.flush();
+
+        ArgumentCaptor<BatchWriteItemRequest> requests = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(amazonDynamoDB, times(2)).batchWriteItem(requests.capture());
+        assertEquals(1, itemsOf(requests.getAllValues().get(1)).size());
+        assertEquals(2, count("written"));
+    }
+
+    @Test
+    @DisplayName("Given DynamoDB keeps leaving an item unprocessed, when the queue is flushed, then the item is queued again")
+    void givenDynamoDbKeepsLeavingAnItemUnprocessedWhenTheQueueIsFlushedThenTheItemIsQueuedAgain() {
+        writeBehindProperties.setMaxUnprocessedRetries(1);
+        when(amazonDynamoDB.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+            BatchWriteItemRequest request = invocation.getArgument(0);
+            return new BatchWriteItemResult().withUnprocessedItems(request.getRequestItems());
+        });
+        writeBehindQueue.save(new User("1", new int[]{10}, 100));
+
+        writeBehindQueue.flush();
+
+        verify(amazonDynamoDB, times(2)).batchWriteItem(any(BatchWriteItemRequest.class));
+        assertEquals(1, writeBehindQueue.getPendingCount());
+        assertEquals(1, count("requeued"));
+    }
+
+    @Test
+    @DisplayName("Given a write which cannot be batched, when the queue is flushed, then it is made individually")
+    void givenAWriteWhichCannotBeBatchedWhenTheQueueIsFlushedThenItIsMadeIndividually() {
+        AtomicInteger writes = new AtomicInteger();
+        writeBehindQueue.submit("SomeGame", writes::incrementAndGet);
+        writeBehindQueue.submit("SomeGame", writes::incrementAndGet);
+        assertEquals(0, writes.get());
+
+        writeBehindQueue.flush();
+
+        assertEquals(1, writes.get());
+        verifyNoInteractions(amazonDynamoDB);
+    }
+
+    @Test
+    @DisplayName("Given a batch worth of writes is queued, when the flush interval has not elapsed, then the queue is flushed anyway")
+    void givenABatchWorthOfWritesIsQueuedWhenTheFlushIntervalHasNotElapsedThenTheQueueIsFlushedAnyway() {
+        writeBehindProperties.setBatchSize(2);
+        when(amazonDynamoDB.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(new BatchWriteItemResult());
+
+        writeBehindQueue.save(new User("1", new int[]{10}, 100));
+        writeBehindQueue.save(new User("2", new int[]{10}, 100));
+
+        verify(amazonDynamoDB, timeout(5000)).batchWriteItem(any(BatchWriteItemRequest.class));
+    }
+
+    @Test
+    @DisplayName("Given the queue is full and overflowing writes are written through, when another write is queued, then it is made on the calling thread")
+    void givenTheQueueIsFullAndOverflowingWritesAreWrittenThroughWhenAnotherWriteIsQueuedThenItIsMadeOnTheCallingThread() {
+        writeBehindProperties.setMaxPending(1);
+        writeBehindQueue.save(new User("1", new int[]{10}, 100));
+
+        writeBehindQueue.save(new User("2", new int[]{10}, 100));
+
+        verify(amazonDynamoDB).putItem(eq("User"), anyMap());
+        assertEquals(1, writeBehindQueue.getPendingCount());
+        assertEquals(1, count("written_through"));
+    }
+
+    @Test
+    @DisplayName("Given the queue is full and overflowing writes are dropped, when another write is queued, then it is discarded")
+    void givenTheQueueIsFullAndOverflowingWritesAreDroppedWhenAnotherWriteIsQueuedThenItIsDiscarded() {
+        writeBehindProperties.setMaxPending(1);
+        writeBehindProperties.setOverflowPolicy(WriteBehindProperties.OverflowPolicy.DROP);
+        writeBehindQueue.save(new User("1", new int[]{10}, 100));
+
+        writeBehindQueue.save(new User("2", new int[]{10}, 100));
+
+        verifyNoInteractions(amazonDynamoDB);
+        assertEquals(1, writeBehindQueue.getPendingCount());
+        assertEquals(1, count("dropped"));
+    }
+
+    @Test
+    @DisplayName("Given writes are queued, when the queue shuts down, then the writes are drained and later writes are made on the calling thread")
+    void givenWritesAreQueuedWhenTheQueueShutsDownThenTheWritesAreDrainedAndLaterWritesAreMadeOnTheCallingThread() {
+        when(amazonDynamoDB.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(new BatchWriteItemResult());
+        writeBehindQueue.save(new User("1", new int[]{10}, 100));
+
+        writeBehindQueue.shutdown();
+
+        verify(amazonDynamoDB).batchWriteItem(any(BatchWriteItemRequest.class));
+        assertEquals(0, writeBehindQueue.getPendingCount());
+        writeBehindQueue.save(new User("2", new int[]{10}, 100));
+        verify(amazonDynamoDB).putItem(eq("User"), anyMap());
+    }
+
+    private static List<Map<String, AttributeValue>> itemsOf(BatchWriteItemRequest request) {
+        return request.getRequestItems().values().stream()
+                .flatMap(List::stream)
+                .map(WriteRequest::getPutRequest)
+                .map(PutRequest::getItem)
+                .collect(Collectors.toList());
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get(WRITES_METRIC_NAME).tag(OUTCOME_TAG, outcome).counter().count();
+    }
+}
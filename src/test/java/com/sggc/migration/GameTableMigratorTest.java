@@ -0,0 +1,159 @@
+package com.sggc.migration;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.PutItemRequest;
+import com.amazonaws.services.dynamodbv2.model.PutItemResult;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.sggc.config.GameMigrationProperties;
+import com.sggc.migration.GameTableMigrator.MigrationResult;
+import com.sggc.models.Game;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static com.sggc.migration.GameTableMigrator.ITEMS_METRIC_NAME;
+import static com.sggc.migration.GameTableMigrator.OUTCOME_TAG;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GameTableMigratorTest {
+
+    @Mock
+    private AmazonDynamoDB amazonDynamoDB;
+
+    private SimpleMeterRegistry meterRegistry;
+    private GameTableMigrator gameTableMigrator;
+
+    @BeforeEach
+    void setup() {
+        GameMigrationProperties gameMigrationProperties = new GameMigrationProperties();
+        gameMigrationProperties.setTotalSegments(2);
+        meterRegistry = new SimpleMeterRegistry();
+        gameTableMigrator = new GameTableMigrator(amazonDynamoDB, gameMigrationProperties, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Given a legacy table scanned in segments, when it is migrated, then every page of every segment is copied to the Game table without its generated id")
+    void givenALegacyTableScannedInSegmentsWhenItIsMigratedThenEveryPageOfEverySegmentIsCopiedToTheGameTableWithoutItsGeneratedId() {
+        when(amazonDynamoDB.scan(any(ScanRequest.class))).thenAnswer(invocation -> {
+            ScanRequest request = invocation.getArgument(0);
+            assertEquals("Game", request.getTableName());
+            assertEquals(2, request.getTotalSegments());
+            if (request.getSegment() == 1) {
+                return new ScanResult().withItems(List.of(legacyGameItem("3", "30", "1")));
+            }
+            if (request.getExclusiveStartKey() == null) {
+                return new ScanResult().withItems(List.of(legacyGameItem("1", "10", null)))
+                        .withLastEvaluatedKey(Map.of("id", new AttributeValue("1")));
+            }
+            return new ScanResult().withItems(List.of(legacyGameItem("2", "20", "0")));
+        });
+        when(amazonDynamoDB.putItem(any(PutItemRequest.class))).thenReturn(new PutItemResult());
+
+        MigrationResult result = gameTableMigrator.migrate();
+
+        assertEquals(new MigrationResult(3, 3, 0, 0), result);
+        ArgumentCaptor<PutItemRequest> puts = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(amazonDynamoDB, times(3)).putItem(puts.capture());
+        puts.getAllValues().forEach(put -> {
+            assertEquals(Game.TABLE_NAME, put.getTableName());
+            assertFalse(put.getItem().containsKey("id"));
+        });
+        assertEquals(Set.of("10", "20", "30"), puts.getAllValues().stream()
+                .map(put -> put.getItem().get("appid").getS())
+                .collect(Collectors.toSet()));
+        assertEquals(3, meterRegistry.get(ITEMS_METRIC_NAME).tag(OUTCOME_TAG, "copied").counter().count());
+    }
+
+    @Test
+    @DisplayName("Given duplicate legacy games for one appid, when they are migrated, then only the duplicate whose multiplayer status is known is copied")
+    void givenDuplicateLegacyGamesForOneAppidWhenTheyAreMigratedThenOnlyTheDuplicateWhoseMultiplayerStatusIsKnownIsCopied() {
+        when(amazonDynamoDB.scan(any(ScanRequest.class))).thenAnswer(invocation -> {
+            ScanRequest request = invocation.getArgument(0);
+            if (request.getSegment() == 1) {
+                return new ScanResult().withItems(List.of());
+            }
+            return new ScanResult().withItems(List.of(
+                    legacyGameItem("1", "10", null),
+                    legacyGameItem("2", "10", "1")));
+        });
+        when(amazonDynamoDB.putItem(any(PutItemRequest.class))).thenReturn(new PutItemResult());
+
+        MigrationResult result = gameTableMigrator.migrate();
+
+        assertEquals(new MigrationResult(2, 1, 1, 0), result);
+        ArgumentCaptor<PutItemRequest> put = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(amazonDynamoDB).putItem(put.capture());
+        assertEquals("1", put.getValue().getItem().get("multiplayer").getN());
+        assertEquals("attribute_not_exists(#appid) OR attribute_not_exists(#multiplayer)",
+                put.getValue().getConditionExpression());
+    }
+
+    @Test
+    @DisplayName("Given a game already in the Game table, when it is migrated, then the conditional put leaves it untouched and it is counted as a duplicate")
+    void givenAGameAlreadyInTheGameTableWhenItIsMigratedThenTheConditionalPutLeavesItUntouchedAndItIsCountedAsADuplicate() {
+        when(amazonDynamoDB.scan(any(ScanRequest.class))).thenAnswer(invocation -> {
+            ScanRequest request = invocation.getArgument(0);
+            if (request.getSegment() == 1) {
+                return new ScanResult().withItems(List.of());
+            }
+            return new ScanResult().withItems(List.of(legacyGameItem("1", "10", null)));
+        });
+        when(amazonDynamoDB.putItem(any(PutItemRequest.class)))
+                .thenThrow(new ConditionalCheckFailedException("The conditional request failed"));
+
+        MigrationResult result = gameTableMigrator.migrate();
+
+        assertEquals(new MigrationResult(1, 0, 1, 0), result);
+        ArgumentCaptor<PutItemRequest> put = ArgumentCaptor.forClass(PutItemRequest.class);
+        verify(amazonDynamoDB).putItem(put.capture());
+        assertEquals("attribute_not_exists(#appid)", put.getValue().getConditionExpression());
+        assertEquals(1, meterRegistry.get(ITEMS_METRIC_NAME).tag(OUTCOME_TAG, "duplicate").counter().count());
+    }
+
+    @Test
+    @DisplayName("Given a legacy game without an appid, when it is migrated, then it is skipped")
+    void givenALegacyGameWithoutAnAppidWhenItIsMigratedThenItIsSkipped() {
+        Map<String, AttributeValue> gameWithoutAppid = new HashMap<>(legacyGameItem("1", "10", "1"));
+        gameWithoutAppid.remove("appid");
+        when(amazonDynamoDB.scan(any(ScanRequest.class))).thenAnswer(invocation -> {
+            ScanRequest request = invocation.getArgument(0);
+            if (request.getSegment() == 1) {
+                return new ScanResult().withItems(List.of());
+            }
+            return new ScanResult().withItems(List.of(gameWithoutAppid));
+        });
+
+        MigrationResult result = gameTableMigrator.migrate();
+
+        assertEquals(new MigrationResult(1, 0, 0, 1), result);
+        verify(amazonDynamoDB, never()).putItem(any(PutItemRequest.class));
+    }
+
+    private static Map<String, AttributeValue> legacyGameItem(String id, String appId, String multiplayer) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("id", new AttributeValue(id));
+        item.put("appid", new AttributeValue(appId));
+        item.put("name", new AttributeValue("SomeGame" + appId));
+        if (multiplayer != null) {
+            item.put("multiplayer", new AttributeValue().withN(multiplayer));
+        }
+        return item;
+    }
+}
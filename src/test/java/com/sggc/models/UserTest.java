@@ -0,0 +1,60 @@
+package com.sggc.models;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.sggc.util.OwnedGameIdsCodec;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class UserTest {
+
+    private final DynamoDBMapperTableModel<User> tableModel =
+            new DynamoDBMapper(mock(AmazonDynamoDB.class)).getTableModel(User.class);
+
+    @Test
+    @DisplayName("Given a user, when it is converted to a DynamoDB item, then its owned game ids are stored encoded and not as a string set")
+    void givenAUserWhenItIsConvertedToADynamoDbItemThenItsOwnedGameIdsAreStoredEncodedAndNotAsAStringSet() {
+        Map<String, AttributeValue> item = tableModel.convert(new User("1", new int[]{10, 3830}, 100));
+
+        assertFalse(item.containsKey(User.LEGACY_OWNED_GAME_IDS_ATTRIBUTE_NAME));
+        assertEquals(ByteBuffer.wrap(OwnedGameIdsCodec.encode(new int[]{10, 3830})),
+                item.get(User.ENCODED_OWNED_GAME_IDS_ATTRIBUTE_NAME).getB());
+        assertArrayEquals(new int[]{10, 3830}, tableModel.unconvert(item).getOwnedGameIds());
+    }
+
+    @Test
+    @DisplayName("Given a DynamoDB item persisted with its owned game ids as a string set, when it is converted to a user, then its owned game ids are read from the string set")
+    void givenADynamoDbItemPersistedWithItsOwnedGameIdsAsAStringSetWhenItIsConvertedToAUserThenItsOwnedGameIdsAreReadFromTheStringSet() {
+        Map<String, AttributeValue> item = Map.of(
+                "id", new AttributeValue("1"),
+                User.LEGACY_OWNED_GAME_IDS_ATTRIBUTE_NAME, new AttributeValue().withSS("10", "3830"),
+                "removalDate", new AttributeValue().withN("100"));
+
+        User user = tableModel.unconvert(item);
+
+        assertEquals(new User("1", new int[]{10, 3830}, 100), user);
+        Map<String, AttributeValue> rewrittenItem = tableModel.convert(user);
+        assertFalse(rewrittenItem.containsKey(User.LEGACY_OWNED_GAME_IDS_ATTRIBUTE_NAME));
+        assertTrue(rewrittenItem.containsKey(User.ENCODED_OWNED_GAME_IDS_ATTRIBUTE_NAME));
+    }
+
+    @Test
+    @DisplayName("Given a DynamoDB item holding owned game ids in both formats, when it is converted to a user, then the encoded owned game ids are read")
+    void givenADynamoDbItemHoldingOwnedGameIdsInBothFormatsWhenItIsConvertedToAUserThenTheEncodedOwnedGameIdsAreRead() {
+        Map<String, AttributeValue> item = Map.of(
+                "id", new AttributeValue("1"),
+                User.LEGACY_OWNED_GAME_IDS_ATTRIBUTE_NAME, new AttributeValue().withSS("10"),
+                User.ENCODED_OWNED_GAME_IDS_ATTRIBUTE_NAME,
+                new AttributeValue().withB(ByteBuffer.wrap(OwnedGameIdsCodec.encode(new int[]{20, 30}))));
+
+        assertArrayEquals(new int[]{20, 30}, tableModel.unconvert(item).getOwnedGameIds());
+    }
+}
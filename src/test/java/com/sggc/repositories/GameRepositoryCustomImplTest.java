@@ -0,0 +1,314 @@
+package com.sggc.repositories;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchGetItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ExecuteStatementRequest;
+import com.amazonaws.services.dynamodbv2.model.ExecuteStatementResult;
+import com.amazonaws.services.dynamodbv2.model.KeysAndAttributes;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.sggc.config.GameLookupProperties;
+import com.sggc.config.GameMigrationProperties;
+import com.sggc.models.Game;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static com.sggc.repositories.GameRepositoryCustomImpl.CALLS_METRIC_NAME;
+import static com.sggc.repositories.GameRepositoryCustomImpl.LATENCY_METRIC_NAME;
+import static com.sggc.repositories.GameRepositoryCustomImpl.SKIPPED_MULTIPLAYER_WRITES_METRIC_NAME;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GameRepositoryCustomImplTest {
+
+    @Mock
+    private AmazonDynamoDB amazonDynamoDB;
+
+    private GameLookupProperties gameLookupProperties;
+    private GameMigrationProperties gameMigrationProperties;
+    private SimpleMeterRegistry meterRegistry;
+    private GameRepositoryCustomImpl gameRepository;
+
+    @BeforeEach
+    void setup() {
+        gameLookupProperties = new GameLookupProperties();
+        gameLookupProperties.setBatchSize(2);
+        gameLookupProperties.setUnprocessedBackoff(Duration.ZERO);
+        gameMigrationProperties = new GameMigrationProperties();
+        meterRegistry = new SimpleMeterRegistry();
+        gameRepository = new GameRepositoryCustomImpl(amazonDynamoDB, gameLookupProperties, gameMigrationProperties,
+                Executors.newFixedThreadPool(2), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Given more app ids than fit in a batch, when the games are looked up, then each batch is resolved by a single BatchGetItem call")
+    void givenMoreAppIdsThanFitInABatchWhenTheGamesAreLookedUpThenEachBatchIsResolvedByASingleBatchGetItemCall() {
+        when(amazonDynamoDB.batchGetItem(any(BatchGetItemRequest.class)))
+                .thenAnswer(invocation -> gamesMatching(invocation.getArgument(0)));
+
+        Set<Game> games = gameRepository.findGamesByAppids(Set.of("10", "20", "30", "40", "50"));
+
+        assertEquals(Set.of("10", "20", "30", "40", "50"), appIdsOf(games));
+        ArgumentCaptor<BatchGetItemRequest> requests = ArgumentCaptor.forClass(BatchGetItemRequest.class);
+        verify(amazonDynamoDB, times(3)).batchGetItem(requests.capture());
+        requests.getAllValues().forEach(request ->
+                assertTrue(request.getRequestItems().get(Game.TABLE_NAME).getKeys().size() <= 2));
+        verify(amazonDynamoDB, never()).executeStatement(any());
+        assertEquals(3, meterRegistry.get(CALLS_METRIC_NAME).summary().totalAmount());
+        assertEquals(1, meterRegistry.get(LATENCY_METRIC_NAME).timer().count());
+    }
+
+    @Test
+    @DisplayName("Given DynamoDB leaves keys unprocessed, when the games are looked up, then the unprocessed keys are retried")
+    void givenDynamoDbLeavesKeysUnprocessedWhenTheGamesAreLookedUpThenTheUnprocessedKeysAreRetried() {
+        when(amazonDynamoDB.batchGetItem(any(BatchGetItemRequest.class)))
+                .thenReturn(new BatchGetItemResult()
+                        .withResponses(Map.of(Game.TABLE_NAME, List.of(gameItem("10"))))
+                        .withUnprocessedKeys(Map.of(Game.TABLE_NAME, new KeysAndAttributes().withKeys(List.of(key("20"))))))
+                .thenReturn(new BatchGetItemResult()
+                        .withResponses(Map.of(Game.TABLE_NAME, List.of(gameItem("20")))));
+
+        Set<Game> games = gameRepository.findGamesByAppids(Set.of("10", "20"));
+
+        assertEquals(Set.of("10", "20"), appIdsOf(games));
+        ArgumentCaptor<BatchGetItemRequest> requests = ArgumentCaptor.forClass(BatchGetItemRequest.class);
+        verify(amazonDynamoDB, times(2)).batchGetItem(requests.capture());
+        assertEquals(List.of(key("20")), requests.getAllValues().get(1).getRequestItems().get(Game.TABLE_NAME).getKeys());
+        assertEquals(2, meterRegistry.get(CALLS_METRIC_NAME).summary().totalAmount());
+    }
+
+    @Test
+    @DisplayName("Given DynamoDB keeps leaving keys unprocessed, when the games are looked up, then an exception is thrown once they have been retried the maximum number of times")
+    void givenDynamoDbKeepsLeavingKeysUnprocessedWhenTheGamesAreLookedUpThenAnExceptionIsThrownOnceTheyHaveBeenRetriedTheMaximumNumberOfTimes() {
+        gameLookupProperties.setMaxUnprocessedRetries(2);
+        when(amazonDynamoDB.batchGetItem(any(BatchGetItemRequest.class)))
+                .thenReturn(new BatchGetItemResult()
+                        .withUnprocessedKeys(Map.of(Game.TABLE_NAME, new KeysAndAttributes().withKeys(List.of(key("10"))))));
+
+        assertThrows(IllegalStateException.class, () -> gameRepository.findGamesByAppids(Set.of("10")));
+        verify(amazonDynamoDB, times(3)).batchGetItem(any(BatchGetItemRequest.class));
+    }
+
+    @Test
+    @DisplayName("Given games missing from the Game table, when the games are looked up, then they are looked up in the legacy table preferring duplicates whose multiplayer status is known")
+    void givenGamesMissingFromTheGameTableWhenTheGamesAreLookedUpThenTheyAreLookedUpInTheLegacyTablePreferringDuplicatesWhoseMultiplayerStatusIsKnown() {
+        when(amazonDynamoDB.batchGetItem(any(BatchGetItemRequest.class)))
+                .thenReturn(new BatchGetItemResult().withResponses(Map.of(Game.TABLE_NAME, List.of(gameItem("10")))));
+        when(amazonDynamoDB.executeStatement(any())).thenReturn(new ExecuteStatementResult().withItems(List.of(
+                legacyGameItem("1", "20", null),
+                legacyGameItem("2", "20", "0"))));
+
+        Set<Game> games = gameRepository.findGamesByAppids(Set.of("10", "20", "30"));
+
+        assertEquals(Set.of("10", "20"), appIdsOf(games));
+        Game legacyGame = games.stream().filter(game -> game.getAppid().equals("20")).findFirst().orElseThrow();
+        assertFalse(legacyGame.getMultiplayer());
+        ArgumentCaptor<ExecuteStatementRequest> request = ArgumentCaptor.forClass(ExecuteStatementRequest.class);
+        verify(amazonDynamoDB).executeStatement(request.capture());
+        assertTrue(request.getValue().getStatement().startsWith("SELECT * FROM \"Game\".\"appid-index\" WHERE \"appid\" IN ["));
+        assertEquals(Set.of("20", "30"), request.getValue().getParameters().stream()
+                .map(AttributeValue::getS)
+                .collect(Collectors.toSet()));
+    }
+
+    @Test
+    @DisplayName("Given the legacy table returns a partial result, when the games are looked up, then the rest of the result is fetched with the result's next token")
+    void givenTheLegacyTableReturnsAPartialResultWhenTheGamesAreLookedUpThenTheRestOfTheResultIsFetchedWithTheResultsNextToken() {
+        when(amazonDynamoDB.batchGetItem(any(BatchGetItemRequest.class))).thenReturn(new BatchGetItemResult());
+        when(amazonDynamoDB.executeStatement(any())).thenAnswer(invocation -> {
+            ExecuteStatementRequest request = invocation.getArgument(0);
+            if (request.getNextToken() == null) {
+                return new ExecuteStatementResult().withItems(List.of(legacyGameItem("1", "10", "1"))).withNextToken("SomeNextToken");
+            }
+            return new ExecuteStatementResult().withItems(List.of(legacyGameItem("2", "20", "1")));
+        });
+
+        Set<Game> games = gameRepository.findGamesByAppids(Set.of("10", "20"));
+
+        assertEquals(Set.of("10", "20"), appIdsOf(games));
+        assertEquals(3, meterRegistry.get(CALLS_METRIC_NAME).summary().totalAmount());
+    }
+
+    @Test
+    @DisplayName("Given dual reads are disabled, when games are missing from the Game table, then the legacy table is not read")
+    void givenDualReadsAreDisabledWhenGamesAreMissingFromTheGameTableThenTheLegacyTableIsNotRead() {
+        gameMigrationProperties.setDualRead(false);
+        when(amazonDynamoDB.batchGetItem(any(BatchGetItemRequest.class)))
+                .thenReturn(new BatchGetItemResult().withResponses(Map.of(Game.TABLE_NAME, List.of(gameItem("10")))));
+
+        Set<Game> games = gameRepository.findGamesByAppids(Set.of("10", "20"));
+
+        assertEquals(Set.of("10"), appIdsOf(games));
+        verify(amazonDynamoDB, never()).executeStatement(any());
+    }
+
+    @Test
+    @DisplayName("Given a batch fails, when the games are looked up, then the batch's exception is thrown")
+    void givenABatchFailsWhenTheGamesAreLookedUpThenTheBatchsExceptionIsThrown() {
+        when(amazonDynamoDB.batchGetItem(any(BatchGetItemRequest.class)))
+                .thenThrow(new ProvisionedThroughputExceededException("Throttled"));
+
+        assertThrows(ProvisionedThroughputExceededException.class,
+                () -> gameRepository.findGamesByAppids(Set.of("10", "20", "30", "40")));
+    }
+
+    @Test
+    @DisplayName("Given no app ids, when the games are looked up, then DynamoDB is not called")
+    void givenNoAppIdsWhenTheGamesAreLookedUpThenDynamoDbIsNotCalled() {
+        assertTrue(gameRepository.findGamesByAppids(Set.of()).isEmpty());
+        verifyNoInteractions(amazonDynamoDB);
+    }
+
+    @Test
+    @DisplayName("Given a game whose multiplayer status has not been stored, when its multiplayer status is saved, then only its multiplayer status and absent name are updated")
+    void givenAGameWhoseMultiplayerStatusHasNotBeenStoredWhenItsMultiplayerStatusIsSavedThenOnlyItsMultiplayerStatusAndAbsentNameAreUpdated() {
+        Game game = new Game();
+        game.setAppid("10");
+        game.setName("SomeGame10");
+        game.setMultiplayer(true);
+
+        assertTrue(gameRepository.saveMultiplayerIfAbsent(game));
+
+        ArgumentCaptor<UpdateItemRequest> request = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(amazonDynamoDB).updateItem(request.capture());
+        assertEquals(Game.TABLE_NAME, request.getValue().getTableName());
+        assertEquals(key("10"), request.getValue().getKey());
+        assertEquals("SET #multiplayer = :multiplayer, #name = if_not_exists(#name, :name)", request.getValue().getUpdateExpression());
+        assertEquals("attribute_not_exists(#multiplayer)", request.getValue().getConditionExpression());
+        assertEquals(new AttributeValue().withN("1"), request.getValue().getExpressionAttributeValues().get(":multiplayer"));
+        assertEquals(0, meterRegistry.get(SKIPPED_MULTIPLAYER_WRITES_METRIC_NAME).counter().count());
+    }
+
+    @Test
+    @DisplayName("Given a game whose categories are known, when its multiplayer status is saved, then its categories are stored as a bitset unless both are already stored")
+    void givenAGameWhoseCategoriesAreKnownWhenItsMultiplayerStatusIsSavedThenItsCategoriesAreStoredAsABitsetUnlessBothAreAlreadyStored() {
+        Game game = new Game();
+        game.setAppid("10");
+        game.setMultiplayer(true);
+        BitSet categoryIds = new BitSet();
+        categoryIds.set(1);
+        categoryIds.set(38);
+        game.setCategoryIds(categoryIds);
+
+        assertTrue(gameRepository.saveMultiplayerIfAbsent(game));
+
+        ArgumentCaptor<UpdateItemRequest> request = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(amazonDynamoDB).updateItem(request.capture());
+        assertEquals("SET #multiplayer = :multiplayer, #categories = :categories", request.getValue().getUpdateExpression());
+        assertEquals("attribute_not_exists(#multiplayer) OR attribute_not_exists(#categories)", request.getValue().getConditionExpression());
+        assertEquals(Game.CATEGORIES_ATTRIBUTE_NAME, request.getValue().getExpressionAttributeNames().get("#categories"));
+        assertEquals(new AttributeValue().withB(ByteBuffer.wrap(categoryIds.toByteArray())),
+                request.getValue().getExpressionAttributeValues().get(":categories"));
+    }
+
+    @Test
+    @DisplayName("Given a game whose multiplayer status has already been stored, when its multiplayer status is saved, then the write is skipped and counted")
+    void givenAGameWhoseMultiplayerStatusHasAlreadyBeenStoredWhenItsMultiplayerStatusIsSavedThenTheWriteIsSkippedAndCounted() {
+        when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class)))
+                .thenThrow(new ConditionalCheckFailedException("The conditional request failed"));
+        Game game = new Game();
+        game.setAppid("10");
+        game.setMultiplayer(false);
+
+        assertFalse(gameRepository.saveMultiplayerIfAbsent(game));
+
+        ArgumentCaptor<UpdateItemRequest> request = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(amazonDynamoDB).updateItem(request.capture());
+        assertEquals("SET #multiplayer = :multiplayer", request.getValue().getUpdateExpression());
+        assertEquals(1, meterRegistry.get(SKIPPED_MULTIPLAYER_WRITES_METRIC_NAME).counter().count());
+    }
+
+    @Test
+    @DisplayName("Given a game whose multiplayer status has changed, when its multiplayer status is replaced, then its multiplayer status is updated without a condition")
+    void givenAGameWhoseMultiplayerStatusHasChangedWhenItsMultiplayerStatusIsReplacedThenItsMultiplayerStatusIsUpdatedWithoutACondition() {
+        Game game = new Game();
+        game.setAppid("10");
+        game.setMultiplayer(false);
+
+        gameRepository.saveMultiplayer(game);
+
+        ArgumentCaptor<UpdateItemRequest> request = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(amazonDynamoDB).updateItem(request.capture());
+        assertEquals(key("10"), request.getValue().getKey());
+        assertEquals("SET #multiplayer = :multiplayer", request.getValue().getUpdateExpression());
+        assertNull(request.getValue().getConditionExpression());
+        assertEquals(new AttributeValue().withN("0"), request.getValue().getExpressionAttributeValues().get(":multiplayer"));
+    }
+
+    @Test
+    @DisplayName("Given a game added from a user's library, when its name is saved, then only its name is updated unless one is already stored")
+    void givenAGameAddedFromAUsersLibraryWhenItsNameIsSavedThenOnlyItsNameIsUpdatedUnlessOneIsAlreadyStored() {
+        assertTrue(gameRepository.saveNameIfAbsent("10", "SomeGame10"));
+
+        ArgumentCaptor<UpdateItemRequest> request = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        verify(amazonDynamoDB).updateItem(request.capture());
+        assertEquals(Game.TABLE_NAME, request.getValue().getTableName());
+        assertEquals(key("10"), request.getValue().getKey());
+        assertEquals("SET #name = :name", request.getValue().getUpdateExpression());
+        assertEquals("attribute_not_exists(#name)", request.getValue().getConditionExpression());
+        assertEquals(new AttributeValue("SomeGame10"), request.getValue().getExpressionAttributeValues().get(":name"));
+    }
+
+    @Test
+    @DisplayName("Given a game whose name has already been stored, when its name is saved, then the write is skipped")
+    void givenAGameWhoseNameHasAlreadyBeenStoredWhenItsNameIsSavedThenTheWriteIsSkipped() {
+        when(amazonDynamoDB.updateItem(any(UpdateItemRequest.class)))
+                .thenThrow(new ConditionalCheckFailedException("The conditional request failed"));
+
+        assertFalse(gameRepository.saveNameIfAbsent("10", "SomeGame10"));
+    }
+
+    private static BatchGetItemResult gamesMatching(BatchGetItemRequest request) {
+        return new BatchGetItemResult().withResponses(Map.of(Game.TABLE_NAME,
+                request.getRequestItems().get(Game.TABLE_NAME).getKeys().stream()
+                        .map(key -> gameItem(key.get(Game.APPID_ATTRIBUTE_NAME).getS()))
+                        .collect(Collectors.toList())));
+    }
+
+    private static Set<String> appIdsOf(Set<Game> games) {
+        return games.stream().map(Game::getAppid).collect(Collectors.toSet());
+    }
+
+    private static Map<String, AttributeValue> key(String appId) {
+        return Map.of(Game.APPID_ATTRIBUTE_NAME, new AttributeValue(appId));
+    }
+
+    private static Map<String, AttributeValue> gameItem(String appId) {
+        return Map.of(
+                "appid", new AttributeValue(appId),
+                "name", new AttributeValue("SomeGame" + appId),
+                "multiplayer", new AttributeValue().withN("1"));
+    }
+
+    private static Map<String, AttributeValue> legacyGameItem(String id, String appId, String multiplayer) {
+        Map<String, AttributeValue> item = new HashMap<>(gameItem(appId));
+        item.put("id", new AttributeValue(id));
+        if (multiplayer == null) {
+            item.remove("multiplayer");
+        } else {
+            item.put("multiplayer", new AttributeValue().withN(multiplayer));
+        }
+        return item;
+    }
+}
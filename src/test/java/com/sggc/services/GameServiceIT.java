@@ -1,8 +1,13 @@
 package com.sggc.services;
 
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.sggc.AbstractIntegrationTest;
+import com.sggc.config.EnrichmentProperties;
+import com.sggc.infrastructure.WriteBehindQueue;
 import com.sggc.models.Game;
+import com.sggc.models.PendingEnrichment;
 import com.sggc.repositories.GameRepository;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
@@ -17,6 +22,7 @@ import util.extentions.WiremockCleanerExtension;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
@@ -24,6 +30,8 @@ import static org.junit.jupiter.api.Assertions.*;
 
 public class GameServiceIT extends AbstractIntegrationTest {
 
+    private static final String LEGACY_GAME_TABLE_NAME = "Game";
+
     @RegisterExtension
     SggcLocalDynamoDbCleanerExtension dynamoDbCleanerExtension = new SggcLocalDynamoDbCleanerExtension(sggcDynamoDbContainer.getFirstMappedPort());
 
@@ -36,6 +44,15 @@ public class GameServiceIT extends AbstractIntegrationTest {
     @Autowired
     private GameRepository gameRepository;
 
+    @Autowired
+    private AmazonDynamoDB amazonDynamoDB;
+
+    @Autowired
+    private WriteBehindQueue writeBehindQueue;
+
+    @Autowired
+    private EnrichmentProperties enrichmentProperties;
+
 
     private static WireMock wiremockClient;
 
@@ -60,10 +77,6 @@ public class GameServiceIT extends AbstractIntegrationTest {
             Game game2 = new Game();
             Game game3 = new Game();
 
-            game1.setId("1");
-            game2.setId("2");
-            game2.setId("3");
-
             game1.setAppid(mockGameId1);
             game2.setAppid(mockGameId2);
             game3.setAppid(mockGameId3);
@@ -96,10 +109,6 @@ public class GameServiceIT extends AbstractIntegrationTest {
             Game game2 = new Game();
             Game game3 = new Game();
 
-            game1.setId("1");
-            game2.setId("2");
-            game2.setId("3");
-
             game1.setAppid(mockGameId1);
             game2.setAppid(mockGameId2);
             game3.setAppid(mockGameId3);
@@ -120,6 +129,38 @@ public class GameServiceIT extends AbstractIntegrationTest {
 
             assertEquals(Set.of(game1), result);
         }
+
+        @Test
+        @DisplayName("If a game has not yet been migrated from the legacy table then return the game persisted within the legacy table.")
+        void ifAGameHasNotYetBeenMigratedFromTheLegacyTableThenTheServiceWillReturnTheGamePersistedWithinTheLegacyTable() {
+            String mockGameId1 = "1080";
+            String mockGameId2 = "2080";
+
+            Game game1 = new Game();
+            game1.setAppid(mockGameId1);
+            game1.setName("Game 1");
+            game1.setMultiplayer(true);
+            gameRepository.save(game1);
+
+            amazonDynamoDB.putItem(LEGACY_GAME_TABLE_NAME, Map.of(
+                    "id", new AttributeValue("1"),
+                    "appid", new AttributeValue(mockGameId2),
+                    "name", new AttributeValue("Game 2")));
+            amazonDynamoDB.putItem(LEGACY_GAME_TABLE_NAME, Map.of(
+                    "id", new AttributeValue("2"),
+                    "appid", new AttributeValue(mockGameId2),
+                    "name", new AttributeValue("Game 2"),
+                    "multiplayer", new AttributeValue().withN("0")));
+
+            Game game2 = new Game();
+            game2.setAppid(mockGameId2);
+            game2.setName("Game 2");
+            game2.setMultiplayer(false);
+
+            Set<Game> result = gameService.findGamesById(Set.of(mockGameId1, mockGameId2), false);
+
+            assertEquals(Set.of(game1, game2), result);
+        }
     }
 
     @Nested
@@ -136,9 +177,6 @@ public class GameServiceIT extends AbstractIntegrationTest {
             Game game1 = new Game();
             Game game2 = new Game();
 
-            game1.setId("1");
-            game2.setId("2");
-
             game1.setAppid(mockGameId1);
             game2.setAppid(mockGameId2);
 
@@ -170,13 +208,14 @@ public class GameServiceIT extends AbstractIntegrationTest {
             );
 
             gameService.findGamesById(Set.of(mockGameId1, mockGameId2), true);
+            writeBehindQueue.flush();
 
             List<Game> persistedGames = new ArrayList<>();
             gameRepository.findAll().forEach(persistedGames::add);
             assertEquals(2, persistedGames.size());
 
-            Game persistedGame1 = gameRepository.findGameByAppid(mockGameId1);
-            Game persistedGame2 = gameRepository.findGameByAppid(mockGameId2);
+            Game persistedGame1 = gameRepository.findById(mockGameId1).orElse(null);
+            Game persistedGame2 = gameRepository.findById(mockGameId2).orElse(null);
 
             assertNotNull(persistedGame1);
             assertNotNull(persistedGame2);
@@ -191,7 +230,6 @@ public class GameServiceIT extends AbstractIntegrationTest {
             String mockGameId1 = "1080";
 
             Game game1 = new Game();
-            game1.setId("1");
             game1.setAppid(mockGameId1);
             game1.setName("Game 1");
             game1.setMultiplayer(null);
@@ -207,14 +245,46 @@ public class GameServiceIT extends AbstractIntegrationTest {
             );
 
             gameService.findGamesById(Set.of(mockGameId1), true);
+            writeBehindQueue.flush();
 
             List<Game> persistedGames = new ArrayList<>();
             gameRepository.findAll().forEach(persistedGames::add);
             assertEquals(1, persistedGames.size());
 
-            Game persistedGame1 = gameRepository.findGameByAppid(mockGameId1);
+            Game persistedGame1 = gameRepository.findById(mockGameId1).orElse(null);
             assertNotNull(persistedGame1);
             assertTrue(persistedGame1.getMultiplayer());
         }
+
+        @Test
+        @DisplayName("The game's multiplayer status is not found within the request's enrichment budget. It should be returned labelled as pending and left in the enrichment queue.")
+        void IfAGamesMultiplayerStatusIsNotFoundWithinTheEnrichmentBudgetItShouldBeReturnedAsPendingAndLeftInTheEnrichmentQueue() {
+            String mockGameId1 = "1080";
+
+            Game game1 = new Game();
+            game1.setAppid(mockGameId1);
+            game1.setName("Game 1");
+            gameRepository.save(game1);
+
+            wiremockClient.register(
+                    WireMock.get(urlPathEqualTo(SteamWebTestConstants.Endpoints.GET_APP_DETAILS_ENDPOINT))
+                            .withQueryParam(SteamWebTestConstants.QueryParams.STEAM_APP_IDS_QUERY_PARAM_KEY, equalTo(mockGameId1))
+                            .willReturn(ok()
+                                    .withHeader("Content-Type", MediaType.APPLICATION_JSON.toString())
+                                    .withBodyFile("steam-store/get-app-details/successful-response-multiplayer-game-1.json")
+                                    .withFixedDelay((int) enrichmentProperties.getRequestBudget().toMillis() + 1000)
+                            ).build()
+            );
+
+            Set<Game> games = gameService.findGamesById(Set.of(mockGameId1), true);
+            writeBehindQueue.flush();
+
+            assertEquals(1, games.size());
+            assertTrue(games.iterator().next().isEnrichmentPending());
+            Map<String, AttributeValue> queuedGame = amazonDynamoDB.getItem(PendingEnrichment.TABLE_NAME,
+                    Map.of(PendingEnrichment.APPID_ATTRIBUTE_NAME, new AttributeValue(mockGameId1))).getItem();
+            assertNotNull(queuedGame);
+            assertEquals("Game 1", queuedGame.get(PendingEnrichment.NAME_ATTRIBUTE_NAME).getS());
+        }
     }
 }
@@ -1,9 +1,8 @@
 package com.sggc.services;
 
-import com.sggc.infrastructure.SteamRequestSender;
+import com.sggc.config.EnrichmentProperties;
+import com.sggc.infrastructure.EnrichmentQueue;
 import com.sggc.models.Game;
-import com.sggc.models.GameCategory;
-import com.sggc.models.GameData;
 import com.sggc.models.SteamGameCategory;
 import com.sggc.repositories.GameRepository;
 import org.junit.jupiter.api.DisplayName;
@@ -12,16 +11,29 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
-import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static util.util.TestUtils.createEnrichedGame;
 import static util.util.TestUtils.createExampleGame;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,7 +43,10 @@ class GameServiceTest {
     private GameRepository gameRepository;
 
     @Mock
-    private SteamRequestSender steamRequestSender;
+    private EnrichmentQueue enrichmentQueue;
+
+    @Spy
+    private EnrichmentProperties enrichmentProperties = new EnrichmentProperties();
 
     @InjectMocks
     private GameService gameService;
@@ -40,7 +55,7 @@ class GameServiceTest {
     @DisplayName("If provided with a game id it will return the details of the game matching that id")
     void IfProvidedWithAGameIdItWillReturnTheDetailsOfTheGameMatchingThatId() {
         Game exampleGame = createExampleGame("12", true, "Some game name");
-        when(gameRepository.findGameByAppid("12")).thenReturn(exampleGame);
+        when(gameRepository.findGamesByAppids(Set.of("12"))).thenReturn(new HashSet<>(Set.of(exampleGame)));
         assertEquals(Set.of(exampleGame), gameService.findGamesById(Set.of("12"), false));
     }
 
@@ -52,9 +67,7 @@ class GameServiceTest {
         Game exampleGame2 = createExampleGame("78", true, "Some other game name");
         Game exampleGame3 = createExampleGame("112", true, "yet another game name");
 
-        when(gameRepository.findGameByAppid("12")).thenReturn(exampleGame1);
-        when(gameRepository.findGameByAppid("78")).thenReturn(exampleGame2);
-        when(gameRepository.findGameByAppid("112")).thenReturn(exampleGame3);
+        when(gameRepository.findGamesByAppids(Set.of("12", "78", "112"))).thenReturn(new HashSet<>(Set.of(exampleGame1, exampleGame2, exampleGame3)));
         assertEquals(Set.of(exampleGame1, exampleGame2, exampleGame3), gameService.findGamesById(Set.of("12", "78", "112"), false));
     }
 
@@ -72,9 +85,7 @@ class GameServiceTest {
                 Game exampleGame2 = createExampleGame("78", true, "Some other game name");
                 Game exampleGame3 = createExampleGame("112", true, "yet another game name");
 
-                when(gameRepository.findGameByAppid("12")).thenReturn(exampleGame1);
-                when(gameRepository.findGameByAppid("78")).thenReturn(exampleGame2);
-                when(gameRepository.findGameByAppid("112")).thenReturn(exampleGame3);
+                when(gameRepository.findGamesByAppids(Set.of("12", "78", "112"))).thenReturn(new HashSet<>(Set.of(exampleGame1, exampleGame2, exampleGame3)));
                 assertEquals(Set.of(exampleGame2, exampleGame3), gameService.findGamesById(Set.of("12", "78", "112"), true));
             }
         }
@@ -84,40 +95,129 @@ class GameServiceTest {
         class UnknownMultiplayerStatusTests {
             @Test
             @DisplayName("If only multiplayer games are desired, then non-multiplayer games will be filtered out of the returned list of games")
-            void IfOnlyMultiplayerGamesAreDesiredThenNonMultiplayerGamesWillBeFilteredOutOfTheReturnedListOfGames() throws IOException {
-                GameCategory singlePlayerCategory = new GameCategory(SteamGameCategory.SINGLE_PLAYER);
-                ;
-                GameCategory multiPlayerCategory = new GameCategory(SteamGameCategory.MULTIPLAYER);
-
-                GameData multiplayerAppDetailsResponseExample1 = new GameData(Set.of(singlePlayerCategory, multiPlayerCategory));
-                GameData multiplayerAppDetailsResponseExample2 = new GameData(Set.of(singlePlayerCategory, multiPlayerCategory));
-                GameData multiplayerAppDetailsResponseExample3 = new GameData(Set.of(singlePlayerCategory));
-
+            void IfOnlyMultiplayerGamesAreDesiredThenNonMultiplayerGamesWillBeFilteredOutOfTheReturnedListOfGames() {
                 Game exampleGame1 = createExampleGame("573100", null, "Some game name");
                 Game exampleGame2 = createExampleGame("573101", null, "Some game name");
                 Game exampleGame3 = createExampleGame("573102", null, "Some game name");
-                when(gameRepository.findGameByAppid("573100")).thenReturn(exampleGame1);
-                when(gameRepository.findGameByAppid("573101")).thenReturn(exampleGame2);
-                when(gameRepository.findGameByAppid("573102")).thenReturn(exampleGame3);
-
-                when(steamRequestSender.requestAppDetailsFromSteamApi("573100")).thenReturn(multiplayerAppDetailsResponseExample1);
-                when(steamRequestSender.requestAppDetailsFromSteamApi("573101")).thenReturn(multiplayerAppDetailsResponseExample3);
-                when(steamRequestSender.requestAppDetailsFromSteamApi("573102")).thenReturn(multiplayerAppDetailsResponseExample2);
+                when(gameRepository.findGamesByAppids(Set.of("573100", "573101", "573102"))).thenReturn(new HashSet<>(Set.of(exampleGame1, exampleGame2, exampleGame3)));
+
+                whenEnriched(Map.of(
+                        "573100", CompletableFuture.completedFuture(createExampleGame("573100", true, "Some game name")),
+                        "573101", CompletableFuture.completedFuture(createExampleGame("573101", false, "Some game name")),
+                        "573102", CompletableFuture.completedFuture(createExampleGame("573102", true, "Some game name"))));
+
+                assertEquals(Set.of(createExampleGame("573100", true, "Some game name"), createExampleGame("573102", true, "Some game name")),
+                        gameService.findGamesById(Set.of("573100", "573101", "573102"), true));
+                int perRequestParallelism = enrichmentProperties.getPerRequestParallelism();
+                verify(enrichmentQueue).enrichAll(any(), eq(perRequestParallelism));
+                verify(enrichmentQueue, never()).persist(any());
+            }
 
-                assertEquals(Set.of(exampleGame1, exampleGame3), gameService.findGamesById(Set.of("573100", "573101", "573102"), true));
+            @Test
+            @DisplayName("If a game's multiplayer status is not found within the request's enrichment budget, then the game will be returned labelled as pending and left in the enrichment queue")
+            void IfAGamesMultiplayerStatusIsNotFoundWithinTheRequestsEnrichmentBudgetThenTheGameWillBeReturnedLabelledAsPendingAndLeftInTheEnrichmentQueue() {
+                enrichmentProperties.setRequestBudget(Duration.ofMillis(10));
+                Game exampleGame1 = createExampleGame("12", null, "Some game name");
+                Game exampleGame2 = createExampleGame("78", null, "Some other game name");
+                when(gameRepository.findGamesByAppids(Set.of("12", "78"))).thenReturn(new HashSet<>(Set.of(exampleGame1, exampleGame2)));
+                CompletableFuture<Game> unfinishedEnrichment = new CompletableFuture<>();
+                whenEnriched(Map.of(
+                        "12", unfinishedEnrichment,
+                        "78", CompletableFuture.completedFuture(createExampleGame("78", true, "Some other game name"))));
+
+                Set<Game> games = gameService.findGamesById(Set.of("12", "78"), true);
+
+                Game pendingGame = createExampleGame("12", null, "Some game name");
+                pendingGame.setEnrichmentPending(true);
+                assertEquals(Set.of(pendingGame, createExampleGame("78", true, "Some other game name")), games);
+                verify(enrichmentQueue).persist(List.of(pendingGame));
+                assertTrue(unfinishedEnrichment.isCancelled());
             }
 
             @Test
-            @DisplayName("If an exception is thrown while trying to determine whether a game is multiplayer it will throw an exception with an appropriate message")
-            void IfAnExceptionIsThrownWhileTryingToDetermineWhetherAGameIsMultiplayerItWillThrowAnExceptionWithAnAppropriateMessage() throws IOException {
-                when(steamRequestSender.requestAppDetailsFromSteamApi(any())).thenThrow(new IOException());
+            @DisplayName("If an exception is thrown while trying to determine whether a game is multiplayer, then the game will be returned labelled as pending and left in the enrichment queue")
+            void IfAnExceptionIsThrownWhileTryingToDetermineWhetherAGameIsMultiplayerThenTheGameWillBeReturnedLabelledAsPendingAndLeftInTheEnrichmentQueue() {
                 Game exampleGame1 = createExampleGame("12", null, "Some game name");
-                when(gameRepository.findGameByAppid("12")).thenReturn(exampleGame1);
-                assertThrows(UncheckedIOException.class, () -> gameService.findGamesById(Set.of("12"), true));
+                when(gameRepository.findGamesByAppids(Set.of("12"))).thenReturn(new HashSet<>(Set.of(exampleGame1)));
+                whenEnriched(Map.of("12", CompletableFuture.failedFuture(new IOException())));
+
+                Set<Game> games = gameService.findGamesById(Set.of("12"), true);
+
+                assertEquals(1, games.size());
+                assertTrue(games.iterator().next().isEnrichmentPending());
+                verify(enrichmentQueue).persist(List.of(exampleGame1));
             }
         }
+    }
 
+    @Nested
+    @DisplayName("Category filter tests")
+    class CategoryFilterTests {
+        @Test
+        @DisplayName("If categories are requested, then only games within every category will be returned without enriching any game whose categories are stored")
+        void IfCategoriesAreRequestedThenOnlyGamesWithinEveryCategoryWillBeReturnedWithoutEnrichingAnyGameWhoseCategoriesAreStored() {
+            Game exampleGame1 = createEnrichedGame("12", "Some game name", SteamGameCategory.MULTIPLAYER, SteamGameCategory.ONLINE_CO_OP, SteamGameCategory.LAN_CO_OP);
+            Game exampleGame2 = createEnrichedGame("78", "Some game name", SteamGameCategory.MULTIPLAYER, SteamGameCategory.ONLINE_CO_OP);
+            Game exampleGame3 = createEnrichedGame("112", "Some game name", SteamGameCategory.SINGLE_PLAYER, SteamGameCategory.LAN_CO_OP);
+            when(gameRepository.findGamesByAppids(Set.of("12", "78", "112"))).thenReturn(new HashSet<>(Set.of(exampleGame1, exampleGame2, exampleGame3)));
+
+            assertEquals(Set.of(exampleGame1), gameService.findGamesById(Set.of("12", "78", "112"), false,
+                    Set.of(SteamGameCategory.ONLINE_CO_OP, SteamGameCategory.LAN_CO_OP)));
+            verifyNoInteractions(enrichmentQueue);
+        }
+
+        @Test
+        @DisplayName("If categories are requested for a game whose categories are not stored, then the game will be enriched before it is filtered")
+        void IfCategoriesAreRequestedForAGameWhoseCategoriesAreNotStoredThenTheGameWillBeEnrichedBeforeItIsFiltered() {
+            Game exampleGame1 = createExampleGame("12", true, "Some game name");
+            Game exampleGame2 = createExampleGame("78", true, "Some other game name");
+            when(gameRepository.findGamesByAppids(Set.of("12", "78"))).thenReturn(new HashSet<>(Set.of(exampleGame1, exampleGame2)));
+            whenEnriched(Map.of(
+                    "12", CompletableFuture.completedFuture(createEnrichedGame("12", "Some game name", SteamGameCategory.MULTIPLAYER, SteamGameCategory.ONLINE_PVP)),
+                    "78", CompletableFuture.completedFuture(createEnrichedGame("78", "Some game name", SteamGameCategory.MULTIPLAYER))));
+
+            Set<Game> games = gameService.findGamesById(Set.of("12", "78"), true, Set.of(SteamGameCategory.ONLINE_PVP));
+
+            assertEquals(1, games.size());
+            assertEquals("12", games.iterator().next().getAppid());
+            verify(enrichmentQueue, never()).persist(any());
+        }
+    }
 
+
+    @Nested
+    @DisplayName("Streaming tests")
+    class StreamingTests {
+        @Test
+        @DisplayName("If games are streamed, then games whose details are stored will be passed before unknown games are enriched, and enriched games in the order their enrichment completes")
+        void IfGamesAreStreamedThenGamesWhoseDetailsAreStoredWillBePassedBeforeUnknownGamesAreEnrichedAndEnrichedGamesInTheOrderTheirEnrichmentCompletes() {
+            Game storedGame = createExampleGame("78", true, "Some game name");
+            Game unknownGame1 = createExampleGame("12", null, "Some other game name");
+            Game unknownGame2 = createExampleGame("34", null, "Another game name");
+            when(gameRepository.findGamesByAppids(Set.of("12", "34", "78"))).thenReturn(new HashSet<>(Set.of(storedGame, unknownGame1, unknownGame2)));
+            CompletableFuture<Game> enrichment1 = new CompletableFuture<>();
+            CompletableFuture<Game> enrichment2 = new CompletableFuture<>();
+            whenEnriched(Map.of("12", enrichment1, "34", enrichment2));
+
+            List<String> streamedAppIds = new ArrayList<>();
+            gameService.streamGamesById(Set.of("12", "34", "78"), true, Set.of(), game -> {
+                streamedAppIds.add(game.getAppid());
+                if (game.getAppid().equals("78")) {
+                    enrichment2.complete(createExampleGame("34", true, "Another game name"));
+                } else if (game.getAppid().equals("34")) {
+                    enrichment1.complete(createExampleGame("12", true, "Some other game name"));
+                }
+            });
+
+            assertEquals(List.of("78", "34", "12"), streamedAppIds);
+            verify(enrichmentQueue, never()).persist(any());
+        }
     }
 
+
+    private void whenEnriched(Map<String, CompletableFuture<Game>> enrichmentsByAppId) {
+        when(enrichmentQueue.enrichAll(any(), anyInt())).thenAnswer(invocation -> invocation.<List<Game>>getArgument(0).stream()
+                .map(game -> enrichmentsByAppId.get(game.getAppid()))
+                .collect(Collectors.toList()));
+    }
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import com.sggc.AbstractIntegrationTest;
 import com.sggc.exceptions.SecretRetrievalException;
 import com.sggc.exceptions.TooFewSteamIdsException;
 import com.sggc.exceptions.UserHasNoGamesException;
+import com.sggc.infrastructure.WriteBehindQueue;
 import com.sggc.models.User;
 import com.sggc.repositories.UserRepository;
 import org.junit.jupiter.api.BeforeAll;
@@ -50,6 +51,9 @@ public class UserServiceIT extends AbstractIntegrationTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private WriteBehindQueue writeBehindQueue;
+
     private static WireMock wiremockClient;
     private static AWSSecretsManager secretsManagerClient;
 
@@ -92,8 +96,9 @@ public class UserServiceIT extends AbstractIntegrationTest {
                             ).build()
             );
 
-            String getOwnedGamesResponseMockGameId = "3830";
+            int getOwnedGamesResponseMockGameId = 3830;
             userService.getIdsOfGamesOwnedByAllUsers(Set.of(mockUserId1, mockUserId2));
+            writeBehindQueue.flush();
 
             List<User> persistedUsers = new ArrayList<>();
             userRepository.findAll().forEach(persistedUsers::add);
@@ -105,11 +110,8 @@ public class UserServiceIT extends AbstractIntegrationTest {
             assertTrue(user1.isPresent());
             assertTrue(user2.isPresent());
 
-            assertEquals(1, user1.get().getOwnedGameIds().size());
-            assertEquals(1, user1.get().getOwnedGameIds().size());
-
-            assertTrue(user1.get().getOwnedGameIds().contains(getOwnedGamesResponseMockGameId));
-            assertTrue(user2.get().getOwnedGameIds().contains(getOwnedGamesResponseMockGameId));
+            assertArrayEquals(new int[]{getOwnedGamesResponseMockGameId}, user1.get().getOwnedGameIds());
+            assertArrayEquals(new int[]{getOwnedGamesResponseMockGameId}, user2.get().getOwnedGameIds());
         }
 
         @Test
@@ -195,13 +197,13 @@ public class UserServiceIT extends AbstractIntegrationTest {
         User user3 = new User();
 
         user1.setId(mockUserId1);
-        user1.setOwnedGameIds(Set.of("1189", "6147", "8888"));
+        user1.setOwnedGameIds(new int[]{1189, 6147, 8888});
 
         user2.setId(mockUserId2);
-        user2.setOwnedGameIds(Set.of("1182", "6147", "8888", "3789"));
+        user2.setOwnedGameIds(new int[]{1182, 3789, 6147, 8888});
 
         user3.setId(mockUserId3);
-        user3.setOwnedGameIds(Set.of("6147", "8888"));
+        user3.setOwnedGameIds(new int[]{6147, 8888});
 
         userRepository.save(user1);
         userRepository.save(user2);
@@ -1,29 +1,44 @@
 package com.sggc.services;
 
+import com.sggc.config.UserLibraryLookupProperties;
 import com.sggc.exceptions.SecretRetrievalException;
 import com.sggc.exceptions.TooFewSteamIdsException;
 import com.sggc.exceptions.UserHasNoGamesException;
 import com.sggc.infrastructure.SteamRequestSender;
-import com.sggc.models.Game;
+import com.sggc.infrastructure.UserLibraryCache;
+import com.sggc.infrastructure.WriteBehindQueue;
 import com.sggc.models.User;
-import com.sggc.models.steam.response.GetOwnedGamesResponse;
 import com.sggc.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.SyncTaskExecutor;
 
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -35,9 +50,25 @@ class UserServiceTest {
     @Mock
     private SteamRequestSender steamRequestSender;
 
+    @Mock
+    private UserLibraryCache userLibraryCache;
+
+    @Mock
+    private WriteBehindQueue writeBehindQueue;
+
     @Mock
     private Clock clock;
 
+    @Spy
+    private UserLibraryLookupProperties userLibraryLookupProperties = new UserLibraryLookupProperties();
+
+    //Runs each lookup on the calling thread so tests remain deterministic
+    @Spy
+    private Executor userLibraryLookupExecutor = new SyncTaskExecutor();
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @InjectMocks
     private UserService userService;
 
@@ -62,23 +93,15 @@ class UserServiceTest {
         void ifOneOfTheUsersProvidedDoesNotOwnAnyGamesItWillThrowAnExceptionWithAnAppropriateMessage() throws SecretRetrievalException {
 
             User user2 = new User();
-            HashSet<String> set2 = new HashSet<>();
-            set2.add("4");
-            set2.add("2");
-            set2.add("6");
-            user2.setOwnedGameIds(set2);
+            user2.setOwnedGameIds(new int[]{2, 4, 6});
 
             //Depending on which id is used first Mockito could throw a UnnecessaryStubbingException, since we don't care
             //about order make the below mocks lenient
             lenient().when(userRepository.findById("1")).thenReturn(Optional.empty());
             lenient().when(userRepository.findById("2")).thenReturn(Optional.of(user2));
 
-            GetOwnedGamesResponse mockGetOwnedGamesResponse1 = new GetOwnedGamesResponse();
-            GetOwnedGamesResponse.Response getOwnedGamesResponseDetails = new GetOwnedGamesResponse.Response();
-            getOwnedGamesResponseDetails.setGameCount(0);
-            mockGetOwnedGamesResponse1.setResponse(getOwnedGamesResponseDetails);
-
-            when(steamRequestSender.requestUsersOwnedGamesFromSteamApi("1")).thenReturn(mockGetOwnedGamesResponse1);
+            when(steamRequestSender.requestUsersOwnedGameIdsFromSteamApi(eq("1"), any())).thenReturn(new int[0]);
+            when(steamRequestSender.requestUsersOwnedGameIdsFromSteamApi("1")).thenReturn(new int[0]);
             UserHasNoGamesException exception =
                     assertThrows(UserHasNoGamesException.class, () -> userService.getIdsOfGamesOwnedByAllUsers(Set.of("1", "2")));
             assertEquals(exception.getUserId(), "1");
@@ -86,6 +109,92 @@ class UserServiceTest {
         }
 
 
+        @Test
+        @DisplayName("If the cached libraries have no games in common it will neither read the database nor contact the Steam API")
+        void ifTheCachedLibrariesHaveNoGamesInCommonItWillNeitherReadTheDatabaseNorContactTheSteamApi() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
+            when(userLibraryCache.getOwnedGameIds("1")).thenReturn(Optional.of(new int[]{1, 2}));
+            when(userLibraryCache.getOwnedGameIds("2")).thenReturn(Optional.of(new int[]{3}));
+            when(userLibraryCache.getOwnedGameIds("3")).thenReturn(Optional.empty());
+
+            assertTrue(userService.getIdsOfGamesOwnedByAllUsers(Set.of("1", "2", "3")).isEmpty());
+            verifyNoInteractions(userRepository, steamRequestSender);
+            assertEquals(1, meterRegistry.get(UserService.LIBRARY_LOOKUPS_AVOIDED_METRIC_NAME)
+                    .tag(UserService.SOURCE_TAG, "database").counter().count());
+        }
+
+        @Test
+        @DisplayName("It will contact the Steam API only for users found in neither the user library cache nor the database")
+        void itWillContactTheSteamApiOnlyForUsersFoundInNeitherTheUserLibraryCacheNorTheDatabase() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
+            userLibraryLookupProperties.setFilteredSteamLookups(false);
+            when(clock.instant()).thenReturn(Clock.systemUTC().instant());
+            User user2 = new User();
+            user2.setOwnedGameIds(new int[]{2, 3});
+            when(userLibraryCache.getOwnedGameIds("1")).thenReturn(Optional.of(new int[]{1, 2, 3}));
+            when(userLibraryCache.getOwnedGameIds("2")).thenReturn(Optional.empty());
+            when(userLibraryCache.getOwnedGameIds("3")).thenReturn(Optional.empty());
+            when(userRepository.findById("2")).thenReturn(Optional.of(user2));
+            when(userRepository.findById("3")).thenReturn(Optional.empty());
+            when(steamRequestSender.requestUsersOwnedGameIdsFromSteamApi("3")).thenReturn(new int[]{3, 4});
+
+            assertEquals(Set.of("3"), userService.getIdsOfGamesOwnedByAllUsers(Set.of("1", "2", "3")));
+            verify(userRepository, never()).findById("1");
+            verify(steamRequestSender, times(1)).requestUsersOwnedGameIdsFromSteamApi(any());
+            assertEquals(3, meterRegistry.get(UserService.LIBRARY_LOOKUPS_METRIC_NAME)
+                    .tag(UserService.SOURCE_TAG, "memory").counter().count());
+            assertEquals(2, meterRegistry.get(UserService.LIBRARY_LOOKUPS_METRIC_NAME)
+                    .tag(UserService.SOURCE_TAG, "database").counter().count());
+            assertEquals(1, meterRegistry.get(UserService.LIBRARY_LOOKUPS_METRIC_NAME)
+                    .tag(UserService.SOURCE_TAG, "steam").counter().count());
+        }
+
+        @Test
+        @DisplayName("Once the candidate common games are known it will only ask the Steam API which of them a user owns, without saving or caching the partial library")
+        void onceTheCandidateCommonGamesAreKnownItWillOnlyAskTheSteamApiWhichOfThemAUserOwnsWithoutSavingOrCachingThePartialLibrary() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
+            when(userLibraryCache.getOwnedGameIds("1")).thenReturn(Optional.of(new int[]{1, 2, 3}));
+            when(userLibraryCache.getOwnedGameIds("2")).thenReturn(Optional.of(new int[]{2, 3, 4}));
+            when(userLibraryCache.getOwnedGameIds("3")).thenReturn(Optional.empty());
+            when(userRepository.findById("3")).thenReturn(Optional.empty());
+            when(steamRequestSender.requestUsersOwnedGameIdsFromSteamApi(eq("3"), aryEq(new int[]{2, 3}))).thenReturn(new int[]{3});
+
+            assertEquals(Set.of("3"), userService.getIdsOfGamesOwnedByAllUsers(Set.of("1", "2", "3")));
+            verify(steamRequestSender, never()).requestUsersOwnedGameIdsFromSteamApi("3");
+            verifyNoInteractions(writeBehindQueue);
+            verify(userLibraryCache, never()).put(any());
+        }
+
+        @Test
+        @DisplayName("If there are more candidate common games than a filtered Steam lookup allows it will request and save the user's whole library")
+        void ifThereAreMoreCandidateCommonGamesThanAFilteredSteamLookupAllowsItWillRequestAndSaveTheUsersWholeLibrary() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
+            userLibraryLookupProperties.setMaxFilteredCandidates(1);
+            when(clock.instant()).thenReturn(Clock.systemUTC().instant());
+            when(userLibraryCache.getOwnedGameIds("1")).thenReturn(Optional.of(new int[]{1, 2, 3}));
+            when(userLibraryCache.getOwnedGameIds("2")).thenReturn(Optional.empty());
+            when(userRepository.findById("2")).thenReturn(Optional.empty());
+            when(steamRequestSender.requestUsersOwnedGameIdsFromSteamApi("2")).thenReturn(new int[]{3, 4});
+
+            assertEquals(Set.of("3"), userService.getIdsOfGamesOwnedByAllUsers(Set.of("1", "2")));
+            verify(steamRequestSender, never()).requestUsersOwnedGameIdsFromSteamApi(any(), any());
+            verify(writeBehindQueue).save(any());
+        }
+
+        @Test
+        @DisplayName("If the libraries in the database have no games in common it will not contact the Steam API")
+        void ifTheLibrariesInTheDatabaseHaveNoGamesInCommonItWillNotContactTheSteamApi() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
+            userLibraryLookupProperties.setConcurrent(false);
+            User user1 = new User();
+            user1.setOwnedGameIds(new int[]{1});
+            User user2 = new User();
+            user2.setOwnedGameIds(new int[]{2});
+
+            //Once the common games are empty the remaining users are skipped, which user is skipped depends on order
+            lenient().when(userRepository.findById("1")).thenReturn(Optional.of(user1));
+            lenient().when(userRepository.findById("2")).thenReturn(Optional.of(user2));
+            lenient().when(userRepository.findById("3")).thenReturn(Optional.empty());
+
+            assertTrue(userService.getIdsOfGamesOwnedByAllUsers(Set.of("1", "2", "3")).isEmpty());
+            verifyNoInteractions(steamRequestSender);
+        }
+
         @Nested
         @DisplayName("All users own at least one game")
         class AllUsersOwnOneGameTests {
@@ -94,18 +203,10 @@ class UserServiceTest {
             void ifProvidedWithAListOfUsersWhoOwnOneCommonGameItWillReturnThatGame() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
 
                 User user1 = new User();
-                HashSet<String> set1 = new HashSet<>();
-                set1.add("1");
-                set1.add("2");
-                set1.add("3");
-                user1.setOwnedGameIds(set1);
+                user1.setOwnedGameIds(new int[]{1, 2, 3});
 
                 User user2 = new User();
-                HashSet<String> set2 = new HashSet<>();
-                set2.add("4");
-                set2.add("2");
-                set2.add("6");
-                user2.setOwnedGameIds(set2);
+                user2.setOwnedGameIds(new int[]{2, 4, 6});
 
                 when(userRepository.findById("1")).thenReturn(Optional.of(user1));
                 when(userRepository.findById("2")).thenReturn(Optional.of(user2));
@@ -118,18 +219,10 @@ class UserServiceTest {
             @DisplayName("If provided with a list of users who own multiple common games it will return a list of common games")
             void ifProvidedWithAListOfUsersWhoOwnMultipleCommonGameItWillReturnThoseGames() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
                 User user1 = new User();
-                HashSet<String> set1 = new HashSet<>();
-                set1.add("1");
-                set1.add("2");
-                set1.add("3");
-                user1.setOwnedGameIds(set1);
+                user1.setOwnedGameIds(new int[]{1, 2, 3});
 
                 User user2 = new User();
-                HashSet<String> set2 = new HashSet<>();
-                set2.add("1");
-                set2.add("2");
-                set2.add("6");
-                user2.setOwnedGameIds(set2);
+                user2.setOwnedGameIds(new int[]{1, 2, 6});
 
                 when(userRepository.findById("1")).thenReturn(Optional.of(user1));
                 when(userRepository.findById("2")).thenReturn(Optional.of(user2));
@@ -141,24 +234,159 @@ class UserServiceTest {
             @DisplayName("If provided with a list of users who no multiple common games it will return an empty list")
             void ifProvidedWithAListOfUsersWhoDontOwnAnyCommonGamesItWillReturnAnEmptyList() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
                 User user1 = new User();
-                HashSet<String> set1 = new HashSet<>();
-                set1.add("1");
-                set1.add("2");
-                set1.add("3");
-                user1.setOwnedGameIds(set1);
+                user1.setOwnedGameIds(new int[]{1, 2, 3});
 
                 User user2 = new User();
-                HashSet<String> set2 = new HashSet<>();
-                set2.add("4");
-                set2.add("5");
-                set2.add("6");
-                user2.setOwnedGameIds(set2);
+                user2.setOwnedGameIds(new int[]{4, 5, 6});
 
                 when(userRepository.findById("1")).thenReturn(Optional.of(user1));
                 when(userRepository.findById("2")).thenReturn(Optional.of(user2));
 
                 assertTrue(userService.getIdsOfGamesOwnedByAllUsers(Set.of("1", "2")).isEmpty());
             }
+
+            @Test
+            @DisplayName("If the users' common games become empty part way through it will return an empty list")
+            void ifTheUsersCommonGamesBecomeEmptyPartWayThroughItWillReturnAnEmptyList() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
+                User user1 = new User();
+                user1.setOwnedGameIds(new int[]{1, 2});
+                User user2 = new User();
+                user2.setOwnedGameIds(new int[]{3});
+                User user3 = new User();
+                user3.setOwnedGameIds(new int[]{1, 2});
+
+                //Once the common games are empty the remaining users are skipped, which user is skipped depends on order
+                lenient().when(userRepository.findById("1")).thenReturn(Optional.of(user1));
+                lenient().when(userRepository.findById("2")).thenReturn(Optional.of(user2));
+                lenient().when(userRepository.findById("3")).thenReturn(Optional.of(user3));
+
+                assertTrue(userService.getIdsOfGamesOwnedByAllUsers(Set.of("1", "2", "3")).isEmpty());
+            }
+
+            @Test
+            @DisplayName("If users' libraries are looked up sequentially it will return a list of common games")
+            void ifUsersLibrariesAreLookedUpSequentiallyItWillReturnAListOfCommonGames() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
+                userLibraryLookupProperties.setConcurrent(false);
+
+                User user1 = new User();
+                user1.setOwnedGameIds(new int[]{1, 2, 3});
+                User user2 = new User();
+                user2.setOwnedGameIds(new int[]{1, 2, 6});
+
+                when(userRepository.findById("1")).thenReturn(Optional.of(user1));
+                when(userRepository.findById("2")).thenReturn(Optional.of(user2));
+
+                assertEquals(Set.of("2", "1"), userService.getIdsOfGamesOwnedByAllUsers(Set.of("1", "2")));
+                verifyNoInteractions(userLibraryLookupExecutor);
+            }
+
+            @Test
+            @DisplayName("Retrieving common games will not modify a user's library")
+            void retrievingCommonGamesWillNotModifyAUsersLibrary() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
+                User user1 = new User();
+                user1.setOwnedGameIds(new int[]{1, 2, 3});
+                User user2 = new User();
+                user2.setOwnedGameIds(new int[]{2, 6});
+
+                when(userRepository.findById("1")).thenReturn(Optional.of(user1));
+                when(userRepository.findById("2")).thenReturn(Optional.of(user2));
+
+                userService.getIdsOfGamesOwnedByAllUsers(Set.of("1", "2"));
+                assertArrayEquals(new int[]{1, 2, 3}, user1.getOwnedGameIds());
+                assertArrayEquals(new int[]{2, 6}, user2.getOwnedGameIds());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("If looking up libraries concurrently and one lookup fails while the others are still running, it will throw the failure once it completes and cancel the running lookups")
+    void ifLookingUpLibrariesConcurrentlyAndOneLookupFailsWhileTheOthersAreStillRunningItWillThrowTheFailureAndCancelTheRunningLookups() throws Exception {
+        ExecutorService lookupExecutor = Executors.newFixedThreadPool(3);
+        UserService concurrentUserService = new UserService(userRepository, steamRequestSender, userLibraryCache, writeBehindQueue,
+                clock, userLibraryLookupProperties, lookupExecutor, meterRegistry);
+        CountDownLatch runningLookups = new CountDownLatch(2);
+        CountDownLatch cancelledLookups = new CountDownLatch(2);
+        when(steamRequestSender.requestUsersOwnedGameIdsFromSteamApi(anyString())).thenAnswer(invocation -> {
+            if ("2".equals(invocation.getArgument(0))) {
+                assertTrue(runningLookups.await(5, TimeUnit.SECONDS));
+                return new int[0];
+            }
+            runningLookups.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                cancelledLookups.countDown();
+                throw new IllegalStateException("Interrupted while waiting for Steam", e);
+            }
+            return new int[]{1};
+        });
+
+        try {
+            UserHasNoGamesException exception = assertThrows(UserHasNoGamesException.class,
+                    () -> concurrentUserService.getIdsOfGamesOwnedByAllUsers(new LinkedHashSet<>(List.of("1", "2", "3"))));
+
+            assertEquals("2", exception.getUserId());
+            assertTrue(cancelledLookups.await(5, TimeUnit.SECONDS));
+            verifyNoInteractions(writeBehindQueue);
+        } finally {
+            lookupExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("It will report the libraries of a group of users as cached only if every user's library is in the user library cache")
+    void itWillReportTheLibrariesOfAGroupOfUsersAsCachedOnlyIfEveryUsersLibraryIsInTheUserLibraryCache() {
+        when(userLibraryCache.contains("1")).thenReturn(true);
+        when(userLibraryCache.contains("2")).thenReturn(false);
+
+        assertTrue(userService.areLibrariesCached(Set.of("1")));
+        assertFalse(userService.areLibrariesCached(new LinkedHashSet<>(List.of("1", "2"))));
+        verifyNoInteractions(userRepository, steamRequestSender);
+    }
+
+    @Nested
+    @DisplayName("If provided with a list of user ids and a minimum number of owners it will return the game ids of games owned by at least that many users")
+    class GetIdsOfGamesOwnedByAtLeastTests {
+
+        @Test
+        @DisplayName("If less than two users are provided it will throw an exception")
+        void IfLessThanTwoUsersAreProvidedItWillThrowAnExceptionWithAnAppropriateMessage() {
+            assertThrows(TooFewSteamIdsException.class, () -> userService.getIdsOfGamesOwnedByAtLeast(Set.of("1"), 1));
+        }
+
+        @Test
+        @DisplayName("If several users are provided it will return each game owned by at least the minimum number of users with how many own it")
+        void ifSeveralUsersAreProvidedItWillReturnEachGameOwnedByAtLeastTheMinimumNumberOfUsersWithHowManyOwnIt() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
+            when(userLibraryCache.getOwnedGameIds("1")).thenReturn(Optional.of(new int[]{2, 4, 6}));
+            when(userLibraryCache.getOwnedGameIds("2")).thenReturn(Optional.of(new int[]{2, 6, 8}));
+            when(userLibraryCache.getOwnedGameIds("3")).thenReturn(Optional.of(new int[]{6, 8, 10}));
+
+            assertEquals(Map.of("2", 2, "6", 3, "8", 2), userService.getIdsOfGamesOwnedByAtLeast(Set.of("1", "2", "3"), 2));
+            assertEquals(Map.of("6", 3), userService.getIdsOfGamesOwnedByAtLeast(Set.of("1", "2", "3"), 3));
+        }
+
+        @Test
+        @DisplayName("It will resolve libraries cheapest first, requesting each user's whole library from the Steam API and recording the lookups made from each source")
+        void itWillResolveLibrariesCheapestFirstRequestingEachUsersWholeLibraryFromTheSteamApiAndRecordingTheLookupsMadeFromEachSource() throws UserHasNoGamesException, SecretRetrievalException, TooFewSteamIdsException {
+            when(clock.instant()).thenReturn(Clock.systemUTC().instant());
+            User user2 = new User();
+            user2.setOwnedGameIds(new int[]{2, 6, 8});
+            when(userLibraryCache.getOwnedGameIds("1")).thenReturn(Optional.of(new int[]{2, 4, 6}));
+            when(userLibraryCache.getOwnedGameIds("2")).thenReturn(Optional.empty());
+            when(userLibraryCache.getOwnedGameIds("3")).thenReturn(Optional.empty());
+            when(userRepository.findById("2")).thenReturn(Optional.of(user2));
+            when(userRepository.findById("3")).thenReturn(Optional.empty());
+            when(steamRequestSender.requestUsersOwnedGameIdsFromSteamApi("3")).thenReturn(new int[]{6, 8, 10});
+
+            assertEquals(Map.of("2", 2, "6", 3, "8", 2), userService.getIdsOfGamesOwnedByAtLeast(Set.of("1", "2", "3"), 2));
+            verify(userRepository, never()).findById("1");
+            verify(steamRequestSender, never()).requestUsersOwnedGameIdsFromSteamApi(any(), any());
+            assertEquals(3, meterRegistry.get(UserService.LIBRARY_LOOKUPS_METRIC_NAME)
+                    .tag(UserService.SOURCE_TAG, "memory").counter().count());
+            assertEquals(2, meterRegistry.get(UserService.LIBRARY_LOOKUPS_METRIC_NAME)
+                    .tag(UserService.SOURCE_TAG, "database").counter().count());
+            assertEquals(1, meterRegistry.get(UserService.LIBRARY_LOOKUPS_METRIC_NAME)
+                    .tag(UserService.SOURCE_TAG, "steam").counter().count());
         }
     }
 
@@ -169,14 +397,20 @@ class UserServiceTest {
         @DisplayName("If the user provided already exists within the database it will return a list of game ids of games owned by that user")
         void ifTheUserProvidedAlreadyExistsWithinTheDatabaseItWillReturnAListOfTheUsersOwnedGameIds() throws UserHasNoGamesException, SecretRetrievalException {
             User user1 = new User();
-            HashSet<String> set1 = new HashSet<>();
-            set1.add("2");
-            set1.add("1342");
-            set1.add("10");
-            user1.setOwnedGameIds(set1);
+            user1.setOwnedGameIds(new int[]{2, 10, 1342});
 
             when(userRepository.findById("1")).thenReturn(Optional.of(user1));
-            assertEquals(Set.of("2", "1342", "10"), userService.findOwnedGamesByUserId("1"));
+            assertArrayEquals(new int[]{2, 10, 1342}, userService.findOwnedGamesByUserId("1"));
+            verify(userLibraryCache).put(user1);
+        }
+
+        @Test
+        @DisplayName("If the user provided is in the user library cache it will return the cached list of game ids without reading the database or contacting the Steam API")
+        void ifTheUserProvidedIsInTheUserLibraryCacheItWillReturnTheCachedListOfGameIdsWithoutReadingTheDatabaseOrContactingTheSteamApi() throws UserHasNoGamesException, SecretRetrievalException {
+            when(userLibraryCache.getOwnedGameIds("1")).thenReturn(Optional.of(new int[]{2, 10, 1342}));
+
+            assertArrayEquals(new int[]{2, 10, 1342}, userService.findOwnedGamesByUserId("1"));
+            verifyNoInteractions(userRepository, steamRequestSender);
         }
 
         @Test
@@ -184,31 +418,15 @@ class UserServiceTest {
         void ifTheUserProvidedDoesNotExistWithinTheDatabaseItWillContactTheSteamApiAndReturnAListOfTheUsersOwnedGameIds() throws UserHasNoGamesException, SecretRetrievalException {
             when(clock.instant()).thenReturn(Clock.systemUTC().instant());
             when(userRepository.findById("1")).thenReturn(Optional.empty());
-            GetOwnedGamesResponse mockGetOwnedGamesResponse = new GetOwnedGamesResponse();
-            GetOwnedGamesResponse.Response getOwnedGamesResponseDetails = new GetOwnedGamesResponse.Response();
-            getOwnedGamesResponseDetails.setGameCount(3);
-
-            Game game1 = createExampleGame("2");
-            Game game2 = createExampleGame("1342");
-            Game game3 = createExampleGame("10");
-
-            getOwnedGamesResponseDetails.setGames(Set.of(game1, game2, game3));
-            mockGetOwnedGamesResponse.setResponse(getOwnedGamesResponseDetails);
-            when(steamRequestSender.requestUsersOwnedGamesFromSteamApi("1")).thenReturn(mockGetOwnedGamesResponse);
-            assertEquals(Set.of("2", "1342", "10"), userService.findOwnedGamesByUserId("1"));
+            when(steamRequestSender.requestUsersOwnedGameIdsFromSteamApi("1")).thenReturn(new int[]{2, 10, 1342});
+            assertArrayEquals(new int[]{2, 10, 1342}, userService.findOwnedGamesByUserId("1"));
         }
 
         @Test
         @DisplayName("If the user provided does not exist within the database if the user owns at least one game a new user will be saved to the database with details from the Steam API response")
         void ifTheUserProvidedDoesNotExistWithinTheDatabaseIfTheUserOwnsAtLeastOneGameANewUserWillBeSavedToTheDatabase() throws UserHasNoGamesException, SecretRetrievalException {
             when(userRepository.findById("12")).thenReturn(Optional.empty());
-            GetOwnedGamesResponse mockGetOwnedGamesResponse = new GetOwnedGamesResponse();
-            GetOwnedGamesResponse.Response getOwnedGamesResponseDetails = new GetOwnedGamesResponse.Response();
-            getOwnedGamesResponseDetails.setGameCount(1);
-            Game game1 = createExampleGame("2");
-            getOwnedGamesResponseDetails.setGames(Set.of(game1));
-            mockGetOwnedGamesResponse.setResponse(getOwnedGamesResponseDetails);
-            when(steamRequestSender.requestUsersOwnedGamesFromSteamApi("12")).thenReturn(mockGetOwnedGamesResponse);
+            when(steamRequestSender.requestUsersOwnedGameIdsFromSteamApi("12")).thenReturn(new int[]{2});
 
             Clock fixedClock = Clock.fixed(Instant.parse("2018-08-22T10:00:00Z"), ZoneOffset.UTC);
             when(clock.instant()).thenReturn(fixedClock.instant());
@@ -217,31 +435,23 @@ class UserServiceTest {
 
             User expectedUserObject = new User();
             expectedUserObject.setId("12");
-            expectedUserObject.setOwnedGameIds(Set.of("2"));
+            expectedUserObject.setOwnedGameIds(new int[]{2});
             expectedUserObject.setRemovalDate(1535018400L);
 
-            verify(userRepository, times(1)).save(expectedUserObject);
+            verify(writeBehindQueue, times(1)).save(expectedUserObject);
+            verify(userRepository, never()).save(any());
+            verify(userLibraryCache, times(1)).put(expectedUserObject);
         }
 
         @Test
         @DisplayName("If the user found via the Steam API does not own any games it will throw an exception with an appropriate message")
         void ifTheUserFoundViaTheSteamApiDoesNotOwnAnyGamesItWillThrowAnExceptionWithAnAppropriateMessage() throws SecretRetrievalException {
             when(userRepository.findById("1")).thenReturn(Optional.empty());
-            GetOwnedGamesResponse mockGetOwnedGamesResponse = new GetOwnedGamesResponse();
-            GetOwnedGamesResponse.Response getOwnedGamesResponseDetails = new GetOwnedGamesResponse.Response();
-            getOwnedGamesResponseDetails.setGameCount(0);
-            mockGetOwnedGamesResponse.setResponse(getOwnedGamesResponseDetails);
-            when(steamRequestSender.requestUsersOwnedGamesFromSteamApi("1")).thenReturn(mockGetOwnedGamesResponse);
+            when(steamRequestSender.requestUsersOwnedGameIdsFromSteamApi("1")).thenReturn(new int[0]);
             UserHasNoGamesException exception =
                     assertThrows(UserHasNoGamesException.class, () -> userService.findOwnedGamesByUserId("1"));
             assertEquals(exception.getUserId(), "1");
         }
 
     }
-
-    private Game createExampleGame(String gameId) {
-        Game game = new Game();
-        game.setAppid(gameId);
-        return game;
-    }
 }
\ No newline at end of file
@@ -6,6 +6,7 @@ import com.sggc.AbstractIntegrationTest;
 import com.sggc.exceptions.SecretRetrievalException;
 import com.sggc.exceptions.TooFewSteamIdsException;
 import com.sggc.exceptions.UserHasNoGamesException;
+import com.sggc.infrastructure.WriteBehindQueue;
 import com.sggc.models.User;
 import com.sggc.repositories.UserRepository;
 import org.junit.jupiter.api.BeforeAll;
@@ -64,6 +65,9 @@ public class UserServiceTtlIT extends AbstractIntegrationTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private WriteBehindQueue writeBehindQueue;
+
     @MockBean
     private Clock clock;
 
@@ -102,6 +106,7 @@ public class UserServiceTtlIT extends AbstractIntegrationTest {
         Date oneDayInTheFuture = Date.from(clock.instant().plus(1, ChronoUnit.DAYS));
 
         userService.getIdsOfGamesOwnedByAllUsers(Set.of(mockUserId1, mockUserId2));
+        writeBehindQueue.flush();
 
         List<User> persistedUsers = new ArrayList<>();
         userRepository.findAll().forEach(persistedUsers::add);
@@ -0,0 +1,124 @@
+package com.sggc.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppIdsTest {
+
+    @Test
+    @DisplayName("Given appids in decimal, when they are parsed, then the sorted, distinct appids are returned")
+    void givenAppidsInDecimalWhenTheyAreParsedThenTheSortedDistinctAppidsAreReturned() {
+        assertArrayEquals(new int[]{10, 3830, 4000}, AppIds.parse(List.of("4000", "10", "3830", "10")));
+        assertThrows(IllegalArgumentException.class, () -> AppIds.parse(List.of("10", "SomeGame")));
+    }
+
+    @Test
+    @DisplayName("Given sorted appids, when they are converted to decimal, then each appid is returned in decimal")
+    void givenSortedAppidsWhenTheyAreConvertedToDecimalThenEachAppidIsReturnedInDecimal() {
+        assertEquals(Set.of("10", "3830"), AppIds.toStrings(new int[]{10, 3830}));
+    }
+
+    @Test
+    @DisplayName("Given appids which are already sorted and distinct, when they are sorted, then the same array is returned")
+    void givenAppidsWhichAreAlreadySortedAndDistinctWhenTheyAreSortedThenTheSameArrayIsReturned() {
+        int[] appIds = {10, 20, 30};
+        int[] unsorted = {30, 10, 30, 20};
+
+        assertSame(appIds, AppIds.sortedDistinct(appIds));
+        assertArrayEquals(new int[]{10, 20, 30}, AppIds.sortedDistinct(unsorted));
+        assertArrayEquals(new int[]{30, 10, 30, 20}, unsorted);
+    }
+
+    @Test
+    @DisplayName("Given two libraries of similar sizes, when they are intersected, then the appids in both are returned")
+    void givenTwoLibrariesOfSimilarSizesWhenTheyAreIntersectedThenTheAppidsInBothAreReturned() {
+        assertArrayEquals(new int[]{2, 6}, AppIds.intersect(new int[]{1, 2, 3, 6}, new int[]{2, 4, 6, 8}));
+        assertArrayEquals(new int[0], AppIds.intersect(new int[]{1, 3}, new int[]{2, 4}));
+        assertArrayEquals(new int[0], AppIds.intersect(new int[0], new int[]{2, 4}));
+    }
+
+    @Test
+    @DisplayName("Given a small library and a far larger library, when they are intersected, then the appids in both are returned")
+    void givenASmallLibraryAndAFarLargerLibraryWhenTheyAreIntersectedThenTheAppidsInBothAreReturned() {
+        int[] larger = IntStream.range(0, 10000).map(i -> i * 10).toArray();
+        int[] smaller = {-5, 0, 15, 20, 5000, 99990, 99995, 100000};
+
+        assertArrayEquals(new int[]{0, 20, 5000, 99990}, AppIds.intersect(smaller, larger));
+        assertArrayEquals(new int[]{0, 20, 5000, 99990}, AppIds.intersect(larger, smaller));
+    }
+
+    @Test
+    @DisplayName("Given random libraries, when they are intersected, then the result matches intersecting them as sets")
+    void givenRandomLibrariesWhenTheyAreIntersectedThenTheResultMatchesIntersectingThemAsSets() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int run = 0; run < 50; run++) {
+            List<int[]> libraries = IntStream.range(0, random.nextInt(1, 6))
+                    .mapToObj(i -> AppIds.sortedDistinct(random.ints(random.nextInt(0, 5000), 0, 20000).toArray()))
+                    .collect(Collectors.toList());
+            Set<Integer> expected = IntStream.of(libraries.get(0)).boxed().collect(Collectors.toCollection(HashSet::new));
+            libraries.forEach(library -> expected.retainAll(IntStream.of(library).boxed().collect(Collectors.toSet())));
+
+            int[] intersection = AppIds.intersectAll(libraries);
+
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).sorted().toArray(), intersection);
+        }
+    }
+
+    @Test
+    @DisplayName("Given several libraries, when games owned by at least some of them are counted, then each game owned by enough libraries is returned with how many own it")
+    void givenSeveralLibrariesWhenGamesOwnedByAtLeastSomeOfThemAreCountedThenEachGameOwnedByEnoughLibrariesIsReturnedWithHowManyOwnIt() {
+        List<int[]> libraries = List.of(
+                new int[]{1, 2, 3, 4},
+                new int[]{2, 3, 5},
+                new int[]{3, 5, 6, 7, 8},
+                new int[]{3, 9});
+
+        OwnerCounts ownerCounts = AppIds.countOwners(libraries, 2);
+
+        assertArrayEquals(new int[]{2, 3, 5}, ownerCounts.getAppIds());
+        assertArrayEquals(new int[]{2, 4, 2}, ownerCounts.getOwners());
+        assertArrayEquals(new int[]{3}, AppIds.countOwners(libraries, 4).getAppIds());
+        assertEquals(9, AppIds.countOwners(libraries, 1).size());
+        assertEquals(0, AppIds.countOwners(libraries, 5).size());
+    }
+
+    @Test
+    @DisplayName("Given random libraries, when games owned by at least some of them are counted, then the result matches counting every game")
+    void givenRandomLibrariesWhenGamesOwnedByAtLeastSomeOfThemAreCountedThenTheResultMatchesCountingEveryGame() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int run = 0; run < 50; run++) {
+            List<int[]> libraries = IntStream.range(0, random.nextInt(1, 8))
+                    .mapToObj(i -> AppIds.sortedDistinct(random.ints(random.nextInt(0, 3000), 0, 10000).toArray()))
+                    .collect(Collectors.toList());
+            int minimumOwners = random.nextInt(1, libraries.size() + 1);
+            Map<Integer, Integer> expected = new TreeMap<>();
+            libraries.forEach(library -> IntStream.of(library).forEach(appId -> expected.merge(appId, 1, Integer::sum)));
+            expected.values().removeIf(owners -> owners < minimumOwners);
+
+            OwnerCounts ownerCounts = AppIds.countOwners(libraries, minimumOwners);
+
+            assertArrayEquals(expected.keySet().stream().mapToInt(Integer::intValue).toArray(), ownerCounts.getAppIds());
+            assertArrayEquals(expected.values().stream().mapToInt(Integer::intValue).toArray(), ownerCounts.getOwners());
+            if (minimumOwners == libraries.size()) {
+                assertArrayEquals(AppIds.intersectAll(libraries), ownerCounts.getAppIds());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Given no libraries, when they are intersected, then no appids are returned")
+    void givenNoLibrariesWhenTheyAreIntersectedThenNoAppidsAreReturned() {
+        assertArrayEquals(new int[0], AppIds.intersectAll(List.of()));
+    }
+}
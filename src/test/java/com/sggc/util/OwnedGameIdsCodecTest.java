@@ -0,0 +1,61 @@
+package com.sggc.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OwnedGameIdsCodecTest {
+
+    @Test
+    @DisplayName("Given a collection of appids, when they are encoded and decoded, then the same sorted appids are returned")
+    void givenACollectionOfAppidsWhenTheyAreEncodedAndDecodedThenTheSameSortedAppidsAreReturned() {
+        int[] appIds = {3830, 0, 10, 127, 128, 16383, 16384, Integer.MAX_VALUE};
+
+        assertArrayEquals(new int[]{0, 10, 127, 128, 3830, 16383, 16384, Integer.MAX_VALUE},
+                OwnedGameIdsCodec.decode(OwnedGameIdsCodec.encode(appIds)));
+    }
+
+    @Test
+    @DisplayName("Given no appids, when they are encoded and decoded, then no appids are returned")
+    void givenNoAppidsWhenTheyAreEncodedAndDecodedThenNoAppidsAreReturned() {
+        assertArrayEquals(new int[0], OwnedGameIdsCodec.decode(OwnedGameIdsCodec.encode(new int[0])));
+    }
+
+    @Test
+    @DisplayName("Given duplicate appids, when they are encoded and decoded, then each appid is returned once")
+    void givenDuplicateAppidsWhenTheyAreEncodedAndDecodedThenEachAppidIsReturnedOnce() {
+        assertArrayEquals(new int[]{10, 20}, OwnedGameIdsCodec.decode(OwnedGameIdsCodec.encode(new int[]{20, 10, 20})));
+    }
+
+    @Test
+    @DisplayName("Given a large library of dense appids, when it is encoded, then most appids take two bytes or fewer")
+    void givenALargeLibraryOfDenseAppidsWhenItIsEncodedThenMostAppidsTakeTwoBytesOrFewer() {
+        int[] appIds = IntStream.range(0, 10000).map(i -> 200000 + i * 137).toArray();
+
+        byte[] encoded = OwnedGameIdsCodec.encode(appIds);
+
+        assertTrue(encoded.length <= 2 * appIds.length + 8);
+        assertArrayEquals(appIds, OwnedGameIdsCodec.decode(encoded));
+    }
+
+    @Test
+    @DisplayName("Given a negative appid, when it is encoded, then an exception is thrown")
+    void givenANegativeAppidWhenItIsEncodedThenAnExceptionIsThrown() {
+        assertThrows(IllegalArgumentException.class, () -> OwnedGameIdsCodec.encode(new int[]{10, -10}));
+    }
+
+    @Test
+    @DisplayName("Given bytes not encoded by the codec, when they are decoded, then an exception is thrown")
+    void givenBytesNotEncodedByTheCodecWhenTheyAreDecodedThenAnExceptionIsThrown() {
+        byte[] encoded = OwnedGameIdsCodec.encode(new int[]{10, 3830});
+        byte[] truncated = new byte[encoded.length - 1];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+
+        assertThrows(IllegalArgumentException.class, () -> OwnedGameIdsCodec.decode(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> OwnedGameIdsCodec.decode(new byte[]{2, 0}));
+        assertThrows(IllegalArgumentException.class, () -> OwnedGameIdsCodec.decode(truncated));
+    }
+}
@@ -1,13 +1,15 @@
 package util.extentions;
 
+import com.sggc.infrastructure.UserLibraryCache;
 import org.junit.jupiter.api.extension.BeforeEachCallback;
 import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
 import util.cleaner.DynamoDbCleaner;
 import util.clientfactories.LocalDynamoDbClientFactory;
 
 /**
  * Represents a custom JUnit Extension, used to remove any data from a SGGC Local DynamoDB instance while leaving
- * the table structure intact.
+ * the table structure intact. The application's near-cache of users is cleared alongside, as it mirrors the table.
  */
 public class SggcLocalDynamoDbCleanerExtension implements BeforeEachCallback {
 
@@ -24,6 +26,7 @@ public class SggcLocalDynamoDbCleanerExtension implements BeforeEachCallback {
     @Override
     public void beforeEach(ExtensionContext extensionContext) {
         dynamoDbCleaner.performCleanup();
+        SpringExtension.getApplicationContext(extensionContext).getBean(UserLibraryCache.class).invalidateAll();
     }
 
 }
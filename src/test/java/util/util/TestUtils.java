@@ -1,6 +1,9 @@
 package util.util;
 
 import com.sggc.models.Game;
+import com.sggc.models.SteamGameCategory;
+
+import java.util.BitSet;
 
 /**
  * Represents common methods used in multiple tests.
@@ -11,7 +14,16 @@ public class TestUtils {
         exampleGame.setAppid(appid);
         exampleGame.setMultiplayer(multiplayer);
         exampleGame.setName(name);
-        exampleGame.setId("10");
+        return exampleGame;
+    }
+
+    public static Game createEnrichedGame(String appid, String name, SteamGameCategory... categories) {
+        BitSet categoryIds = new BitSet();
+        for (SteamGameCategory category : categories) {
+            categoryIds.set(category.getId());
+        }
+        Game exampleGame = createExampleGame(appid, categoryIds.get(SteamGameCategory.MULTIPLAYER.getId()), name);
+        exampleGame.setCategoryIds(categoryIds);
         return exampleGame;
     }
 }